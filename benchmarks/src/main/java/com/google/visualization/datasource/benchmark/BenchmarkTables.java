@@ -0,0 +1,237 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.benchmark;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the tables that the benchmarks run on. The tables are generated from a fixed seed,
+ * so that every run of a benchmark sees the same data.
+ */
+public final class BenchmarkTables {
+
+  /**
+   * The seed of the random values.
+   */
+  private static final long SEED = 20090101L;
+
+  /**
+   * The number of distinct values of the region column of the sales table.
+   */
+  public static final int NUMBER_OF_REGIONS = 10;
+
+  /**
+   * The column types of a generated table.
+   */
+  public enum ColumnTypes {
+    NUMERIC(ValueType.NUMBER, ValueType.NUMBER, ValueType.NUMBER, ValueType.NUMBER),
+    TEXT(ValueType.TEXT, ValueType.TEXT, ValueType.TEXT, ValueType.TEXT),
+    MIXED(ValueType.TEXT, ValueType.NUMBER, ValueType.DATE, ValueType.BOOLEAN),
+    TEMPORAL(ValueType.DATE, ValueType.DATETIME, ValueType.TIMEOFDAY, ValueType.NUMBER);
+
+    /**
+     * The types of the columns.
+     */
+    private final ValueType[] types;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param types The types of the columns.
+     */
+    private ColumnTypes(ValueType... types) {
+      this.types = types;
+    }
+
+    /**
+     * Returns the types of the columns.
+     *
+     * @return The types of the columns.
+     */
+    public ValueType[] getTypes() {
+      return types.clone();
+    }
+  }
+
+  /**
+   * Private constructor. All methods are static.
+   */
+  private BenchmarkTables() {}
+
+  /**
+   * Returns the column descriptions of a table with the given column types. The columns are
+   * named c0, c1, ...
+   *
+   * @param columnTypes The column types.
+   *
+   * @return The column descriptions.
+   */
+  public static List<ColumnDescription> createColumnDescriptions(ColumnTypes columnTypes) {
+    List<ColumnDescription> result = Lists.newArrayList();
+    ValueType[] types = columnTypes.getTypes();
+    for (int i = 0; i < types.length; i++) {
+      result.add(new ColumnDescription("c" + i, types[i], "Column " + i));
+    }
+    return result;
+  }
+
+  /**
+   * Returns a table with the given column types. Each column has about cardinality distinct
+   * values, except boolean columns.
+   *
+   * @param columnTypes The column types.
+   * @param numberOfRows The number of rows.
+   * @param cardinality The number of distinct values of each column.
+   *
+   * @return The table.
+   */
+  public static DataTable createTable(ColumnTypes columnTypes, int numberOfRows,
+      int cardinality) {
+    DataTable table = new DataTable();
+    table.addColumns(createColumnDescriptions(columnTypes));
+    ValueType[] types = columnTypes.getTypes();
+    Random random = new Random(SEED);
+    List<TableRow> rows = Lists.newArrayListWithCapacity(numberOfRows);
+    for (int i = 0; i < numberOfRows; i++) {
+      TableRow row = new TableRow();
+      for (ValueType type : types) {
+        row.addCell(new TableCell(createValue(type, random.nextInt(cardinality))));
+      }
+      rows.add(row);
+    }
+    addRows(table, rows);
+    return table;
+  }
+
+  /**
+   * Returns a table of sales, with the columns category (text, with the given number of
+   * distinct values), region (text, with NUMBER_OF_REGIONS distinct values), amount (number),
+   * quantity (number) and day (date). This is the table that the query engine benchmarks run
+   * on.
+   *
+   * @param numberOfRows The number of rows.
+   * @param cardinality The number of distinct categories.
+   *
+   * @return The table.
+   */
+  public static DataTable createSalesTable(int numberOfRows, int cardinality) {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("category", ValueType.TEXT, "Category"));
+    table.addColumn(new ColumnDescription("region", ValueType.TEXT, "Region"));
+    table.addColumn(new ColumnDescription("amount", ValueType.NUMBER, "Amount"));
+    table.addColumn(new ColumnDescription("quantity", ValueType.NUMBER, "Quantity"));
+    table.addColumn(new ColumnDescription("day", ValueType.DATE, "Day"));
+    Random random = new Random(SEED);
+    List<TableRow> rows = Lists.newArrayListWithCapacity(numberOfRows);
+    for (int i = 0; i < numberOfRows; i++) {
+      TableRow row = new TableRow();
+      row.addCell(new TableCell("category" + random.nextInt(cardinality)));
+      row.addCell(new TableCell("r" + random.nextInt(NUMBER_OF_REGIONS)));
+      row.addCell(new TableCell(random.nextInt(100000) / 100.0));
+      row.addCell(new TableCell(1 + random.nextInt(20)));
+      row.addCell(new TableCell(createValue(ValueType.DATE, random.nextInt(10000))));
+      rows.add(row);
+    }
+    addRows(table, rows);
+    return table;
+  }
+
+  /**
+   * Returns the CSV text of a table with the given column types, in the format that
+   * {@link com.google.visualization.datasource.util.CsvDataSourceHelper} reads, with a header
+   * row.
+   *
+   * @param columnTypes The column types.
+   * @param numberOfRows The number of rows.
+   * @param cardinality The number of distinct values of each column.
+   *
+   * @return The CSV text.
+   */
+  public static String createCsv(ColumnTypes columnTypes, int numberOfRows, int cardinality) {
+    DataTable table = createTable(columnTypes, numberOfRows, cardinality);
+    StringBuilder csv = new StringBuilder();
+    for (int i = 0; i < table.getNumberOfColumns(); i++) {
+      csv.append((i == 0) ? "" : ",").append(table.getColumnDescription(i).getLabel());
+    }
+    csv.append('\n');
+    for (TableRow row : table.getRows()) {
+      for (int i = 0; i < table.getNumberOfColumns(); i++) {
+        csv.append((i == 0) ? "" : ",").append(row.getCell(i).getValue().toString());
+      }
+      csv.append('\n');
+    }
+    return csv.toString();
+  }
+
+  /**
+   * Returns the value of a type that is determined by an index. Equal indices give equal
+   * values.
+   *
+   * @param type The type of the value.
+   * @param index The index of the value.
+   *
+   * @return The value.
+   */
+  public static Value createValue(ValueType type, int index) {
+    switch (type) {
+      case BOOLEAN:
+        return BooleanValue.getInstance((index % 2) == 0);
+      case NUMBER:
+        return new NumberValue(index);
+      case TEXT:
+        return new TextValue("value" + index);
+      case DATE:
+        return new DateValue(2000 + ((index / 365) % 100), (index / 28) % 12, 1 + (index % 28));
+      case DATETIME:
+        return new DateTimeValue(2000 + ((index / 365) % 100), (index / 28) % 12,
+            1 + (index % 28), index % 24, index % 60, (index / 60) % 60, 0);
+      case TIMEOFDAY:
+        return new TimeOfDayValue(index % 24, index % 60, (index / 60) % 60);
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /**
+   * Adds rows that match the columns of a table to the table.
+   *
+   * @param table The table.
+   * @param rows The rows.
+   */
+  private static void addRows(DataTable table, List<TableRow> rows) {
+    try {
+      table.addRows(rows);
+    } catch (TypeMismatchException e) {
+      // Should not happen, the values are created from the column types.
+      throw new IllegalStateException(e);
+    }
+  }
+}
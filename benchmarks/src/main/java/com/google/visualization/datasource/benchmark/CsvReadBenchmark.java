@@ -0,0 +1,172 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.benchmark;
+
+import com.google.visualization.datasource.benchmark.BenchmarkTables.ColumnTypes;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.ValueInterner;
+import com.google.visualization.datasource.util.CsvDataSourceException;
+import com.google.visualization.datasource.util.CsvDataSourceHelper;
+
+import com.ibm.icu.util.ULocale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reading of CSV input into a data table by {@link CsvDataSourceHelper}, from a
+ * reader, with and without interning of values, and from a file in parallel chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvReadBenchmark {
+
+  /**
+   * The encoding of the CSV file.
+   */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The number of rows of the CSV input.
+   */
+  @Param({"1000", "100000"})
+  public int numberOfRows;
+
+  /**
+   * The number of distinct values of each column.
+   */
+  @Param({"10", "10000"})
+  public int cardinality;
+
+  /**
+   * The column types.
+   */
+  @Param
+  public ColumnTypes columnTypes;
+
+  /**
+   * The number of threads parsing the file in the readFile benchmark.
+   */
+  @Param({"4"})
+  public int parallelism;
+
+  /**
+   * The column descriptions.
+   */
+  private List<ColumnDescription> columnDescriptions;
+
+  /**
+   * The CSV input.
+   */
+  private String csv;
+
+  /**
+   * A file with the CSV input.
+   */
+  private File file;
+
+  /**
+   * Creates the CSV input and writes it to a temporary file.
+   *
+   * @throws IOException Thrown if the file cannot be written.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    columnDescriptions = BenchmarkTables.createColumnDescriptions(columnTypes);
+    csv = BenchmarkTables.createCsv(columnTypes, numberOfRows, cardinality);
+    file = File.createTempFile("benchmark", ".csv");
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+    try {
+      writer.write(csv);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Deletes the temporary file.
+   */
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Reads the CSV input from a reader.
+   *
+   * @return The table.
+   *
+   * @throws IOException Thrown in case of a reading error.
+   * @throws CsvDataSourceException Thrown if the input is invalid.
+   */
+  @Benchmark
+  public DataTable read() throws IOException, CsvDataSourceException {
+    return CsvDataSourceHelper.read(new StringReader(csv), columnDescriptions, true,
+        ULocale.US);
+  }
+
+  /**
+   * Reads the CSV input from a reader, interning the values of the columns.
+   *
+   * @return The table.
+   *
+   * @throws IOException Thrown in case of a reading error.
+   * @throws CsvDataSourceException Thrown if the input is invalid.
+   */
+  @Benchmark
+  public DataTable readInterned() throws IOException, CsvDataSourceException {
+    return CsvDataSourceHelper.read(new StringReader(csv), columnDescriptions, true,
+        ULocale.US, new ValueInterner());
+  }
+
+  /**
+   * Reads the CSV file in parallel chunks.
+   *
+   * @return The table.
+   *
+   * @throws IOException Thrown in case of a reading error.
+   * @throws CsvDataSourceException Thrown if the input is invalid.
+   */
+  @Benchmark
+  public DataTable readFile() throws IOException, CsvDataSourceException {
+    return CsvDataSourceHelper.readFile(file, columnDescriptions, true, ULocale.US, UTF_8,
+        parallelism);
+  }
+}
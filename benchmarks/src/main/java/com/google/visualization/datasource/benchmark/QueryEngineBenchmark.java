@@ -0,0 +1,151 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.benchmark;
+
+import com.google.visualization.datasource.base.InvalidQueryException;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.engine.QueryEngine;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+
+import com.ibm.icu.util.ULocale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link QueryEngine#executeQuery(Query, DataTable, ULocale)} on the sales table of
+ * {@link BenchmarkTables}, with a query shape for each stage of the engine.
+ *
+ * The engine may change the table it is given (e.g., sorting reorders its rows), so every
+ * invocation runs on a copy of the table. The copyTable benchmark measures the copy alone, and
+ * should be subtracted from the results, both in time and in allocated bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryEngineBenchmark {
+
+  /**
+   * A query that exercises a stage of the query engine.
+   */
+  public enum QueryShape {
+    FILTER("SELECT category, amount WHERE amount > 500 AND region != 'r3'"),
+    SCALAR_FUNCTIONS("SELECT category, amount * quantity, year(day) WHERE year(day) > 2005"),
+    GROUP("SELECT category, sum(amount), count(quantity) GROUP BY category"),
+    PIVOT("SELECT category, sum(amount), avg(quantity) GROUP BY category PIVOT region"),
+    SORT("SELECT category, amount ORDER BY amount DESC, category"),
+    TOP_K("SELECT category, amount ORDER BY amount DESC LIMIT 100"),
+    PAGINATION("SELECT * LIMIT 100 OFFSET 500"),
+    LABELS_AND_FORMAT("SELECT day, amount LABEL amount 'Sales' "
+        + "FORMAT amount '#,##0.00', day 'yyyy-MM-dd'");
+
+    /**
+     * The query string.
+     */
+    private final String queryString;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param queryString The query string.
+     */
+    private QueryShape(String queryString) {
+      this.queryString = queryString;
+    }
+
+    /**
+     * Returns the query string.
+     *
+     * @return The query string.
+     */
+    public String getQueryString() {
+      return queryString;
+    }
+  }
+
+  /**
+   * The number of rows of the table.
+   */
+  @Param({"1000", "100000"})
+  public int numberOfRows;
+
+  /**
+   * The number of distinct categories, that is of groups.
+   */
+  @Param({"10", "1000"})
+  public int cardinality;
+
+  /**
+   * The shape of the query.
+   */
+  @Param
+  public QueryShape shape;
+
+  /**
+   * The table.
+   */
+  private DataTable table;
+
+  /**
+   * The query.
+   */
+  private Query query;
+
+  /**
+   * Creates the table and parses the query.
+   *
+   * @throws InvalidQueryException Thrown if the query is invalid.
+   */
+  @Setup
+  public void setUp() throws InvalidQueryException {
+    table = BenchmarkTables.createSalesTable(numberOfRows, cardinality);
+    query = QueryBuilder.getInstance().parseQuery(shape.getQueryString());
+  }
+
+  /**
+   * Executes the query on a copy of the table.
+   *
+   * @return The result.
+   */
+  @Benchmark
+  public DataTable executeQuery() {
+    return QueryEngine.executeQuery(query, table.clone(), ULocale.US);
+  }
+
+  /**
+   * Copies the table, which is part of the executeQuery benchmark.
+   *
+   * @return The copy.
+   */
+  @Benchmark
+  public DataTable copyTable() {
+    return table.clone();
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.benchmark;
+
+import com.google.visualization.datasource.base.InvalidQueryException;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of query strings by {@link QueryBuilder#parseQuery(String)}, with the
+ * cache of parsed queries of the query builder disabled, which measures the parser itself, and
+ * with the cache enabled, where every call but the first is a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParserBenchmark {
+
+  /**
+   * The shape of the parsed query.
+   */
+  @Param({"SIMPLE", "FILTER", "GROUP", "PIVOT", "FULL"})
+  public String shape;
+
+  /**
+   * Whether the query builder caches parsed queries.
+   */
+  @Param({"false", "true"})
+  public boolean cached;
+
+  /**
+   * The parsed query string.
+   */
+  private String queryString;
+
+  /**
+   * Selects the query string of the shape, and enables or disables the cache of parsed queries.
+   */
+  @Setup
+  public void setUp() {
+    QueryBuilder queryBuilder = QueryBuilder.getInstance();
+    queryBuilder.clearCache();
+    queryBuilder.setCacheSize(cached ? QueryBuilder.DEFAULT_CACHE_SIZE : 0);
+    if ("SIMPLE".equals(shape)) {
+      queryString = "SELECT category, amount";
+    } else if ("FILTER".equals(shape)) {
+      queryString = "SELECT category, amount WHERE amount > 500 AND (region = 'r1' OR "
+          + "region = 'r2') AND category CONTAINS 'y1' AND day >= DATE '2005-01-01'";
+    } else if ("GROUP".equals(shape)) {
+      queryString = "SELECT category, sum(amount), avg(quantity), max(day) GROUP BY category "
+          + "ORDER BY sum(amount) DESC LIMIT 10";
+    } else if ("PIVOT".equals(shape)) {
+      queryString = "SELECT category, sum(amount), count(quantity) GROUP BY category "
+          + "PIVOT region, year(day)";
+    } else {
+      queryString = "SELECT category, sum(amount), year(day) "
+          + "WHERE amount > 10 AND region != 'r3' GROUP BY category, year(day) PIVOT region "
+          + "ORDER BY category DESC, year(day) LIMIT 100 OFFSET 10 "
+          + "LABEL category 'Category', year(day) 'Year' FORMAT year(day) '0000' "
+          + "OPTIONS no_values";
+    }
+  }
+
+  /**
+   * Parses the query string.
+   *
+   * @return The query.
+   *
+   * @throws InvalidQueryException Thrown if the query string is invalid.
+   */
+  @Benchmark
+  public Query parseQuery() throws InvalidQueryException {
+    return QueryBuilder.getInstance().parseQuery(queryString);
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.benchmark;
+
+import com.google.visualization.datasource.benchmark.BenchmarkTables.ColumnTypes;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.render.CsvRenderer;
+import com.google.visualization.datasource.render.HtmlRenderer;
+import com.google.visualization.datasource.render.JsonRenderer;
+
+import com.ibm.icu.util.ULocale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rendering of a data table by {@link JsonRenderer}, {@link CsvRenderer} and
+ * {@link HtmlRenderer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+
+  /**
+   * The number of rows of the table.
+   */
+  @Param({"100", "10000"})
+  public int numberOfRows;
+
+  /**
+   * The number of distinct values of each column.
+   */
+  @Param({"1000"})
+  public int cardinality;
+
+  /**
+   * The column types.
+   */
+  @Param
+  public ColumnTypes columnTypes;
+
+  /**
+   * The rendered table.
+   */
+  private DataTable table;
+
+  /**
+   * Creates the table.
+   */
+  @Setup
+  public void setUp() {
+    table = BenchmarkTables.createTable(columnTypes, numberOfRows, cardinality);
+  }
+
+  /**
+   * Renders the table as JSON, with values and formatting.
+   *
+   * @return The JSON.
+   */
+  @Benchmark
+  public CharSequence renderJson() {
+    return JsonRenderer.renderDataTable(table, true, true, true);
+  }
+
+  /**
+   * Renders the table as CSV.
+   *
+   * @return The CSV.
+   */
+  @Benchmark
+  public CharSequence renderCsv() {
+    return CsvRenderer.renderDataTable(table, ULocale.US, ",");
+  }
+
+  /**
+   * Renders the table as HTML.
+   *
+   * @return The HTML.
+   */
+  @Benchmark
+  public CharSequence renderHtml() {
+    return HtmlRenderer.renderDataTable(table, ULocale.US);
+  }
+}
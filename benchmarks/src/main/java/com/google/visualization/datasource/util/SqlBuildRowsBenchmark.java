@@ -0,0 +1,234 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.util;
+
+import com.google.visualization.datasource.benchmark.BenchmarkTables;
+import com.google.visualization.datasource.benchmark.BenchmarkTables.ColumnTypes;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the building of a data table from a JDBC result set by
+ * {@link SqlDataSourceHelper#buildColumns} and {@link SqlDataSourceHelper#buildRows}. It is in
+ * the package of SqlDataSourceHelper, since these methods are package private.
+ *
+ * The result set is an in-memory stand-in for the result set of an embedded database, so that
+ * the benchmark measures the conversion of the rows and not a database. The values of each
+ * column are held as the Java objects that a JDBC driver returns for the column's SQL type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlBuildRowsBenchmark {
+
+  /**
+   * The number of rows of the result set.
+   */
+  @Param({"1000", "100000"})
+  public int numberOfRows;
+
+  /**
+   * The number of distinct values of each column.
+   */
+  @Param({"10", "10000"})
+  public int cardinality;
+
+  /**
+   * The column types.
+   */
+  @Param
+  public ColumnTypes columnTypes;
+
+  /**
+   * The SQL types of the columns.
+   */
+  private int[] sqlTypes;
+
+  /**
+   * The values of the result set, by row and column. Null for SQL NULL.
+   */
+  private Object[][] values;
+
+  /**
+   * Creates the values of the result set.
+   */
+  @Setup
+  public void setUp() {
+    ValueType[] types = columnTypes.getTypes();
+    sqlTypes = new int[types.length];
+    for (int i = 0; i < types.length; i++) {
+      sqlTypes[i] = getSqlType(types[i]);
+    }
+    Random random = new Random(numberOfRows);
+    values = new Object[numberOfRows][types.length];
+    for (int row = 0; row < numberOfRows; row++) {
+      for (int column = 0; column < types.length; column++) {
+        int index = random.nextInt(cardinality);
+        // About one value in a hundred is null.
+        values[row][column] = ((index % 100) == 99) ? null : createObject(types[column], index);
+      }
+    }
+  }
+
+  /**
+   * Builds a data table from a result set over the values.
+   *
+   * @return The data table.
+   *
+   * @throws SQLException Thrown if the result set fails.
+   */
+  @Benchmark
+  public DataTable buildRows() throws SQLException {
+    ResultSet resultSet = createResultSet(sqlTypes, values);
+    DataTable dataTable = SqlDataSourceHelper.buildColumns(resultSet, null);
+    SqlDataSourceHelper.buildRows(dataTable, resultSet);
+    return dataTable;
+  }
+
+  /**
+   * Returns the SQL type of the columns of a value type.
+   *
+   * @param type The value type.
+   *
+   * @return The SQL type.
+   */
+  private static int getSqlType(ValueType type) {
+    switch (type) {
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      case NUMBER:
+        return Types.DOUBLE;
+      case TEXT:
+        return Types.VARCHAR;
+      case DATE:
+        return Types.DATE;
+      case DATETIME:
+        return Types.TIMESTAMP;
+      case TIMEOFDAY:
+        return Types.TIME;
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /**
+   * Returns the Java object that a JDBC driver returns for a value of the benchmark tables.
+   *
+   * @param type The value type.
+   * @param index The index of the value, see {@link BenchmarkTables#createValue}.
+   *
+   * @return The object.
+   */
+  private static Object createObject(ValueType type, int index) {
+    switch (type) {
+      case BOOLEAN:
+      case NUMBER:
+      case TEXT:
+        return BenchmarkTables.createValue(type, index).getObjectToFormat();
+      case DATE:
+        return new Date(index * 86400000L);
+      case DATETIME:
+        return new Timestamp(index * 1000003L);
+      case TIMEOFDAY:
+        return new Time((index * 1000L) % 86400000L);
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /**
+   * Returns a result set over the given values, positioned before the first row. The result
+   * set supports the methods that SqlDataSourceHelper calls.
+   *
+   * @param sqlTypes The SQL types of the columns.
+   * @param values The values by row and column.
+   *
+   * @return The result set.
+   */
+  private static ResultSet createResultSet(final int[] sqlTypes, final Object[][] values) {
+    final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+        SqlBuildRowsBenchmark.class.getClassLoader(), new Class<?>[] {ResultSetMetaData.class},
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getColumnCount")) {
+              return sqlTypes.length;
+            } else if (name.equals("getColumnType")) {
+              return sqlTypes[(Integer) args[0] - 1];
+            } else if (name.equals("getColumnLabel") || name.equals("getColumnName")) {
+              return "c" + ((Integer) args[0] - 1);
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+    return (ResultSet) Proxy.newProxyInstance(SqlBuildRowsBenchmark.class.getClassLoader(),
+        new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+          private int row = -1;
+          private boolean wasNull = false;
+
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("next")) {
+              return (++row < values.length);
+            } else if (name.equals("getMetaData")) {
+              return metaData;
+            } else if (name.equals("wasNull")) {
+              return wasNull;
+            } else if (name.equals("close")) {
+              return null;
+            } else if (name.startsWith("get") && (args != null) && (args.length == 1)
+                && (args[0] instanceof Integer)) {
+              Object value = values[row][(Integer) args[0] - 1];
+              wasNull = (value == null);
+              if (name.equals("getDouble")) {
+                return wasNull ? 0.0 : value;
+              } else if (name.equals("getBoolean")) {
+                return wasNull ? Boolean.FALSE : value;
+              }
+              return value;
+            }
+            throw new UnsupportedOperationException(name);
+          }
+        });
+  }
+}
@@ -0,0 +1,50 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.base.DataSourceException;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.query.Query;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * A <code>DataTableGenerator</code> that can generate its data as a {@link ColumnarDataTable}.
+ *
+ * The default data source servlet flow calls <code>generateColumnarDataTable</code> instead of
+ * <code>generateDataTable</code> for such a generator, and runs the completion query on the
+ * column vectors of the table (see {@link DataSourceHelper#applyQuery(Query, ColumnarDataTable,
+ * com.ibm.icu.util.ULocale, java.util.concurrent.ExecutorService,
+ * com.google.visualization.datasource.metrics.RequestMetrics)}). Since the columnar table is not
+ * changed by the query, a generator can keep it in memory and return the same table for many
+ * requests.
+ */
+public interface ColumnarDataTableGenerator extends DataTableGenerator {
+
+  /**
+   * Generates the data table, as a columnar table.
+   *
+   * @param query The query to execute on the underlying data. Ignore this parameter for
+   *     a data source that does not support any capabilities.
+   * @param request The http request. May contain information that is relevant to generating
+   *     the data table.
+   *
+   * @return The generated columnar data table. It is not changed by the caller.
+   *
+   * @throws DataSourceException If the data could not be generated for any reason.
+   */
+  public ColumnarDataTable generateColumnarDataTable(Query query, HttpServletRequest request)
+      throws DataSourceException;
+}
@@ -0,0 +1,161 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+import com.google.visualization.datasource.metrics.RequestMetrics;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.engine.QueryEngine;
+
+import com.ibm.icu.util.ULocale;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The options of the data source servlet flow, see
+ * {@link DataSourceHelper#executeDataSourceServletFlow(javax.servlet.http.HttpServletRequest,
+ * javax.servlet.http.HttpServletResponse, DataTableGenerator, DataSourceFlowOptions)}.
+ *
+ * The default options are the ones of the default flow: restricted access mode, no cache of
+ * query results, no metrics, and queries run on the thread of the request.
+ */
+public class DataSourceFlowOptions {
+
+  /**
+   * Whether the server should serve trusted domains only.
+   */
+  private boolean isRestrictedAccessMode = true;
+
+  /**
+   * The cache of query results, or null.
+   */
+  private QueryResultCache resultCache = null;
+
+  /**
+   * The registry of the metrics, or null.
+   */
+  private MetricsRegistry metricsRegistry = null;
+
+  /**
+   * The executor to run the stages of the query engine on, or null.
+   */
+  private ExecutorService queryExecutor = null;
+
+  /**
+   * Constructs new default options.
+   */
+  public DataSourceFlowOptions() {
+  }
+
+  /**
+   * Copy constructor.
+   *
+   * @param source The source options from which to construct.
+   */
+  public DataSourceFlowOptions(DataSourceFlowOptions source) {
+    isRestrictedAccessMode = source.isRestrictedAccessMode;
+    resultCache = source.resultCache;
+    metricsRegistry = source.metricsRegistry;
+    queryExecutor = source.queryExecutor;
+  }
+
+  /**
+   * Returns whether the server should serve trusted domains only.
+   *
+   * @return True if the server should serve trusted domains only.
+   */
+  public boolean isRestrictedAccessMode() {
+    return isRestrictedAccessMode;
+  }
+
+  /**
+   * Sets whether the server should serve trusted domains only. Currently this translates to
+   * serving only requests from the same domain. The default is true.
+   *
+   * @param isRestrictedAccessMode Whether the server should serve trusted domains only.
+   */
+  public void setRestrictedAccessMode(boolean isRestrictedAccessMode) {
+    this.isRestrictedAccessMode = isRestrictedAccessMode;
+  }
+
+  /**
+   * Returns the cache of query results.
+   *
+   * @return The cache of query results, or null for no caching.
+   */
+  public QueryResultCache getResultCache() {
+    return resultCache;
+  }
+
+  /**
+   * Sets the cache of query results. When the data table generator is a
+   * {@link VersionedDataTableGenerator} and it returns a version for the request, the result of
+   * the query is looked up in the cache before generating the data table, and stored in the cache
+   * after running the completion query.
+   *
+   * @param resultCache The cache of query results, or null for no caching.
+   */
+  public void setResultCache(QueryResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Returns the registry the metrics of the requests are recorded in.
+   *
+   * @return The registry of the metrics, or null to not record metrics.
+   */
+  public MetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * Sets the registry the metrics of the requests are recorded in.
+   *
+   * The latency of each stage of the flow (parse, split, generate, each stage of the query
+   * engine, render and write) is recorded, with the number of rows output by the stages, the
+   * number of bytes of the response, and the numbers of requests, errors and cache hits. The
+   * metrics are labelled by the data source, which is the name of the class of the data table
+   * generator, and by the output type of the request. See {@link RequestMetrics}.
+   *
+   * Since the response is streamed, the render stage includes writing the full buffers of the
+   * response; the write stage is the flushing of the last buffer.
+   *
+   * @param metricsRegistry The registry of the metrics, or null to not record metrics.
+   */
+  public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+    this.metricsRegistry = metricsRegistry;
+  }
+
+  /**
+   * Returns the executor the stages of the query engine are run on.
+   *
+   * @return The executor, or null to run the query on the thread of the request.
+   */
+  public ExecutorService getQueryExecutor() {
+    return queryExecutor;
+  }
+
+  /**
+   * Sets the executor the stages of the query engine are run on in parallel, see
+   * {@link QueryEngine#executeQuery(Query, DataTable, ULocale, ExecutorService)}.
+   *
+   * @param queryExecutor The executor, or null to run the query on the thread of the request.
+   */
+  public void setQueryExecutor(ExecutorService queryExecutor) {
+    this.queryExecutor = queryExecutor;
+  }
+}
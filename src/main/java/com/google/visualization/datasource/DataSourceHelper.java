@@ -23,7 +23,10 @@ import com.google.visualization.datasource.base.OutputType;
 import com.google.visualization.datasource.base.ReasonType;
 import com.google.visualization.datasource.base.ResponseStatus;
 import com.google.visualization.datasource.base.StatusType;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
 import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+import com.google.visualization.datasource.metrics.RequestMetrics;
 import com.google.visualization.datasource.query.AggregationColumn;
 import com.google.visualization.datasource.query.Query;
 import com.google.visualization.datasource.query.ScalarFunctionColumn;
@@ -39,8 +42,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -96,7 +102,8 @@ public class DataSourceHelper {
    * - Parse the request parameters.
    * - Verify access is approved (for restricted access mode only).
    * - Split the query.
-   * - Generate the data-table using the data-table generator.
+   * - Generate the data-table using the data-table generator (as a columnar table for a
+   *   {@link ColumnarDataTableGenerator}).
    * - Run the completion query.
    * - Set the servlet response.
    *
@@ -116,37 +123,115 @@ public class DataSourceHelper {
    */
   public static void executeDataSourceServletFlow(HttpServletRequest req, HttpServletResponse resp,
       DataTableGenerator dtGenerator, boolean isRestrictedAccessMode) throws IOException {
+    DataSourceFlowOptions options = new DataSourceFlowOptions();
+    options.setRestrictedAccessMode(isRestrictedAccessMode);
+    executeDataSourceServletFlow(req, resp, dtGenerator, options);
+  }
+
+  /**
+   * Executes the default data source servlet flow with the given options, see
+   * {@link DataSourceFlowOptions}.
+   *
+   * The flow is the same as the default flow, and in addition:
+   * - With a cache of query results, the result of the query is looked up in the cache before
+   *   generating the data table, and stored in the cache after running the completion query.
+   * - With a metrics registry, the metrics of the request are recorded in it.
+   * - With a query executor, the completion query is run in parallel on it.
+   *
+   * @param req The HttpServletRequest.
+   * @param resp The HttpServletResponse.
+   * @param dtGenerator An implementation of {@link DataTableGenerator} interface.
+   * @param options The options of the flow.
+   *
+   * @throws IOException In case of I/O errors.
+   */
+  public static void executeDataSourceServletFlow(HttpServletRequest req, HttpServletResponse resp,
+      DataTableGenerator dtGenerator, DataSourceFlowOptions options) throws IOException {
+    QueryResultCache resultCache = options.getResultCache();
+    MetricsRegistry metricsRegistry = options.getMetricsRegistry();
+    ExecutorService queryExecutor = options.getQueryExecutor();
+    RequestMetrics metrics = (metricsRegistry == null) ? RequestMetrics.NONE
+        : new RequestMetrics(metricsRegistry, getDataSourceName(dtGenerator));
+    long requestStartTime = System.nanoTime();
     // Extract the data source request parameters.
     DataSourceRequest dsRequest = null;
     try {
+      long startTime = System.nanoTime();
       dsRequest = new DataSourceRequest(req);
+      metrics.setOutputType(dsRequest.getDataSourceParameters().getOutputType().getCode());
+      metrics.increment(RequestMetrics.REQUESTS);
+      metrics.recordStage("parse", startTime);
 
-      if (isRestrictedAccessMode) {
+      if (options.isRestrictedAccessMode()) {
         // Verify that the request is approved for access.
         DataSourceHelper.verifyAccessApproved(dsRequest);
       }
 
       // Split the query.
+      startTime = System.nanoTime();
       QueryPair query = DataSourceHelper.splitQuery(dsRequest.getQuery(),
           dtGenerator.getCapabilities());
-
-      // Generate the data table.
-      DataTable dataTable = dtGenerator.generateDataTable(query.getDataSourceQuery(), req);
-
-      // Apply the completion query to the data table.
-      DataTable newDataTable = DataSourceHelper.applyQuery(query.getCompletionQuery(), dataTable,
-          dsRequest.getUserLocale());
+      metrics.recordStage("split", startTime);
+
+      // Look up the result in the cache.
+      String cacheKey = null;
+      if ((resultCache != null) && (dtGenerator instanceof VersionedDataTableGenerator)) {
+        String dataVersion = ((VersionedDataTableGenerator) dtGenerator).getDataVersion(
+            query.getDataSourceQuery(), req);
+        if (dataVersion != null) {
+          cacheKey = getQueryResultCacheKey(dsRequest.getQuery(), dsRequest.getUserLocale(),
+              dataVersion);
+        }
+      }
+      DataTable newDataTable = (cacheKey == null) ? null : resultCache.get(cacheKey);
+
+      if (newDataTable == null) {
+        // Generate the data table, and apply the completion query to it.
+        if (dtGenerator instanceof ColumnarDataTableGenerator) {
+          startTime = System.nanoTime();
+          ColumnarDataTable dataTable = ((ColumnarDataTableGenerator) dtGenerator)
+              .generateColumnarDataTable(query.getDataSourceQuery(), req);
+          metrics.recordStage("generate", startTime, dataTable.getNumberOfRows());
+
+          startTime = System.nanoTime();
+          newDataTable = DataSourceHelper.applyQuery(query.getCompletionQuery(), dataTable,
+              dsRequest.getUserLocale(), queryExecutor, metrics);
+        } else {
+          startTime = System.nanoTime();
+          DataTable dataTable = dtGenerator.generateDataTable(query.getDataSourceQuery(), req);
+          metrics.recordStage("generate", startTime, dataTable.getNumberOfRows());
+
+          startTime = System.nanoTime();
+          newDataTable = DataSourceHelper.applyQuery(query.getCompletionQuery(), dataTable,
+              dsRequest.getUserLocale(), queryExecutor, metrics);
+        }
+        metrics.recordStage("query", startTime, newDataTable.getNumberOfRows());
+        if (cacheKey != null) {
+          resultCache.put(cacheKey, newDataTable);
+        }
+      } else {
+        metrics.increment(RequestMetrics.CACHE_HITS);
+      }
 
       // Set the response.
-      setServletResponse(newDataTable, dsRequest, resp);
+      setServletResponse(newDataTable, dsRequest, resp, metrics);
+      metrics.recordStage("request", requestStartTime);
     } catch (DataSourceException e) {
+      metrics.increment(RequestMetrics.ERRORS);
+      if (!prepareErrorResponse(resp, e)) {
+        return;
+      }
       if (dsRequest != null) {
         setServletErrorResponse(e, dsRequest, resp);
       } else {
         DataSourceHelper.setServletErrorResponse(e, req, resp);
       }
     } catch (RuntimeException e) {
+      metrics.increment(RequestMetrics.ERRORS);
       log.error("A runtime exception has occured", e);
+      if (!prepareErrorResponse(resp, e)) {
+        return;
+      }
       ResponseStatus status = new ResponseStatus(StatusType.ERROR, ReasonType.INTERNAL_ERROR,
           e.getMessage());
       if (dsRequest == null) {
@@ -156,6 +241,59 @@ public class DataSourceHelper {
     }
   }
 
+  /**
+   * Prepares a response for an error response. The response is streamed, so part of it may
+   * already be written. If the written part is not yet committed, it is discarded. Otherwise an
+   * error response cannot be written, since it would be appended to the partial response, so the
+   * error is logged and the response is closed.
+   *
+   * @param resp The HttpServletResponse.
+   * @param e The error.
+   *
+   * @return True if an error response can be written.
+   *
+   * @throws IOException In case of I/O errors.
+   */
+  private static boolean prepareErrorResponse(HttpServletResponse resp, Exception e)
+      throws IOException {
+    if (!resp.isCommitted()) {
+      resp.resetBuffer();
+      return true;
+    }
+    log.error("An error occured after the response was committed. Aborting the response.", e);
+    resp.getOutputStream().close();
+    return false;
+  }
+
+  /**
+   * Returns the name of a data source in the labels of its metrics: the name of the class of its
+   * data table generator.
+   *
+   * @param dtGenerator The data table generator.
+   *
+   * @return The name of the data source.
+   */
+  /* package */ static String getDataSourceName(DataTableGenerator dtGenerator) {
+    String name = dtGenerator.getClass().getSimpleName();
+    return (name.length() == 0) ? dtGenerator.getClass().getName() : name;
+  }
+
+  /**
+   * Returns the key of the result of a query in a {@link QueryResultCache}. The key is made of
+   * the normalized query string, the user locale, and the version of the data.
+   *
+   * @param query The query, before it is split.
+   * @param locale The user locale.
+   * @param dataVersion The version of the data, see {@link VersionedDataTableGenerator}.
+   *
+   * @return The cache key.
+   */
+  public static String getQueryResultCacheKey(Query query, ULocale locale, String dataVersion) {
+    // The version is prefixed by its length, as it may contain any character.
+    return dataVersion.length() + ":" + dataVersion + "|" + locale + "|"
+        + query.toQueryString();
+  }
+
   /**
    * Checks that the given request is sent from the same domain as that of the server.
    *
@@ -189,8 +327,33 @@ public class DataSourceHelper {
    */
   public static void setServletResponse(DataTable dataTable, DataSourceRequest dataSourceRequest,
       HttpServletResponse res) throws IOException {
-    String responseMessage = generateResponse(dataTable, dataSourceRequest);
-    setServletResponse(responseMessage, dataSourceRequest, res);
+    setServletResponse(dataTable, dataSourceRequest, res, RequestMetrics.NONE);
+  }
+
+  /**
+   * Generates a response for the given <code>DataTable</code> and sets it on the
+   * <code>HttpServletResponse</code>, recording the latencies of rendering and writing the
+   * response, and the number of bytes written.
+   *
+   * @param dataTable The data table.
+   * @param dataSourceRequest The data source request.
+   * @param res The http servlet response.
+   * @param metrics The metrics of the request.
+   *
+   * @throws IOException In case an error happened trying to write the response to the servlet.
+   */
+  public static void setServletResponse(DataTable dataTable, DataSourceRequest dataSourceRequest,
+      HttpServletResponse res, RequestMetrics metrics) throws IOException {
+    // The response is streamed to the servlet output stream instead of being rendered to a
+    // string first.
+    Writer writer = ResponseWriter.getServletResponseWriter(
+        dataSourceRequest.getDataSourceParameters(), res, metrics.getResponseBytesCounter());
+    long startTime = System.nanoTime();
+    generateResponse(dataTable, dataSourceRequest, writer);
+    metrics.recordStage("render", startTime, dataTable.getNumberOfRows());
+    startTime = System.nanoTime();
+    writer.flush();
+    metrics.recordStage("write", startTime);
   }
 
   /**
@@ -269,37 +432,56 @@ public class DataSourceHelper {
    * @return The response string.
    */
   public static String generateResponse(DataTable dataTable, DataSourceRequest dataSourceRequest) {
-    CharSequence response;
+    StringWriter writer = new StringWriter();
+    try {
+      generateResponse(dataTable, dataSourceRequest, writer);
+    } catch (IOException e) {
+      // A StringWriter does not throw.
+      throw new RuntimeException("Couldn't generate the response. This should never happen.", e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes the response for the given <code>DataTable</code> to a writer.
+   *
+   * @param dataTable The data table.
+   * @param dataSourceRequest The data source request.
+   * @param writer The writer to write the response to. Not flushed or closed.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static void generateResponse(DataTable dataTable, DataSourceRequest dataSourceRequest,
+      Writer writer) throws IOException {
     ResponseStatus responseStatus = null;
     if (!dataTable.getWarnings().isEmpty()) {
       responseStatus = new ResponseStatus(StatusType.WARNING);
     }
     switch (dataSourceRequest.getDataSourceParameters().getOutputType()) {
       case CSV:
-        response = CsvRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale(), ",");
+        CsvRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale(), ",", writer);
         break;
       case TSV_EXCEL:
-        response = CsvRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale(), "\t");
+        CsvRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale(), "\t", writer);
         break;
       case HTML:
-        response = HtmlRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale());
+        HtmlRenderer.renderDataTable(dataTable, dataSourceRequest.getUserLocale(), writer);
         break;
       case JSONP:
         // Appending a comment to the response to prevent the first characters to be the
         // response handler which is not controlled by the server.
-        response = "// Data table response\n" + JsonRenderer.renderJsonResponse(
-            dataSourceRequest.getDataSourceParameters(), responseStatus, dataTable);
+        writer.write("// Data table response\n");
+        JsonRenderer.renderJsonResponse(
+            dataSourceRequest.getDataSourceParameters(), responseStatus, dataTable, writer);
         break;
       case JSON:
-        response = JsonRenderer.renderJsonResponse(
-            dataSourceRequest.getDataSourceParameters(), responseStatus, dataTable);
+        JsonRenderer.renderJsonResponse(
+            dataSourceRequest.getDataSourceParameters(), responseStatus, dataTable, writer);
         break;
       default:
         // This should never happen.
         throw new RuntimeException("Unhandled output type.");
     }
-
-    return response.toString();
   }
 
   /**
@@ -405,9 +587,64 @@ public class DataSourceHelper {
    */
   public static DataTable applyQuery(Query query, DataTable dataTable, ULocale locale)
       throws InvalidQueryException, DataSourceException {
+    return applyQuery(query, dataTable, locale, null, RequestMetrics.NONE);
+  }
+
+  /**
+   * Applies the given <code>Query</code> on the given <code>DataTable</code> and returns the
+   * resulting <code>DataTable</code>, running the stages of the query engine on an executor and
+   * recording the latency of each of them. See {@link #applyQuery(Query, DataTable, ULocale)}
+   * and {@link QueryEngine#executeQuery(Query, DataTable, ULocale, ExecutorService)}.
+   *
+   * @param query The query object.
+   * @param dataTable The data table on which to apply the query.
+   * @param locale The user locale for the current request.
+   * @param executor The executor to run the stages of the query engine on, or null to run the
+   *     query on the calling thread.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data table result of the query execution over the given data table.
+   *
+   * @throws InvalidQueryException If the query is invalid.
+   * @throws DataSourceException If the data source cannot execute the query.
+   */
+  public static DataTable applyQuery(Query query, DataTable dataTable, ULocale locale,
+      ExecutorService executor, RequestMetrics metrics)
+      throws InvalidQueryException, DataSourceException {
     dataTable.setLocaleForUserMessages(locale);
     validateQueryAgainstColumnStructure(query, dataTable);
-    dataTable = QueryEngine.executeQuery(query, dataTable, locale);
+    dataTable = QueryEngine.executeQuery(query, dataTable, locale, executor, metrics);
+    dataTable.setLocaleForUserMessages(locale);
+    return dataTable;
+  }
+
+  /**
+   * Applies the given <code>Query</code> on the given <code>ColumnarDataTable</code> and returns
+   * the resulting <code>DataTable</code>, running the stages of the query engine on an executor
+   * and recording the latency of each of them. The columnar table is not changed, so it can be
+   * queried many times. See {@link QueryEngine#executeQuery(Query, ColumnarDataTable, ULocale,
+   * ExecutorService, RequestMetrics)}.
+   *
+   * @param query The query object.
+   * @param columnarTable The columnar table on which to apply the query.
+   * @param locale The user locale for the current request.
+   * @param executor The executor to run the stages of the query engine on, or null to run the
+   *     query on the calling thread.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data table result of the query execution over the given columnar table.
+   *
+   * @throws InvalidQueryException If the query is invalid.
+   * @throws DataSourceException If the data source cannot execute the query.
+   */
+  public static DataTable applyQuery(Query query, ColumnarDataTable columnarTable,
+      ULocale locale, ExecutorService executor, RequestMetrics metrics)
+      throws InvalidQueryException, DataSourceException {
+    DataTable columns = columnarTable.createEmptyDataTable();
+    columns.setLocaleForUserMessages(locale);
+    validateQueryAgainstColumnStructure(query, columns);
+    DataTable dataTable = QueryEngine.executeQuery(query, columnarTable, locale, executor,
+        metrics);
     dataTable.setLocaleForUserMessages(locale);
     return dataTable;
   }
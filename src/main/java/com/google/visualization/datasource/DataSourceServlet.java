@@ -14,7 +14,10 @@
 
 package com.google.visualization.datasource;
 
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -29,7 +32,63 @@ public abstract class DataSourceServlet extends HttpServlet implements DataTable
 
   @Override
   protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
-    DataSourceHelper.executeDataSourceServletFlow(req, resp, this, isRestrictedAccessMode());
+    DataSourceFlowOptions options = new DataSourceFlowOptions();
+    options.setRestrictedAccessMode(isRestrictedAccessMode());
+    options.setResultCache(getQueryResultCache());
+    options.setMetricsRegistry(getMetricsRegistry());
+    options.setQueryExecutor(getQueryExecutor());
+    RequestExecutor requestExecutor = getRequestExecutor();
+    if (requestExecutor == null) {
+      DataSourceHelper.executeDataSourceServletFlow(req, resp, this, options);
+    } else {
+      requestExecutor.executeDataSourceServletFlow(req, resp, this, options);
+    }
+  }
+
+  /**
+   * Returns the executor that the filtering, grouping and sorting of large tables are run on in
+   * parallel, see {@link DataSourceFlowOptions#setQueryExecutor}. The executor is shared by the requests, and should be shut down when the
+   * servlet is destroyed.
+   *
+   * @return The executor, or null to run the queries on the thread of the request. The default
+   *     is null.
+   */
+  protected ExecutorService getQueryExecutor() {
+    return null;
+  }
+
+  /**
+   * Returns the executor that the requests to this servlet are executed on, instead of on the
+   * thread of the servlet container. To release the container threads while the requests are
+   * executed, the servlet should also be declared with
+   * {@code <async-supported>true</async-supported>} in a Servlet 3.0 container. The servlet
+   * should shut down the executor when it is destroyed.
+   *
+   * @return The request executor, or null to execute the requests on the thread of the servlet
+   *     container. The default is null.
+   */
+  protected RequestExecutor getRequestExecutor() {
+    return null;
+  }
+
+  /**
+   * Returns the registry that the metrics of the requests to this servlet are recorded in, see
+   * {@link DataSourceFlowOptions#setMetricsRegistry}.
+   *
+   * @return The registry of the metrics, or null to not record metrics. The default is null.
+   */
+  protected MetricsRegistry getMetricsRegistry() {
+    return null;
+  }
+
+  /**
+   * Returns the cache of query results of this servlet. The results are only cached if this
+   * servlet also implements {@link VersionedDataTableGenerator}.
+   *
+   * @return The cache of query results, or null for no caching. The default is null.
+   */
+  protected QueryResultCache getQueryResultCache() {
+    return null;
   }
 
   /**
@@ -0,0 +1,218 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link QueryResultCache} bounded by the estimated memory size of the cached data tables,
+ * that evicts the least recently used results first, and expires results after a fixed time.
+ *
+ * The size of a data table is estimated from its number of cells and the length of its text
+ * values and formatted values. A data table larger than the whole cache is not cached.
+ */
+public class LruQueryResultCache implements QueryResultCache {
+
+  /**
+   * The estimated size, in bytes, of a row without its cells.
+   */
+  private static final int ROW_SIZE = 48;
+
+  /**
+   * The estimated size, in bytes, of a cell and its value, without the chars of text.
+   */
+  private static final int CELL_SIZE = 64;
+
+  /**
+   * The estimated size, in bytes, of a string without its chars.
+   */
+  private static final int STRING_SIZE = 40;
+
+  /**
+   * A cached result.
+   */
+  private static class Entry {
+
+    /**
+     * The data table.
+     */
+    final DataTable dataTable;
+
+    /**
+     * The estimated size of the data table, in bytes.
+     */
+    final long size;
+
+    /**
+     * The time after which the entry is expired, in milliseconds since the epoch.
+     */
+    final long expirationTime;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param dataTable The data table.
+     * @param size The estimated size of the data table, in bytes.
+     * @param expirationTime The expiration time, in milliseconds since the epoch.
+     */
+    Entry(DataTable dataTable, long size, long expirationTime) {
+      this.dataTable = dataTable;
+      this.size = size;
+      this.expirationTime = expirationTime;
+    }
+  }
+
+  /**
+   * The cached entries, from the least to the most recently used.
+   */
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  /**
+   * The maximal total estimated size of the cached data tables, in bytes.
+   */
+  private final long maxSize;
+
+  /**
+   * The time a result is kept, in milliseconds.
+   */
+  private final long timeToLiveMillis;
+
+  /**
+   * The total estimated size of the cached data tables, in bytes.
+   */
+  private long size = 0;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maxSize The maximal total estimated size of the cached data tables, in bytes.
+   * @param timeToLiveMillis The time a result is kept, in milliseconds.
+   */
+  public LruQueryResultCache(long maxSize, long timeToLiveMillis) {
+    this.maxSize = maxSize;
+    this.timeToLiveMillis = timeToLiveMillis;
+  }
+
+  @Override
+  public synchronized DataTable get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expirationTime < getCurrentTimeMillis()) {
+      entries.remove(key);
+      size -= entry.size;
+      return null;
+    }
+    return entry.dataTable;
+  }
+
+  @Override
+  public synchronized void put(String key, DataTable dataTable) {
+    long entrySize = estimateSize(dataTable) + STRING_SIZE + 2L * key.length();
+    Entry previous = entries.remove(key);
+    if (previous != null) {
+      size -= previous.size;
+    }
+    if (entrySize > maxSize) {
+      return;
+    }
+    entries.put(key, new Entry(dataTable, entrySize, getCurrentTimeMillis() + timeToLiveMillis));
+    size += entrySize;
+
+    // Evict the least recently used entries until the cache fits.
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maxSize) {
+      Entry evicted = iterator.next();
+      iterator.remove();
+      size -= evicted.size;
+    }
+  }
+
+  /**
+   * Removes all the cached results.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the number of cached results, including expired ones not yet removed.
+   *
+   * @return The number of cached results.
+   */
+  public synchronized int getNumberOfEntries() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the total estimated size of the cached data tables, in bytes.
+   *
+   * @return The total estimated size of the cached data tables.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the current time, in milliseconds since the epoch.
+   *
+   * @return The current time.
+   */
+  /* package */ long getCurrentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the estimated memory size of a data table, in bytes.
+   *
+   * @param dataTable The data table.
+   *
+   * @return The estimated size.
+   */
+  /* package */ static long estimateSize(DataTable dataTable) {
+    long result = 0;
+    for (TableRow row : dataTable.getRows()) {
+      result += ROW_SIZE;
+      for (TableCell cell : row.getCells()) {
+        result += CELL_SIZE;
+        if ((cell.getType() == ValueType.TEXT) && !cell.isNull()) {
+          result += STRING_SIZE + 2L * cell.getValue().toString().length();
+        }
+        String formattedValue = cell.getFormattedValue();
+        if (formattedValue != null) {
+          result += STRING_SIZE + 2L * formattedValue.length();
+        }
+        Map<String, String> customProperties = cell.getCustomProperties();
+        if (customProperties != null) {
+          for (Map.Entry<String, String> entry : customProperties.entrySet()) {
+            result += 2 * STRING_SIZE
+                + 2L * (entry.getKey().length() + entry.getValue().length());
+          }
+        }
+      }
+    }
+    return result;
+  }
+}
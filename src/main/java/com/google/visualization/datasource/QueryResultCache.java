@@ -0,0 +1,49 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.datatable.DataTable;
+
+/**
+ * A cache of query results, used by the data source servlet flow to serve identical requests
+ * without generating the data table and executing the query again.
+ *
+ * The results are only cached for a {@link VersionedDataTableGenerator}, and the keys are built
+ * by {@link DataSourceHelper#getQueryResultCacheKey}. Cached data tables are shared between
+ * requests, and must not be modified.
+ *
+ * Implementations must be thread-safe.
+ *
+ * @see LruQueryResultCache
+ */
+public interface QueryResultCache {
+
+  /**
+   * Returns the cached result for the given key.
+   *
+   * @param key The cache key.
+   *
+   * @return The cached data table, or null if there is none.
+   */
+  public DataTable get(String key);
+
+  /**
+   * Caches a result. The cache may decide not to keep it.
+   *
+   * @param key The cache key.
+   * @param dataTable The data table result of the query.
+   */
+  public void put(String key, DataTable dataTable);
+}
@@ -0,0 +1,761 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.base.DataSourceException;
+import com.google.visualization.datasource.base.ReasonType;
+import com.google.visualization.datasource.base.ResponseStatus;
+import com.google.visualization.datasource.base.StatusType;
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+import com.google.visualization.datasource.metrics.RequestMetrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Executes the data source servlet flow of requests on an executor, instead of on the thread of
+ * the servlet container, so that data sources that block on I/O (e.g., a JDBC query or a file)
+ * do not exhaust the threads of the container.
+ *
+ * The number of requests that are executed concurrently and the number of requests that wait to
+ * be executed are bounded. A request over these bounds is answered at once with an HTTP 503
+ * (service unavailable) error, in the output format of the request. A request whose data source
+ * does not start to respond within a timeout is also answered with an HTTP 503 error, and its
+ * thread is interrupted.
+ *
+ * If the servlet container supports asynchronous requests (Servlet 3.0), and the servlet is
+ * declared with {@code <async-supported>true</async-supported>}, the request is made
+ * asynchronous and the container thread is released while the flow is executed. Otherwise the
+ * container thread waits for the flow, and the executor only bounds the concurrency. The servlet
+ * API this library is compiled against predates asynchronous requests, so they are started by
+ * reflection.
+ *
+ * See {@link DataSourceServlet#getRequestExecutor()}. The creator of a request executor should
+ * {@link #shutdown()} it when the servlet is destroyed.
+ */
+public class RequestExecutor {
+
+  /**
+   * Log.
+   */
+  private static final Log log = LogFactory.getLog(RequestExecutor.class.getName());
+
+  /**
+   * The default timeout of requests, in milliseconds.
+   */
+  public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+  /**
+   * The prefix of the names of the threads created by the factory methods.
+   */
+  private static final String THREAD_NAME_PREFIX = "datasource-request-";
+
+  /**
+   * The time that idle threads of the pools created by the factory methods are kept, in seconds.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * The message of the error response to rejected requests.
+   */
+  private static final String REJECTED_MESSAGE =
+      "The data source is busy. Please try again later.";
+
+  /**
+   * The message of the error response to requests that timed out.
+   */
+  private static final String TIMEOUT_MESSAGE =
+      "The data source did not respond in time. Please try again later.";
+
+  /**
+   * The executor.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The permits of the requests that are executed or wait to be executed, or null if the
+   * executor bounds them.
+   */
+  private final Semaphore admittedRequests;
+
+  /**
+   * The permits of the requests that are executed, or null if the executor bounds them.
+   */
+  private final Semaphore runningRequests;
+
+  /**
+   * The timer of the timeouts of asynchronous requests.
+   */
+  private final ScheduledExecutorService timer;
+
+  /**
+   * The timeout of requests, in milliseconds, or 0 for no timeout.
+   */
+  private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+  /**
+   * Creates a request executor that executes the requests on the given executor, which bounds
+   * the number of requests. The executor should reject tasks when it is saturated, rather than
+   * block or execute them on the calling thread.
+   *
+   * @param executor The executor.
+   */
+  public RequestExecutor(ExecutorService executor) {
+    this(executor, null, null);
+  }
+
+  /**
+   * Creates a request executor that executes the requests on the given executor, which starts a
+   * thread for each request, e.g., {@link Executors#newCachedThreadPool()}. The number of
+   * requests is bounded by the request executor: a request waits on its thread until fewer than
+   * the maximal number of requests are executed.
+   *
+   * @param executor The executor.
+   * @param maxConcurrentRequests The maximal number of requests that are executed concurrently.
+   * @param maxQueuedRequests The maximal number of requests that wait to be executed.
+   */
+  public RequestExecutor(ExecutorService executor, int maxConcurrentRequests,
+      int maxQueuedRequests) {
+    this(executor, new Semaphore(maxConcurrentRequests + maxQueuedRequests),
+        new Semaphore(maxConcurrentRequests));
+  }
+
+  /**
+   * Creates a request executor.
+   *
+   * @param executor The executor.
+   * @param admittedRequests The permits of the admitted requests, or null.
+   * @param runningRequests The permits of the running requests, or null.
+   */
+  private RequestExecutor(ExecutorService executor, Semaphore admittedRequests,
+      Semaphore runningRequests) {
+    this.executor = executor;
+    this.admittedRequests = admittedRequests;
+    this.runningRequests = runningRequests;
+    timer = Executors.newSingleThreadScheduledExecutor(
+        new PlatformThreadFactory("datasource-request-timer-"));
+  }
+
+  /**
+   * Creates a request executor with a pool of threads.
+   *
+   * @param maxConcurrentRequests The number of threads, that is the maximal number of requests
+   *     that are executed concurrently.
+   * @param maxQueuedRequests The maximal number of requests that wait for a thread.
+   *
+   * @return The request executor.
+   */
+  public static RequestExecutor newBoundedExecutor(int maxConcurrentRequests,
+      int maxQueuedRequests) {
+    BlockingQueue<Runnable> queue = (maxQueuedRequests == 0) ? new SynchronousQueue<Runnable>()
+        : new ArrayBlockingQueue<Runnable>(maxQueuedRequests);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentRequests,
+        maxConcurrentRequests, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue,
+        new PlatformThreadFactory(THREAD_NAME_PREFIX));
+    pool.allowCoreThreadTimeOut(true);
+    return new RequestExecutor(pool);
+  }
+
+  /**
+   * Creates a request executor that starts a new virtual thread for each request, if the Java
+   * runtime has virtual threads (Java 21). A virtual thread does not hold a platform thread
+   * while it blocks on I/O, and is cheap to create, so the maximal number of concurrent requests
+   * can be set much higher than the size of a pool of platform threads. If the Java runtime does
+   * not have virtual threads, a pool of platform threads is used, see
+   * {@link #newBoundedExecutor(int, int)}.
+   *
+   * @param maxConcurrentRequests The maximal number of requests that are executed concurrently.
+   * @param maxQueuedRequests The maximal number of requests that wait to be executed.
+   *
+   * @return The request executor.
+   */
+  public static RequestExecutor newVirtualThreadExecutor(int maxConcurrentRequests,
+      int maxQueuedRequests) {
+    ExecutorService executor = createVirtualThreadPerTaskExecutor();
+    if (executor == null) {
+      return newBoundedExecutor(maxConcurrentRequests, maxQueuedRequests);
+    }
+    return new RequestExecutor(executor, maxConcurrentRequests, maxQueuedRequests);
+  }
+
+  /**
+   * Sets the timeout of requests: the time from the submission of a request until its data
+   * source starts to respond. A request that times out is answered with an HTTP 503 error, and
+   * its thread is interrupted. Once the data source starts to respond, the request is not timed
+   * out. The default is {@link #DEFAULT_TIMEOUT_MILLIS}.
+   *
+   * @param timeoutMillis The timeout in milliseconds, or 0 for no timeout.
+   */
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Returns the timeout of requests, in milliseconds.
+   *
+   * @return The timeout in milliseconds, or 0 for no timeout.
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * Executes the data source servlet flow of a request on the executor, see
+   * {@link DataSourceHelper#executeDataSourceServletFlow(HttpServletRequest,
+   * HttpServletResponse, DataTableGenerator, DataSourceFlowOptions)}.
+   * Returns once the request is made asynchronous, or once the flow is executed if the request
+   * cannot be made asynchronous. If the request is rejected or times out, an HTTP 503 error is
+   * returned, and counted in the metrics as {@link RequestMetrics#REJECTED} or
+   * {@link RequestMetrics#TIMEOUTS}.
+   *
+   * @param req The HttpServletRequest.
+   * @param resp The HttpServletResponse.
+   * @param dtGenerator An implementation of {@link DataTableGenerator} interface.
+   * @param options The options of the flow. They are copied, so later changes to them do not
+   *     affect the request.
+   *
+   * @throws IOException In case of I/O errors.
+   */
+  public void executeDataSourceServletFlow(HttpServletRequest req, HttpServletResponse resp,
+      DataTableGenerator dtGenerator, DataSourceFlowOptions options) throws IOException {
+    final RequestTask task = new RequestTask(req, resp, dtGenerator,
+        new DataSourceFlowOptions(options));
+    if ((admittedRequests != null) && !admittedRequests.tryAcquire()) {
+      task.reject();
+      return;
+    }
+    task.asyncContext = startAsync(req);
+    try {
+      task.future = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      task.finish();
+      task.reject();
+      return;
+    }
+
+    long timeout = timeoutMillis;
+    if (task.asyncContext != null) {
+      if (timeout > 0) {
+        task.timeoutFuture = timer.schedule(new Runnable() {
+          @Override
+          public void run() {
+            task.timeout();
+          }
+        }, timeout, TimeUnit.MILLISECONDS);
+      }
+      return;
+    }
+
+    try {
+      if (timeout > 0) {
+        try {
+          task.future.get(timeout, TimeUnit.MILLISECONDS);
+          return;
+        } catch (TimeoutException e) {
+          if (task.timeout()) {
+            return;
+          }
+        }
+      }
+      // The data source responds, or there is no timeout.
+      task.future.get();
+    } catch (CancellationException e) {
+      // The request timed out, and is answered.
+    } catch (InterruptedException e) {
+      task.future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while executing the request");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Shuts down the executor. Requests that are executed or queued are completed.
+   */
+  public void shutdown() {
+    executor.shutdown();
+    timer.shutdown();
+  }
+
+  /**
+   * Waits for the requests to be completed after a shutdown.
+   *
+   * @param timeout The maximal time to wait.
+   * @param unit The unit of the timeout.
+   *
+   * @return True if the requests are completed, false if the timeout elapsed.
+   *
+   * @throws InterruptedException Thrown if interrupted while waiting.
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * The execution of the flow of a request. The response is only written either by the flow, or
+   * with a timeout error, whichever comes first, see {@link #timeout()}.
+   */
+  private class RequestTask implements Callable<Void> {
+
+    /**
+     * The state of a request whose data source did not start to respond.
+     */
+    private static final int RUNNING = 0;
+
+    /**
+     * The state of a request whose data source started to respond.
+     */
+    private static final int RESPONDING = 1;
+
+    /**
+     * The state of a request that timed out.
+     */
+    private static final int TIMED_OUT = 2;
+
+    /**
+     * The state of a request that is done without using the response.
+     */
+    private static final int DONE = 3;
+
+    /**
+     * The request.
+     */
+    private final HttpServletRequest req;
+
+    /**
+     * The response.
+     */
+    private final HttpServletResponse resp;
+
+    /**
+     * The data table generator.
+     */
+    private final DataTableGenerator dtGenerator;
+
+    /**
+     * The options of the flow.
+     */
+    private final DataSourceFlowOptions options;
+
+    /**
+     * The state of the request.
+     */
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    /**
+     * Whether the task started, or will never start.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Whether the permits of the request are released.
+     */
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * The AsyncContext of the request, or null if the request is not asynchronous.
+     */
+    private volatile Object asyncContext;
+
+    /**
+     * The future of the task.
+     */
+    private volatile Future<Void> future;
+
+    /**
+     * The future of the timeout of the request, or null.
+     */
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+    /**
+     * Creates a new request task.
+     *
+     * @param req The request.
+     * @param resp The response.
+     * @param dtGenerator The data table generator.
+     * @param options The options of the flow.
+     */
+    RequestTask(HttpServletRequest req, HttpServletResponse resp,
+        DataTableGenerator dtGenerator, DataSourceFlowOptions options) {
+      this.req = req;
+      this.resp = resp;
+      this.dtGenerator = dtGenerator;
+      this.options = options;
+    }
+
+    @Override
+    public Void call() throws IOException, InterruptedException {
+      if (!started.compareAndSet(false, true)) {
+        return null;
+      }
+      boolean acquired = false;
+      try {
+        if (runningRequests != null) {
+          runningRequests.acquire();
+          acquired = true;
+        }
+        DataSourceHelper.executeDataSourceServletFlow(req, createGuardedResponse(), dtGenerator,
+            options);
+      } catch (IOException e) {
+        if (asyncContext == null) {
+          throw e;
+        }
+        log.warn("Cannot write the response", e);
+      } catch (RuntimeException e) {
+        if (asyncContext == null) {
+          throw e;
+        }
+        log.error("Cannot execute the request", e);
+      } finally {
+        if (acquired) {
+          runningRequests.release();
+        }
+        finish();
+        boolean timedOut = !state.compareAndSet(RUNNING, DONE) && (state.get() == TIMED_OUT);
+        if ((asyncContext != null) && !timedOut) {
+          complete(asyncContext);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Times out the request if its data source did not start to respond: writes an HTTP 503
+     * error, interrupts the flow and completes the request.
+     *
+     * @return True if the request timed out, false if the data source started to respond.
+     */
+    boolean timeout() {
+      if (!state.compareAndSet(RUNNING, TIMED_OUT)) {
+        return false;
+      }
+      future.cancel(true);
+      if (started.compareAndSet(false, true)) {
+        // The task will never run.
+        finish();
+      }
+      DataSourceRequest errorRequest = getErrorRequest(req);
+      incrementMetric(RequestMetrics.TIMEOUTS, errorRequest);
+      try {
+        setServiceUnavailableResponse(errorRequest, ReasonType.TIMEOUT, TIMEOUT_MESSAGE);
+      } catch (IOException e) {
+        log.warn("Cannot write the response", e);
+      } finally {
+        if (asyncContext != null) {
+          complete(asyncContext);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Rejects the request: writes an HTTP 503 error, and completes the request if it is
+     * asynchronous.
+     *
+     * @throws IOException In case of I/O errors.
+     */
+    void reject() throws IOException {
+      DataSourceRequest errorRequest = getErrorRequest(req);
+      incrementMetric(RequestMetrics.REJECTED, errorRequest);
+      try {
+        setServiceUnavailableResponse(errorRequest, ReasonType.OTHER, REJECTED_MESSAGE);
+      } finally {
+        if (asyncContext != null) {
+          complete(asyncContext);
+        }
+      }
+    }
+
+    /**
+     * Releases the admission permit of the request and cancels its timeout. Does nothing if
+     * already called.
+     */
+    void finish() {
+      if (!finished.compareAndSet(false, true)) {
+        return;
+      }
+      if (admittedRequests != null) {
+        admittedRequests.release();
+      }
+      ScheduledFuture<?> currentTimeoutFuture = timeoutFuture;
+      if (currentTimeoutFuture != null) {
+        currentTimeoutFuture.cancel(false);
+      }
+    }
+
+    /**
+     * Writes an HTTP 503 error response, in the output format of the request.
+     *
+     * @param errorRequest The data source request of the request.
+     * @param reasonType The reason of the error.
+     * @param message The message of the error.
+     *
+     * @throws IOException In case of I/O errors.
+     */
+    private void setServiceUnavailableResponse(DataSourceRequest errorRequest,
+        ReasonType reasonType, String message) throws IOException {
+      resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      DataSourceHelper.setServletErrorResponse(
+          new ResponseStatus(StatusType.ERROR, reasonType, message), errorRequest, resp);
+    }
+
+    /**
+     * Counts the request in a metric, if metrics are recorded. The metric is labelled by the
+     * output type of the request, as the metrics recorded by the flow are.
+     *
+     * @param counterName The name of the counter.
+     * @param errorRequest The data source request of the request.
+     */
+    private void incrementMetric(String counterName, DataSourceRequest errorRequest) {
+      MetricsRegistry metricsRegistry = options.getMetricsRegistry();
+      if (metricsRegistry != null) {
+        RequestMetrics metrics = new RequestMetrics(metricsRegistry,
+            DataSourceHelper.getDataSourceName(dtGenerator));
+        metrics.setOutputType(errorRequest.getDataSourceParameters().getOutputType().getCode());
+        metrics.increment(counterName);
+      }
+    }
+
+    /**
+     * Returns a response that the flow writes to. The first use of the response marks that the
+     * data source started to respond, after which the request is not timed out. Once the
+     * request timed out, using the response throws an IllegalStateException, since it may be
+     * completed and reused by the servlet container.
+     *
+     * @return The response.
+     */
+    private HttpServletResponse createGuardedResponse() {
+      return (HttpServletResponse) Proxy.newProxyInstance(
+          HttpServletResponse.class.getClassLoader(), new Class<?>[] {HttpServletResponse.class},
+          new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+              if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args);
+              }
+              if (!state.compareAndSet(RUNNING, RESPONDING) && (state.get() != RESPONDING)) {
+                throw new IllegalStateException("The request timed out");
+              }
+              try {
+                return method.invoke(resp, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            }
+          });
+    }
+  }
+
+  /**
+   * Returns the data source request used to write error responses to a request. Only built
+   * when a request is rejected or timed out, since it parses the query of the request.
+   *
+   * @param req The request.
+   *
+   * @return The data source request.
+   */
+  private static DataSourceRequest getErrorRequest(HttpServletRequest req) {
+    try {
+      return new DataSourceRequest(req);
+    } catch (DataSourceException e) {
+      return DataSourceRequest.getDefaultDataSourceRequest(req);
+    }
+  }
+
+  /**
+   * Returns an executor that starts a new virtual thread for each task, created by reflection
+   * since virtual threads are only available since Java 21.
+   *
+   * @return The executor, or null if the Java runtime does not have virtual threads.
+   */
+  private static ExecutorService createVirtualThreadPerTaskExecutor() {
+    ThreadFactory threadFactory = createVirtualThreadFactory();
+    if (threadFactory == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor",
+          ThreadFactory.class).invoke(null, threadFactory);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (InvocationTargetException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a factory of virtual threads, created by reflection since virtual threads are only
+   * available since Java 21.
+   *
+   * @return The factory, or null if the Java runtime does not have virtual threads.
+   */
+  /* package */ static ThreadFactory createVirtualThreadFactory() {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, THREAD_NAME_PREFIX, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (InvocationTargetException e) {
+      // Virtual threads are a preview feature in Java 19 and 20.
+      return null;
+    }
+  }
+
+  /**
+   * Makes a request asynchronous if the servlet container and the servlet support it. The
+   * container does not time out the request, since the request executor does, see
+   * {@link #setTimeoutMillis(long)}.
+   *
+   * @param req The request.
+   *
+   * @return The AsyncContext of the request, or null if the request cannot be made asynchronous.
+   */
+  private static Object startAsync(HttpServletRequest req) {
+    try {
+      Method isAsyncSupported = ServletRequest.class.getMethod("isAsyncSupported");
+      if (!Boolean.TRUE.equals(isAsyncSupported.invoke(req))) {
+        return null;
+      }
+      Object asyncContext = ServletRequest.class.getMethod("startAsync").invoke(req);
+      getAsyncContextMethod("setTimeout", long.class).invoke(asyncContext, 0L);
+      return asyncContext;
+    } catch (NoSuchMethodException e) {
+      // The servlet container does not support asynchronous requests.
+      return null;
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      log.warn("Cannot start an asynchronous request", e);
+      return null;
+    } catch (InvocationTargetException e) {
+      log.warn("Cannot start an asynchronous request", e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Completes an asynchronous request.
+   *
+   * @param asyncContext The AsyncContext of the request.
+   */
+  private static void complete(Object asyncContext) {
+    try {
+      getAsyncContextMethod("complete").invoke(asyncContext);
+    } catch (Exception e) {
+      log.error("Cannot complete an asynchronous request", e);
+    }
+  }
+
+  /**
+   * Returns a method of the AsyncContext interface.
+   *
+   * @param name The name of the method.
+   * @param parameterTypes The types of the parameters of the method.
+   *
+   * @return The method.
+   *
+   * @throws ClassNotFoundException Thrown if the servlet API has no AsyncContext.
+   * @throws NoSuchMethodException Thrown if AsyncContext has no such method.
+   */
+  private static Method getAsyncContextMethod(String name, Class<?>... parameterTypes)
+      throws ClassNotFoundException, NoSuchMethodException {
+    Class<?> asyncContextClass = Class.forName("javax.servlet.AsyncContext", false,
+        ServletRequest.class.getClassLoader());
+    return asyncContextClass.getMethod(name, parameterTypes);
+  }
+
+  /**
+   * A factory of named daemon platform threads.
+   */
+  private static class PlatformThreadFactory implements ThreadFactory {
+
+    /**
+     * The prefix of the names of the threads.
+     */
+    private final String namePrefix;
+
+    /**
+     * The number of the next thread.
+     */
+    private final AtomicInteger nextThreadNumber = new AtomicInteger();
+
+    /**
+     * Creates a new factory.
+     *
+     * @param namePrefix The prefix of the names of the threads.
+     */
+    PlatformThreadFactory(String namePrefix) {
+      this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, namePrefix + nextThreadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -16,8 +16,14 @@ package com.google.visualization.datasource;
 
 import com.google.visualization.datasource.base.DataSourceParameters;
 import com.google.visualization.datasource.base.OutputType;
+import com.google.visualization.datasource.metrics.Counter;
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -34,6 +40,11 @@ public class ResponseWriter {
    * @see OutputType#TSV_EXCEL
    */
   private static final byte[] UTF_16LE_BOM = new byte[] {(byte) 0xff, (byte) 0xfe};
+
+  /**
+   * The size of the buffer of a servlet response writer, in chars.
+   */
+  private static final int WRITER_BUFFER_SIZE = 8192;
   
   /**
    * A private constructor.
@@ -80,6 +91,110 @@ public class ResponseWriter {
     }
   }
 
+  /**
+   * Sets the headers of the given <code>HttpServletResponse</code> according to the output type,
+   * and returns a buffered writer that encodes the response body directly to the servlet output
+   * stream, so that the response never needs to be held in memory in full.
+   * This method assumes the <code>StatusType</code> is 'OK'.
+   *
+   * The writer is not closed by the caller, but it must be flushed once the response is written.
+   *
+   * @param dataSourceParameters The datasource parameters.
+   * @param res The HTTP response.
+   *
+   * @return A writer over the servlet output stream.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static Writer getServletResponseWriter(DataSourceParameters dataSourceParameters,
+      HttpServletResponse res) throws IOException {
+    return getServletResponseWriter(dataSourceParameters, res, null);
+  }
+
+  /**
+   * Returns a writer over the servlet output stream, as
+   * {@link #getServletResponseWriter(DataSourceParameters, HttpServletResponse)} does, that adds
+   * the number of bytes it writes to the output stream to a counter.
+   *
+   * @param dataSourceParameters The datasource parameters.
+   * @param res The HTTP response.
+   * @param bytesCounter The counter of the written bytes, or null to not count them.
+   *
+   * @return A writer over the servlet output stream.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static Writer getServletResponseWriter(DataSourceParameters dataSourceParameters,
+      HttpServletResponse res, Counter bytesCounter) throws IOException {
+    OutputType type = dataSourceParameters.getOutputType();
+    String charset = "UTF-8";
+    byte[] byteOrderMark = null;
+    switch (type) {
+      case CSV:
+        setServletResponseCSV(dataSourceParameters, res);
+        break;
+      case TSV_EXCEL:
+        setServletResponseTSVExcel(dataSourceParameters, res);
+        charset = "UTF-16LE";
+        byteOrderMark = UTF_16LE_BOM;
+        break;
+      case HTML:
+        setServletResponseHTML(res);
+        break;
+      case JSONP:
+        setServletResponseJSONP(res);
+        break;
+      case JSON:
+        setServletResponseJSON(res);
+        break;
+      default:
+        // This should never happen.
+        throw new RuntimeException("Unhandled output type.");
+    }
+    OutputStream outputStream = res.getOutputStream();
+    if (bytesCounter != null) {
+      outputStream = new CountingOutputStream(outputStream, bytesCounter);
+    }
+    if (byteOrderMark != null) {
+      outputStream.write(byteOrderMark);
+    }
+    return new BufferedWriter(new OutputStreamWriter(outputStream, charset), WRITER_BUFFER_SIZE);
+  }
+
+  /**
+   * An output stream that adds the number of bytes written to it to a counter.
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * The counter.
+     */
+    private final Counter counter;
+
+    /**
+     * Creates a new CountingOutputStream.
+     *
+     * @param out The underlying output stream.
+     * @param counter The counter.
+     */
+    public CountingOutputStream(OutputStream out, Counter counter) {
+      super(out);
+      this.counter = counter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      counter.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      counter.add(len);
+    }
+  }
+
   /**
    * Sets the specified responseMessage on the given <code>HttpServletResponse</code> if
    * the <code>OutputType</code> is CSV.
@@ -0,0 +1,45 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.base.DataSourceException;
+import com.google.visualization.datasource.query.Query;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * A <code>DataTableGenerator</code> that can tell the version of the data it generates, which
+ * allows the results of its queries to be cached (see {@link QueryResultCache}).
+ */
+public interface VersionedDataTableGenerator extends DataTableGenerator {
+
+  /**
+   * Returns the version of the data that <code>generateDataTable</code> would generate for the
+   * given query and request, for example a modification time or an ETag of the underlying data.
+   *
+   * The version must change whenever the generated data table would change. If the data table
+   * depends on the request beyond the query (for example on the user), the version must also
+   * identify that part of the request.
+   *
+   * @param query The query to execute on the underlying data.
+   * @param request The http request.
+   *
+   * @return The version of the data, or null if the result must not be cached.
+   *
+   * @throws DataSourceException If the version could not be determined.
+   */
+  public String getDataVersion(Query query, HttpServletRequest request)
+      throws DataSourceException;
+}
@@ -0,0 +1,622 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of a single column of a {@link ColumnarDataTable}, stored in primitive arrays.
+ *
+ * Each value type has its own representation:
+ * NUMBER - a double per row.
+ * DATE - an int per row, packing year, month and day of month so that the natural int order
+ *     is the date order.
+ * DATETIME - a long per row, holding the milliseconds since the epoch (GMT).
+ * TIMEOFDAY - an int per row, holding the milliseconds since midnight.
+ * TEXT - an int per row, indexing a dictionary of the distinct strings in the column.
+ * BOOLEAN - a bit per row.
+ * Null values are kept in a separate bit set for all types.
+ *
+ * The vectors of a table are read-only outside of this package. The query engine reads their
+ * primitive values directly, see {@link ColumnarDataTable#getColumnVector(int)}.
+ *
+ * @see ColumnarDataTable
+ */
+public abstract class ColumnVector {
+
+  /**
+   * The initial capacity of a vector.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The rows that hold a null value.
+   */
+  protected BitSet nulls = new BitSet();
+
+  /**
+   * The number of values in this vector.
+   */
+  protected int size = 0;
+
+  /**
+   * The formatted values by row. This is null as long as no cell in the column has a formatted
+   * value.
+   */
+  private String[] formattedValues = null;
+
+  /**
+   * The custom properties of cells by row. This is null as long as no cell in the column has
+   * custom properties.
+   */
+  private Map<Integer, Map<String, String>> customProperties = null;
+
+  /**
+   * Creates an empty vector for the given value type.
+   *
+   * @param type The value type.
+   *
+   * @return An empty vector for the given value type.
+   */
+  static ColumnVector create(ValueType type) {
+    switch (type) {
+      case NUMBER:
+        return new NumberVector();
+      case TEXT:
+        return new TextVector();
+      case BOOLEAN:
+        return new BooleanVector();
+      case DATE:
+        return new DateVector();
+      case DATETIME:
+        return new DateTimeVector();
+      case TIMEOFDAY:
+        return new TimeOfDayVector();
+    }
+    throw new IllegalArgumentException("Unsupported value type: " + type);
+  }
+
+  /**
+   * Returns the value type of this vector.
+   *
+   * @return The value type of this vector.
+   */
+  public abstract ValueType getType();
+
+  /**
+   * Returns the number of values in this vector.
+   *
+   * @return The number of values in this vector.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns true if the value at the given row is a null value.
+   *
+   * @param row The row index.
+   *
+   * @return True if the value at the given row is a null value.
+   */
+  public boolean isNull(int row) {
+    return nulls.get(row);
+  }
+
+  /**
+   * Appends a value to the end of this vector. The value must be of the type of this vector.
+   *
+   * @param value The value to append.
+   */
+  void add(Value value) {
+    int row = size;
+    ensureCapacity(row + 1);
+    if (value.isNull()) {
+      nulls.set(row);
+    } else {
+      set(row, value);
+    }
+    size++;
+  }
+
+  /**
+   * Appends a cell to the end of this vector. The value of the cell must be of the type of this
+   * vector. The formatted value and custom properties of the cell are kept as well.
+   *
+   * @param cell The cell to append.
+   */
+  void add(TableCell cell) {
+    int row = size;
+    add(cell.getValue());
+    String formattedValue = cell.getFormattedValue();
+    if (formattedValue != null) {
+      if (formattedValues == null) {
+        formattedValues = new String[grow(0, row + 1)];
+      } else if (formattedValues.length <= row) {
+        formattedValues = Arrays.copyOf(formattedValues, grow(formattedValues.length, row + 1));
+      }
+      formattedValues[row] = formattedValue;
+    }
+    Map<String, String> cellProperties = cell.getCustomProperties();
+    if (!cellProperties.isEmpty()) {
+      if (customProperties == null) {
+        customProperties = Maps.newHashMap();
+      }
+      customProperties.put(row, Maps.newHashMap(cellProperties));
+    }
+  }
+
+  /**
+   * Creates a new cell holding the value, formatted value and custom properties at the given
+   * row.
+   *
+   * @param row The row index.
+   *
+   * @return A new cell for the given row.
+   */
+  TableCell getCell(int row) {
+    String formattedValue = null;
+    if ((formattedValues != null) && (row < formattedValues.length)) {
+      formattedValue = formattedValues[row];
+    }
+    TableCell cell = new TableCell(getValue(row), formattedValue);
+    if (customProperties != null) {
+      Map<String, String> cellProperties = customProperties.get(row);
+      if (cellProperties != null) {
+        for (Map.Entry<String, String> entry : cellProperties.entrySet()) {
+          cell.setCustomProperty(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    return cell;
+  }
+
+  /**
+   * Returns the value at the given row.
+   *
+   * @param row The row index.
+   *
+   * @return The value at the given row.
+   */
+  public Value getValue(int row) {
+    if (nulls.get(row)) {
+      return Value.getNullValueFromValueType(getType());
+    }
+    return get(row);
+  }
+
+  /**
+   * Makes sure the primitive storage can hold the given number of values.
+   *
+   * @param capacity The required capacity.
+   */
+  protected abstract void ensureCapacity(int capacity);
+
+  /**
+   * Releases unused primitive storage. Called once a vector is complete.
+   */
+  protected abstract void trimToSize();
+
+  /**
+   * Stores a non null value at the given row.
+   *
+   * @param row The row index.
+   * @param value The value.
+   */
+  protected abstract void set(int row, Value value);
+
+  /**
+   * Creates the value at the given row. The row is known to hold a non null value.
+   *
+   * @param row The row index.
+   *
+   * @return The value at the given row.
+   */
+  protected abstract Value get(int row);
+
+  /**
+   * Returns the new capacity of an array that has to hold at least the given number of values.
+   *
+   * @param currentLength The current array length.
+   * @param capacity The required capacity.
+   *
+   * @return The new array length.
+   */
+  protected static int grow(int currentLength, int capacity) {
+    return Math.max(capacity, Math.max(INITIAL_CAPACITY, currentLength + (currentLength >> 1)));
+  }
+
+  /**
+   * A vector of NUMBER values.
+   */
+  public static final class NumberVector extends ColumnVector {
+
+    /**
+     * The values.
+     */
+    private double[] values = new double[0];
+
+    @Override
+    public ValueType getType() {
+      return ValueType.NUMBER;
+    }
+
+    /**
+     * Returns the primitive value at the given row. Returns 0 for a null value.
+     *
+     * @param row The row index.
+     *
+     * @return The primitive value at the given row.
+     */
+    public double getDouble(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, capacity));
+      }
+    }
+
+    @Override
+    protected void trimToSize() {
+      if (values.length > size) {
+        values = Arrays.copyOf(values, size);
+      }
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      values[row] = ((NumberValue) value).getValue();
+    }
+
+    @Override
+    protected Value get(int row) {
+      return new NumberValue(values[row]);
+    }
+  }
+
+  /**
+   * A vector of TEXT values. Each distinct string is stored once, in a dictionary, together with
+   * a shared TextValue instance for it.
+   */
+  public static final class TextVector extends ColumnVector {
+
+    /**
+     * The dictionary index of the value in each row.
+     */
+    private int[] codes = new int[0];
+
+    /**
+     * The distinct values, by dictionary index.
+     */
+    private List<TextValue> dictionary = Lists.newArrayList();
+
+    /**
+     * Maps a string to its dictionary index.
+     */
+    private Map<String, Integer> codeByString = Maps.newHashMap();
+
+    @Override
+    public ValueType getType() {
+      return ValueType.TEXT;
+    }
+
+    /**
+     * Returns the dictionary index of the value at the given row. The index of a null value is
+     * undefined.
+     *
+     * @param row The row index.
+     *
+     * @return The dictionary index of the value at the given row.
+     */
+    public int getCode(int row) {
+      return codes[row];
+    }
+
+    /**
+     * Returns the number of distinct non null strings in this vector.
+     *
+     * @return The number of distinct non null strings in this vector.
+     */
+    public int getDictionarySize() {
+      return dictionary.size();
+    }
+
+    /**
+     * Returns the value with the given dictionary index.
+     *
+     * @param code The dictionary index.
+     *
+     * @return The value with the given dictionary index.
+     */
+    public TextValue getDictionaryValue(int code) {
+      return dictionary.get(code);
+    }
+
+    /**
+     * Returns the dictionary index of a string, or -1 if no row of this vector holds it.
+     *
+     * @param value The string.
+     *
+     * @return The dictionary index of the string, or -1.
+     */
+    public int indexOf(String value) {
+      Integer code = codeByString.get(value);
+      return (code == null) ? -1 : code;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > codes.length) {
+        codes = Arrays.copyOf(codes, grow(codes.length, capacity));
+      }
+    }
+
+    @Override
+    protected void trimToSize() {
+      if (codes.length > size) {
+        codes = Arrays.copyOf(codes, size);
+      }
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      TextValue textValue = (TextValue) value;
+      Integer code = codeByString.get(textValue.getValue());
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(textValue);
+        codeByString.put(textValue.getValue(), code);
+      }
+      codes[row] = code;
+    }
+
+    @Override
+    protected Value get(int row) {
+      return dictionary.get(codes[row]);
+    }
+  }
+
+  /**
+   * A vector of BOOLEAN values.
+   */
+  public static final class BooleanVector extends ColumnVector {
+
+    /**
+     * The rows that hold a true value.
+     */
+    private BitSet values = new BitSet();
+
+    @Override
+    public ValueType getType() {
+      return ValueType.BOOLEAN;
+    }
+
+    /**
+     * Returns the primitive value at the given row. Returns false for a null value.
+     *
+     * @param row The row index.
+     *
+     * @return The primitive value at the given row.
+     */
+    public boolean getBoolean(int row) {
+      return values.get(row);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      // Bit sets grow on demand.
+    }
+
+    @Override
+    protected void trimToSize() {
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      values.set(row, ((BooleanValue) value).getValue());
+    }
+
+    @Override
+    protected Value get(int row) {
+      return BooleanValue.getInstance(values.get(row));
+    }
+  }
+
+  /**
+   * A vector of DATE values. A date is packed into an int as
+   * (year << 9) | (month << 5) | dayOfMonth.
+   */
+  public static final class DateVector extends ColumnVector {
+
+    /**
+     * The packed dates.
+     */
+    private int[] values = new int[0];
+
+    @Override
+    public ValueType getType() {
+      return ValueType.DATE;
+    }
+
+    /**
+     * Returns the packed date at the given row. Packed dates compare like the dates they
+     * represent.
+     *
+     * @param row The row index.
+     *
+     * @return The packed date at the given row.
+     */
+    public int getPackedDate(int row) {
+      return values[row];
+    }
+
+    /**
+     * Packs a non null date the way dates are stored in this vector.
+     *
+     * @param date The date.
+     *
+     * @return The packed date.
+     */
+    public static int pack(DateValue date) {
+      return (date.getYear() << 9) | (date.getMonth() << 5) | date.getDayOfMonth();
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, capacity));
+      }
+    }
+
+    @Override
+    protected void trimToSize() {
+      if (values.length > size) {
+        values = Arrays.copyOf(values, size);
+      }
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      values[row] = pack((DateValue) value);
+    }
+
+    @Override
+    protected Value get(int row) {
+      int packed = values[row];
+      return new DateValue(packed >> 9, (packed >> 5) & 0xF, packed & 0x1F);
+    }
+  }
+
+  /**
+   * A vector of DATETIME values, stored as milliseconds since the epoch.
+   */
+  public static final class DateTimeVector extends ColumnVector {
+
+    /**
+     * The milliseconds since the epoch.
+     */
+    private long[] values = new long[0];
+
+    @Override
+    public ValueType getType() {
+      return ValueType.DATETIME;
+    }
+
+    /**
+     * Returns the milliseconds since the epoch of the value at the given row.
+     *
+     * @param row The row index.
+     *
+     * @return The milliseconds since the epoch of the value at the given row.
+     */
+    public long getMillis(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, capacity));
+      }
+    }
+
+    @Override
+    protected void trimToSize() {
+      if (values.length > size) {
+        values = Arrays.copyOf(values, size);
+      }
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      values[row] = ((DateTimeValue) value).getTimeInMillis();
+    }
+
+    @Override
+    protected Value get(int row) {
+      return DateTimeValue.fromTimeInMillis(values[row]);
+    }
+  }
+
+  /**
+   * A vector of TIMEOFDAY values, stored as milliseconds since midnight.
+   */
+  public static final class TimeOfDayVector extends ColumnVector {
+
+    /**
+     * The milliseconds since midnight.
+     */
+    private int[] values = new int[0];
+
+    @Override
+    public ValueType getType() {
+      return ValueType.TIMEOFDAY;
+    }
+
+    /**
+     * Returns the milliseconds since midnight of the value at the given row.
+     *
+     * @param row The row index.
+     *
+     * @return The milliseconds since midnight of the value at the given row.
+     */
+    public int getMillisOfDay(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (capacity > values.length) {
+        values = Arrays.copyOf(values, grow(values.length, capacity));
+      }
+    }
+
+    @Override
+    protected void trimToSize() {
+      if (values.length > size) {
+        values = Arrays.copyOf(values, size);
+      }
+    }
+
+    @Override
+    protected void set(int row, Value value) {
+      values[row] = ((TimeOfDayValue) value).getMillisOfDay();
+    }
+
+    @Override
+    protected Value get(int row) {
+      int millis = values[row];
+      return new TimeOfDayValue(millis / 3600000, (millis / 60000) % 60, (millis / 1000) % 60,
+          millis % 1000);
+    }
+  }
+}
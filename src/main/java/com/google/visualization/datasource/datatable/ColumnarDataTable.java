@@ -0,0 +1,626 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.base.Warning;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import com.ibm.icu.util.ULocale;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of data, arranged in typed columns, that stores its values column by column in
+ * primitive arrays instead of as rows of {@link TableCell} objects.
+ *
+ * A columnar table holds the same information as a {@link DataTable} (values, formatted values
+ * and custom properties of cells, rows, columns and the table), but uses a small fraction of
+ * the memory, which makes it suitable for tables that are kept in memory between requests.
+ * See {@link ColumnVector} for the representation of each value type.
+ *
+ * A columnar table can be created from a data table using {@link #fromDataTable(DataTable)}, and
+ * converted back to one using {@link #toDataTable()}, so it can be used wherever a data table is
+ * expected (e.g., by the renderers).
+ * {@link com.google.visualization.datasource.query.engine.QueryEngine} can execute a query
+ * directly on a columnar table: the filter is evaluated on the column vectors, and grouping and
+ * sorting by simple columns are done on them too, so only the rows of the result (or, for a
+ * grouped query, none) are converted to table rows.
+ *
+ * Rows can only be appended; existing values cannot be changed.
+ */
+public class ColumnarDataTable {
+
+  /**
+   * Column descriptions.
+   */
+  private List<ColumnDescription> columns = Lists.newArrayList();
+
+  /**
+   * Map from a column to its index in the columns list.
+   */
+  private Map<String, Integer> columnIndexById = Maps.newHashMap();
+
+  /**
+   * The values of each column, by column index.
+   */
+  private List<ColumnVector> vectors = Lists.newArrayList();
+
+  /**
+   * The number of rows.
+   */
+  private int numberOfRows = 0;
+
+  /**
+   * Custom properties of rows, by row index. This is null as long as no row has custom
+   * properties.
+   */
+  private Map<Integer, Map<String, String>> rowCustomProperties = null;
+
+  /**
+   * Custom properties for this table.
+   */
+  private Map<String, String> customProperties = null;
+
+  /**
+   * A list of warnings.
+   */
+  private List<Warning> warnings = Lists.newArrayList();
+
+  /**
+   * The user locale, used to create localized messages.
+   */
+  private ULocale localeForUserMessages = null;
+
+  /**
+   * Create a new empty table.
+   */
+  public ColumnarDataTable() {
+  }
+
+  /**
+   * Creates a columnar table holding the same data and metadata as the given data table.
+   * The data table is not changed.
+   *
+   * @param table The data table.
+   *
+   * @return A columnar table holding the same data and metadata as the given data table.
+   */
+  public static ColumnarDataTable fromDataTable(DataTable table) {
+    ColumnarDataTable result = new ColumnarDataTable();
+    for (ColumnDescription column : table.getColumnDescriptions()) {
+      result.addColumn(column.clone());
+    }
+    try {
+      for (TableRow row : table.getRows()) {
+        result.addRow(row);
+      }
+    } catch (TypeMismatchException e) {
+      // Should not happen. We assume the data table is valid.
+    }
+    for (Map.Entry<String, String> entry : table.getCustomProperties().entrySet()) {
+      result.setCustomProperty(entry.getKey(), entry.getValue());
+    }
+    for (Warning warning : table.getWarnings()) {
+      result.addWarning(warning);
+    }
+    result.setLocaleForUserMessages(table.getLocaleForUserMessages());
+    result.trimToSize();
+    return result;
+  }
+
+  /**
+   * Add a column to the table. Columns can only be added while the table has no rows.
+   *
+   * @param columnDescription The column's description.
+   */
+  public void addColumn(ColumnDescription columnDescription) {
+    String columnId = columnDescription.getId();
+    if (columnIndexById.containsKey(columnId)) {
+      throw new RuntimeException("Column Id [" + columnId + "] already in table description");
+    }
+    if (numberOfRows > 0) {
+      throw new IllegalStateException("Cannot add a column to a columnar table with rows");
+    }
+    columnIndexById.put(columnId, columns.size());
+    columns.add(columnDescription);
+    vectors.add(ColumnVector.create(columnDescription.getType()));
+  }
+
+  /**
+   * Adds columns to the table.
+   *
+   * @param columnsToAdd The columns to add.
+   */
+  public void addColumns(Collection<ColumnDescription> columnsToAdd) {
+    for (ColumnDescription column : columnsToAdd) {
+      addColumn(column);
+    }
+  }
+
+  /**
+   * Adds a single row to the end of the table. Throws a TypeMismatchException if the row's cells
+   * do not match the current columns. If the row is too short, i.e., has too few cells, then the
+   * remaining columns are filled with null values. The given row is not changed, and is not
+   * referenced by the table.
+   *
+   * @param row The row of values.
+   *
+   * @throws TypeMismatchException Thrown if the values in the cells do not match the columns.
+   */
+  public void addRow(TableRow row) throws TypeMismatchException {
+    List<TableCell> cells = row.getCells();
+    if (cells.size() > columns.size()) {
+      throw new TypeMismatchException("Row has too many cells. Should be at most of size: " +
+          columns.size());
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      if (cells.get(i).getType() != columns.get(i).getType()) {
+        throw new TypeMismatchException("Cell type does not match column type, at index: " + i +
+            ". Should be of type: " + columns.get(i).getType().toString());
+      }
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      vectors.get(i).add(cells.get(i));
+    }
+    for (int i = cells.size(); i < columns.size(); i++) {
+      vectors.get(i).add(Value.getNullValueFromValueType(columns.get(i).getType()));
+    }
+    Map<String, String> properties = row.getCustomProperties();
+    if (!properties.isEmpty()) {
+      if (rowCustomProperties == null) {
+        rowCustomProperties = Maps.newHashMap();
+      }
+      rowCustomProperties.put(numberOfRows, Maps.newHashMap(properties));
+    }
+    numberOfRows++;
+  }
+
+  /**
+   * A convenience method for creating a row directly from its cell values and
+   * adding it to the table.
+   *
+   * @param values The row values.
+   * @throws TypeMismatchException Thrown if a value does not match its
+   * corresponding column.
+   */
+  public void addRowFromValues(Object... values) throws TypeMismatchException {
+    TableRow row = new TableRow();
+    for (int i = 0; (i < values.length) && (i < columns.size()); i++) {
+      row.addCell(columns.get(i).getType().createValue(values[i]));
+    }
+    addRow(row);
+  }
+
+  /**
+   * Releases any memory reserved for rows that were not added. Should be called once all the
+   * rows are added, e.g., before caching the table.
+   */
+  public void trimToSize() {
+    for (ColumnVector vector : vectors) {
+      vector.trimToSize();
+    }
+  }
+
+  /**
+   * Returns the number of rows in this table.
+   *
+   * @return The number of rows.
+   */
+  public int getNumberOfRows() {
+    return numberOfRows;
+  }
+
+  /**
+   * Returns the number of columns in this table.
+   *
+   * @return The number of columns.
+   */
+  public int getNumberOfColumns() {
+    return columns.size();
+  }
+
+  /**
+   * Returns the list of all column descriptions.
+   *
+   * @return The list of all column descriptions. The returned list is
+   *     immutable.
+   */
+  public List<ColumnDescription> getColumnDescriptions() {
+    return ImmutableList.copyOf(columns);
+  }
+
+  /**
+   * Returns the column description of a column by its index.
+   *
+   * @param colIndex The column index.
+   *
+   * @return The column description.
+   */
+  public ColumnDescription getColumnDescription(int colIndex) {
+    return columns.get(colIndex);
+  }
+
+  /**
+   * Returns the column index in the columns of a row (first is zero).
+   *
+   * @param columnId The id of the column.
+   *
+   * @return The column index in the columns of a row (first is zero).
+   */
+  public int getColumnIndex(String columnId) {
+    return columnIndexById.get(columnId);
+  }
+
+  /**
+   * Returns whether or not the table contains a column named columnId.
+   *
+   * @param columnId The column id to check.
+   *
+   * @return True if columnId exists in this table, false otherwise.
+   */
+  public boolean containsColumn(String columnId) {
+    return columnIndexById.containsKey(columnId);
+  }
+
+  /**
+   * Returns the value at the specified row and column indexes. Text values and boolean values
+   * are shared between cells; values of other types are created on each call.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return The value.
+   */
+  public Value getValue(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return vectors.get(colIndex).getValue(rowIndex);
+  }
+
+  /**
+   * Returns whether the value at the specified row and column indexes is a logical null.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return True if the value is a logical null.
+   */
+  public boolean isNull(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return vectors.get(colIndex).isNull(rowIndex);
+  }
+
+  /**
+   * Returns the vector holding the values of the column at the specified index. The vector is
+   * read-only, and has one value for each row of this table.
+   *
+   * @param colIndex The column index.
+   *
+   * @return The vector of the column.
+   */
+  public ColumnVector getColumnVector(int colIndex) {
+    return vectors.get(colIndex);
+  }
+
+  /**
+   * Returns a new cell holding the value, formatted value and custom properties at the specified
+   * row and column indexes. Changing the returned cell does not change this table.
+   *
+   * @param rowIndex The row index.
+   * @param colIndex The column index.
+   *
+   * @return A new cell.
+   */
+  public TableCell getCell(int rowIndex, int colIndex) {
+    checkRowIndex(rowIndex);
+    return vectors.get(colIndex).getCell(rowIndex);
+  }
+
+  /**
+   * Returns a new row holding the cells and custom properties of the row at the given index.
+   * Changing the returned row does not change this table.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return A new row.
+   */
+  public TableRow getRow(int rowIndex) {
+    checkRowIndex(rowIndex);
+    TableRow row = new TableRow();
+    for (ColumnVector vector : vectors) {
+      row.addCell(vector.getCell(rowIndex));
+    }
+    for (Map.Entry<String, String> entry : getRowCustomProperties(rowIndex).entrySet()) {
+      row.setCustomProperty(entry.getKey(), entry.getValue());
+    }
+    return row;
+  }
+
+  /**
+   * Returns a read-only view of the row at the given index. The cells of the view are created
+   * only when they are first accessed, so this is cheaper than {@link #getRow(int)} when only a
+   * few of the columns are needed, e.g., when evaluating a filter.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return A read-only view of the row.
+   */
+  public TableRow getRowView(int rowIndex) {
+    checkRowIndex(rowIndex);
+    return new RowView(rowIndex);
+  }
+
+  /**
+   * Returns a new data table, with the same data and metadata as this one. Changing the
+   * returned table does not change this table.
+   *
+   * @return A new data table.
+   */
+  public DataTable toDataTable() {
+    DataTable result = createEmptyDataTable();
+    try {
+      for (int rowIndex = 0; rowIndex < numberOfRows; rowIndex++) {
+        result.addRow(getRow(rowIndex));
+      }
+    } catch (TypeMismatchException e) {
+      // Should not happen. The rows are created from the table columns.
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new data table, with the same metadata as this one, holding only the rows at the
+   * given indexes, in the given order. Changing the returned table does not change this table.
+   *
+   * @param rowIndices The indexes of the rows to include.
+   *
+   * @return A new data table.
+   */
+  public DataTable toDataTable(int[] rowIndices) {
+    DataTable result = createEmptyDataTable();
+    try {
+      for (int rowIndex : rowIndices) {
+        result.addRow(getRow(rowIndex));
+      }
+    } catch (TypeMismatchException e) {
+      // Should not happen. The rows are created from the table columns.
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new data table with the same columns and metadata as this one, but with no rows.
+   * This is useful as a column lookup for row views of this table.
+   *
+   * @return A new data table with no rows.
+   */
+  public DataTable createEmptyDataTable() {
+    DataTable result = new DataTable();
+    for (ColumnDescription column : columns) {
+      result.addColumn(column.clone());
+    }
+    if (customProperties != null) {
+      for (Map.Entry<String, String> entry : customProperties.entrySet()) {
+        result.setCustomProperty(entry.getKey(), entry.getValue());
+      }
+    }
+    for (Warning warning : warnings) {
+      result.addWarning(warning);
+    }
+    result.setLocaleForUserMessages(localeForUserMessages);
+    return result;
+  }
+
+  /**
+   * Returns the list of warnings in this table. The list returned is immutable.
+   *
+   * @return The list of warnings in this table.
+   */
+  public List<Warning> getWarnings() {
+    return ImmutableList.copyOf(warnings);
+  }
+
+  /**
+   * Adds a warning.
+   *
+   * @param warning The warning to add.
+   */
+  public void addWarning(Warning warning) {
+    warnings.add(warning);
+  }
+
+  /**
+   * Retrieves a custom property. Returns null if it does not exist.
+   *
+   * @param key The property key.
+   *
+   * @return The property value, or null if it does not exist.
+   */
+  public String getCustomProperty(String key) {
+    if (customProperties == null) {
+      return null;
+    }
+    if (key == null) {
+      throw new RuntimeException("Null keys are not allowed.");
+    }
+    return customProperties.get(key);
+  }
+
+  /**
+   * Sets a custom property.
+   *
+   * @param propertyKey The property key.
+   * @param propertyValue The property value.
+   */
+  public void setCustomProperty(String propertyKey, String propertyValue) {
+    if (customProperties == null) {
+      customProperties = Maps.newHashMap();
+    }
+    if ((propertyKey == null) || (propertyValue == null)) {
+      throw new RuntimeException("Null keys/values are not allowed.");
+    }
+    customProperties.put(propertyKey, propertyValue);
+  }
+
+  /**
+   * Returns an immutable map of the custom properties.
+   *
+   * @return An immutable map of the custom properties.
+   */
+  public Map<String, String> getCustomProperties() {
+    if (customProperties == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(customProperties);
+  }
+
+  /**
+   * Sets the user locale for creating localized messages.
+   *
+   * @param localeForUserMessages the user locale.
+   */
+  public void setLocaleForUserMessages(ULocale localeForUserMessages) {
+    this.localeForUserMessages = localeForUserMessages;
+  }
+
+  /**
+   * Returns the locale to use to create localized user messages.
+   *
+   * @return The locale for user messages.
+   */
+  public ULocale getLocaleForUserMessages() {
+    return localeForUserMessages;
+  }
+
+  /**
+   * Returns the custom properties of the row at the given index.
+   *
+   * @param rowIndex The row index.
+   *
+   * @return The custom properties of the row, never null.
+   */
+  private Map<String, String> getRowCustomProperties(int rowIndex) {
+    if (rowCustomProperties != null) {
+      Map<String, String> properties = rowCustomProperties.get(rowIndex);
+      if (properties != null) {
+        return Collections.unmodifiableMap(properties);
+      }
+    }
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Checks that the given row index is in range.
+   *
+   * @param rowIndex The row index.
+   *
+   * @throws IndexOutOfBoundsException Thrown if the row index is out of range.
+   */
+  private void checkRowIndex(int rowIndex) {
+    if ((rowIndex < 0) || (rowIndex >= numberOfRows)) {
+      throw new IndexOutOfBoundsException("Row index: " + rowIndex + ", number of rows: "
+          + numberOfRows);
+    }
+  }
+
+  /**
+   * A read-only row of a columnar table, whose cells are created on first access.
+   */
+  private class RowView extends TableRow {
+
+    /**
+     * The index of the row in the table.
+     */
+    private final int rowIndex;
+
+    /**
+     * The cells that were already accessed, by column index.
+     */
+    private final TableCell[] cells;
+
+    /**
+     * Creates a view of the row at the given index.
+     *
+     * @param rowIndex The row index.
+     */
+    RowView(int rowIndex) {
+      this.rowIndex = rowIndex;
+      this.cells = new TableCell[vectors.size()];
+    }
+
+    @Override
+    public TableCell getCell(int index) {
+      TableCell cell = cells[index];
+      if (cell == null) {
+        cell = vectors.get(index).getCell(rowIndex);
+        cells[index] = cell;
+      }
+      return cell;
+    }
+
+    @Override
+    public List<TableCell> getCells() {
+      List<TableCell> result = Lists.newArrayListWithCapacity(cells.length);
+      for (int i = 0; i < cells.length; i++) {
+        result.add(getCell(i));
+      }
+      return ImmutableList.copyOf(result);
+    }
+
+    @Override
+    int getNumberOfCells() {
+      return cells.length;
+    }
+
+    @Override
+    public void addCell(TableCell cell) {
+      throw new UnsupportedOperationException("Row views are read-only");
+    }
+
+    @Override
+    TableCell setCell(int index, TableCell cell) {
+      throw new UnsupportedOperationException("Row views are read-only");
+    }
+
+    @Override
+    public String getCustomProperty(String key) {
+      if (key == null) {
+        throw new RuntimeException("Null keys are not allowed.");
+      }
+      return getRowCustomProperties(rowIndex).get(key);
+    }
+
+    @Override
+    public void setCustomProperty(String propertyKey, String propertyValue) {
+      throw new UnsupportedOperationException("Row views are read-only");
+    }
+
+    @Override
+    public Map<String, String> getCustomProperties() {
+      return getRowCustomProperties(rowIndex);
+    }
+
+    @Override
+    public TableRow clone() {
+      return getRow(rowIndex);
+    }
+  }
+}
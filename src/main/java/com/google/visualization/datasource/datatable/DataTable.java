@@ -85,6 +85,12 @@ public class DataTable {
    */
   private ULocale localeForUserMessages = null;
 
+  /**
+   * The interner of the values of rows added with addRowFromValues, or null if they are not
+   * interned.
+   */
+  private ValueInterner valueInterner = null;
+
   /**
    * Create a new empty result.
    */
@@ -105,18 +111,18 @@ public class DataTable {
    * @throws TypeMismatchException Thrown if the values in the cells do not match the columns.
    */
   public void addRow(TableRow row) throws TypeMismatchException {
-    List<TableCell> cells = row.getCells();
-    if (cells.size() > columns.size()) {
+    int numberOfCells = row.getNumberOfCells();
+    if (numberOfCells > columns.size()) {
       throw new TypeMismatchException("Row has too many cells. Should be at most of size: " +
           columns.size());
     }
-    for (int i = 0; i < cells.size(); i++) {
-      if (cells.get(i).getType() != columns.get(i).getType()) {
+    for (int i = 0; i < numberOfCells; i++) {
+      if (row.getCell(i).getType() != columns.get(i).getType()) {
         throw new TypeMismatchException("Cell type does not match column type, at index: " + i +
             ". Should be of type: " + columns.get(i).getType().toString());
       }
     }
-    for (int i = cells.size(); i < columns.size(); i++) {
+    for (int i = numberOfCells; i < columns.size(); i++) {
       row.addCell(new TableCell(Value.getNullValueFromValueType(columns.get(i).getType())));
     }
 
@@ -138,12 +144,34 @@ public class DataTable {
 
     while (i < values.length && columnIt.hasNext()) {
       ColumnDescription colDesc = columnIt.next();
-      row.addCell(colDesc.getType().createValue(values[i]));
+      Value value = colDesc.getType().createValue(values[i]);
+      row.addCell((valueInterner == null) ? new TableCell(value)
+          : valueInterner.internCell(i, value));
       i++;
     }
     addRow(row);
   }
 
+  /**
+   * Sets an interner for the values of the rows added with addRowFromValues, so that equal
+   * values of a column share the same value and cell instances. The cells of those rows must
+   * then not be modified.
+   *
+   * @param valueInterner The interner, or null to not intern values.
+   */
+  public void setValueInterner(ValueInterner valueInterner) {
+    this.valueInterner = valueInterner;
+  }
+
+  /**
+   * Returns the interner of the values of the rows added with addRowFromValues.
+   *
+   * @return The interner, or null if values are not interned.
+   */
+  public ValueInterner getValueInterner() {
+    return valueInterner;
+  }
+
   /**
    * Adds a collection of rows to the end of the result.
    *
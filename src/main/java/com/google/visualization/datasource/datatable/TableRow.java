@@ -115,6 +115,16 @@ public class TableRow {
   public TableCell getCell(int index) {
     return cells.get(index);
   }
+
+  /**
+   * Package protected function.
+   * Returns the number of cells in this row, without copying the cells as getCells() does.
+   *
+   * @return The number of cells in this row.
+   */
+  int getNumberOfCells() {
+    return cells.size();
+  }
   
   /**
    * Package protected function.
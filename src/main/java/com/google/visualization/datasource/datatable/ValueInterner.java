@@ -0,0 +1,234 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares equal values, and cells holding them, between the rows of a column while a table is
+ * built, so that a column with few distinct values, such as country codes or status strings,
+ * holds a few value and cell instances instead of one per row. Equal shared values are also
+ * compared by identity first.
+ *
+ * An interner is scoped to the building of one table: it keeps the distinct values of each
+ * column until it is discarded, up to a maximal number of values per column. Once a column has
+ * that many distinct values, its other values are not interned, so a column with many distinct
+ * values costs a bounded amount of memory.
+ *
+ * The shared cells have no formatted value and no custom properties, and must not be modified,
+ * since a change to a shared cell applies to all the rows that share it. The query engine sets
+ * formatted values per column, which gives equal values of a column the same formatted value.
+ *
+ * This class is not thread-safe.
+ */
+public class ValueInterner {
+
+  /**
+   * The default maximal number of distinct values interned per column.
+   */
+  public static final int DEFAULT_MAX_VALUES_PER_COLUMN = 1024;
+
+  /**
+   * The interning state of a column.
+   */
+  private static class ColumnState {
+
+    /**
+     * The shared cells, keyed on their value.
+     */
+    final Map<Value, TableCell> cells = Maps.newHashMap();
+
+    /**
+     * The number of values looked up.
+     */
+    long lookups = 0;
+
+    /**
+     * The number of values looked up that were already interned.
+     */
+    long hits = 0;
+  }
+
+  /**
+   * The maximal number of distinct values interned per column.
+   */
+  private final int maxValuesPerColumn;
+
+  /**
+   * The interning state of each column, by column index. Created on first use.
+   */
+  private final List<ColumnState> columns = Lists.newArrayList();
+
+  /**
+   * Creates a new interner, with the default maximal number of values per column.
+   */
+  public ValueInterner() {
+    this(DEFAULT_MAX_VALUES_PER_COLUMN);
+  }
+
+  /**
+   * Creates a new interner.
+   *
+   * @param maxValuesPerColumn The maximal number of distinct values interned per column.
+   */
+  public ValueInterner(int maxValuesPerColumn) {
+    if (maxValuesPerColumn < 0) {
+      throw new IllegalArgumentException("Invalid number of values: " + maxValuesPerColumn);
+    }
+    this.maxValuesPerColumn = maxValuesPerColumn;
+  }
+
+  /**
+   * Returns the shared value equal to the given value in the given column. The given value
+   * becomes the shared one if there is none yet and the column has room for it.
+   *
+   * @param column The column index.
+   * @param value The value.
+   *
+   * @return The shared value, or the given value if it is not interned.
+   */
+  public Value intern(int column, Value value) {
+    return internCell(column, value).getValue();
+  }
+
+  /**
+   * Returns a shared cell holding a value equal to the given value in the given column. The
+   * returned cell must not be modified.
+   *
+   * @param column The column index.
+   * @param value The value.
+   *
+   * @return The shared cell, or a new cell if the value is not interned.
+   */
+  public TableCell internCell(int column, Value value) {
+    ColumnState state = getColumnState(column);
+    state.lookups++;
+    TableCell cell = state.cells.get(value);
+    if (cell != null) {
+      state.hits++;
+      return cell;
+    }
+    cell = new TableCell(value);
+    if (state.cells.size() < maxValuesPerColumn) {
+      state.cells.put(value, cell);
+    }
+    return cell;
+  }
+
+  /**
+   * Returns the number of values looked up in a column.
+   *
+   * @param column The column index.
+   *
+   * @return The number of values looked up.
+   */
+  public long getNumberOfLookups(int column) {
+    return (column < columns.size()) ? getColumnState(column).lookups : 0;
+  }
+
+  /**
+   * Returns the number of values looked up in a column that were replaced by a shared value.
+   *
+   * @param column The column index.
+   *
+   * @return The number of shared values returned.
+   */
+  public long getNumberOfHits(int column) {
+    return (column < columns.size()) ? getColumnState(column).hits : 0;
+  }
+
+  /**
+   * Returns the number of distinct values interned in a column.
+   *
+   * @param column The column index.
+   *
+   * @return The number of interned values.
+   */
+  public int getNumberOfValues(int column) {
+    return (column < columns.size()) ? getColumnState(column).cells.size() : 0;
+  }
+
+  /**
+   * Returns the ratio of the values looked up in a column that were replaced by a shared value,
+   * that is, the ratio of value instances saved.
+   *
+   * @param column The column index.
+   *
+   * @return The dedup ratio, between 0 and 1.
+   */
+  public double getDedupRatio(int column) {
+    long lookups = getNumberOfLookups(column);
+    return (lookups == 0) ? 0 : ((double) getNumberOfHits(column) / lookups);
+  }
+
+  /**
+   * Returns the ratio of the values looked up in all the columns that were replaced by a shared
+   * value.
+   *
+   * @return The dedup ratio, between 0 and 1.
+   */
+  public double getDedupRatio() {
+    long lookups = 0;
+    long hits = 0;
+    for (ColumnState state : columns) {
+      if (state != null) {
+        lookups += state.lookups;
+        hits += state.hits;
+      }
+    }
+    return (lookups == 0) ? 0 : ((double) hits / lookups);
+  }
+
+  /**
+   * Returns a report of the dedup ratio of each column, for logging.
+   *
+   * @return The report.
+   */
+  public String getReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("dedup ratio %1$.3f", getDedupRatio()));
+    for (int i = 0; i < columns.size(); i++) {
+      if (getNumberOfLookups(i) > 0) {
+        sb.append(String.format("; column %1$d: %2$d values, %3$d lookups, dedup ratio %4$.3f",
+            i, getNumberOfValues(i), getNumberOfLookups(i), getDedupRatio(i)));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the interning state of a column, creating it if needed.
+   *
+   * @param column The column index.
+   *
+   * @return The state of the column.
+   */
+  private ColumnState getColumnState(int column) {
+    while (columns.size() <= column) {
+      columns.add(null);
+    }
+    ColumnState state = columns.get(column);
+    if (state == null) {
+      state = new ColumnState();
+      columns.set(column, state);
+    }
+    return state;
+  }
+}
@@ -22,8 +22,9 @@ import com.ibm.icu.util.TimeZone;
  * A value of type date-time. Used to represent a specific day in a given year as well as a
  * specific time during that day. This differs from {@link DateValue}, which represents only a
  * specific day in a given year.
- * DateTime is represented internally by a GregorianCalendar. The
- * calendar is immutable and is kept only for validation of the input.
+ * DateTime is represented internally by the number of milliseconds since the epoch, in GMT, in
+ * the proleptic Gregorian calendar. The date and time fields are computed from it
+ * arithmetically, and a GregorianCalendar is only created when one is asked for.
  *
  * @author Hillel M.
  */
@@ -34,6 +35,25 @@ public class DateTimeValue extends Value {
    */
   private static final DateTimeValue NULL_VALUE = new DateTimeValue();
 
+  /**
+   * The GMT time zone, that calendars given to the constructor are checked against.
+   */
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  /**
+   * The number of days from 0000-03-01 to 1970-01-01, in the proleptic Gregorian calendar.
+   */
+  private static final long DAYS_TO_EPOCH = 719468;
+
+  /**
+   * The number of days in a 400 year cycle of the Gregorian calendar.
+   */
+  private static final int DAYS_PER_CYCLE = 146097;
 
   /**
    * Static method to return the null value (same one for all calls).
@@ -45,30 +65,34 @@ public class DateTimeValue extends Value {
   }
 
   /**
-   * Underlying GregorianCalendar.
-   * The calendar is immutable and is set only in the constructor.
+   * The number of milliseconds since the epoch, in GMT.
    */
-  private GregorianCalendar calendar;
+  private final long timeInMillis;
 
   /**
-   * Stores the hash code for this DateTime. Do not use GregorianCalendar
-   * hash code since it does not consider time values and it might trigger
-   * internal changes in the calendar values.
-   * The hashCode of NULL_VALUE is zero.
+   * A GregorianCalendar set to this date-time, created when first asked for.
    */
-  private Integer hashCode = null;
+  private volatile GregorianCalendar calendar;
 
   /**
    * Creates a new DateTime value. This constructor is private and is used
    * only to create a NULL_VALUE for this class.
    */
   private DateTimeValue() {
-    hashCode = 0;
+    timeInMillis = 0;
+  }
+
+  /**
+   * Creates a new DateTime value from the number of milliseconds since the epoch.
+   *
+   * @param timeInMillis The number of milliseconds since the epoch, in GMT.
+   */
+  private DateTimeValue(long timeInMillis) {
+    this.timeInMillis = timeInMillis;
   }
 
   /**
    * Creates a new DateTime value.
-   * The input is checked using a gregorian calendar.
    * Note this uses the java convention for months:
    * January = 0, ..., December = 11.
    *
@@ -85,27 +109,23 @@ public class DateTimeValue extends Value {
    */
   public DateTimeValue(int year, int month, int dayOfMonth, int hours,
       int minutes, int seconds, int milliseconds) {
-    // Constructs a GregorianCalendar with the given date and time.
-    calendar = new GregorianCalendar(year, month, dayOfMonth, hours,
-        minutes, seconds);
-    calendar.set(GregorianCalendar.MILLISECOND, milliseconds);
-    calendar.setTimeZone(TimeZone.getTimeZone("GMT"));
-
     // Check input.
     // A RunTimeException is thrown here since it is very unusual for structured
     // data to be incorrect.
-    if ((getYear() != year)
-        || (getMonth() != month)
-        || (getDayOfMonth() != dayOfMonth)
-        || (getHourOfDay() != hours)
-        || (getMinute() != minutes)
-        || (getSecond() != seconds)
-        || (getMillisecond() != milliseconds)) {
+    if ((year < 1)
+        || (month < 0) || (month > 11)
+        || (dayOfMonth < 1) || (dayOfMonth > getDaysInMonth(year, month))
+        || (hours < 0) || (hours > 23)
+        || (minutes < 0) || (minutes > 59)
+        || (seconds < 0) || (seconds > 59)
+        || (milliseconds < 0) || (milliseconds > 999)) {
       throw new IllegalArgumentException("Invalid java date "
           + "(yyyy-MM-dd hh:mm:ss.S): "
           + year + '-' + month + '-' + dayOfMonth + ' ' + hours + ':'
           + minutes + ':' + seconds + '.' + milliseconds);
     }
+    timeInMillis = toTimeInMillis(year, month, dayOfMonth, hours, minutes, seconds,
+        milliseconds);
   }
 
   /**
@@ -122,11 +142,25 @@ public class DateTimeValue extends Value {
    *     to GMT.
    */
   public DateTimeValue(GregorianCalendar calendar) {
-    if (!calendar.getTimeZone().equals(TimeZone.getTimeZone("GMT"))) {
+    if (!calendar.getTimeZone().equals(GMT)) {
       throw new IllegalArgumentException(
           "Can't create DateTimeValue from GregorianCalendar that is not GMT.");
     }
-    this.calendar = (GregorianCalendar) calendar.clone();
+    timeInMillis = toTimeInMillis(calendar.get(GregorianCalendar.EXTENDED_YEAR),
+        calendar.get(GregorianCalendar.MONTH), calendar.get(GregorianCalendar.DAY_OF_MONTH),
+        calendar.get(GregorianCalendar.HOUR_OF_DAY), calendar.get(GregorianCalendar.MINUTE),
+        calendar.get(GregorianCalendar.SECOND), calendar.get(GregorianCalendar.MILLISECOND));
+  }
+
+  /**
+   * Returns a new DateTime value for the given number of milliseconds since the epoch.
+   *
+   * @param timeInMillis The number of milliseconds since the epoch, in GMT.
+   *
+   * @return The DateTime value.
+   */
+  public static DateTimeValue fromTimeInMillis(long timeInMillis) {
+    return new DateTimeValue(timeInMillis);
   }
 
   /**
@@ -135,7 +169,10 @@ public class DateTimeValue extends Value {
    * @return The year.
    */
   public int getYear() {
-    return calendar.get(GregorianCalendar.YEAR);
+    long days = getDays();
+    int year = getYearOfMarchBasedDay(days);
+    // January and February belong to the next year.
+    return (getDayOfMarchBasedYear(days, year) >= 306) ? (year + 1) : year;
   }
 
   /**
@@ -144,7 +181,10 @@ public class DateTimeValue extends Value {
    * @return The month.
    */
   public int getMonth() {
-    return calendar.get(GregorianCalendar.MONTH);
+    long days = getDays();
+    int monthFromMarch = getMonthFromMarch(getDayOfMarchBasedYear(days,
+        getYearOfMarchBasedDay(days)));
+    return (monthFromMarch < 10) ? (monthFromMarch + 2) : (monthFromMarch - 10);
   }
 
   /**
@@ -153,7 +193,10 @@ public class DateTimeValue extends Value {
    * @return The day of month.
    */
   public int getDayOfMonth() {
-    return calendar.get(GregorianCalendar.DAY_OF_MONTH);
+    long days = getDays();
+    int dayOfYear = getDayOfMarchBasedYear(days, getYearOfMarchBasedDay(days));
+    int monthFromMarch = getMonthFromMarch(dayOfYear);
+    return dayOfYear - ((153 * monthFromMarch) + 2) / 5 + 1;
   }
 
   /**
@@ -162,7 +205,7 @@ public class DateTimeValue extends Value {
    * @return The hour of day.
    */
   public int getHourOfDay() {
-    return calendar.get(GregorianCalendar.HOUR_OF_DAY);
+    return (int) (getMillisOfDay() / (60 * 60 * 1000));
   }
 
   /**
@@ -171,7 +214,7 @@ public class DateTimeValue extends Value {
    * @return The minute.
    */
   public int getMinute() {
-    return calendar.get(GregorianCalendar.MINUTE);
+    return (int) ((getMillisOfDay() / (60 * 1000)) % 60);
   }
 
   /**
@@ -180,7 +223,7 @@ public class DateTimeValue extends Value {
    * @return The second.
    */
   public int getSecond() {
-    return calendar.get(GregorianCalendar.SECOND);
+    return (int) ((getMillisOfDay() / 1000) % 60);
   }
 
   /**
@@ -189,9 +232,23 @@ public class DateTimeValue extends Value {
    * @return The millisecond.
    */
   public int getMillisecond() {
-    return calendar.get(GregorianCalendar.MILLISECOND);
+    return (int) (getMillisOfDay() % 1000);
   }
 
+  /**
+   * Returns the number of milliseconds since the epoch, in GMT, in the proleptic Gregorian
+   * calendar.
+   *
+   * @return The number of milliseconds since the epoch.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public long getTimeInMillis() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return timeInMillis;
+  }
 
   @Override
   public ValueType getType() {
@@ -246,26 +303,17 @@ public class DateTimeValue extends Value {
     if (otherDateTime.isNull()) {
       return 1;
     }
-    // Calendar implements compareTo by converting to milliseconds.
-    return (calendar.compareTo(otherDateTime.getCalendar()));
+    return (timeInMillis < otherDateTime.timeInMillis) ? -1
+        : ((timeInMillis == otherDateTime.timeInMillis) ? 0 : 1);
   }
 
   @Override
   public int hashCode() {
-    if (null != hashCode) {
-      return hashCode;
+    // The hashCode of NULL_VALUE is zero.
+    if (isNull()) {
+      return 0;
     }
-    // Compute and store hashCode for this DateTimeValue.
-    int hash = 1579; // Some arbitrary prime number.
-    hash = (hash * 11) + getYear();
-    hash = (hash * 11) + getMonth();
-    hash = (hash * 11) + getDayOfMonth();
-    hash = (hash * 11) + getHourOfDay();
-    hash = (hash * 11) + getMinute();
-    hash = (hash * 11) + getSecond();
-    hash = (hash * 11) + getMillisecond();
-    hashCode = hash;
-    return hashCode;
+    return (int) (timeInMillis ^ (timeInMillis >>> 32));
   }
 
   @Override
@@ -273,13 +321,14 @@ public class DateTimeValue extends Value {
     if (isNull()) {
       return null;
     }
-    return calendar;
+    return getCalendar();
   }
 
   /**
-   * Returns the internal GregorianCalendar.
+   * Returns a GregorianCalendar set to this date-time, in GMT. The calendar is created on the
+   * first call, and the same calendar is returned afterwards.
    *
-   * @return The internal GregorianCalendar.
+   * @return The GregorianCalendar.
    *
    * @throws NullValueException Thrown when this Value is NULL_VALUE.
    */
@@ -287,7 +336,18 @@ public class DateTimeValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return calendar;
+    GregorianCalendar result = calendar;
+    if (result == null) {
+      // The fields are set, and not the time, so that they are kept for dates before the
+      // Gregorian change of the calendar.
+      result = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+      result.clear();
+      result.set(getYear(), getMonth(), getDayOfMonth(), getHourOfDay(), getMinute(),
+          getSecond());
+      result.set(GregorianCalendar.MILLISECOND, getMillisecond());
+      calendar = result;
+    }
+    return result;
   }
 
   /**
@@ -305,4 +365,120 @@ public class DateTimeValue extends Value {
     s += "'";
     return s;
   }
+
+  /**
+   * Returns the number of days since the epoch.
+   *
+   * @return The number of days since the epoch.
+   */
+  private long getDays() {
+    long days = timeInMillis / MILLIS_PER_DAY;
+    return ((timeInMillis % MILLIS_PER_DAY) < 0) ? (days - 1) : days;
+  }
+
+  /**
+   * Returns the number of milliseconds since midnight.
+   *
+   * @return The number of milliseconds since midnight.
+   */
+  private long getMillisOfDay() {
+    long millis = timeInMillis % MILLIS_PER_DAY;
+    return (millis < 0) ? (millis + MILLIS_PER_DAY) : millis;
+  }
+
+  /**
+   * Returns the year of a day, in years that start on March 1st, so that the leap day is the
+   * last day of the year.
+   *
+   * @param days The number of days since the epoch.
+   *
+   * @return The March-based year.
+   */
+  private static int getYearOfMarchBasedDay(long days) {
+    long shiftedDays = days + DAYS_TO_EPOCH;
+    long cycle = ((shiftedDays >= 0) ? shiftedDays : (shiftedDays - DAYS_PER_CYCLE + 1))
+        / DAYS_PER_CYCLE;
+    int dayOfCycle = (int) (shiftedDays - cycle * DAYS_PER_CYCLE);
+    int yearOfCycle = (dayOfCycle - dayOfCycle / 1460 + dayOfCycle / 36524
+        - dayOfCycle / (DAYS_PER_CYCLE - 1)) / 365;
+    return (int) (yearOfCycle + cycle * 400);
+  }
+
+  /**
+   * Returns the day of a March-based year. March 1st is day 0.
+   *
+   * @param days The number of days since the epoch.
+   * @param year The March-based year of the day.
+   *
+   * @return The day of the March-based year.
+   */
+  private static int getDayOfMarchBasedYear(long days, int year) {
+    return (int) (days + DAYS_TO_EPOCH - getDaysBeforeMarchBasedYear(year));
+  }
+
+  /**
+   * Returns the number of days from 0000-03-01 to the first day of a March-based year.
+   *
+   * @param year The March-based year.
+   *
+   * @return The number of days.
+   */
+  private static long getDaysBeforeMarchBasedYear(int year) {
+    long y = year;
+    long cycle = ((y >= 0) ? y : (y - 399)) / 400;
+    long yearOfCycle = y - cycle * 400;
+    return cycle * DAYS_PER_CYCLE + yearOfCycle * 365 + yearOfCycle / 4 - yearOfCycle / 100;
+  }
+
+  /**
+   * Returns the month of a day of a March-based year, where March is 0 and February is 11.
+   *
+   * @param dayOfYear The day of the March-based year.
+   *
+   * @return The month, from March.
+   */
+  private static int getMonthFromMarch(int dayOfYear) {
+    return (5 * dayOfYear + 2) / 153;
+  }
+
+  /**
+   * Returns the number of days in a month, in the proleptic Gregorian calendar.
+   *
+   * @param year The year.
+   * @param month The month, from 0 (January) to 11 (December).
+   *
+   * @return The number of days in the month.
+   */
+  /* package */ static int getDaysInMonth(int year, int month) {
+    if (month == 1) {
+      boolean isLeapYear = ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+      return isLeapYear ? 29 : 28;
+    }
+    return ((month == 3) || (month == 5) || (month == 8) || (month == 10)) ? 30 : 31;
+  }
+
+  /**
+   * Returns the number of milliseconds since the epoch of a date and time in GMT, in the
+   * proleptic Gregorian calendar. The fields are not checked.
+   *
+   * @param year The year.
+   * @param month The month, from 0 (January) to 11 (December).
+   * @param dayOfMonth The day of month.
+   * @param hours The hours.
+   * @param minutes The minutes.
+   * @param seconds The seconds.
+   * @param milliseconds The milliseconds.
+   *
+   * @return The number of milliseconds since the epoch.
+   */
+  /* package */ static long toTimeInMillis(int year, int month, int dayOfMonth, int hours,
+      int minutes, int seconds, int milliseconds) {
+    // January and February are the last months of the previous March-based year.
+    int marchBasedYear = (month < 2) ? (year - 1) : year;
+    int monthFromMarch = (month < 2) ? (month + 10) : (month - 2);
+    long days = getDaysBeforeMarchBasedYear(marchBasedYear)
+        + ((153 * monthFromMarch) + 2) / 5 + dayOfMonth - 1 - DAYS_TO_EPOCH;
+    return days * MILLIS_PER_DAY
+        + (((hours * 60L) + minutes) * 60 + seconds) * 1000 + milliseconds;
+  }
 }
@@ -24,8 +24,8 @@ import com.ibm.icu.util.TimeZone;
  * {@link DateTimeValue}, which represents a specific day in a given year as well as a specific
  * time during that day. 
  * Date is represented internally by three values: year, month and dayOfMonth.
- * This class stores only legitimate dates where the validation is done using
- * ibm.icu.GregorianCalendar.
+ * This class stores only legitimate dates of the proleptic Gregorian calendar, the calendar
+ * of {@link DateTimeValue}, also before the Gregorian change (1582-10-15).
  *
  * @author Hillel M.
  */
@@ -36,6 +36,12 @@ public class DateValue extends Value {
    */
   private static final DateValue NULL_VALUE = new DateValue();
 
+  /**
+   * The GMT time zone, that calendars given to the constructor are checked against. Looked up
+   * once, as a look up creates a new time zone.
+   */
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
   /**
    * Static method to return the null value (same one for all calls).
    *
@@ -76,7 +82,7 @@ public class DateValue extends Value {
 
   /**
    * Creates a new date value.
-   * The input is checked using a GregorianCalendar.
+   * The input is checked against the proleptic Gregorian calendar.
    * Note that we use java convention for months:
    * January = 0, ..., December = 11.
    *
@@ -88,18 +94,12 @@ public class DateValue extends Value {
    *     parameters is illegal.
    */
   public DateValue(int year, int month, int dayOfMonth) {
-    // Constructs a GregorianCalendar with the given date set in
-    // the default time zone.
-    GregorianCalendar calendar =
-        new GregorianCalendar(year, month, dayOfMonth);
-
-    // Input check. If the date is invalid the calendar object will output
-    // different fields for year, month and/or dayOfMonth.
+    // Input check.
     // A RunTimeException is thrown here since it is very unusual for structured
     // data to be incorrect.
-    if ((calendar.get(GregorianCalendar.YEAR) != year)
-        || (calendar.get(GregorianCalendar.MONTH) != month)
-        || (calendar.get(GregorianCalendar.DAY_OF_MONTH) != dayOfMonth)) {
+    if ((year < 1)
+        || (month < 0) || (month > 11)
+        || (dayOfMonth < 1) || (dayOfMonth > DateTimeValue.getDaysInMonth(year, month))) {
       throw new IllegalArgumentException("Invalid java date (yyyy-MM-dd): "
           + year + '-' + month + '-' + dayOfMonth);
     }
@@ -114,7 +114,9 @@ public class DateValue extends Value {
    * The given calendar's time zone must be set to "GMT" as a precondition to
    * use this constructor.
    * Note: The date values: year, month, dayOfMonth correspond to the values
-   * returned by calendar.get(field) of the given calendar.
+   * returned by calendar.get(field) of the given calendar, except for the
+   * Julian leap days of 1500 and earlier century years, which are taken as
+   * March 1st.
    *
    * @param calendar A gregorian to extract this instance values: year, month
    *     and dayOfMonth.
@@ -123,13 +125,19 @@ public class DateValue extends Value {
    *     to GMT.
    */
   public DateValue(GregorianCalendar calendar) {
-    if (!calendar.getTimeZone().equals(TimeZone.getTimeZone("GMT"))) {
+    if (!calendar.getTimeZone().equals(GMT)) {
       throw new IllegalArgumentException(
            "Can't create DateValue from GregorianCalendar that is not GMT.");
     }
     this.year = calendar.get(GregorianCalendar.YEAR);
     this.month = calendar.get(GregorianCalendar.MONTH);
     this.dayOfMonth = calendar.get(GregorianCalendar.DAY_OF_MONTH);
+    if (dayOfMonth > DateTimeValue.getDaysInMonth(year, month)) {
+      // A Julian leap day of a century year, before the Gregorian change. It does not exist in
+      // the proleptic Gregorian calendar, and is taken as March 1st, as in DateTimeValue.
+      this.month = month + 1;
+      this.dayOfMonth = 1;
+    }
   }
 
   @Override
@@ -268,6 +276,23 @@ public class DateValue extends Value {
     return dayOfMonth;
   }
 
+  /**
+   * Returns the number of milliseconds since the epoch of the midnight, in GMT, that starts this
+   * date in the proleptic Gregorian calendar, as in {@link DateTimeValue#getTimeInMillis()}.
+   * This is the time of {@link #getObjectToFormat()} for dates since the Gregorian cutover
+   * (1582-10-15).
+   *
+   * @return The number of milliseconds since the epoch.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public long getTimeInMillis() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return DateTimeValue.toTimeInMillis(year, month, dayOfMonth, 0, 0, 0, 0);
+  }
+
   /**
    * {@inheritDoc}
    */
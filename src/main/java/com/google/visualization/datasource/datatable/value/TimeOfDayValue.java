@@ -22,7 +22,8 @@ import com.ibm.icu.util.TimeZone;
 
 /**
  * A value of type time-of-day.
- * Time is represented internally by four fields: hours, minutes, seconds and milliseconds.
+ * Time is represented internally by the number of milliseconds since midnight. The hours,
+ * minutes, seconds and milliseconds are computed from it arithmetically.
  *
  * @author Hillel M.
  */
@@ -43,36 +44,21 @@ public class TimeOfDayValue extends Value {
   }
 
   /**
-   * Underlying value: hours (24 hours).
+   * The GMT time zone, that calendars given to the constructor are checked against.
    */
-  private int hours;
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
 
   /**
-   * Underlying value: minutes (60 minutes).
+   * Underlying value: the number of milliseconds since midnight.
    */
-  private int minutes;
-
-  /**
-   * Underlying value: seconds (60 seconds).
-   */
-  private int seconds;
-
-  /**
-   * Underlying value: milliseconds (1000 milliseconds).
-   */
-  private int milliseconds;
-
-  /**
-   * The hashCode for this TimeOfDayValue. The hashCode of NULL_VALUE is zero.
-   */
-  private Integer hashCode = null;
+  private final int millisOfDay;
 
   /**
    * Creates a new time value. This constructor is private and is used only to
    * create a NULL_VALUE for this class.
    */
   private TimeOfDayValue() {
-    hashCode = 0;
+    millisOfDay = 0;
   }
 
   /**
@@ -121,10 +107,7 @@ public class TimeOfDayValue extends Value {
           + milliseconds);
     }
     // Assign internal variables.
-    this.hours = hours;
-    this.minutes = minutes;
-    this.seconds = seconds;
-    this.milliseconds = milliseconds;
+    this.millisOfDay = toMillisOfDay(hours, minutes, seconds, milliseconds);
   }
 
   /**
@@ -142,14 +125,27 @@ public class TimeOfDayValue extends Value {
    *     to GMT.
    */
   public TimeOfDayValue(GregorianCalendar calendar) {
-    if (!calendar.getTimeZone().equals(TimeZone.getTimeZone("GMT"))) {
+    if (!calendar.getTimeZone().equals(GMT)) {
       throw new IllegalArgumentException(
           "Can't create TimeOfDayValue from GregorianCalendar that is not GMT.");
     }
-    this.hours = calendar.get(GregorianCalendar.HOUR_OF_DAY);
-    this.minutes = calendar.get(GregorianCalendar.MINUTE);
-    this.seconds = calendar.get(GregorianCalendar.SECOND);
-    this.milliseconds = calendar.get(GregorianCalendar.MILLISECOND);
+    this.millisOfDay = toMillisOfDay(calendar.get(GregorianCalendar.HOUR_OF_DAY),
+        calendar.get(GregorianCalendar.MINUTE), calendar.get(GregorianCalendar.SECOND),
+        calendar.get(GregorianCalendar.MILLISECOND));
+  }
+
+  /**
+   * Returns the number of milliseconds since midnight of a time of day.
+   *
+   * @param hours The hours.
+   * @param minutes The minutes.
+   * @param seconds The seconds.
+   * @param milliseconds The milliseconds.
+   *
+   * @return The number of milliseconds since midnight.
+   */
+  private static int toMillisOfDay(int hours, int minutes, int seconds, int milliseconds) {
+    return (((hours * 60) + minutes) * 60 + seconds) * 1000 + milliseconds;
   }
 
   @Override
@@ -167,10 +163,10 @@ public class TimeOfDayValue extends Value {
     if (this == NULL_VALUE) {
       return "null";
     }
-   String result = String.format("%1$02d:%2$02d:%3$02d", hours, minutes,
-       seconds);
-    if (milliseconds > 0) {
-      result += "." + String.format("%1$3d", milliseconds);
+   String result = String.format("%1$02d:%2$02d:%3$02d", getHours(), getMinutes(),
+       getSeconds());
+    if (getMilliseconds() > 0) {
+      result += "." + String.format("%1$3d", getMilliseconds());
     }
     return result;
   }
@@ -204,48 +200,19 @@ public class TimeOfDayValue extends Value {
     if (otherTimeOfDay.isNull()) {
       return 1;
     }
-    // Compare hours.
-    if (this.hours > otherTimeOfDay.hours) {
-      return 1;
-    } else if (this.hours < otherTimeOfDay.hours) {
-      return -1;
-    }
-    // Compare minutes.
-    if (this.minutes > otherTimeOfDay.minutes) {
-      return 1;
-    } else if (this.minutes < otherTimeOfDay.minutes) {
-      return -1;
-    }
-    // Compare seconds.
-    if (this.seconds > otherTimeOfDay.seconds) {
-      return 1;
-    } else if (this.seconds < otherTimeOfDay.seconds) {
-      return -1;
-    }
-    // Compare milliseconds.
-    if (this.milliseconds > otherTimeOfDay.milliseconds) {
-      return 1;
-    } else if (this.milliseconds < otherTimeOfDay.milliseconds) {
-      return -1;
-    }
-    // Equal Values.
-    return 0;
+    return (millisOfDay < otherTimeOfDay.millisOfDay) ? -1
+        : ((millisOfDay == otherTimeOfDay.millisOfDay) ? 0 : 1);
   }
 
 
   @Override
   public int hashCode() {
-    if (null != hashCode) {
-      return hashCode;
+    // The hashCode of NULL_VALUE is zero.
+    if (isNull()) {
+      return 0;
     }
-    // Compute and store hashCode for this TimeOfDayValue - done only once.
     int hash = 1193; // Some arbitrary prime number.
-    hash = (hash * 13) + hours;
-    hash = (hash * 13) + minutes;
-    hash = (hash * 13) + seconds;
-    hash = (hash * 13) + milliseconds;
-    hashCode = hash;
-    return hashCode;
+    return (hash * 13) + millisOfDay;
   }
 
   /**
@@ -265,10 +232,10 @@ public class TimeOfDayValue extends Value {
     cal.set(Calendar.MONTH, Calendar.DECEMBER);
     cal.set(Calendar.DAY_OF_MONTH, 30);
     // Set the TimeOfDay based on this TimeOfDayValue.
-    cal.set(Calendar.HOUR_OF_DAY, hours);
-    cal.set(Calendar.MINUTE, minutes);
-    cal.set(Calendar.SECOND, seconds);
-    cal.set(Calendar.MILLISECOND, milliseconds);
+    cal.set(Calendar.HOUR_OF_DAY, getHours());
+    cal.set(Calendar.MINUTE, getMinutes());
+    cal.set(Calendar.SECOND, getSeconds());
+    cal.set(Calendar.MILLISECOND, getMilliseconds());
 
     return cal;
   }
@@ -284,7 +251,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return hours;
+    return millisOfDay / (60 * 60 * 1000);
   }
 
   /**
@@ -298,7 +265,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return minutes;
+    return (millisOfDay / (60 * 1000)) % 60;
   }
 
   /**
@@ -312,7 +279,7 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return seconds;
+    return (millisOfDay / 1000) % 60;
   }
 
   /**
@@ -326,7 +293,21 @@ public class TimeOfDayValue extends Value {
     if (isNull()) {
       throw new NullValueException("This object is null");
     }
-    return milliseconds;
+    return millisOfDay % 1000;
+  }
+
+  /**
+   * Returns the number of milliseconds since midnight.
+   *
+   * @return The number of milliseconds since midnight.
+   *
+   * @throws NullValueException Thrown when this Value is NULL_VALUE.
+   */
+  public int getMillisOfDay() {
+    if (isNull()) {
+      throw new NullValueException("This object is null");
+    }
+    return millisOfDay;
   }
 
   /**
@@ -334,7 +315,8 @@ public class TimeOfDayValue extends Value {
    */
   @Override
   protected String innerToQueryString() {
-    String s = "TIMEOFDAY '" + hours + ":" + minutes + ":" + seconds;
+    String s = "TIMEOFDAY '" + getHours() + ":" + getMinutes() + ":" + getSeconds();
+    int milliseconds = getMilliseconds();
     if (milliseconds != 0) {
       s += "." + milliseconds;
     }
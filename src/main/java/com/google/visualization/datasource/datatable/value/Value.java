@@ -53,6 +53,10 @@ public abstract class Value implements Comparable<Value> {
    */
   @Override
   public boolean equals(Object o) {
+    if (this == o) {
+      // Interned values are often compared with themselves.
+      return true;
+    }
     if ((null == o) || (this.getClass() != o.getClass())) {
       return false;
     }
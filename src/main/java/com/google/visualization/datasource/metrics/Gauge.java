@@ -0,0 +1,30 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+/**
+ * A value that is read when the metrics are reported, e.g., the number of entries of a cache.
+ * Implementations must be thread safe. This interface is also the management interface of the
+ * gauge.
+ */
+public interface Gauge {
+
+  /**
+   * Returns the current value.
+   *
+   * @return The current value.
+   */
+  long getValue();
+}
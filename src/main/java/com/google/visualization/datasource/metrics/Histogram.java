@@ -0,0 +1,184 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A distribution of non-negative values, e.g., of latencies, with percentiles. Thread safe, and
+ * recording a value does not lock or allocate.
+ *
+ * The values are counted in buckets on a logarithmic scale: values below 8 have a bucket each,
+ * and every power of two above is split into 8 buckets. A percentile is reported as the largest
+ * value of its bucket, so it is at most 12.5% above the exact percentile (and never above the
+ * maximum).
+ */
+public class Histogram implements HistogramMBean {
+
+  /**
+   * The number of buckets each power of two is split into, as a power of two.
+   */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /**
+   * The number of buckets each power of two is split into.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The number of buckets, enough for all the non-negative long values.
+   */
+  private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /**
+   * The number of values in each bucket.
+   */
+  private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+  /**
+   * The number of recorded values.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * The sum of the recorded values.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The maximal recorded value.
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   *
+   * @param value The value.
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    buckets.incrementAndGet(getBucket(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax = max.get();
+    while ((value > currentMax) && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  @Override
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   *
+   * @return The sum.
+   */
+  public long getSum() {
+    return sum.get();
+  }
+
+  @Override
+  public double getMean() {
+    long currentCount = count.get();
+    return (currentCount == 0) ? 0 : ((double) sum.get() / currentCount);
+  }
+
+  @Override
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns a percentile of the recorded values: the smallest value such that at least the given
+   * fraction of the values are less or equal to it, rounded up to the largest value of its bucket.
+   *
+   * @param quantile The fraction of the values, between 0 and 1.
+   *
+   * @return The percentile, or 0 if no value was recorded.
+   */
+  public long getPercentile(double quantile) {
+    long total = 0;
+    long[] counts = new long[NUMBER_OF_BUCKETS];
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(getBucketMaxValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  @Override
+  public long get50thPercentile() {
+    return getPercentile(0.5);
+  }
+
+  @Override
+  public long get95thPercentile() {
+    return getPercentile(0.95);
+  }
+
+  @Override
+  public long get99thPercentile() {
+    return getPercentile(0.99);
+  }
+
+  /**
+   * Returns the bucket of a value.
+   *
+   * @param value The value, not negative.
+   *
+   * @return The index of the bucket.
+   */
+  /* package */ static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + subBucket;
+  }
+
+  /**
+   * Returns the largest value of a bucket.
+   *
+   * @param bucket The index of the bucket.
+   *
+   * @return The largest value.
+   */
+  /* package */ static long getBucketMaxValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+    long minValue = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    return minValue + (bucketWidth - 1);
+  }
+}
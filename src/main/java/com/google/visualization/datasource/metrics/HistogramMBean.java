@@ -0,0 +1,63 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+/**
+ * The management interface of a {@link Histogram}.
+ */
+public interface HistogramMBean {
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return The number of recorded values.
+   */
+  long getCount();
+
+  /**
+   * Returns the mean of the recorded values.
+   *
+   * @return The mean, or 0 if no value was recorded.
+   */
+  double getMean();
+
+  /**
+   * Returns the maximal recorded value.
+   *
+   * @return The maximal value, or 0 if no value was recorded.
+   */
+  long getMax();
+
+  /**
+   * Returns the median of the recorded values.
+   *
+   * @return The median.
+   */
+  long get50thPercentile();
+
+  /**
+   * Returns the 95th percentile of the recorded values.
+   *
+   * @return The 95th percentile.
+   */
+  long get95thPercentile();
+
+  /**
+   * Returns the 99th percentile of the recorded values.
+   *
+   * @return The 99th percentile.
+   */
+  long get99thPercentile();
+}
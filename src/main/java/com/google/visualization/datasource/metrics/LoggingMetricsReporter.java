@@ -0,0 +1,53 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Reports metrics to the log of the data source library, a line per metric at the info level.
+ */
+public class LoggingMetricsReporter implements MetricsReporter {
+
+  /**
+   * The log.
+   */
+  private static final Log log = LogFactory.getLog(LoggingMetricsReporter.class.getName());
+
+  @Override
+  public void report(SortedMap<MetricName, Counter> counters,
+      SortedMap<MetricName, Histogram> histograms, SortedMap<MetricName, Gauge> gauges) {
+    if (!log.isInfoEnabled()) {
+      return;
+    }
+    for (Map.Entry<MetricName, Counter> entry : counters.entrySet()) {
+      log.info(entry.getKey() + " count=" + entry.getValue().getCount());
+    }
+    for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
+      Histogram histogram = entry.getValue();
+      log.info(entry.getKey() + " count=" + histogram.getCount()
+          + " mean=" + histogram.getMean() + " p50=" + histogram.get50thPercentile()
+          + " p95=" + histogram.get95thPercentile() + " p99=" + histogram.get99thPercentile()
+          + " max=" + histogram.getMax());
+    }
+    for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
+      log.info(entry.getKey() + " value=" + entry.getValue().getValue());
+    }
+  }
+}
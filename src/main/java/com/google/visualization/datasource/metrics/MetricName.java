@@ -0,0 +1,141 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The name of a metric, made of a name and a set of labels, e.g., the data source and the
+ * output type of the requests that the metric measures. Metrics with the same name and
+ * different labels are distinct.
+ */
+public class MetricName implements Comparable<MetricName> {
+
+  /**
+   * The name.
+   */
+  private final String name;
+
+  /**
+   * The labels, sorted by the label names.
+   */
+  private final SortedMap<String, String> labels;
+
+  /**
+   * The string representation, e.g., datasource.requests{dataSource=Foo,outputType=json}.
+   */
+  private final String string;
+
+  /**
+   * Creates a new metric name.
+   *
+   * @param name The name.
+   * @param labelNamesAndValues The names of the labels, each followed by its value.
+   *
+   * @throws IllegalArgumentException Thrown if a label has no value.
+   */
+  public MetricName(String name, String... labelNamesAndValues) {
+    if ((labelNamesAndValues.length % 2) != 0) {
+      throw new IllegalArgumentException("A label has no value: " + name);
+    }
+    SortedMap<String, String> labelMap = Maps.newTreeMap();
+    for (int i = 0; i < labelNamesAndValues.length; i += 2) {
+      labelMap.put(labelNamesAndValues[i], String.valueOf(labelNamesAndValues[i + 1]));
+    }
+    this.name = name;
+    this.labels = ImmutableSortedMap.copyOfSorted(labelMap);
+    StringBuilder builder = new StringBuilder(name);
+    if (!labels.isEmpty()) {
+      builder.append('{');
+      for (Map.Entry<String, String> label : labels.entrySet()) {
+        if (builder.charAt(builder.length() - 1) != '{') {
+          builder.append(',');
+        }
+        builder.append(label.getKey()).append('=').append(label.getValue());
+      }
+      builder.append('}');
+    }
+    this.string = builder.toString();
+  }
+
+  /**
+   * Returns the name.
+   *
+   * @return The name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the labels, by their names.
+   *
+   * @return The labels.
+   */
+  public SortedMap<String, String> getLabels() {
+    return labels;
+  }
+
+  /**
+   * Returns a new metric name with the same name and labels as this one, and an added label.
+   *
+   * @param labelName The name of the added label.
+   * @param labelValue The value of the added label.
+   *
+   * @return The new metric name.
+   */
+  public MetricName withLabel(String labelName, String labelValue) {
+    String[] labelNamesAndValues = new String[2 * (labels.size() + 1)];
+    int i = 0;
+    for (Map.Entry<String, String> label : labels.entrySet()) {
+      labelNamesAndValues[i++] = label.getKey();
+      labelNamesAndValues[i++] = label.getValue();
+    }
+    labelNamesAndValues[i++] = labelName;
+    labelNamesAndValues[i] = labelValue;
+    return new MetricName(name, labelNamesAndValues);
+  }
+
+  @Override
+  public int compareTo(MetricName other) {
+    return string.compareTo(other.string);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MetricName)) {
+      return false;
+    }
+    MetricName other = (MetricName) obj;
+    return name.equals(other.name) && labels.equals(other.labels);
+  }
+
+  @Override
+  public int hashCode() {
+    return (31 * name.hashCode()) + labels.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return string;
+  }
+}
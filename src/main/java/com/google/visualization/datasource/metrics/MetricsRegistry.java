@@ -0,0 +1,253 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+import com.google.common.collect.Sets;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * A registry of metrics: counters, histograms and gauges, by their names. Metrics are created
+ * on their first use, and live as long as the registry. Thread safe.
+ *
+ * The metrics can be reported by a {@link MetricsReporter}, and exported as JMX MBeans, see
+ * {@link #registerMBeans(MBeanServer, String)}. Metrics that are created after the MBeans are
+ * registered are registered as well.
+ *
+ * The data source request flow records its metrics into a registry, see
+ * {@link RequestMetrics}.
+ */
+public class MetricsRegistry {
+
+  /**
+   * The log.
+   */
+  private static final Log log = LogFactory.getLog(MetricsRegistry.class.getName());
+
+  /**
+   * The counters.
+   */
+  private final ConcurrentMap<MetricName, Counter> counters =
+      new ConcurrentHashMap<MetricName, Counter>();
+
+  /**
+   * The histograms.
+   */
+  private final ConcurrentMap<MetricName, Histogram> histograms =
+      new ConcurrentHashMap<MetricName, Histogram>();
+
+  /**
+   * The gauges.
+   */
+  private final ConcurrentMap<MetricName, Gauge> gauges =
+      new ConcurrentHashMap<MetricName, Gauge>();
+
+  /**
+   * The MBean server the metrics are registered with, or null if they are not.
+   */
+  private MBeanServer mBeanServer = null;
+
+  /**
+   * The domain of the names of the MBeans.
+   */
+  private String jmxDomain = null;
+
+  /**
+   * The names of the registered MBeans.
+   */
+  private final Set<ObjectName> registeredMBeans = Sets.newHashSet();
+
+  /**
+   * Returns the counter with the given name, creating it if needed.
+   *
+   * @param name The name.
+   *
+   * @return The counter.
+   */
+  public Counter getCounter(MetricName name) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      Counter newCounter = new Counter();
+      counter = counters.putIfAbsent(name, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+        registerMBean("Counter", name, counter, CounterMBean.class);
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it if needed.
+   *
+   * @param name The name.
+   *
+   * @return The histogram.
+   */
+  public Histogram getHistogram(MetricName name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      Histogram newHistogram = new Histogram();
+      histogram = histograms.putIfAbsent(name, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+        registerMBean("Histogram", name, histogram, HistogramMBean.class);
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Registers a gauge.
+   *
+   * @param name The name.
+   * @param gauge The gauge.
+   *
+   * @throws IllegalArgumentException Thrown if a gauge with the same name is registered.
+   */
+  public void registerGauge(MetricName name, Gauge gauge) {
+    if (gauges.putIfAbsent(name, gauge) != null) {
+      throw new IllegalArgumentException("A gauge is already registered: " + name);
+    }
+    registerMBean("Gauge", name, gauge, Gauge.class);
+  }
+
+  /**
+   * Reports all the metrics.
+   *
+   * @param reporter The reporter.
+   */
+  public void report(MetricsReporter reporter) {
+    reporter.report(new TreeMap<MetricName, Counter>(counters),
+        new TreeMap<MetricName, Histogram>(histograms), new TreeMap<MetricName, Gauge>(gauges));
+  }
+
+  /**
+   * Registers all the metrics, and the metrics created later, as MBeans. The object name of an
+   * MBean is made of the domain, the type of the metric (Counter, Histogram or Gauge), the name
+   * of the metric, and its labels, e.g.,
+   * {@code com.example:type=Counter,name=datasource.requests,dataSource=Foo,outputType=json}.
+   * Metrics that fail to register are logged and skipped.
+   *
+   * @param server The MBean server.
+   * @param domain The domain of the object names.
+   */
+  public synchronized void registerMBeans(MBeanServer server, String domain) {
+    unregisterMBeans();
+    mBeanServer = server;
+    jmxDomain = domain;
+    for (Map.Entry<MetricName, Counter> entry : counters.entrySet()) {
+      registerMBean("Counter", entry.getKey(), entry.getValue(), CounterMBean.class);
+    }
+    for (Map.Entry<MetricName, Histogram> entry : histograms.entrySet()) {
+      registerMBean("Histogram", entry.getKey(), entry.getValue(), HistogramMBean.class);
+    }
+    for (Map.Entry<MetricName, Gauge> entry : gauges.entrySet()) {
+      registerMBean("Gauge", entry.getKey(), entry.getValue(), Gauge.class);
+    }
+  }
+
+  /**
+   * Unregisters the MBeans of the metrics, if they are registered.
+   */
+  public synchronized void unregisterMBeans() {
+    for (ObjectName objectName : registeredMBeans) {
+      try {
+        mBeanServer.unregisterMBean(objectName);
+      } catch (JMException e) {
+        log.warn("Cannot unregister the MBean " + objectName, e);
+      }
+    }
+    registeredMBeans.clear();
+    mBeanServer = null;
+    jmxDomain = null;
+  }
+
+  /**
+   * Returns the object name of the MBean of a metric.
+   *
+   * @param domain The domain.
+   * @param type The type of the metric.
+   * @param name The name of the metric.
+   *
+   * @return The object name.
+   *
+   * @throws JMException Thrown if the name is not a valid object name.
+   */
+  /* package */ static ObjectName getObjectName(String domain, String type, MetricName name)
+      throws JMException {
+    StringBuilder objectName = new StringBuilder(domain);
+    objectName.append(":type=").append(type).append(",name=").append(quote(name.getName()));
+    for (Map.Entry<String, String> label : name.getLabels().entrySet()) {
+      objectName.append(',').append(label.getKey()).append('=').append(quote(label.getValue()));
+    }
+    return new ObjectName(objectName.toString());
+  }
+
+  /**
+   * Registers the MBean of a metric if the metrics are registered with an MBean server.
+   *
+   * @param type The type of the metric.
+   * @param name The name of the metric.
+   * @param metric The metric.
+   * @param mBeanInterface The management interface of the metric.
+   */
+  private synchronized <T> void registerMBean(String type, MetricName name, T metric,
+      Class<T> mBeanInterface) {
+    if (mBeanServer == null) {
+      return;
+    }
+    try {
+      ObjectName objectName = getObjectName(jmxDomain, type, name);
+      if (!registeredMBeans.contains(objectName)) {
+        mBeanServer.registerMBean(new StandardMBean(metric, mBeanInterface), objectName);
+        registeredMBeans.add(objectName);
+      }
+    } catch (JMException e) {
+      log.warn("Cannot register the MBean of " + name, e);
+    }
+  }
+
+  /**
+   * Quotes a value of an object name if it has characters that are not allowed unquoted.
+   *
+   * @param value The value.
+   *
+   * @return The value, quoted if needed.
+   */
+  private static String quote(String value) {
+    if (value.length() == 0) {
+      return ObjectName.quote(value);
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (",=:\"*?\n".indexOf(value.charAt(i)) >= 0) {
+        return ObjectName.quote(value);
+      }
+    }
+    return value;
+  }
+}
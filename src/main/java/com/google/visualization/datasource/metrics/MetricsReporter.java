@@ -0,0 +1,35 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+import java.util.SortedMap;
+
+/**
+ * Reports the metrics of a {@link MetricsRegistry}, e.g., to a log or to a monitoring system.
+ * See {@link MetricsRegistry#report(MetricsReporter)}; reports are typically made periodically,
+ * by a scheduled task of the application.
+ */
+public interface MetricsReporter {
+
+  /**
+   * Reports the metrics. The metrics are live, and may change while they are reported.
+   *
+   * @param counters The counters, by name.
+   * @param histograms The histograms, by name.
+   * @param gauges The gauges, by name.
+   */
+  void report(SortedMap<MetricName, Counter> counters,
+      SortedMap<MetricName, Histogram> histograms, SortedMap<MetricName, Gauge> gauges);
+}
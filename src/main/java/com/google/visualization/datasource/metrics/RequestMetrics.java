@@ -0,0 +1,195 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.metrics;
+
+/**
+ * Records the metrics of a data source request into a {@link MetricsRegistry}, labelled by the
+ * data source and the output type of the request. A request is made of stages (parsing the
+ * request, splitting the query, generating the data table, each stage of the query engine,
+ * rendering and writing the response); for each stage, the latency is recorded in a histogram,
+ * in microseconds, and the number of rows it output is added to a counter.
+ *
+ * An instance without a registry records nothing, so that the request flow does not need to
+ * check whether metrics are enabled. Not thread safe: an instance is used by one request.
+ */
+public class RequestMetrics {
+
+  /**
+   * The name of the counter of requests.
+   */
+  public static final String REQUESTS = "datasource.requests";
+
+  /**
+   * The name of the counter of requests that failed.
+   */
+  public static final String ERRORS = "datasource.errors";
+
+  /**
+   * The name of the counter of requests that were rejected because the data source was
+   * saturated, see {@link com.google.visualization.datasource.RequestExecutor}.
+   */
+  public static final String REJECTED = "datasource.rejected";
+
+  /**
+   * The name of the counter of requests that timed out before the data source started to
+   * respond, see {@link com.google.visualization.datasource.RequestExecutor}.
+   */
+  public static final String TIMEOUTS = "datasource.timeouts";
+
+  /**
+   * The name of the counter of requests that were answered from the query result cache.
+   */
+  public static final String CACHE_HITS = "datasource.cache.hits";
+
+  /**
+   * The name of the histograms of the latencies of the stages, in microseconds.
+   */
+  public static final String STAGE_LATENCY = "datasource.stage.latency";
+
+  /**
+   * The name of the counters of the rows output by the stages.
+   */
+  public static final String STAGE_ROWS = "datasource.stage.rows";
+
+  /**
+   * The name of the counter of the bytes of the responses.
+   */
+  public static final String RESPONSE_BYTES = "datasource.response.bytes";
+
+  /**
+   * The name of the data source label.
+   */
+  public static final String DATA_SOURCE_LABEL = "dataSource";
+
+  /**
+   * The name of the output type label.
+   */
+  public static final String OUTPUT_TYPE_LABEL = "outputType";
+
+  /**
+   * The name of the stage label.
+   */
+  public static final String STAGE_LABEL = "stage";
+
+  /**
+   * An instance that records nothing.
+   */
+  public static final RequestMetrics NONE = new RequestMetrics(null, "");
+
+  /**
+   * The registry, or null to record nothing.
+   */
+  private final MetricsRegistry registry;
+
+  /**
+   * The data source label.
+   */
+  private final String dataSource;
+
+  /**
+   * The output type label. Unknown until the request is parsed.
+   */
+  private String outputType = "unknown";
+
+  /**
+   * Creates a new instance.
+   *
+   * @param registry The registry, or null to record nothing.
+   * @param dataSource The name of the data source, e.g., the name of the data table generator
+   *     class.
+   */
+  public RequestMetrics(MetricsRegistry registry, String dataSource) {
+    this.registry = registry;
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Sets the output type of the request, that labels the metrics recorded from now on.
+   *
+   * @param outputType The code of the output type, e.g., json.
+   */
+  public void setOutputType(String outputType) {
+    this.outputType = outputType;
+  }
+
+  /**
+   * Returns whether this instance records metrics.
+   *
+   * @return True if this instance records metrics.
+   */
+  public boolean isEnabled() {
+    return (registry != null);
+  }
+
+  /**
+   * Records the latency of a stage.
+   *
+   * @param stage The name of the stage.
+   * @param startTime The value of {@link System#nanoTime()} at the start of the stage.
+   */
+  public void recordStage(String stage, long startTime) {
+    if (registry == null) {
+      return;
+    }
+    long micros = (System.nanoTime() - startTime) / 1000;
+    registry.getHistogram(getName(STAGE_LATENCY).withLabel(STAGE_LABEL, stage)).record(micros);
+  }
+
+  /**
+   * Records the latency of a stage, and the number of rows it output.
+   *
+   * @param stage The name of the stage.
+   * @param startTime The value of {@link System#nanoTime()} at the start of the stage.
+   * @param numberOfRows The number of rows output by the stage.
+   */
+  public void recordStage(String stage, long startTime, int numberOfRows) {
+    if (registry == null) {
+      return;
+    }
+    recordStage(stage, startTime);
+    registry.getCounter(getName(STAGE_ROWS).withLabel(STAGE_LABEL, stage)).add(numberOfRows);
+  }
+
+  /**
+   * Adds one to a counter of requests, e.g., REQUESTS or ERRORS.
+   *
+   * @param counterName The name of the counter.
+   */
+  public void increment(String counterName) {
+    if (registry != null) {
+      registry.getCounter(getName(counterName)).increment();
+    }
+  }
+
+  /**
+   * Returns the counter of the bytes of the responses of the data source and output type.
+   *
+   * @return The counter, or null if this instance records nothing.
+   */
+  public Counter getResponseBytesCounter() {
+    return (registry == null) ? null : registry.getCounter(getName(RESPONSE_BYTES));
+  }
+
+  /**
+   * Returns a metric name with the labels of the request.
+   *
+   * @param name The name.
+   *
+   * @return The metric name.
+   */
+  private MetricName getName(String name) {
+    return new MetricName(name, DATA_SOURCE_LABEL, dataSource, OUTPUT_TYPE_LABEL, outputType);
+  }
+}
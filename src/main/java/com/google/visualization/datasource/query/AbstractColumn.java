@@ -76,7 +76,7 @@ public abstract class AbstractColumn {
    */
   public TableCell getCell(ColumnLookup lookup, TableRow row) {
     int columnIndex = lookup.getColumnIndex(this);
-    return row.getCells().get(columnIndex);
+    return row.getCell(columnIndex);
   }
 
   /**
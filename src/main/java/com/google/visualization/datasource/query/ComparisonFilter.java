@@ -104,30 +104,171 @@ public abstract class ComparisonFilter extends QueryFilter {
   }
 
   /**
-   * Returns true if s1 is "like" s2, in the sql-sense, i.e., if s2 has any
-   * %'s or _'s, they are treated as special characters corresponding to an
-   * arbitrary sequence of characters in s1 or to an abitrary character in s1
-   * respectively. All other characters in s2 need to match exactly to
-   * characters in s1. You cannot escape these characters, so that you cannot
-   * match an explicit '%' or '_'.
-   * @param s1 The first string.
-   * @param s2 The second string.
-   * @return True if s1 is "like" s2, in the sql-sense.
+   * The compiled form of the last LIKE or MATCHES pattern this filter was evaluated with. In a
+   * filter that compares a column with a constant the pattern is always the same, so it is
+   * compiled only once. Volatile, so that a filter can be shared between threads.
    */
-  private boolean isLike(String s1, String s2) {
-    StringTokenizer tokenizer = new StringTokenizer(s2, "%_", true);
-    StringBuilder regexp = new StringBuilder();
-    while (tokenizer.hasMoreTokens()) {
-      String s = tokenizer.nextToken();
-      if (s.equals("%")) {
-        regexp.append(".*");
-      } else if (s.equals("_")) {
-        regexp.append(".");
-      } else {
-        regexp.append(Pattern.quote(s));
+  private volatile StringPattern compiledPattern;
+
+  /**
+   * Returns the compiled form of the given LIKE or MATCHES pattern, reusing the last compiled
+   * pattern if it is the same.
+   *
+   * @param pattern The pattern.
+   *
+   * @return The compiled pattern.
+   */
+  private StringPattern getCompiledPattern(String pattern) {
+    StringPattern compiled = compiledPattern;
+    if ((compiled == null) || !compiled.source.equals(pattern)) {
+      compiled = (operator == Operator.LIKE) ? StringPattern.compileLike(pattern)
+          : StringPattern.compileRegex(pattern);
+      compiledPattern = compiled;
+    }
+    return compiled;
+  }
+
+  /**
+   * A LIKE or MATCHES pattern compiled for repeated matching. LIKE patterns whose only special
+   * characters are a leading or a trailing '%' are matched without regular expressions.
+   */
+  private static final class StringPattern {
+
+    /**
+     * The kinds of matching done by a compiled pattern.
+     */
+    private static enum Kind {
+      ALL, NONE, EQUALS, STARTS_WITH, ENDS_WITH, CONTAINS, REGEX
+    }
+
+    /**
+     * The pattern this was compiled from.
+     */
+    private final String source;
+
+    /**
+     * The kind of matching.
+     */
+    private final Kind kind;
+
+    /**
+     * The literal to compare with, for the kinds that do not use a regular expression.
+     */
+    private final String literal;
+
+    /**
+     * The regular expression, for the REGEX kind.
+     */
+    private final Pattern regex;
+
+    /**
+     * Creates a new StringPattern.
+     *
+     * @param source The pattern this was compiled from.
+     * @param kind The kind of matching.
+     * @param literal The literal, or null.
+     * @param regex The regular expression, or null.
+     */
+    private StringPattern(String source, Kind kind, String literal, Pattern regex) {
+      this.source = source;
+      this.kind = kind;
+      this.literal = literal;
+      this.regex = regex;
+    }
+
+    /**
+     * Compiles a MATCHES pattern, which is a regular expression. An illegal regular expression
+     * matches nothing.
+     *
+     * @param pattern The regular expression.
+     *
+     * @return The compiled pattern.
+     */
+    static StringPattern compileRegex(String pattern) {
+      try {
+        return new StringPattern(pattern, Kind.REGEX, null, Pattern.compile(pattern));
+      } catch (PatternSyntaxException ex) {
+        return new StringPattern(pattern, Kind.NONE, null, null);
+      }
+    }
+
+    /**
+     * Compiles a LIKE pattern, in the sql-sense, i.e., any %'s or _'s in it are special
+     * characters corresponding to an arbitrary sequence of characters or to an arbitrary
+     * character respectively. All other characters need to match exactly. You cannot escape
+     * these characters, so that you cannot match an explicit '%' or '_'.
+     *
+     * @param pattern The LIKE pattern.
+     *
+     * @return The compiled pattern.
+     */
+    static StringPattern compileLike(String pattern) {
+      int start = 0;
+      int end = pattern.length();
+      boolean leadingPercent = false;
+      boolean trailingPercent = false;
+      while ((start < end) && (pattern.charAt(start) == '%')) {
+        leadingPercent = true;
+        start++;
+      }
+      while ((end > start) && (pattern.charAt(end - 1) == '%')) {
+        trailingPercent = true;
+        end--;
+      }
+      String literal = pattern.substring(start, end);
+      if ((literal.indexOf('%') < 0) && (literal.indexOf('_') < 0)) {
+        Kind kind;
+        if (literal.length() == 0) {
+          kind = leadingPercent ? Kind.ALL : Kind.EQUALS;
+        } else if (leadingPercent) {
+          kind = trailingPercent ? Kind.CONTAINS : Kind.ENDS_WITH;
+        } else {
+          kind = trailingPercent ? Kind.STARTS_WITH : Kind.EQUALS;
+        }
+        return new StringPattern(pattern, kind, literal, null);
+      }
+
+      StringTokenizer tokenizer = new StringTokenizer(pattern, "%_", true);
+      StringBuilder regexp = new StringBuilder();
+      while (tokenizer.hasMoreTokens()) {
+        String s = tokenizer.nextToken();
+        if (s.equals("%")) {
+          regexp.append(".*");
+        } else if (s.equals("_")) {
+          regexp.append(".");
+        } else {
+          regexp.append(Pattern.quote(s));
+        }
+      }
+      return new StringPattern(pattern, Kind.REGEX, null,
+          Pattern.compile(regexp.toString(), Pattern.DOTALL));
+    }
+
+    /**
+     * Returns true if the given string matches this pattern.
+     *
+     * @param s The string.
+     *
+     * @return True if the given string matches this pattern.
+     */
+    boolean matches(String s) {
+      switch (kind) {
+        case ALL:
+          return true;
+        case NONE:
+          return false;
+        case EQUALS:
+          return s.equals(literal);
+        case STARTS_WITH:
+          return s.startsWith(literal);
+        case ENDS_WITH:
+          return s.endsWith(literal);
+        case CONTAINS:
+          return s.contains(literal);
+        default:
+          return regex.matcher(s).matches();
       }
     }
-    return s1.matches(regexp.toString());
   }
 
   /**
@@ -167,13 +308,9 @@ public abstract class ComparisonFilter extends QueryFilter {
       case ENDS_WITH:
         return v1.toString().endsWith(v2.toString());
       case MATCHES:
-        try {
-          return v1.toString().matches(v2.toString());
-        } catch (PatternSyntaxException ex) {
-          return false; // a match against an illegal expression is false
-        }
       case LIKE:
-        return isLike(v1.toString(), v2.toString());
+        // A match against an illegal expression is false.
+        return getCompiledPattern(v2.toString()).matches(v1.toString());
     }
     return false; // should never get here
   }
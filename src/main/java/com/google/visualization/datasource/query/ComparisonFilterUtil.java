@@ -0,0 +1,45 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.query;
+
+import com.google.visualization.datasource.datatable.value.Value;
+
+/**
+ * Evaluates the operators of comparison filters on values that were already obtained, for the
+ * query engine, which reads the values of a filter's columns itself rather than through
+ * {@link QueryFilter#isMatch}.
+ */
+public class ComparisonFilterUtil {
+
+  /**
+   * Private constructor.
+   */
+  private ComparisonFilterUtil() {
+  }
+
+  /**
+   * Matches the given two values against the operator of a filter, as the filter does.
+   *
+   * @param filter The filter.
+   * @param v1 The first value.
+   * @param v2 The second value.
+   *
+   * @return true if v1 op v2, false otherwise.
+   */
+  public static boolean isOperatorMatch(ComparisonFilter filter, Value v1, Value v2) {
+    return filter.isOperatorMatch(v1, v2);
+  }
+}
@@ -60,6 +60,15 @@ public class QueryFormat {
     columnPatterns = Maps.newHashMap();
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query format from which to construct.
+   */
+  public QueryFormat(QueryFormat source) {
+    columnPatterns = Maps.newHashMap(source.columnPatterns);
+  }
+
   /**
    * Adds a column pattern.
    * Validates that the column ID is not already specified.
@@ -41,6 +41,15 @@ public class QueryGroup {
     columns = Lists.newArrayList();
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query group from which to construct.
+   */
+  public QueryGroup(QueryGroup source) {
+    columns = Lists.newArrayList(source.columns);
+  }
+
   /**
    * Add a column to group by.
    *
@@ -56,6 +56,15 @@ public class QueryLabels {
     columnLabels = Maps.newHashMap();
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query labels from which to construct.
+   */
+  public QueryLabels(QueryLabels source) {
+    columnLabels = Maps.newHashMap(source.columnLabels);
+  }
+
   /**
    * Adds a column label.
    * Validates that the column ID is not already specified.
@@ -42,6 +42,16 @@ public class QueryOptions {
     noFormat = false;
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query options from which to construct.
+   */
+  public QueryOptions(QueryOptions source) {
+    noValues = source.noValues;
+    noFormat = source.noFormat;
+  }
+
   /**
    * Returns the value of the noValues option.
    *
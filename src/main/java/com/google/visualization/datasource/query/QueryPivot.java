@@ -40,6 +40,15 @@ public class QueryPivot {
     columns = Lists.newArrayList();
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query pivot from which to construct.
+   */
+  public QueryPivot(QueryPivot source) {
+    columns = Lists.newArrayList(source.columns);
+  }
+
   /**
    * Adds a column to pivot.
    *
@@ -42,6 +42,15 @@ public class QuerySort {
     sortColumns = Lists.newArrayList();
   }
 
+  /**
+   * Copy constructor.
+   *
+   * @param source The source query sort from which to construct.
+   */
+  public QuerySort(QuerySort source) {
+    sortColumns = Lists.newArrayList(source.sortColumns);
+  }
+
   /**
    * Returns true if the sort list is empty.
    *
@@ -138,7 +138,7 @@ public class ScalarFunctionColumn extends AbstractColumn {
   public TableCell getCell(ColumnLookup lookup, TableRow row) {
     if (lookup.containsColumn(this)) {
       int columnIndex = lookup.getColumnIndex(this);
-      return row.getCells().get(columnIndex);
+      return row.getCell(columnIndex);
     }
     // If the given column lookup does not contain this column, get the inner
     // column values of this column and use them as parameters to evaluate the
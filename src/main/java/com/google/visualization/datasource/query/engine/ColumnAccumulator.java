@@ -0,0 +1,393 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates the values of a single column for all the groups of a {@link GroupAggregator},
+ * in arrays indexed by group id. The values are read from a {@link ValueSource}, by row index.
+ * Numbers are aggregated into primitive arrays, and the minimum and maximum of other types are
+ * kept as the rows that hold them, so aggregating a row does not allocate anything.
+ *
+ * The aggregated values are the same as the ones returned by {@link ValueAggregator}.
+ */
+/* package */ abstract class ColumnAccumulator {
+
+  /**
+   * The initial capacity of the per group arrays.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The source of the column values.
+   */
+  protected final ValueSource source;
+
+  /**
+   * The type of the column.
+   */
+  protected final ValueType valueType;
+
+  /**
+   * Whether the minimum is required.
+   */
+  protected boolean isMinRequired;
+
+  /**
+   * Whether the maximum is required.
+   */
+  protected boolean isMaxRequired;
+
+  /**
+   * The number of non-null values of each group.
+   */
+  protected int[] counts = new int[INITIAL_CAPACITY];
+
+  /**
+   * Creates a new ColumnAccumulator.
+   *
+   * @param source The source of the column values.
+   * @param valueType The type of the column.
+   */
+  protected ColumnAccumulator(ValueSource source, ValueType valueType) {
+    this.source = source;
+    this.valueType = valueType;
+  }
+
+  /**
+   * Creates an accumulator for a column.
+   *
+   * @param source The source of the column values.
+   * @param valueType The type of the column.
+   *
+   * @return An accumulator for the column.
+   */
+  static ColumnAccumulator create(ValueSource source, ValueType valueType) {
+    if (valueType == ValueType.NUMBER) {
+      return new NumberAccumulator(source);
+    }
+    return new RowAccumulator(source, valueType);
+  }
+
+  /**
+   * Marks an aggregation type as one that will be requested.
+   *
+   * @param type The aggregation type.
+   */
+  void require(AggregationType type) {
+    if (type == AggregationType.MIN) {
+      isMinRequired = true;
+    } else if (type == AggregationType.MAX) {
+      isMaxRequired = true;
+    }
+  }
+
+  /**
+   * Aggregates the value of the column in a row into a group.
+   *
+   * @param groupId The group id.
+   * @param row The row index.
+   */
+  void aggregate(int groupId, int row) {
+    if (!source.isNull(row)) {
+      aggregate(groupId, row, ++counts[groupId] == 1);
+    }
+  }
+
+  /**
+   * Makes sure the per group arrays can hold the given number of groups.
+   *
+   * @param numberOfGroups The number of groups.
+   */
+  void ensureCapacity(int numberOfGroups) {
+    if (numberOfGroups > counts.length) {
+      grow(Math.max(numberOfGroups, counts.length * 2));
+    }
+  }
+
+  /**
+   * Adds the aggregated values of a group of another accumulator of the same column, of other
+   * rows, to a group of this one.
+   *
+   * @param groupId The group id in this accumulator.
+   * @param other The other accumulator.
+   * @param otherGroupId The group id in the other accumulator.
+   */
+  void merge(int groupId, ColumnAccumulator other, int otherGroupId) {
+    int otherCount = other.counts[otherGroupId];
+    if (otherCount != 0) {
+      boolean isFirst = (counts[groupId] == 0);
+      counts[groupId] += otherCount;
+      merge(groupId, other, otherGroupId, isFirst);
+    }
+  }
+
+  /**
+   * Grows the per group arrays to the given capacity.
+   *
+   * @param capacity The new capacity.
+   */
+  protected void grow(int capacity) {
+    counts = Arrays.copyOf(counts, capacity);
+  }
+
+  /**
+   * Aggregates the non-null value in a row into a group.
+   *
+   * @param groupId The group id.
+   * @param row The row index.
+   * @param isFirst Whether this is the first non-null value of the group.
+   */
+  protected abstract void aggregate(int groupId, int row, boolean isFirst);
+
+  /**
+   * Adds the sum, minimum and maximum of a group of another accumulator, that has non-null
+   * values, to a group of this one. The counts are already added.
+   *
+   * @param groupId The group id in this accumulator.
+   * @param other The other accumulator, of the same class.
+   * @param otherGroupId The group id in the other accumulator.
+   * @param isFirst Whether the group of this accumulator had no non-null values.
+   */
+  protected abstract void merge(int groupId, ColumnAccumulator other, int otherGroupId,
+      boolean isFirst);
+
+  /**
+   * Returns the minimum or the maximum of a group that has non-null values.
+   *
+   * @param groupId The group id.
+   * @param isMin Whether to return the minimum.
+   *
+   * @return The minimum or the maximum of the group.
+   */
+  protected abstract Value getMinOrMax(int groupId, boolean isMin);
+
+  /**
+   * Returns the sum of a group that has non-null values. Only number columns have sums.
+   *
+   * @param groupId The group id.
+   *
+   * @return The sum of the group.
+   */
+  protected double getSum(int groupId) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns a single aggregation value of a group.
+   * Note: The aggregation of a zero number of non-null values returns a null value for all
+   * aggregation types except for count. The type of the null value is numeric for sum and
+   * average and identical to the column type for min and max.
+   *
+   * @param groupId The group id.
+   * @param type The type of aggregation requested.
+   *
+   * @return The requested value.
+   */
+  Value getValue(int groupId, AggregationType type) {
+    int count = counts[groupId];
+    switch (type) {
+      case AVG:
+        return (count != 0) ? new NumberValue(getSum(groupId) / count)
+            : NumberValue.getNullValue();
+      case COUNT:
+        return new NumberValue(count);
+      case MAX:
+        return (count != 0) ? getMinOrMax(groupId, false)
+            : Value.getNullValueFromValueType(valueType);
+      case MIN:
+        return (count != 0) ? getMinOrMax(groupId, true)
+            : Value.getNullValueFromValueType(valueType);
+      case SUM:
+        return (count != 0) ? new NumberValue(getSum(groupId)) : NumberValue.getNullValue();
+      default:
+        throw new RuntimeException("Invalid AggregationType");
+    }
+  }
+
+  /**
+   * Aggregates a number column into primitive arrays.
+   */
+  private static final class NumberAccumulator extends ColumnAccumulator {
+
+    /**
+     * The sum of each group.
+     */
+    private double[] sums = new double[INITIAL_CAPACITY];
+
+    /**
+     * The minimum of each group, if required.
+     */
+    private double[] mins;
+
+    /**
+     * The maximum of each group, if required.
+     */
+    private double[] maxs;
+
+    /**
+     * Creates a new NumberAccumulator.
+     *
+     * @param source The source of the column values.
+     */
+    NumberAccumulator(ValueSource source) {
+      super(source, ValueType.NUMBER);
+    }
+
+    @Override
+    void require(AggregationType type) {
+      super.require(type);
+      if (isMinRequired && (mins == null)) {
+        mins = new double[counts.length];
+      }
+      if (isMaxRequired && (maxs == null)) {
+        maxs = new double[counts.length];
+      }
+    }
+
+    @Override
+    protected void grow(int capacity) {
+      super.grow(capacity);
+      sums = Arrays.copyOf(sums, capacity);
+      if (mins != null) {
+        mins = Arrays.copyOf(mins, capacity);
+      }
+      if (maxs != null) {
+        maxs = Arrays.copyOf(maxs, capacity);
+      }
+    }
+
+    @Override
+    protected void aggregate(int groupId, int row, boolean isFirst) {
+      double number = source.getDouble(row);
+      sums[groupId] += number;
+      if ((mins != null) && (isFirst || (Double.compare(number, mins[groupId]) < 0))) {
+        mins[groupId] = number;
+      }
+      if ((maxs != null) && (isFirst || (Double.compare(number, maxs[groupId]) > 0))) {
+        maxs[groupId] = number;
+      }
+    }
+
+    @Override
+    protected void merge(int groupId, ColumnAccumulator other, int otherGroupId,
+        boolean isFirst) {
+      NumberAccumulator otherNumbers = (NumberAccumulator) other;
+      sums[groupId] += otherNumbers.sums[otherGroupId];
+      if ((mins != null) && (isFirst
+          || (Double.compare(otherNumbers.mins[otherGroupId], mins[groupId]) < 0))) {
+        mins[groupId] = otherNumbers.mins[otherGroupId];
+      }
+      if ((maxs != null) && (isFirst
+          || (Double.compare(otherNumbers.maxs[otherGroupId], maxs[groupId]) > 0))) {
+        maxs[groupId] = otherNumbers.maxs[otherGroupId];
+      }
+    }
+
+    @Override
+    protected Value getMinOrMax(int groupId, boolean isMin) {
+      return new NumberValue(isMin ? mins[groupId] : maxs[groupId]);
+    }
+
+    @Override
+    protected double getSum(int groupId) {
+      return sums[groupId];
+    }
+  }
+
+  /**
+   * Aggregates a column of any type by keeping the rows of the minimum and maximum values. The
+   * rows of another accumulator that is merged into this one must be read from the same source.
+   */
+  private static final class RowAccumulator extends ColumnAccumulator {
+
+    /**
+     * The row of the minimum of each group, if required.
+     */
+    private int[] minRows;
+
+    /**
+     * The row of the maximum of each group, if required.
+     */
+    private int[] maxRows;
+
+    /**
+     * Creates a new RowAccumulator.
+     *
+     * @param source The source of the column values.
+     * @param valueType The type of the column.
+     */
+    RowAccumulator(ValueSource source, ValueType valueType) {
+      super(source, valueType);
+    }
+
+    @Override
+    void require(AggregationType type) {
+      super.require(type);
+      if (isMinRequired && (minRows == null)) {
+        minRows = new int[counts.length];
+      }
+      if (isMaxRequired && (maxRows == null)) {
+        maxRows = new int[counts.length];
+      }
+    }
+
+    @Override
+    protected void grow(int capacity) {
+      super.grow(capacity);
+      if (minRows != null) {
+        minRows = Arrays.copyOf(minRows, capacity);
+      }
+      if (maxRows != null) {
+        maxRows = Arrays.copyOf(maxRows, capacity);
+      }
+    }
+
+    @Override
+    protected void aggregate(int groupId, int row, boolean isFirst) {
+      if ((minRows != null) && (isFirst || (source.compare(row, minRows[groupId]) < 0))) {
+        minRows[groupId] = row;
+      }
+      if ((maxRows != null) && (isFirst || (source.compare(row, maxRows[groupId]) > 0))) {
+        maxRows[groupId] = row;
+      }
+    }
+
+    @Override
+    protected void merge(int groupId, ColumnAccumulator other, int otherGroupId,
+        boolean isFirst) {
+      RowAccumulator otherRows = (RowAccumulator) other;
+      if ((minRows != null) && (isFirst
+          || (source.compare(otherRows.minRows[otherGroupId], minRows[groupId]) < 0))) {
+        minRows[groupId] = otherRows.minRows[otherGroupId];
+      }
+      if ((maxRows != null) && (isFirst
+          || (source.compare(otherRows.maxRows[otherGroupId], maxRows[groupId]) > 0))) {
+        maxRows[groupId] = otherRows.maxRows[otherGroupId];
+      }
+    }
+
+    @Override
+    protected Value getMinOrMax(int groupId, boolean isMin) {
+      return source.getValue(isMin ? minRows[groupId] : maxRows[groupId]);
+    }
+  }
+}
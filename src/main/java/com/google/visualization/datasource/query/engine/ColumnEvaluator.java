@@ -0,0 +1,272 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.ColumnLookup;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+import com.google.visualization.datasource.query.scalarfunction.BatchScalarFunction;
+import com.google.visualization.datasource.query.scalarfunction.ScalarFunction;
+
+import java.util.List;
+
+/**
+ * Computes the value of an {@link AbstractColumn} in a row, with all the column lookups done
+ * once, when the evaluator is created, instead of on every row.
+ *
+ * An evaluator behaves exactly like {@link AbstractColumn#getValue(ColumnLookup, TableRow)} with
+ * the lookup it was created with: a column that is in the lookup is read from its cell, and a
+ * scalar function column that is not in the lookup is computed from its inner columns.
+ */
+/* package */ abstract class ColumnEvaluator {
+
+  /**
+   * The number of rows evaluated together by {@link #evaluateColumn(List)}, so that the
+   * intermediate columns of nested functions stay small.
+   */
+  /* package */ static final int BATCH_SIZE = 1024;
+
+  /**
+   * Returns the value of the column in the given row.
+   *
+   * @param row The row.
+   *
+   * @return The value of the column in the given row.
+   */
+  public abstract Value getValue(TableRow row);
+
+  /**
+   * Sets the values of the column in the given rows into a result column, so that
+   * <code>result[i]</code> is the value in <code>rows.get(i)</code>. The default implementation
+   * evaluates the rows one at a time.
+   *
+   * @param rows The rows.
+   * @param result The column in which to set the values, at least as long as the rows.
+   */
+  public void evaluate(List<TableRow> rows, Value[] result) {
+    for (int i = 0; i < rows.size(); i++) {
+      result[i] = getValue(rows.get(i));
+    }
+  }
+
+  /**
+   * Returns the values of the column in the given rows, evaluated in batches of rows.
+   *
+   * @param rows The rows.
+   *
+   * @return The values of the column, by row.
+   */
+  public Value[] evaluateColumn(List<TableRow> rows) {
+    int numberOfRows = rows.size();
+    Value[] result = new Value[numberOfRows];
+    if (numberOfRows <= BATCH_SIZE) {
+      evaluate(rows, result);
+      return result;
+    }
+    Value[] batch = new Value[BATCH_SIZE];
+    for (int from = 0; from < numberOfRows; from += BATCH_SIZE) {
+      int to = Math.min(numberOfRows, from + BATCH_SIZE);
+      evaluate(rows.subList(from, to), batch);
+      System.arraycopy(batch, 0, result, from, to - from);
+    }
+    return result;
+  }
+
+  /**
+   * Returns a rough estimate of the relative cost of evaluating this column in a row. Reading a
+   * cell costs 1, and each scalar function adds to that.
+   *
+   * @return The relative cost of evaluating this column.
+   */
+  public abstract int getCost();
+
+  /**
+   * Creates an evaluator for the given column.
+   *
+   * @param column The column.
+   * @param lookup The column lookup of the rows the evaluator will be used on.
+   *
+   * @return An evaluator for the given column.
+   */
+  public static ColumnEvaluator create(AbstractColumn column, ColumnLookup lookup) {
+    if (lookup.containsColumn(column)) {
+      return new CellEvaluator(lookup.getColumnIndex(column));
+    }
+    if (column instanceof ScalarFunctionColumn) {
+      ScalarFunctionColumn scalarFunctionColumn = (ScalarFunctionColumn) column;
+      List<AbstractColumn> innerColumns = scalarFunctionColumn.getColumns();
+      ColumnEvaluator[] arguments = new ColumnEvaluator[innerColumns.size()];
+      for (int i = 0; i < arguments.length; i++) {
+        arguments[i] = create(innerColumns.get(i), lookup);
+      }
+      return new FunctionEvaluator(scalarFunctionColumn.getFunction(), arguments);
+    }
+    return new LookupEvaluator(column, lookup);
+  }
+
+  /**
+   * Reads the value from a cell at a fixed index.
+   */
+  private static class CellEvaluator extends ColumnEvaluator {
+
+    /**
+     * The index of the cell.
+     */
+    private final int index;
+
+    /**
+     * Creates a new CellEvaluator.
+     *
+     * @param index The index of the cell.
+     */
+    CellEvaluator(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Value getValue(TableRow row) {
+      return row.getCell(index).getValue();
+    }
+
+    @Override
+    public void evaluate(List<TableRow> rows, Value[] result) {
+      for (int i = 0; i < rows.size(); i++) {
+        result[i] = rows.get(i).getCell(index).getValue();
+      }
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+
+  /**
+   * Computes a scalar function from the values of its arguments.
+   */
+  private static class FunctionEvaluator extends ColumnEvaluator {
+
+    /**
+     * The scalar function.
+     */
+    private final ScalarFunction function;
+
+    /**
+     * The evaluators of the function arguments.
+     */
+    private final ColumnEvaluator[] arguments;
+
+    /**
+     * The cost of evaluating this function, including its arguments.
+     */
+    private final int cost;
+
+    /**
+     * Creates a new FunctionEvaluator.
+     *
+     * @param function The scalar function.
+     * @param arguments The evaluators of the function arguments.
+     */
+    FunctionEvaluator(ScalarFunction function, ColumnEvaluator[] arguments) {
+      this.function = function;
+      this.arguments = arguments;
+      int argumentsCost = 0;
+      for (ColumnEvaluator argument : arguments) {
+        argumentsCost += argument.getCost();
+      }
+      this.cost = argumentsCost + 2;
+    }
+
+    @Override
+    public Value getValue(TableRow row) {
+      List<Value> values = Lists.newArrayListWithCapacity(arguments.length);
+      for (ColumnEvaluator argument : arguments) {
+        values.add(argument.getValue(row));
+      }
+      return function.evaluate(values);
+    }
+
+    /**
+     * Evaluates the arguments a column at a time, and then the function on all the rows at once
+     * if it is a {@link BatchScalarFunction}, or a row at a time otherwise.
+     */
+    @Override
+    public void evaluate(List<TableRow> rows, Value[] result) {
+      int numberOfRows = rows.size();
+      Value[][] argumentValues = new Value[arguments.length][];
+      for (int i = 0; i < arguments.length; i++) {
+        argumentValues[i] = new Value[numberOfRows];
+        arguments[i].evaluate(rows, argumentValues[i]);
+      }
+      if (function instanceof BatchScalarFunction) {
+        ((BatchScalarFunction) function).evaluate(argumentValues, 0, numberOfRows, result);
+        return;
+      }
+      for (int row = 0; row < numberOfRows; row++) {
+        List<Value> values = Lists.newArrayListWithCapacity(arguments.length);
+        for (Value[] column : argumentValues) {
+          values.add(column[row]);
+        }
+        result[row] = function.evaluate(values);
+      }
+    }
+
+    @Override
+    public int getCost() {
+      return cost;
+    }
+  }
+
+  /**
+   * Falls back to the column itself, for columns that are not in the lookup and are not scalar
+   * function columns.
+   */
+  private static class LookupEvaluator extends ColumnEvaluator {
+
+    /**
+     * The column.
+     */
+    private final AbstractColumn column;
+
+    /**
+     * The column lookup.
+     */
+    private final ColumnLookup lookup;
+
+    /**
+     * Creates a new LookupEvaluator.
+     *
+     * @param column The column.
+     * @param lookup The column lookup.
+     */
+    LookupEvaluator(AbstractColumn column, ColumnLookup lookup) {
+      this.column = column;
+      this.lookup = lookup;
+    }
+
+    @Override
+    public Value getValue(TableRow row) {
+      return column.getValue(lookup, row);
+    }
+
+    @Override
+    public int getCost() {
+      return 2;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the scalar function columns that are used more than once by the clauses of a query, and
+ * materializes them as additional columns of the table, so that each is computed once per row.
+ *
+ * All the stages of the query engine look up columns by their ID, and a scalar function column
+ * that is found in the table is read from its cells instead of being computed. So once a column
+ * such as year(orderDate) is materialized, the filter, grouping, sort and selection all read it.
+ * Structurally equal columns have the same ID, and are materialized once.
+ *
+ * The materialized columns are only added when the query drops them from the result, that is
+ * when the query has a selection, or when it is grouped, since the grouped table only has the
+ * group and aggregation columns. Columns that contain aggregations are computed after grouping,
+ * and columns without any simple column (e.g., constants) are cheaper to compute than to
+ * materialize, so neither are materialized.
+ */
+/* package */ final class CommonSubexpressions {
+
+  /**
+   * Private constructor. All methods are static.
+   */
+  private CommonSubexpressions() {}
+
+  /**
+   * Returns the scalar function columns to materialize before filtering the table: the columns
+   * that are used by the filter and also by another clause that is evaluated on the rows of the
+   * table, or more than once by the filter.
+   *
+   * @param query The query.
+   *
+   * @return The columns to materialize before filtering.
+   */
+  public static List<ScalarFunctionColumn> getColumnsBeforeFilter(Query query) {
+    if (!query.hasFilter()) {
+      return Lists.newArrayList();
+    }
+    Map<ScalarFunctionColumn, Integer> counts = Maps.newHashMap();
+    addAll(counts, query.getFilter().getScalarFunctionColumns());
+    Map<ScalarFunctionColumn, Integer> filterCounts = Maps.newHashMap(counts);
+    if (!addOtherClauses(counts, query)) {
+      return Lists.newArrayList();
+    }
+    List<ScalarFunctionColumn> result = Lists.newArrayList();
+    for (ScalarFunctionColumn column : filterCounts.keySet()) {
+      if ((counts.get(column) > 1) && isMaterializable(column)) {
+        result.add(column);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the scalar function columns to materialize after filtering the table: the columns
+   * that are used more than once by the clauses that are evaluated on the rows of the filtered
+   * table. The grouping stage already materializes the group and pivot columns, so this only
+   * applies to queries that are not grouped.
+   *
+   * @param query The query.
+   *
+   * @return The columns to materialize after filtering.
+   */
+  public static List<ScalarFunctionColumn> getColumnsAfterFilter(Query query) {
+    Map<ScalarFunctionColumn, Integer> counts = Maps.newHashMap();
+    if (isGrouped(query) || !addOtherClauses(counts, query)) {
+      return Lists.newArrayList();
+    }
+    List<ScalarFunctionColumn> result = Lists.newArrayList();
+    for (Map.Entry<ScalarFunctionColumn, Integer> entry : counts.entrySet()) {
+      if ((entry.getValue() > 1) && isMaterializable(entry.getKey())) {
+        result.add(entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a table with the rows and columns of the given table, followed by the given scalar
+   * function columns, computed once for each row. Columns that are already in the table are not
+   * added again. The cells of the given table are shared with the new table.
+   *
+   * Since the rows are copied anyway, the columns of the table that the query does not use are
+   * dropped from the copy, see {@link QueryPlanner#getRequiredColumnIds}.
+   *
+   * @param table The table.
+   * @param columns The scalar function columns to add.
+   * @param requiredColumnIds The IDs of the columns of the table to copy, or null to copy all
+   *     of them.
+   *
+   * @return A table with the added columns, or the given table if no column is added.
+   */
+  public static DataTable materialize(DataTable table, List<ScalarFunctionColumn> columns,
+      Set<String> requiredColumnIds) {
+    List<ScalarFunctionColumn> addedColumns = Lists.newArrayList();
+    for (ScalarFunctionColumn column : columns) {
+      if (!table.containsColumn(column.getId()) && !addedColumns.contains(column)) {
+        addedColumns.add(column);
+      }
+    }
+    if (addedColumns.isEmpty()) {
+      return table;
+    }
+
+    DataTable result = new DataTable();
+    int[] copiedColumns = QueryPlanner.getColumnIndices(table, requiredColumnIds);
+    for (int columnIndex : copiedColumns) {
+      result.addColumn(table.getColumnDescription(columnIndex));
+    }
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    List<TableRow> rows = table.getRows();
+    List<Value[]> values = Lists.newArrayList();
+    for (ScalarFunctionColumn column : addedColumns) {
+      result.addColumn(new ColumnDescription(column.getId(), column.getValueType(table),
+          ScalarFunctionColumnTitle.getColumnDescriptionLabel(table, column)));
+      values.add(ColumnEvaluator.create(column, lookup).evaluateColumn(rows));
+    }
+
+    List<TableRow> newRows = Lists.newArrayListWithCapacity(rows.size());
+    for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+      TableRow row = rows.get(rowIndex);
+      TableRow newRow = new TableRow();
+      for (int columnIndex : copiedColumns) {
+        newRow.addCell(row.getCell(columnIndex));
+      }
+      for (Value[] columnValues : values) {
+        newRow.addCell(new TableCell(columnValues[rowIndex]));
+      }
+      newRows.add(newRow);
+    }
+    try {
+      result.addRows(newRows);
+    } catch (TypeMismatchException e) {
+      // Should not happen, given that the original table is OK.
+    }
+    return result;
+  }
+
+  /**
+   * Counts the uses of scalar function columns by the clauses that follow the filter and are
+   * evaluated on the rows of the table: the group and pivot if the query is grouped, or the sort
+   * and selection otherwise.
+   *
+   * @param counts The counts to add to.
+   * @param query The query.
+   *
+   * @return False if the materialized columns would not be dropped from the result.
+   */
+  private static boolean addOtherClauses(Map<ScalarFunctionColumn, Integer> counts,
+      Query query) {
+    if (isGrouped(query)) {
+      if (query.hasGroup()) {
+        addAll(counts, query.getGroup().getScalarFunctionColumns());
+      }
+      if (query.hasPivot()) {
+        addAll(counts, query.getPivot().getScalarFunctionColumns());
+      }
+      return true;
+    }
+    if (!query.hasSelection()) {
+      return false;
+    }
+    addAll(counts, query.getSelection().getScalarFunctionColumns());
+    if (query.hasSort()) {
+      addAll(counts, query.getSort().getScalarFunctionColumns());
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the query is grouped, that is whether it has aggregations.
+   *
+   * @param query The query.
+   *
+   * @return True if the query is grouped.
+   */
+  private static boolean isGrouped(Query query) {
+    return query.hasSelection() && !query.getSelection().getAggregationColumns().isEmpty();
+  }
+
+  /**
+   * Returns whether a column can be materialized before grouping, and is worth it.
+   *
+   * @param column The column.
+   *
+   * @return True if the column can be materialized.
+   */
+  private static boolean isMaterializable(ScalarFunctionColumn column) {
+    return column.getAllAggregationColumns().isEmpty()
+        && !column.getAllSimpleColumnIds().isEmpty();
+  }
+
+  /**
+   * Adds uses of columns to the counts.
+   *
+   * @param counts The counts.
+   * @param columns The used columns.
+   */
+  private static void addAll(Map<ScalarFunctionColumn, Integer> counts,
+      List<ScalarFunctionColumn> columns) {
+    for (ScalarFunctionColumn column : columns) {
+      Integer count = counts.get(column);
+      counts.put(column, (count == null) ? 1 : (count + 1));
+    }
+  }
+}
@@ -0,0 +1,844 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.ColumnColumnFilter;
+import com.google.visualization.datasource.query.ColumnIsNullFilter;
+import com.google.visualization.datasource.query.ColumnValueFilter;
+import com.google.visualization.datasource.query.ComparisonFilter;
+import com.google.visualization.datasource.query.ComparisonFilterUtil;
+import com.google.visualization.datasource.query.CompoundFilter;
+import com.google.visualization.datasource.query.NegationFilter;
+import com.google.visualization.datasource.query.QueryFilter;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compiles a {@link QueryFilter} tree into a {@link RowPredicate} bound to the columns of
+ * specific rows, see {@link IndexedRows}.
+ *
+ * Compilation resolves every column of the filter to a {@link ValueSource} once, folds
+ * comparisons that can never match because of a type mismatch into constants, compares the keys
+ * of stored values of any type but text with constants and with other columns without creating
+ * values (see {@link VectorKey}), evaluates filters on dictionary encoded text columns once per
+ * dictionary entry, and reorders the sub-filters of compound filters so that the sub-filters
+ * that are most likely to decide the result, relative to their cost, are evaluated first. The
+ * selectivity of each comparison is estimated from a sample of the rows when they are
+ * available, and from the operator otherwise.
+ *
+ * Filters other than the ones defined in the query package are evaluated using their own
+ * isMatch() method.
+ */
+/* package */ final class FilterCompiler {
+
+  /**
+   * The maximal number of rows sampled for estimating the selectivity of a filter.
+   */
+  static final int SAMPLE_SIZE = 64;
+
+  /**
+   * Orders the sub-filters of an AND filter: most likely to fail, relative to cost, first.
+   */
+  private static final Comparator<RowPredicate> AND_ORDER = new Comparator<RowPredicate>() {
+    @Override
+    public int compare(RowPredicate p1, RowPredicate p2) {
+      return Double.compare((p1.getSelectivity() - 1) / p1.getCost(),
+          (p2.getSelectivity() - 1) / p2.getCost());
+    }
+  };
+
+  /**
+   * Orders the sub-filters of an OR filter: most likely to match, relative to cost, first.
+   */
+  private static final Comparator<RowPredicate> OR_ORDER = new Comparator<RowPredicate>() {
+    @Override
+    public int compare(RowPredicate p1, RowPredicate p2) {
+      return Double.compare(-p1.getSelectivity() / p1.getCost(),
+          -p2.getSelectivity() / p2.getCost());
+    }
+  };
+
+  /**
+   * The rows the filter is bound to.
+   */
+  private final IndexedRows rows;
+
+  /**
+   * The table defining the columns of the rows.
+   */
+  private final DataTable table;
+
+  /**
+   * The indices of the rows used for estimating selectivity. May be empty.
+   */
+  private final int[] sampleRows;
+
+  /**
+   * Creates a new FilterCompiler.
+   *
+   * @param rows The rows the filter is bound to.
+   */
+  private FilterCompiler(IndexedRows rows) {
+    this.rows = rows;
+    this.table = rows.getTable();
+    int numberOfRows = rows.size();
+    int step = Math.max(1, numberOfRows / SAMPLE_SIZE);
+    sampleRows = new int[Math.min(SAMPLE_SIZE, (numberOfRows + step - 1) / step)];
+    for (int i = 0; i < sampleRows.length; i++) {
+      sampleRows[i] = i * step;
+    }
+  }
+
+  /**
+   * Compiles the given filter for the rows of the given table. Selectivity is estimated from a
+   * sample of the table rows.
+   *
+   * @param filter The filter.
+   * @param table The table.
+   *
+   * @return A predicate that matches the same rows of the table as the filter.
+   */
+  public static RowPredicate compile(QueryFilter filter, DataTable table) {
+    return compile(filter, IndexedRows.of(table));
+  }
+
+  /**
+   * Compiles the given filter for the given rows. Selectivity is estimated from a sample of the
+   * rows.
+   *
+   * @param filter The filter.
+   * @param rows The rows.
+   *
+   * @return A predicate that matches the same rows as the filter.
+   */
+  public static RowPredicate compile(QueryFilter filter, IndexedRows rows) {
+    return new FilterCompiler(rows).compile(filter);
+  }
+
+  /**
+   * Compiles a filter.
+   *
+   * @param filter The filter.
+   *
+   * @return The compiled predicate.
+   */
+  private RowPredicate compile(QueryFilter filter) {
+    if (filter instanceof CompoundFilter) {
+      return compileCompound((CompoundFilter) filter);
+    }
+    if (filter instanceof NegationFilter) {
+      return new NegationPredicate(compile(((NegationFilter) filter).getSubFilter()));
+    }
+    RowPredicate predicate;
+    if (filter instanceof ColumnValueFilter) {
+      predicate = compileColumnValue((ColumnValueFilter) filter);
+    } else if (filter instanceof ColumnColumnFilter) {
+      predicate = compileColumnColumn((ColumnColumnFilter) filter);
+    } else if (filter instanceof ColumnIsNullFilter) {
+      predicate = new IsNullPredicate(
+          rows.getSource(((ColumnIsNullFilter) filter).getColumn()));
+    } else {
+      predicate = new GenericPredicate(filter, rows);
+    }
+    estimateSelectivity(predicate);
+    return predicate;
+  }
+
+  /**
+   * Compiles a compound filter. The compiled sub-filters are ordered by their estimated
+   * selectivity and cost. Sub-filters with equal estimates keep their original order.
+   *
+   * @param filter The compound filter.
+   *
+   * @return The compiled predicate.
+   */
+  private RowPredicate compileCompound(CompoundFilter filter) {
+    List<QueryFilter> subFilters = filter.getSubFilters();
+    if (subFilters.isEmpty()) {
+      return new EmptyCompoundPredicate();
+    }
+    List<RowPredicate> predicates = Lists.newArrayListWithCapacity(subFilters.size());
+    for (QueryFilter subFilter : subFilters) {
+      predicates.add(compile(subFilter));
+    }
+    boolean isAnd = (filter.getOperator() == CompoundFilter.LogicalOperator.AND);
+    Collections.sort(predicates, isAnd ? AND_ORDER : OR_ORDER);
+    return new CompoundPredicate(isAnd, predicates.toArray(new RowPredicate[predicates.size()]));
+  }
+
+  /**
+   * Compiles a column value filter.
+   *
+   * @param filter The column value filter.
+   *
+   * @return The compiled predicate.
+   */
+  private RowPredicate compileColumnValue(ColumnValueFilter filter) {
+    AbstractColumn column = filter.getColumn();
+    ValueSource source = rows.getSource(column);
+    ComparisonFilter.Operator operator = filter.getOperator();
+    Value constant = filter.getValue();
+    if (operator.areEqualTypesRequired()) {
+      ValueType columnType = getValueType(column);
+      if (columnType != null) {
+        if (columnType != constant.getType()) {
+          return new ConstantPredicate(false);
+        }
+        if (hasKeys(source, columnType)) {
+          return new KeyComparisonPredicate(operator, source, constant,
+              filter.isComparisonOrderReversed());
+        }
+      }
+    }
+    return new ColumnValuePredicate(filter, source);
+  }
+
+  /**
+   * Compiles a column column filter.
+   *
+   * @param filter The column column filter.
+   *
+   * @return The compiled predicate.
+   */
+  private RowPredicate compileColumnColumn(ColumnColumnFilter filter) {
+    ValueSource firstSource = rows.getSource(filter.getFirstColumn());
+    ValueSource secondSource = rows.getSource(filter.getSecondColumn());
+    if (filter.getOperator().areEqualTypesRequired()) {
+      ValueType firstType = getValueType(filter.getFirstColumn());
+      ValueType secondType = getValueType(filter.getSecondColumn());
+      if ((firstType != null) && (secondType != null)) {
+        if (firstType != secondType) {
+          return new ConstantPredicate(false);
+        }
+        if (hasKeys(firstSource, firstType) && hasKeys(secondSource, secondType)) {
+          return new KeyColumnComparisonPredicate(filter.getOperator(), firstSource,
+              secondSource);
+        }
+      }
+    }
+    return new ColumnColumnPredicate(filter, firstSource, secondSource);
+  }
+
+  /**
+   * Returns true if values of a column are compared by their keys: if they are stored, and so
+   * can be read once to check for null and once more for the key, and are not text.
+   *
+   * @param source The source of the values of the column.
+   * @param type The type of the column.
+   *
+   * @return True if the values of the column are compared by their keys.
+   */
+  private static boolean hasKeys(ValueSource source, ValueType type) {
+    return (type != ValueType.TEXT) && (source.getCost() == 1);
+  }
+
+  /**
+   * Returns the value type of the given column, or null if it cannot be determined from the
+   * table, in which case the filter is evaluated without assuming a type.
+   *
+   * @param column The column.
+   *
+   * @return The value type of the column, or null.
+   */
+  private ValueType getValueType(AbstractColumn column) {
+    if (rows.getLookup().containsColumn(column)
+        || table.containsAllColumnIds(column.getAllSimpleColumnIds())) {
+      return column.getValueType(table);
+    }
+    return null;
+  }
+
+  /**
+   * Sets the selectivity of a predicate to the fraction of the sample rows it matches. Leaves
+   * the static estimate of the predicate if it is a constant, if there are no sample rows, or if
+   * evaluating the predicate on one of them fails.
+   *
+   * @param predicate The predicate.
+   */
+  private void estimateSelectivity(RowPredicate predicate) {
+    if ((sampleRows.length == 0) || (predicate instanceof ConstantPredicate)) {
+      return;
+    }
+    int matches = 0;
+    try {
+      for (int row : sampleRows) {
+        if (predicate.isMatch(row)) {
+          matches++;
+        }
+      }
+    } catch (RuntimeException e) {
+      return;
+    }
+    // Smoothed, so that a predicate never looks certain to match or to fail.
+    predicate.setSelectivity((matches + 0.5) / (sampleRows.length + 1));
+  }
+
+  /**
+   * Returns the static selectivity estimate for a comparison operator.
+   *
+   * @param operator The operator.
+   *
+   * @return The estimated fraction of rows matched by a comparison with the operator.
+   */
+  private static double getOperatorSelectivity(ComparisonFilter.Operator operator) {
+    switch (operator) {
+      case EQ:
+        return 0.1;
+      case NE:
+        return 0.9;
+      case LT:
+      case GT:
+      case LE:
+      case GE:
+        return 0.33;
+      default:
+        return 0.25;
+    }
+  }
+
+  /**
+   * Returns the relative cost of evaluating a comparison operator on two values.
+   *
+   * @param operator The operator.
+   *
+   * @return The relative cost of the operator.
+   */
+  private static int getOperatorCost(ComparisonFilter.Operator operator) {
+    switch (operator) {
+      case CONTAINS:
+      case STARTS_WITH:
+      case ENDS_WITH:
+        return 3;
+      case MATCHES:
+      case LIKE:
+        return 8;
+      default:
+        return 1;
+    }
+  }
+
+  /**
+   * Returns true if the result of comparing two values matches the given comparison operator.
+   *
+   * @param operator One of the operators that require equal types.
+   * @param comparison The result of comparing the two values.
+   *
+   * @return true if the comparison result matches the operator.
+   */
+  private static boolean isComparisonMatch(ComparisonFilter.Operator operator, int comparison) {
+    switch (operator) {
+      case EQ:
+        return comparison == 0;
+      case NE:
+        return comparison != 0;
+      case LT:
+        return comparison < 0;
+      case GT:
+        return comparison > 0;
+      case LE:
+        return comparison <= 0;
+      case GE:
+        return comparison >= 0;
+      default:
+        throw new IllegalArgumentException("Not a comparison operator: " + operator);
+    }
+  }
+
+  /**
+   * Compares two values that may be null, given their keys. Null values are smaller than all
+   * other values, as in {@link Value#compareTo}.
+   *
+   * @param isNull1 Whether the first value is null.
+   * @param key1 The key of the first value, if not null.
+   * @param isNull2 Whether the second value is null.
+   * @param key2 The key of the second value, if not null.
+   *
+   * @return A negative integer, zero, or a positive integer as the first value is less than,
+   *     equal to, or greater than the second.
+   */
+  private static int compare(boolean isNull1, long key1, boolean isNull2, long key2) {
+    if (isNull1 || isNull2) {
+      return (isNull1 == isNull2) ? 0 : (isNull1 ? -1 : 1);
+    }
+    return VectorKey.compare(key1, key2);
+  }
+
+  /**
+   * A predicate with a fixed result.
+   */
+  private static class ConstantPredicate extends RowPredicate {
+
+    /**
+     * The result.
+     */
+    private final boolean result;
+
+    /**
+     * Creates a new ConstantPredicate.
+     *
+     * @param result The result.
+     */
+    ConstantPredicate(boolean result) {
+      super(result ? 1 : 0);
+      this.result = result;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      return result;
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+
+  /**
+   * The predicate of a compound filter with no sub-filters, which fails when evaluated, like
+   * the filter itself.
+   */
+  private static class EmptyCompoundPredicate extends RowPredicate {
+
+    /**
+     * Creates a new EmptyCompoundPredicate.
+     */
+    EmptyCompoundPredicate() {
+      super(0.5);
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      throw new RuntimeException("Compound filter with empty subFilters list");
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+
+  /**
+   * An AND or OR of predicates, with short-circuit evaluation.
+   */
+  private static class CompoundPredicate extends RowPredicate {
+
+    /**
+     * True for AND, false for OR.
+     */
+    private final boolean isAnd;
+
+    /**
+     * The sub-predicates, in evaluation order.
+     */
+    private final RowPredicate[] predicates;
+
+    /**
+     * The total cost of the sub-predicates.
+     */
+    private final int cost;
+
+    /**
+     * Creates a new CompoundPredicate.
+     *
+     * @param isAnd True for AND, false for OR.
+     * @param predicates The sub-predicates, in evaluation order.
+     */
+    CompoundPredicate(boolean isAnd, RowPredicate[] predicates) {
+      super(0);
+      this.isAnd = isAnd;
+      this.predicates = predicates;
+      int totalCost = 0;
+      // Assumes the sub-predicates are independent.
+      double noneOrAll = 1;
+      for (RowPredicate predicate : predicates) {
+        totalCost += predicate.getCost();
+        noneOrAll *= isAnd ? predicate.getSelectivity() : (1 - predicate.getSelectivity());
+      }
+      this.cost = totalCost;
+      setSelectivity(isAnd ? noneOrAll : (1 - noneOrAll));
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      for (RowPredicate predicate : predicates) {
+        if (predicate.isMatch(row) != isAnd) {
+          return !isAnd;
+        }
+      }
+      return isAnd;
+    }
+
+    @Override
+    public int getCost() {
+      return cost;
+    }
+  }
+
+  /**
+   * The negation of a predicate.
+   */
+  private static class NegationPredicate extends RowPredicate {
+
+    /**
+     * The negated predicate.
+     */
+    private final RowPredicate predicate;
+
+    /**
+     * Creates a new NegationPredicate.
+     *
+     * @param predicate The negated predicate.
+     */
+    NegationPredicate(RowPredicate predicate) {
+      super(1 - predicate.getSelectivity());
+      this.predicate = predicate;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      return !predicate.isMatch(row);
+    }
+
+    @Override
+    public int getCost() {
+      return predicate.getCost();
+    }
+  }
+
+  /**
+   * Compares a column of a known type other than text with a constant of the same type, using
+   * one of the operators that require equal types, by their keys.
+   */
+  private static class KeyComparisonPredicate extends RowPredicate {
+
+    /**
+     * The operator.
+     */
+    private final ComparisonFilter.Operator operator;
+
+    /**
+     * The source of the column values.
+     */
+    private final ValueSource source;
+
+    /**
+     * Whether the constant is null.
+     */
+    private final boolean isConstantNull;
+
+    /**
+     * The key of the constant, if not null.
+     */
+    private final long constantKey;
+
+    /**
+     * Whether the comparison is constant op column rather than column op constant.
+     */
+    private final boolean isReversed;
+
+    /**
+     * Creates a new KeyComparisonPredicate.
+     *
+     * @param operator The operator.
+     * @param source The source of the column values.
+     * @param constant The constant.
+     * @param isReversed Whether the comparison is constant op column.
+     */
+    KeyComparisonPredicate(ComparisonFilter.Operator operator, ValueSource source,
+        Value constant, boolean isReversed) {
+      super(getOperatorSelectivity(operator));
+      this.operator = operator;
+      this.source = source;
+      this.isConstantNull = constant.isNull();
+      this.constantKey = isConstantNull ? 0 : VectorKey.getKey(constant);
+      this.isReversed = isReversed;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      boolean isNull = source.isNull(row);
+      int comparison = compare(isNull, isNull ? 0 : source.getKey(row), isConstantNull,
+          constantKey);
+      return isComparisonMatch(operator, isReversed ? -comparison : comparison);
+    }
+
+    @Override
+    public int getCost() {
+      return source.getCost();
+    }
+  }
+
+  /**
+   * Compares two columns of the same known type other than text, using one of the operators
+   * that require equal types, by their keys.
+   */
+  private static class KeyColumnComparisonPredicate extends RowPredicate {
+
+    /**
+     * The operator.
+     */
+    private final ComparisonFilter.Operator operator;
+
+    /**
+     * The source of the values of the first column.
+     */
+    private final ValueSource firstSource;
+
+    /**
+     * The source of the values of the second column.
+     */
+    private final ValueSource secondSource;
+
+    /**
+     * Creates a new KeyColumnComparisonPredicate.
+     *
+     * @param operator The operator.
+     * @param firstSource The source of the values of the first column.
+     * @param secondSource The source of the values of the second column.
+     */
+    KeyColumnComparisonPredicate(ComparisonFilter.Operator operator, ValueSource firstSource,
+        ValueSource secondSource) {
+      super(getOperatorSelectivity(operator));
+      this.operator = operator;
+      this.firstSource = firstSource;
+      this.secondSource = secondSource;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      boolean isFirstNull = firstSource.isNull(row);
+      boolean isSecondNull = secondSource.isNull(row);
+      return isComparisonMatch(operator,
+          compare(isFirstNull, isFirstNull ? 0 : firstSource.getKey(row),
+              isSecondNull, isSecondNull ? 0 : secondSource.getKey(row)));
+    }
+
+    @Override
+    public int getCost() {
+      return firstSource.getCost() + secondSource.getCost();
+    }
+  }
+
+  /**
+   * Evaluates a column value filter using the filter's own operator matching. If the column is
+   * dictionary encoded, the filter is evaluated once per dictionary entry, when a row holding
+   * it is first evaluated. Concurrent evaluations may compute the result of an entry more than
+   * once, but always store the same result.
+   */
+  private static class ColumnValuePredicate extends RowPredicate {
+
+    /**
+     * The result of an entry that was not evaluated yet.
+     */
+    private static final byte UNKNOWN = 0;
+
+    /**
+     * The result of an entry that matches.
+     */
+    private static final byte MATCH = 1;
+
+    /**
+     * The result of an entry that does not match.
+     */
+    private static final byte NO_MATCH = 2;
+
+    /**
+     * The filter.
+     */
+    private final ColumnValueFilter filter;
+
+    /**
+     * The source of the column values.
+     */
+    private final ValueSource source;
+
+    /**
+     * The result of each dictionary entry, by dictionary code. Empty if the column is not
+     * dictionary encoded.
+     */
+    private final byte[] results;
+
+    /**
+     * Creates a new ColumnValuePredicate.
+     *
+     * @param filter The filter.
+     * @param source The source of the column values.
+     */
+    ColumnValuePredicate(ColumnValueFilter filter, ValueSource source) {
+      super(getOperatorSelectivity(filter.getOperator()));
+      this.filter = filter;
+      this.source = source;
+      this.results = new byte[source.getDictionarySize()];
+    }
+
+    /**
+     * Evaluates the filter on a value of the column.
+     *
+     * @param value The value.
+     *
+     * @return True if the value matches the filter.
+     */
+    private boolean isMatch(Value value) {
+      return filter.isComparisonOrderReversed()
+          ? ComparisonFilterUtil.isOperatorMatch(filter, filter.getValue(), value)
+          : ComparisonFilterUtil.isOperatorMatch(filter, value, filter.getValue());
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      if ((results.length == 0) || source.isNull(row)) {
+        return isMatch(source.getValue(row));
+      }
+      int code = source.getCode(row);
+      byte result = results[code];
+      if (result == UNKNOWN) {
+        result = isMatch(source.getValue(row)) ? MATCH : NO_MATCH;
+        results[code] = result;
+      }
+      return result == MATCH;
+    }
+
+    @Override
+    public int getCost() {
+      return source.getCost()
+          + ((results.length == 0) ? getOperatorCost(filter.getOperator()) : 0);
+    }
+  }
+
+  /**
+   * Evaluates a column column filter using the filter's own operator matching.
+   */
+  private static class ColumnColumnPredicate extends RowPredicate {
+
+    /**
+     * The filter.
+     */
+    private final ColumnColumnFilter filter;
+
+    /**
+     * The source of the values of the first column.
+     */
+    private final ValueSource firstSource;
+
+    /**
+     * The source of the values of the second column.
+     */
+    private final ValueSource secondSource;
+
+    /**
+     * Creates a new ColumnColumnPredicate.
+     *
+     * @param filter The filter.
+     * @param firstSource The source of the values of the first column.
+     * @param secondSource The source of the values of the second column.
+     */
+    ColumnColumnPredicate(ColumnColumnFilter filter, ValueSource firstSource,
+        ValueSource secondSource) {
+      super(getOperatorSelectivity(filter.getOperator()));
+      this.filter = filter;
+      this.firstSource = firstSource;
+      this.secondSource = secondSource;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      return ComparisonFilterUtil.isOperatorMatch(filter, firstSource.getValue(row),
+          secondSource.getValue(row));
+    }
+
+    @Override
+    public int getCost() {
+      return firstSource.getCost() + secondSource.getCost()
+          + getOperatorCost(filter.getOperator());
+    }
+  }
+
+  /**
+   * Matches rows in which a column is null.
+   */
+  private static class IsNullPredicate extends RowPredicate {
+
+    /**
+     * The source of the column values.
+     */
+    private final ValueSource source;
+
+    /**
+     * Creates a new IsNullPredicate.
+     *
+     * @param source The source of the column values.
+     */
+    IsNullPredicate(ValueSource source) {
+      super(0.1);
+      this.source = source;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      return source.isNull(row);
+    }
+
+    @Override
+    public int getCost() {
+      return source.getCost();
+    }
+  }
+
+  /**
+   * Evaluates a filter of an unknown type using its isMatch() method.
+   */
+  private static class GenericPredicate extends RowPredicate {
+
+    /**
+     * The filter.
+     */
+    private final QueryFilter filter;
+
+    /**
+     * The rows.
+     */
+    private final IndexedRows rows;
+
+    /**
+     * Creates a new GenericPredicate.
+     *
+     * @param filter The filter.
+     * @param rows The rows.
+     */
+    GenericPredicate(QueryFilter filter, IndexedRows rows) {
+      super(0.5);
+      this.filter = filter;
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean isMatch(int row) {
+      return filter.isMatch(rows.getTable(), rows.getRow(row));
+    }
+
+    @Override
+    public int getCost() {
+      return 10;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates rows according to the groups defined by an ordered list of group-by columns, in a
+ * single pass over the rows. The rows are given by their indices in an {@link IndexedRows}.
+ *
+ * Each group is given a consecutive id the first time one of its rows is seen. How the group of
+ * a row is found is up to the subclass. The aggregated values of each column are kept by a
+ * {@link ColumnAccumulator}, in arrays indexed by group id.
+ *
+ * An aggregator can aggregate several ranges of rows, and partial aggregators of other rows,
+ * created by {@link #createPartial}, can be combined with {@link #merge}.
+ *
+ * @see HashAggregator
+ * @see VectorAggregator
+ */
+/* package */ abstract class GroupAggregator {
+
+  /**
+   * The accumulators of the aggregated columns, by column id.
+   */
+  private final Map<String, ColumnAccumulator> accumulators = Maps.newHashMap();
+
+  /**
+   * The accumulators of the aggregated columns.
+   */
+  private final ColumnAccumulator[] accumulatorArray;
+
+  /**
+   * Creates a new GroupAggregator, with no groups.
+   *
+   * @param rows The rows.
+   * @param aggregateColumns The columns to aggregate, and for each of them the aggregation types
+   *     that will be requested. A column can appear more than once.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   */
+  protected GroupAggregator(IndexedRows rows, List<String> aggregateColumns,
+      List<AggregationType> aggregationTypes) {
+    for (int i = 0; i < aggregateColumns.size(); i++) {
+      String columnId = aggregateColumns.get(i);
+      ColumnAccumulator accumulator = accumulators.get(columnId);
+      if (accumulator == null) {
+        accumulator = ColumnAccumulator.create(rows.getSource(columnId),
+            rows.getTable().getColumnDescription(columnId).getType());
+        accumulators.put(columnId, accumulator);
+      }
+      accumulator.require(aggregationTypes.get(i));
+    }
+    accumulatorArray = accumulators.values().toArray(new ColumnAccumulator[accumulators.size()]);
+  }
+
+  /**
+   * Aggregates a range of rows.
+   *
+   * @param rows The row indices.
+   * @param start The index in rows of the first row to aggregate.
+   * @param end The index in rows after the last row to aggregate.
+   */
+  public abstract void aggregate(int[] rows, int start, int end);
+
+  /**
+   * Returns a new aggregator with the same rows and columns as this one, and no groups, for
+   * aggregating other rows and merging them into this one.
+   *
+   * @return A new aggregator with the same rows and columns as this one.
+   */
+  public abstract GroupAggregator createPartial();
+
+  /**
+   * Adds the groups and aggregated values of another aggregator, created by
+   * {@link #createPartial}, to this aggregator. The other aggregator must have aggregated rows
+   * that follow the ones of this aggregator. The result is the same as if this aggregator had
+   * aggregated the rows of both, except that sums may differ in rounding, as they are added in
+   * another order.
+   *
+   * @param other The other aggregator.
+   */
+  public abstract void merge(GroupAggregator other);
+
+  /**
+   * Returns the number of groups.
+   *
+   * @return The number of groups.
+   */
+  public abstract int getNumberOfGroups();
+
+  /**
+   * Returns the values of the group-by columns of a group, in the order of the group-by columns.
+   *
+   * @param groupId The group id.
+   *
+   * @return The values of the group-by columns of the group.
+   */
+  public abstract List<Value> getGroupValues(int groupId);
+
+  /**
+   * Returns the aggregation value of a specific group, column and type.
+   *
+   * @param groupId The group id.
+   * @param columnId The requested column id.
+   * @param type The requested aggregation type, one of the types given for the column when
+   *     the aggregator was created.
+   *
+   * @return The aggregation value.
+   */
+  public Value getAggregationValue(int groupId, String columnId, AggregationType type) {
+    return accumulators.get(columnId).getValue(groupId, type);
+  }
+
+  /**
+   * Makes room for the aggregated values of a new group.
+   *
+   * @param groupId The id of the new group.
+   */
+  protected void addGroup(int groupId) {
+    for (ColumnAccumulator accumulator : accumulatorArray) {
+      accumulator.ensureCapacity(groupId + 1);
+    }
+  }
+
+  /**
+   * Aggregates the values of a row into a group.
+   *
+   * @param groupId The group id.
+   * @param row The row index.
+   */
+  protected void aggregateRow(int groupId, int row) {
+    for (ColumnAccumulator accumulator : accumulatorArray) {
+      accumulator.aggregate(groupId, row);
+    }
+  }
+
+  /**
+   * Adds the aggregated values of a group of another aggregator to a group of this one.
+   *
+   * @param groupId The group id in this aggregator.
+   * @param other The other aggregator.
+   * @param otherGroupId The group id in the other aggregator.
+   */
+  protected void mergeGroup(int groupId, GroupAggregator other, int otherGroupId) {
+    for (Map.Entry<String, ColumnAccumulator> entry : accumulators.entrySet()) {
+      entry.getValue().merge(groupId, other.accumulators.get(entry.getKey()), otherGroupId);
+    }
+  }
+}
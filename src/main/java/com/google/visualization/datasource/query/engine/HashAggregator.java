@@ -0,0 +1,215 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates rows according to the groups defined by an ordered list of group-by columns, in a
+ * single pass over the rows.
+ *
+ * Unlike {@link TableAggregator}, only the groups defined by all the group-by columns together
+ * are kept (the leaves of the aggregation tree), which is all the query engine needs. The group
+ * of a row is found by looking up the values of the group-by columns of the row in a single
+ * hash table, so aggregating a row does not allocate anything unless it starts a new group.
+ */
+/* package */ final class HashAggregator extends GroupAggregator {
+
+  /**
+   * The rows to aggregate.
+   */
+  private final IndexedRows indexedRows;
+
+  /**
+   * The group-by columns.
+   */
+  private final List<String> groupByColumns;
+
+  /**
+   * The aggregated columns.
+   */
+  private final List<String> aggregateColumns;
+
+  /**
+   * The aggregation types, in the order of aggregateColumns.
+   */
+  private final List<AggregationType> aggregationTypes;
+
+  /**
+   * The sources of the values of the group-by columns.
+   */
+  private final ValueSource[] groupBySources;
+
+  /**
+   * Maps the values of the group-by columns of a group to the group id.
+   */
+  private final Map<GroupKey, Integer> groupIds = Maps.newHashMap();
+
+  /**
+   * The values of the group-by columns of each group, by group id.
+   */
+  private final List<List<Value>> groupValues = Lists.newArrayList();
+
+  /**
+   * Constructs a hash aggregator and aggregates the table.
+   *
+   * @param groupByColumns An ordered list of columns to group by.
+   * @param aggregateColumns The columns to aggregate, and for each of them the aggregation types
+   *     that will be requested. A column can appear more than once.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   * @param table The table.
+   */
+  public HashAggregator(List<String> groupByColumns, List<String> aggregateColumns,
+      List<AggregationType> aggregationTypes, DataTable table) {
+    this(IndexedRows.of(table), groupByColumns, aggregateColumns, aggregationTypes);
+    aggregate(indexedRows.getIndices(), 0, indexedRows.size());
+  }
+
+  /**
+   * Constructs a hash aggregator of rows. No row is aggregated yet.
+   *
+   * @param rows The rows.
+   * @param groupByColumns An ordered list of columns to group by.
+   * @param aggregateColumns The columns to aggregate, and for each of them the aggregation types
+   *     that will be requested. A column can appear more than once.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   */
+  public HashAggregator(IndexedRows rows, List<String> groupByColumns,
+      List<String> aggregateColumns, List<AggregationType> aggregationTypes) {
+    super(rows, aggregateColumns, aggregationTypes);
+    this.indexedRows = rows;
+    this.groupByColumns = groupByColumns;
+    this.aggregateColumns = aggregateColumns;
+    this.aggregationTypes = aggregationTypes;
+    groupBySources = new ValueSource[groupByColumns.size()];
+    for (int i = 0; i < groupBySources.length; i++) {
+      groupBySources[i] = rows.getSource(groupByColumns.get(i));
+    }
+  }
+
+  @Override
+  public void aggregate(int[] rows, int start, int end) {
+    // The probe key is refilled for each row, and copied only when a new group is found.
+    GroupKey probe = new GroupKey(new Value[groupBySources.length]);
+    for (int i = start; i < end; i++) {
+      int row = rows[i];
+      for (int column = 0; column < groupBySources.length; column++) {
+        probe.values[column] = groupBySources[column].getValue(row);
+      }
+      aggregateRow(getGroupId(probe), row);
+    }
+  }
+
+  /**
+   * Returns the id of the group with the given key, creating a new group if there is none.
+   *
+   * @param probe The key. Not kept by this aggregator, so it can be reused.
+   *
+   * @return The id of the group.
+   */
+  private int getGroupId(GroupKey probe) {
+    probe.computeHashCode();
+    Integer groupId = groupIds.get(probe);
+    if (groupId == null) {
+      groupId = groupValues.size();
+      GroupKey key = new GroupKey(probe.values.clone());
+      key.computeHashCode();
+      groupIds.put(key, groupId);
+      groupValues.add(ImmutableList.copyOf(key.values));
+      addGroup(groupId);
+    }
+    return groupId;
+  }
+
+  @Override
+  public HashAggregator createPartial() {
+    return new HashAggregator(indexedRows, groupByColumns, aggregateColumns, aggregationTypes);
+  }
+
+  @Override
+  public void merge(GroupAggregator other) {
+    HashAggregator otherAggregator = (HashAggregator) other;
+    GroupKey probe = new GroupKey(new Value[groupBySources.length]);
+    for (int otherGroupId = 0; otherGroupId < other.getNumberOfGroups(); otherGroupId++) {
+      otherAggregator.groupValues.get(otherGroupId).toArray(probe.values);
+      mergeGroup(getGroupId(probe), other, otherGroupId);
+    }
+  }
+
+  @Override
+  public int getNumberOfGroups() {
+    return groupValues.size();
+  }
+
+  @Override
+  public List<Value> getGroupValues(int groupId) {
+    return groupValues.get(groupId);
+  }
+
+  /**
+   * The values of the group-by columns of a row, used as a hash key.
+   */
+  private static final class GroupKey {
+
+    /**
+     * The values.
+     */
+    private final Value[] values;
+
+    /**
+     * The hash code of the values.
+     */
+    private int hashCode;
+
+    /**
+     * Creates a new GroupKey.
+     *
+     * @param values The values.
+     */
+    GroupKey(Value[] values) {
+      this.values = values;
+    }
+
+    /**
+     * Computes the hash code after the values have been set.
+     */
+    void computeHashCode() {
+      hashCode = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof GroupKey)) {
+        return false;
+      }
+      GroupKey other = (GroupKey) obj;
+      return (hashCode == other.hashCode) && Arrays.equals(values, other.values);
+    }
+  }
+}
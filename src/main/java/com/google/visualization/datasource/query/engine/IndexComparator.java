@@ -0,0 +1,33 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+/**
+ * Compares elements by their index, without boxing. Used for sorting and selecting rows by keys
+ * that were computed in advance, see {@link RowSortKeys}.
+ */
+/* package */ interface IndexComparator {
+
+  /**
+   * Compares two elements for order.
+   *
+   * @param index1 The index of the first element.
+   * @param index2 The index of the second element.
+   *
+   * @return A negative integer, zero, or a positive integer as the first element is less than,
+   *     equal to, or greater than the second.
+   */
+  int compare(int index1, int index2);
+}
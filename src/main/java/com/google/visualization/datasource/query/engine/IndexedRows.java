@@ -0,0 +1,196 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.ColumnLookup;
+import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.SimpleColumn;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The rows of a table addressed by their index, as read by compiled filters (see
+ * {@link FilterCompiler}) and by aggregators (see {@link GroupAggregator}).
+ *
+ * The rows are either rows of a {@link DataTable}, or the rows of a {@link ColumnarDataTable}.
+ * The values of a column are read through a {@link ValueSource}: from the column vector for a
+ * simple column of a columnar table, and with a {@link ColumnEvaluator} otherwise, on views of
+ * the rows of a columnar table.
+ */
+/* package */ final class IndexedRows {
+
+  /**
+   * The table defining the columns of the rows.
+   */
+  private final DataTable table;
+
+  /**
+   * The column lookup of the table.
+   */
+  private final ColumnLookup lookup;
+
+  /**
+   * The rows.
+   */
+  private final List<TableRow> rows;
+
+  /**
+   * The columnar table the rows are read from, or null.
+   */
+  private final ColumnarDataTable columnarTable;
+
+  /**
+   * Creates a new IndexedRows.
+   *
+   * @param table The table defining the columns of the rows.
+   * @param rows The rows.
+   * @param columnarTable The columnar table the rows are read from, or null.
+   */
+  private IndexedRows(DataTable table, List<TableRow> rows, ColumnarDataTable columnarTable) {
+    this.table = table;
+    this.lookup = new DataTableColumnLookup(table);
+    this.rows = rows;
+    this.columnarTable = columnarTable;
+  }
+
+  /**
+   * Returns the rows of a table.
+   *
+   * @param table The table.
+   *
+   * @return The rows of the table.
+   */
+  public static IndexedRows of(DataTable table) {
+    return of(table, table.getRows());
+  }
+
+  /**
+   * Returns rows that have the columns of a table.
+   *
+   * @param table The table defining the columns of the rows. Its own rows are not used.
+   * @param rows The rows.
+   *
+   * @return The rows.
+   */
+  public static IndexedRows of(DataTable table, List<TableRow> rows) {
+    return new IndexedRows(table, rows, null);
+  }
+
+  /**
+   * Returns the rows of a columnar table.
+   *
+   * @param table The columnar table.
+   *
+   * @return The rows of the table.
+   */
+  public static IndexedRows of(final ColumnarDataTable table) {
+    List<TableRow> rowViews = new AbstractList<TableRow>() {
+      @Override
+      public TableRow get(int index) {
+        return table.getRowView(index);
+      }
+
+      @Override
+      public int size() {
+        return table.getNumberOfRows();
+      }
+    };
+    return new IndexedRows(table.createEmptyDataTable(), rowViews, table);
+  }
+
+  /**
+   * Returns a table that defines the columns of the rows. For a columnar table, this table has
+   * no rows.
+   *
+   * @return A table that defines the columns of the rows.
+   */
+  public DataTable getTable() {
+    return table;
+  }
+
+  /**
+   * Returns the column lookup of the columns of the rows.
+   *
+   * @return The column lookup of the columns of the rows.
+   */
+  public ColumnLookup getLookup() {
+    return lookup;
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return The number of rows.
+   */
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * Returns a row. The row of a columnar table is a view of the row.
+   *
+   * @param index The row index.
+   *
+   * @return The row.
+   */
+  public TableRow getRow(int index) {
+    return rows.get(index);
+  }
+
+  /**
+   * Returns the indices of all the rows, in ascending order.
+   *
+   * @return The indices of all the rows.
+   */
+  public int[] getIndices() {
+    int[] indices = new int[rows.size()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  /**
+   * Returns the source of the values of a column in the rows.
+   *
+   * @param column The column.
+   *
+   * @return The source of the values of the column.
+   */
+  public ValueSource getSource(AbstractColumn column) {
+    if ((columnarTable != null) && (column instanceof SimpleColumn)
+        && columnarTable.containsColumn(column.getId())) {
+      return ValueSource.create(
+          columnarTable.getColumnVector(columnarTable.getColumnIndex(column.getId())));
+    }
+    return ValueSource.create(rows, ColumnEvaluator.create(column, lookup));
+  }
+
+  /**
+   * Returns the source of the values of a column of the table in the rows.
+   *
+   * @param columnId The column id.
+   *
+   * @return The source of the values of the column.
+   */
+  public ValueSource getSource(String columnId) {
+    return getSource(new SimpleColumn(columnId));
+  }
+}
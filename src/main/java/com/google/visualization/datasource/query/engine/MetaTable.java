@@ -14,84 +14,193 @@
 
 package com.google.visualization.datasource.query.engine;
 
-import com.google.common.collect.Maps;
 import com.google.visualization.datasource.datatable.TableCell;
 
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Holds the data of a table after pivoting and grouping, indexed by {@link RowTitle} and
- * {@link ColumnTitle}.
+ * Holds the data of a table after pivoting and grouping, indexed by the ordinals of the row
+ * titles and column titles in their sorted order (see {@link RowTitle} and {@link ColumnTitle}).
+ *
+ * The cells are held in a dense row-major array. A wide pivot where most (row, column) pairs
+ * have no cell would make that array much larger than the data, so above a size threshold a
+ * table with few cells is held in compressed sparse row (CSR) layout instead: the cells of each
+ * row are stored consecutively, with their column ordinals.
  *
  * @author Yonatan B.Y.
  */
 /* package */ class MetaTable {
 
   /**
-   * The data. A map that gives, for each row and column, a map of the cell 
-   * associated with that row and that column.
+   * The maximal number of (row, column) pairs for which the dense layout is always used.
+   */
+  /* package */ static final int MAX_DENSE_SIZE = 1 << 16;
+
+  /**
+   * The minimal fraction of the (row, column) pairs that have cells, as 1 / DENSITY_FACTOR,
+   * for which the dense layout is used above MAX_DENSE_SIZE.
+   */
+  private static final int DENSITY_FACTOR = 4;
+
+  /**
+   * The number of rows.
+   */
+  private final int numberOfRows;
+
+  /**
+   * The number of columns.
    */
-  private Map<RowTitle, Map<ColumnTitle, TableCell>> data;
+  private final int numberOfColumns;
+
+  /**
+   * The cells. In the dense layout, the cell of a row and a column is at
+   * row * numberOfColumns + column. In the sparse layout, the cells of a row start at the
+   * offset of the row.
+   */
+  private final TableCell[] cells;
+
+  /**
+   * In the sparse layout, the offset in cells of the first cell of each row, followed by the
+   * total number of cells. Null in the dense layout.
+   */
+  private final int[] rowOffsets;
+
+  /**
+   * In the sparse layout, the column of each cell. Null in the dense layout.
+   */
+  private final int[] cellColumns;
+
+  /**
+   * In the sparse layout, the number of cells put in each row so far. Null in the dense layout.
+   */
+  private final int[] rowSizes;
+
+  /**
+   * Whether any cell was put.
+   */
+  private boolean isEmpty = true;
 
   /**
    * Creates an empty instance.
+   *
+   * @param numberOfRows The number of rows.
+   * @param numberOfColumns The number of columns.
+   * @param numberOfCellsInRow The maximal number of cells that will be put in each row.
    */
-  public MetaTable() {
-    data = Maps.newHashMap();
+  public MetaTable(int numberOfRows, int numberOfColumns, int[] numberOfCellsInRow) {
+    this.numberOfRows = numberOfRows;
+    this.numberOfColumns = numberOfColumns;
+    long numberOfCells = 0;
+    for (int rowCells : numberOfCellsInRow) {
+      numberOfCells += rowCells;
+    }
+    long size = (long) numberOfRows * numberOfColumns;
+    if ((size <= MAX_DENSE_SIZE)
+        || ((size <= Integer.MAX_VALUE) && (size <= DENSITY_FACTOR * numberOfCells))) {
+      cells = new TableCell[(int) size];
+      rowOffsets = null;
+      cellColumns = null;
+      rowSizes = null;
+    } else {
+      rowOffsets = new int[numberOfRows + 1];
+      for (int row = 0; row < numberOfRows; row++) {
+        rowOffsets[row + 1] = rowOffsets[row] + numberOfCellsInRow[row];
+      }
+      cells = new TableCell[rowOffsets[numberOfRows]];
+      cellColumns = new int[cells.length];
+      rowSizes = new int[numberOfRows];
+    }
   }
 
   /**
-   * Puts a new value in the MetaTable.
+   * Puts a new cell in the MetaTable. A cell is put at most once for each row and column.
    *
-   * @param rowTitle The row into which the cell should be inserted.
-   * @param columnTitle The column into which the cell should be inserted.
+   * @param row The row into which the cell should be inserted.
+   * @param column The column into which the cell should be inserted.
    * @param cell The cell to insert.
    */
-  public void put(RowTitle rowTitle, ColumnTitle columnTitle,
-      TableCell cell) {
-    Map<ColumnTitle, TableCell> rowData = data.get(rowTitle);
-    if (rowData == null) {
-      rowData = Maps.newHashMap();
-      data.put(rowTitle, rowData);
+  public void put(int row, int column, TableCell cell) {
+    isEmpty = false;
+    if (rowOffsets == null) {
+      cells[(row * numberOfColumns) + column] = cell;
+    } else {
+      int index = rowOffsets[row] + rowSizes[row]++;
+      cells[index] = cell;
+      cellColumns[index] = column;
     }
-    rowData.put(columnTitle, cell);
   }
 
   /**
    * Retrieves a cell from the MetaTable.
    *
-   * @param rowTitle The row from which to retrieve the cell.
-   * @param columnTitle The column from which to retrieve the cell.
+   * @param row The row from which to retrieve the cell.
+   * @param column The column from which to retrieve the cell.
+   *
+   * @return The cell that is at the given row and column or null if no such cell exists.
+   */
+  public TableCell getCell(int row, int column) {
+    if (rowOffsets == null) {
+      return cells[(row * numberOfColumns) + column];
+    }
+    for (int index = rowOffsets[row]; index < rowOffsets[row] + rowSizes[row]; index++) {
+      if (cellColumns[index] == column) {
+        return cells[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Copies an entire row into an array that has an element for each column. The elements of
+   * columns that have no cell in the row are set to null.
    *
-   * @return The cell that is at row rowTitle and column columnTitle or null
-   *     if no such cell exists.
+   * @param row The row to retrieve.
+   * @param rowCells The array to copy the row into.
    */
-  public TableCell getCell(RowTitle rowTitle, ColumnTitle columnTitle) {
-    Map<ColumnTitle, TableCell> rowData = data.get(rowTitle);
-    if (rowData == null) {
-      return null;
+  public void getRow(int row, TableCell[] rowCells) {
+    if (rowOffsets == null) {
+      System.arraycopy(cells, row * numberOfColumns, rowCells, 0, numberOfColumns);
+      return;
+    }
+    Arrays.fill(rowCells, null);
+    for (int index = rowOffsets[row]; index < rowOffsets[row] + rowSizes[row]; index++) {
+      rowCells[cellColumns[index]] = cells[index];
     }
-    return rowData.get(columnTitle);
   }
 
   /**
-   * Retrieves an entire row, in the form of a hashtable that maps a ColumnTitle
-   * to a TableCell.
+   * Returns the number of rows.
    *
-   * @param rowTitle The title of the row to retrieve.
+   * @return The number of rows.
+   */
+  public int getNumberOfRows() {
+    return numberOfRows;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return The number of columns.
+   */
+  public int getNumberOfColumns() {
+    return numberOfColumns;
+  }
+
+  /**
+   * Returns whether the cells are held in the dense layout.
    *
-   * @return The row.
+   * @return True if the cells are held in the dense layout.
    */
-  public Map<ColumnTitle, TableCell> getRow(RowTitle rowTitle) {
-    return data.get(rowTitle);
+  /* package */ boolean isDense() {
+    return (rowOffsets == null);
   }
 
   /**
-   * Returns true if this MetaTable is empty, i.e., contains no rows.
+   * Returns true if this MetaTable is empty, i.e., contains no cells.
    *
    * @return True if this MetaTable is empty.
    */
   public boolean isEmpty() {
-    return data.isEmpty();
+    return isEmpty;
   }
 }
@@ -0,0 +1,295 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.query.ColumnLookup;
+import com.google.visualization.datasource.query.QuerySort;
+import com.ibm.icu.util.ULocale;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the row-by-row stages of the query engine on chunks of the rows in parallel, using a
+ * given executor: filtering, aggregation, and sorting, of data tables and of columnar tables.
+ *
+ * The rows are split into at most one chunk per available processor, and into chunks of at least
+ * a minimal size, so that small tables are processed on the calling thread. The results are the
+ * same as when the stages are run sequentially, in the same order, except that sums may differ
+ * in rounding.
+ */
+/* package */ class ParallelStages {
+
+  /**
+   * The default minimal number of rows in a chunk.
+   */
+  static final int DEFAULT_MIN_CHUNK_SIZE = 8192;
+
+  /**
+   * The executor running the chunks.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The maximal number of chunks.
+   */
+  private final int parallelism;
+
+  /**
+   * The minimal number of rows in a chunk.
+   */
+  private final int minChunkSize;
+
+  /**
+   * Creates a new ParallelStages with one chunk per available processor and the default minimal
+   * chunk size.
+   *
+   * @param executor The executor running the chunks.
+   */
+  public ParallelStages(ExecutorService executor) {
+    this(executor, Runtime.getRuntime().availableProcessors(), DEFAULT_MIN_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a new ParallelStages.
+   *
+   * @param executor The executor running the chunks.
+   * @param parallelism The maximal number of chunks.
+   * @param minChunkSize The minimal number of rows in a chunk.
+   */
+  public ParallelStages(ExecutorService executor, int parallelism, int minChunkSize) {
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+    this.minChunkSize = Math.max(1, minChunkSize);
+  }
+
+  /**
+   * Returns the start index of each chunk of the given number of rows, followed by the number
+   * of rows.
+   *
+   * @param numberOfRows The number of rows.
+   *
+   * @return The chunk boundaries.
+   */
+  private int[] getChunkBoundaries(int numberOfRows) {
+    int numberOfChunks = Math.max(1, Math.min(parallelism, numberOfRows / minChunkSize));
+    int[] boundaries = new int[numberOfChunks + 1];
+    for (int i = 0; i <= numberOfChunks; i++) {
+      boundaries[i] = (int) ((long) numberOfRows * i / numberOfChunks);
+    }
+    return boundaries;
+  }
+
+  /**
+   * Runs the given tasks on the executor and returns their results, in order. An exception
+   * thrown by a task is rethrown.
+   *
+   * @param tasks The tasks.
+   *
+   * @return The results of the tasks.
+   */
+  private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+    List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+    if (tasks.size() == 1) {
+      // Not worth a thread switch.
+      try {
+        results.add(tasks.get(0).call());
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return results;
+    }
+    try {
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the indices of the rows that match a predicate, in ascending order.
+   *
+   * @param numberOfRows The number of rows the predicate is bound to.
+   * @param predicate The predicate. Must be safe to evaluate from several threads.
+   *
+   * @return The indices of the rows that match the predicate.
+   */
+  public int[] filter(int numberOfRows, final RowPredicate predicate) {
+    int[] boundaries = getChunkBoundaries(numberOfRows);
+    List<Callable<int[]>> tasks = Lists.newArrayList();
+    for (int i = 0; i < boundaries.length - 1; i++) {
+      final int start = boundaries[i];
+      final int end = boundaries[i + 1];
+      tasks.add(new Callable<int[]>() {
+        @Override
+        public int[] call() {
+          int[] result = new int[end - start];
+          int count = 0;
+          for (int row = start; row < end; row++) {
+            if (predicate.isMatch(row)) {
+              result[count++] = row;
+            }
+          }
+          return Arrays.copyOf(result, count);
+        }
+      });
+    }
+    List<int[]> chunkResults = invokeAll(tasks);
+    int count = 0;
+    for (int[] chunkResult : chunkResults) {
+      count += chunkResult.length;
+    }
+    int[] result = new int[count];
+    int offset = 0;
+    for (int[] chunkResult : chunkResults) {
+      System.arraycopy(chunkResult, 0, result, offset, chunkResult.length);
+      offset += chunkResult.length;
+    }
+    return result;
+  }
+
+  /**
+   * Aggregates rows into an aggregator. Each chunk of the rows is
+   * aggregated separately, the first into the given aggregator and the others into partial
+   * aggregators, which are then merged into it.
+   *
+   * @param aggregator The aggregator, which has no groups yet.
+   * @param rows The indices of the rows to aggregate.
+   */
+  public void aggregate(final GroupAggregator aggregator, final int[] rows) {
+    int[] boundaries = getChunkBoundaries(rows.length);
+    List<Callable<GroupAggregator>> tasks = Lists.newArrayList();
+    for (int i = 0; i < boundaries.length - 1; i++) {
+      final int start = boundaries[i];
+      final int end = boundaries[i + 1];
+      final GroupAggregator chunkAggregator = (i == 0) ? aggregator : aggregator.createPartial();
+      tasks.add(new Callable<GroupAggregator>() {
+        @Override
+        public GroupAggregator call() {
+          chunkAggregator.aggregate(rows, start, end);
+          return chunkAggregator;
+        }
+      });
+    }
+    List<GroupAggregator> partialAggregators = invokeAll(tasks);
+    for (int i = 1; i < partialAggregators.size(); i++) {
+      aggregator.merge(partialAggregators.get(i));
+    }
+  }
+
+  /**
+   * Sorts rows according to a query sort, with a stable parallel merge sort. The sort keys of
+   * each chunk are computed in parallel, each chunk is then sorted separately, and adjacent
+   * sorted runs are then merged in parallel, pairwise, until a single run remains.
+   *
+   * @param rows The rows to sort. Sorted in place.
+   * @param sort The ordering criteria.
+   * @param locale The locale defining the order relation of text values.
+   * @param lookup The column lookup.
+   */
+  public void sort(List<TableRow> rows, QuerySort sort, ULocale locale, ColumnLookup lookup) {
+    RowSortKeys keys = new RowSortKeys(sort, locale, lookup, rows);
+    keys.prepare();
+    int[] sortedIndices = sort(keys);
+    TableRow[] sortedRows = new TableRow[sortedIndices.length];
+    for (int i = 0; i < sortedIndices.length; i++) {
+      sortedRows[i] = rows.get(sortedIndices[i]);
+    }
+    for (int i = 0; i < sortedRows.length; i++) {
+      rows.set(i, sortedRows[i]);
+    }
+  }
+
+  /**
+   * Returns the indices of rows in stable sorted order, with a parallel merge sort. The keys of
+   * each chunk are computed, if needed, and the chunk is sorted separately, and adjacent sorted
+   * runs are then merged in parallel, pairwise, until a single run remains.
+   *
+   * @param keys The sort keys of the rows.
+   *
+   * @return The indices of the rows, in sorted order.
+   */
+  public int[] sort(final SortKeys keys) {
+    int[] boundaries = getChunkBoundaries(keys.size());
+    final int[] indices = new int[keys.size()];
+    final int[] buffer = new int[keys.size()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int i = 0; i < boundaries.length - 1; i++) {
+      final int start = boundaries[i];
+      final int end = boundaries[i + 1];
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          keys.computeKeys(start, end);
+          keys.sort(indices, buffer, start, end);
+          return null;
+        }
+      });
+    }
+    invokeAll(tasks);
+
+    int[] from = indices;
+    int[] to = buffer;
+    while (boundaries.length > 2) {
+      final int[] mergeFrom = from;
+      final int[] mergeTo = to;
+      int[] mergedBoundaries = new int[(boundaries.length / 2) + 1];
+      tasks = Lists.newArrayList();
+      for (int i = 0; i < boundaries.length - 1; i += 2) {
+        final int start = boundaries[i];
+        final int middle = boundaries[i + 1];
+        final int end = (i + 2 < boundaries.length) ? boundaries[i + 2] : middle;
+        mergedBoundaries[i / 2] = start;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            keys.merge(mergeFrom, mergeTo, start, middle, end);
+            return null;
+          }
+        });
+      }
+      mergedBoundaries[mergedBoundaries.length - 1] = indices.length;
+      invokeAll(tasks);
+      boundaries = mergedBoundaries;
+      from = mergeTo;
+      to = mergeFrom;
+    }
+    return from;
+  }
+}
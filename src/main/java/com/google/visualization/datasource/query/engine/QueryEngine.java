@@ -21,13 +21,16 @@ import com.google.visualization.datasource.base.ReasonType;
 import com.google.visualization.datasource.base.TypeMismatchException;
 import com.google.visualization.datasource.base.Warning;
 import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.ValueFormatter;
 import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.metrics.RequestMetrics;
 import com.google.visualization.datasource.query.AbstractColumn;
 import com.google.visualization.datasource.query.AggregationColumn;
+import com.google.visualization.datasource.query.AggregationType;
 import com.google.visualization.datasource.query.ColumnLookup;
 import com.google.visualization.datasource.query.DataTableColumnLookup;
 import com.google.visualization.datasource.query.GenericColumnLookup;
@@ -45,13 +48,12 @@ import com.google.visualization.datasource.query.SimpleColumn;
 import com.ibm.icu.util.ULocale;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -85,7 +87,7 @@ public final class QueryEngine {
    * @return The new TableDescription.
    */
   private static DataTable createDataTable(
-      List<String> groupByColumnIds, SortedSet<ColumnTitle> columnTitles,
+      List<String> groupByColumnIds, List<ColumnTitle> columnTitles,
       DataTable original, List<ScalarFunctionColumnTitle> scalarFunctionColumnTitles) {
     DataTable result = new DataTable();
     for (String groupById : groupByColumnIds) {
@@ -112,36 +114,322 @@ public final class QueryEngine {
    * @return The data that is the result of executing the query.
    */
   public static DataTable executeQuery(Query query, DataTable table, ULocale locale) {
+    return executeQuery(query, table, locale, null);
+  }
+
+  /**
+   * Returns the data that is the result of executing the query, running the filtering,
+   * aggregation and sorting of large tables in parallel on the given executor. The rows are
+   * split into chunks, at most one per available processor; small tables are processed on the
+   * calling thread. The result is the same as that of {@link #executeQuery(Query, DataTable,
+   * ULocale)}, except that sums and averages may differ in rounding.
+   * This function may change the given DataTable.
+   *
+   * @param query The query.
+   * @param table The table to execute the query on.
+   * @param locale The user locale.
+   * @param executor The executor to run the parallel stages on, or null to run the query
+   *     sequentially.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  public static DataTable executeQuery(Query query, DataTable table, ULocale locale,
+      ExecutorService executor) {
+    return executeQuery(query, table, locale, executor, RequestMetrics.NONE);
+  }
+
+  /**
+   * Returns the data that is the result of executing the query, and records the latency of
+   * each stage of the engine and the number of rows it output. See {@link #executeQuery(Query,
+   * DataTable, ULocale, ExecutorService)}.
+   * This function may change the given DataTable.
+   *
+   * @param query The query.
+   * @param table The table to execute the query on.
+   * @param locale The user locale.
+   * @param executor The executor to run the parallel stages on, or null to run the query
+   *     sequentially.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  public static DataTable executeQuery(Query query, DataTable table, ULocale locale,
+      ExecutorService executor, RequestMetrics metrics) {
+    ParallelStages parallelStages = (executor == null) ? null : new ParallelStages(executor);
+    long startTime = System.nanoTime();
+    try {
+      List<ScalarFunctionColumn> materializedColumns =
+          CommonSubexpressions.getColumnsBeforeFilter(query);
+      if (materializedColumns.isEmpty()) {
+        table = performFilter(table, query.getFilter(), parallelStages);
+      } else {
+        // Evaluate the parts of the filter that do not use the materialized columns first, so
+        // that the columns are only computed for the rows that pass them.
+        QueryFilter[] filters = QueryPlanner.splitFilter(query.getFilter(), materializedColumns);
+        table = performFilter(table, filters[0], parallelStages);
+        table = CommonSubexpressions.materialize(table, materializedColumns,
+            QueryPlanner.getRequiredColumnIds(query));
+        table = performFilter(table, filters[1], parallelStages);
+      }
+    } catch (TypeMismatchException e) {
+      // Should not happen.
+    }
+    metrics.recordStage("engine.filter", startTime, table.getNumberOfRows());
+    return executeQueryOnFilteredTable(query, table, locale, parallelStages, metrics);
+  }
+
+  /**
+   * Returns the data that is the result of executing the query on a columnar table. See
+   * {@link #executeQuery(Query, ColumnarDataTable, ULocale, ExecutorService, RequestMetrics)}.
+   *
+   * @param query The query.
+   * @param table The columnar table to execute the query on.
+   * @param locale The user locale.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  public static DataTable executeQuery(Query query, ColumnarDataTable table, ULocale locale) {
+    return executeQuery(query, table, locale, null, RequestMetrics.NONE);
+  }
+
+  /**
+   * Returns the data that is the result of executing the query on a columnar table, and records
+   * the latency of each stage of the engine and the number of rows it output. The given columnar
+   * table is not changed, so it can be cached and queried many times.
+   *
+   * The filter is evaluated on the column vectors (see {@link FilterCompiler}), which
+   * gives the indices of the matching rows. When the query is grouped by simple columns, the
+   * matching rows are aggregated on the vectors too (see {@link VectorAggregator}), and none of
+   * them is converted to a table row. When it is not grouped, they are sorted on the vectors if
+   * the sort is by simple columns (see {@link VectorSortKeys}), and only the ones that skipping
+   * and pagination can use are converted to table rows. Otherwise, the matching rows are
+   * converted, and the rest of the query is executed on them as for a data table.
+   *
+   * @param query The query.
+   * @param table The columnar table to execute the query on.
+   * @param locale The user locale.
+   * @param executor The executor to run the parallel stages on, or null to run the query
+   *     sequentially.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  public static DataTable executeQuery(Query query, ColumnarDataTable table, ULocale locale,
+      ExecutorService executor, RequestMetrics metrics) {
+    ParallelStages parallelStages = (executor == null) ? null : new ParallelStages(executor);
+    long startTime = System.nanoTime();
+    List<ScalarFunctionColumn> materializedColumns =
+        CommonSubexpressions.getColumnsBeforeFilter(query);
+    if (materializedColumns.isEmpty()) {
+      int[] rows = performFilter(table, query.getFilter(), parallelStages);
+      metrics.recordStage("engine.filter", startTime, rows.length);
+      return executeQueryOnFilteredRows(query, table, rows, locale, parallelStages, metrics);
+    }
+
+    // Evaluate the parts of the filter that do not use the materialized columns on the vectors,
+    // and the rest on the rows that pass them, once the columns are computed for these rows.
+    QueryFilter[] filters = QueryPlanner.splitFilter(query.getFilter(), materializedColumns);
+    DataTable filteredTable =
+        table.toDataTable(performFilter(table, filters[0], parallelStages));
+    try {
+      filteredTable = CommonSubexpressions.materialize(filteredTable, materializedColumns,
+          QueryPlanner.getRequiredColumnIds(query));
+      filteredTable = performFilter(filteredTable, filters[1], parallelStages);
+    } catch (TypeMismatchException e) {
+      // Should not happen.
+    }
+    metrics.recordStage("engine.filter", startTime, filteredTable.getNumberOfRows());
+    return executeQueryOnFilteredTable(query, filteredTable, locale, parallelStages, metrics);
+  }
+
+  /**
+   * Returns the data that is the result of executing all the parts of the query except for the
+   * filter on the given rows of a columnar table, which are the rows that match the filter.
+   * Grouping and sorting are done on the column vectors when they are by simple columns of the
+   * table.
+   *
+   * @param query The query.
+   * @param table The columnar table.
+   * @param rows The indices of the filtered rows in the table, in ascending order.
+   * @param locale The user locale.
+   * @param parallelStages Runs stages in parallel, or null to run them sequentially.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  private static DataTable executeQueryOnFilteredRows(Query query, ColumnarDataTable table,
+      int[] rows, ULocale locale, ParallelStages parallelStages, RequestMetrics metrics) {
+    boolean isGrouped = queryHasAggregation(query);
+    if (isGrouped ? ((rows.length == 0) || !canGroupOnVectors(query, table))
+        : (query.hasSort() && !areColumnsOf(table, query.getSort().getColumns()))) {
+      return executeQueryOnFilteredTable(query, table.toDataTable(rows), locale, parallelStages,
+          metrics);
+    }
     ColumnIndices columnIndices = new ColumnIndices();
+    TreeMap<List<Value>, ColumnLookup> columnLookups =
+        new TreeMap<List<Value>, ColumnLookup>(GroupingComparators.VALUE_LIST_COMPARATOR);
+    DataTable result = null;
+    try {
+      long startTime = System.nanoTime();
+      if (isGrouped) {
+        result = performGroupingAndPivoting(table, rows, query, columnIndices, columnLookups,
+            parallelStages);
+        metrics.recordStage("engine.group", startTime, result.getNumberOfRows());
+        startTime = System.nanoTime();
+        result = performSort(result, query, locale, parallelStages);
+        metrics.recordStage("engine.sort", startTime);
+      } else {
+        // Only the rows that skipping and pagination can use are converted, and the columns
+        // that are used more than once are computed for them only.
+        result = table.toDataTable(performSort(table, rows, query, locale, parallelStages));
+        metrics.recordStage("engine.sort", startTime);
+        startTime = System.nanoTime();
+        result = CommonSubexpressions.materialize(result,
+            CommonSubexpressions.getColumnsAfterFilter(query),
+            QueryPlanner.getRequiredColumnIds(query));
+        putColumnIndices(columnIndices, result);
+        metrics.recordStage("engine.materialize", startTime);
+      }
+      result = executeQueryOnSortedTable(query, result, locale, metrics, columnIndices,
+          columnLookups);
+    } catch (TypeMismatchException e) {
+      // Should not happen.
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the query is grouped and pivoted by simple columns of a columnar table,
+   * and aggregates columns of the table, so that it can be grouped on the column vectors.
+   *
+   * @param query The query, which has aggregations.
+   * @param table The columnar table.
+   *
+   * @return True if the query can be grouped on the column vectors of the table.
+   */
+  private static boolean canGroupOnVectors(Query query, ColumnarDataTable table) {
+    List<AbstractColumn> columns = Lists.newArrayList();
+    if (query.hasGroup()) {
+      columns.addAll(query.getGroup().getColumns());
+    }
+    if (query.hasPivot()) {
+      columns.addAll(query.getPivot().getColumns());
+    }
+    for (AggregationColumn column : query.getSelection().getAggregationColumns()) {
+      columns.add(column.getAggregatedColumn());
+    }
+    return areColumnsOf(table, columns);
+  }
+
+  /**
+   * Returns true if all the given columns are simple columns of a columnar table.
+   *
+   * @param table The columnar table.
+   * @param columns The columns.
+   *
+   * @return True if all the columns are simple columns of the table.
+   */
+  private static boolean areColumnsOf(ColumnarDataTable table,
+      List<? extends AbstractColumn> columns) {
+    for (AbstractColumn column : columns) {
+      if (!(column instanceof SimpleColumn) || !table.containsColumn(column.getId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Puts the index of each column of a table, as a simple column, in a column indices map.
+   *
+   * @param columnIndices The column indices map.
+   * @param table The table.
+   */
+  private static void putColumnIndices(ColumnIndices columnIndices, DataTable table) {
     List<ColumnDescription> columnsDescription = table.getColumnDescriptions();
     for (int i = 0; i < columnsDescription.size(); i++) {
       columnIndices.put(new SimpleColumn(columnsDescription.get(i).getId()), i);
     }
+  }
+
+  /**
+   * Returns the data that is the result of executing all the parts of the query except for the
+   * filter, which was already applied to the given table.
+   *
+   * @param query The query.
+   * @param table The filtered table.
+   * @param locale The user locale.
+   * @param parallelStages Runs stages in parallel, or null to run them sequentially.
+   * @param metrics The metrics of the request.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  private static DataTable executeQueryOnFilteredTable(Query query, DataTable table,
+      ULocale locale, ParallelStages parallelStages, RequestMetrics metrics) {
+    long startTime = System.nanoTime();
+    table = CommonSubexpressions.materialize(table,
+        CommonSubexpressions.getColumnsAfterFilter(query),
+        QueryPlanner.getRequiredColumnIds(query));
+    metrics.recordStage("engine.materialize", startTime);
+    ColumnIndices columnIndices = new ColumnIndices();
+    putColumnIndices(columnIndices, table);
 
     // A map of column lookups by their list of pivot values. This is utilized in
     // the grouping and pivoting queries.
     TreeMap<List<Value>, ColumnLookup> columnLookups =
         new TreeMap<List<Value>, ColumnLookup>(GroupingComparators.VALUE_LIST_COMPARATOR);
     try {
-      table = performFilter(table, query);
-      table = performGroupingAndPivoting(table, query, columnIndices, columnLookups);
-      table = performSort(table, query, locale);
-      table = performSkipping(table, query);
-      table = performPagination(table, query);
-
-      AtomicReference<ColumnIndices> columnIndicesReference =
-        new AtomicReference<ColumnIndices>(columnIndices);
-      table = performSelection(table, query, columnIndicesReference, columnLookups);
-      columnIndices = columnIndicesReference.get();
-
-      table = performLabels(table, query, columnIndices);
-      table = performFormatting(table, query, columnIndices, locale);
+      startTime = System.nanoTime();
+      table = performGroupingAndPivoting(table, query, columnIndices, columnLookups,
+          parallelStages);
+      metrics.recordStage("engine.group", startTime, table.getNumberOfRows());
+      startTime = System.nanoTime();
+      table = performSort(table, query, locale, parallelStages);
+      metrics.recordStage("engine.sort", startTime);
+      table = executeQueryOnSortedTable(query, table, locale, metrics, columnIndices,
+          columnLookups);
     } catch (TypeMismatchException e) {
       // Should not happen.
     }
     return table;
   }
 
+  /**
+   * Returns the data that is the result of executing the parts of the query that follow the
+   * sort (skipping, pagination, selection, labels and formatting) on the given table, which is
+   * already grouped and sorted.
+   *
+   * @param query The query.
+   * @param table The grouped and sorted table.
+   * @param locale The user locale.
+   * @param metrics The metrics of the request.
+   * @param columnIndices The indices of the columns of the table.
+   * @param columnLookups A map of column lookups by their list of pivot values.
+   *
+   * @return The data that is the result of executing the query.
+   */
+  private static DataTable executeQueryOnSortedTable(Query query, DataTable table,
+      ULocale locale, RequestMetrics metrics, ColumnIndices columnIndices,
+      Map<List<Value>, ColumnLookup> columnLookups) throws TypeMismatchException {
+    long startTime = System.nanoTime();
+    table = performSkipping(table, query);
+    table = performPagination(table, query);
+    metrics.recordStage("engine.paginate", startTime, table.getNumberOfRows());
+
+    startTime = System.nanoTime();
+    AtomicReference<ColumnIndices> columnIndicesReference =
+      new AtomicReference<ColumnIndices>(columnIndices);
+    table = performSelection(table, query, columnIndicesReference, columnLookups);
+    columnIndices = columnIndicesReference.get();
+    metrics.recordStage("engine.select", startTime);
+
+    startTime = System.nanoTime();
+    table = performLabels(table, query, columnIndices);
+    table = performFormatting(table, query, columnIndices, locale);
+    metrics.recordStage("engine.format", startTime);
+    return table;
+  }
+
   /**
    * Returns a table consisted of a subset of rows of the input table. 
    * We select the first out of every k rows in the table according to the 
@@ -215,14 +503,21 @@ public final class QueryEngine {
 
   /**
    * Returns a table sorted according to the query's sort.
-   * The returned table has the same rows as the original table.
+   * The returned table is the original table, with its rows sorted in place, unless the query
+   * has a row limit, in which case only the rows that can be part of the result after skipping
+   * and pagination are kept, together with the one that follows them (so that pagination can
+   * tell whether the data is truncated). These are selected without sorting the whole table, see
+   * {@link TopKSelector}, and returned in a new table; the rows of the original table are not
+   * changed.
    *
    * @param table The table to sort.
    * @param query The query.
+   * @param parallelStages Runs the stage in parallel, or null to run it sequentially.
    *
    * @return The sorted table.
    */
-  private static DataTable performSort(DataTable table, Query query, ULocale locale) {
+  private static DataTable performSort(DataTable table, Query query, ULocale locale,
+      ParallelStages parallelStages) throws TypeMismatchException {
     if (!query.hasSort()) {
       return table;
     }
@@ -231,35 +526,181 @@ public final class QueryEngine {
     // that has multiple matching columns after pivoting is impossible. For example,
     // it is impossible to sort by an aggregation column when there is a pivot.
     DataTableColumnLookup columnLookup = new DataTableColumnLookup(table);
-    TableRowComparator comparator = new TableRowComparator(sortBy, locale, columnLookup);
-    Collections.sort(table.getRows(), comparator);
+    List<TableRow> rows = table.getRows();
+    int maxRows = getMaxSortedRows(query);
+    if ((parallelStages != null) && (maxRows >= rows.size())) {
+      parallelStages.sort(rows, sortBy, locale, columnLookup);
+      return table;
+    }
+    // The sort keys of each row are computed once, see RowSortKeys.
+    RowSortKeys keys = RowSortKeys.compute(sortBy, locale, columnLookup, rows);
+    if (maxRows < rows.size()) {
+      // The selected rows are put in a new table, since the given table keeps all its rows.
+      int[] selectedIndices = TopKSelector.select(rows.size(), keys, maxRows);
+      List<TableRow> selectedRows = Lists.newArrayListWithCapacity(selectedIndices.length);
+      for (int index : selectedIndices) {
+        selectedRows.add(rows.get(index));
+      }
+      return createTableWithRows(table, selectedRows);
+    }
+    int[] sortedIndices = keys.sortedIndices();
+    TableRow[] sortedRows = new TableRow[sortedIndices.length];
+    for (int i = 0; i < sortedIndices.length; i++) {
+      sortedRows[i] = rows.get(sortedIndices[i]);
+    }
+    // The rows are reordered in place, as they were already validated against the columns.
+    for (int i = 0; i < sortedRows.length; i++) {
+      rows.set(i, sortedRows[i]);
+    }
     return table;
   }
 
   /**
-   * Returns a table that has only the rows from the given table that match the filter
-   * provided by a query.
+   * Returns the indices of rows of a columnar table sorted according to the query's sort, which
+   * is by simple columns of the table. Like {@link #performSort(DataTable, Query, ULocale,
+   * ParallelStages)}, only the rows that can be part of the result after skipping and
+   * pagination are kept, together with the one that follows them. If the query has no sort,
+   * these are the first rows.
+   *
+   * @param table The columnar table.
+   * @param rows The indices of the rows to sort in the table.
+   * @param query The query.
+   * @param locale The user locale.
+   * @param parallelStages Runs the stage in parallel, or null to run it sequentially.
+   *
+   * @return The indices of the sorted rows.
+   */
+  private static int[] performSort(ColumnarDataTable table, int[] rows, Query query,
+      ULocale locale, ParallelStages parallelStages) {
+    int maxRows = getMaxSortedRows(query);
+    if (!query.hasSort()) {
+      return (maxRows < rows.length) ? Arrays.copyOf(rows, maxRows) : rows;
+    }
+    QuerySort sortBy = query.getSort();
+    int[] sortedIndices;
+    if (maxRows < rows.length) {
+      sortedIndices = TopKSelector.select(rows.length,
+          VectorSortKeys.compute(sortBy, locale, table, rows), maxRows);
+    } else if (parallelStages != null) {
+      sortedIndices = parallelStages.sort(new VectorSortKeys(sortBy, locale, table, rows));
+    } else {
+      sortedIndices = VectorSortKeys.compute(sortBy, locale, table, rows).sortedIndices();
+    }
+    int[] sortedRows = new int[sortedIndices.length];
+    for (int i = 0; i < sortedIndices.length; i++) {
+      sortedRows[i] = rows[sortedIndices[i]];
+    }
+    return sortedRows;
+  }
+
+  /**
+   * Returns the number of sorted rows that skipping and pagination need: the rows that can
+   * be part of the result, and the one that follows them. Returns Integer.MAX_VALUE if the
+   * query has no row limit.
    *
-   * @param table The table to filter.
    * @param query The query.
    *
+   * @return The number of sorted rows needed.
+   */
+  private static int getMaxSortedRows(Query query) {
+    int rowLimit = query.getRowLimit();
+    if (rowLimit == -1) {
+      return Integer.MAX_VALUE;
+    }
+    long skipping = Math.max(1, query.getRowSkipping());
+    long maxRows = (Math.max(0, query.getRowOffset()) + (long) rowLimit) * skipping + 1;
+    return (int) Math.min(Integer.MAX_VALUE, maxRows);
+  }
+
+  /**
+   * Returns a table that has only the rows from the given table that match a filter.
+   * The filter is compiled for the table once, see {@link FilterCompiler}. The given table,
+   * which may be the table returned by the data source, is not changed.
+   *
+   * @param table The table to filter.
+   * @param filter The filter, or null to keep all the rows.
+   * @param parallelStages Runs the stage in parallel, or null to run it sequentially.
+   *
    * @return The filtered table.
    */
-  private static DataTable performFilter(DataTable table, Query query)
-      throws TypeMismatchException {
-    if (!query.hasFilter()) {
+  private static DataTable performFilter(DataTable table, QueryFilter filter,
+      ParallelStages parallelStages) throws TypeMismatchException {
+    if (filter == null) {
       return table;
     }
 
-    List<TableRow> newRowList = Lists.newArrayList();
-    QueryFilter filter = query.getFilter();
-    for (TableRow inputRow : table.getRows()) {
-      if (filter.isMatch(table, inputRow)) {
-        newRowList.add(inputRow);
+    IndexedRows rows = IndexedRows.of(table);
+    int[] matchingRows = performFilter(rows, FilterCompiler.compile(filter, rows),
+        parallelStages);
+    List<TableRow> newRowList = Lists.newArrayListWithCapacity(matchingRows.length);
+    for (int row : matchingRows) {
+      newRowList.add(rows.getRow(row));
+    }
+    return createTableWithRows(table, newRowList);
+  }
+
+  /**
+   * Returns a new table with the columns and warnings of a table, and the given rows.
+   *
+   * @param table The table.
+   * @param rows The rows of the new table, which have the columns of the table.
+   *
+   * @return The new table.
+   */
+  private static DataTable createTableWithRows(DataTable table, List<TableRow> rows)
+      throws TypeMismatchException {
+    DataTable result = new DataTable();
+    result.addColumns(table.getColumnDescriptions());
+    for (Warning warning : table.getWarnings()) {
+      result.addWarning(warning);
+    }
+    result.addRows(rows);
+    return result;
+  }
+
+  /**
+   * Returns the indices of the rows of a columnar table that match a filter, in ascending
+   * order. The filter is compiled for the column vectors of the table once, see
+   * {@link FilterCompiler}.
+   *
+   * @param table The columnar table.
+   * @param filter The filter, or null to keep all the rows.
+   * @param parallelStages Runs the stage in parallel, or null to run it sequentially.
+   *
+   * @return The indices of the matching rows.
+   */
+  private static int[] performFilter(ColumnarDataTable table, QueryFilter filter,
+      ParallelStages parallelStages) {
+    IndexedRows rows = IndexedRows.of(table);
+    if (filter == null) {
+      return rows.getIndices();
+    }
+    return performFilter(rows, FilterCompiler.compile(filter, rows), parallelStages);
+  }
+
+  /**
+   * Returns the indices of the rows that match a compiled filter, in ascending order.
+   *
+   * @param rows The rows.
+   * @param predicate The filter, compiled for the rows.
+   * @param parallelStages Runs the stage in parallel, or null to run it sequentially.
+   *
+   * @return The indices of the matching rows.
+   */
+  private static int[] performFilter(IndexedRows rows, RowPredicate predicate,
+      ParallelStages parallelStages) {
+    int numberOfRows = rows.size();
+    if (parallelStages != null) {
+      return parallelStages.filter(numberOfRows, predicate);
+    }
+    int[] matchingRows = new int[numberOfRows];
+    int numberOfMatchingRows = 0;
+    for (int row = 0; row < numberOfRows; row++) {
+      if (predicate.isMatch(row)) {
+        matchingRows[numberOfMatchingRows++] = row;
       }
     }
-    table.setRows(newRowList);
-    return table;
+    return Arrays.copyOf(matchingRows, numberOfMatchingRows);
   }
 
   /**
@@ -317,35 +758,60 @@ public final class QueryEngine {
     DataTable result = new DataTable();
     result.addColumns(newColumnDescriptions);
 
-    // Calculate the values in the data table rows.
-    for (TableRow sourceRow : table.getRows()) {
-      TableRow newRow = new TableRow();
-      for (AbstractColumn col : selectedColumns) {
-        boolean wasFound = false;
-        Set<List<Value>> pivotValuesSet = columnLookups.keySet();
-        for (List<Value> values : pivotValuesSet) {
-          // If the current column-lookup contains the current column and it is
-          // either a column that contains aggregations or a column that
-          // contains only group-by columns and was not yet found, get its value
-          // in the current row. Otherwise continue. If the column contains
-          // only group-by columns it should appear only once, even though
-          // it may appear in many column lookups.
-          if (columnLookups.get(values).containsColumn(col)
-              && ((col.getAllAggregationColumns().size() != 0) || !wasFound)) {
-            wasFound = true;
-            newRow.addCell(sourceRow.getCell(columnLookups.get(values).getColumnIndex(col)));
-          }
+    // Plan the selection once for the query: the index in the source rows of each cell of the
+    // new rows, or, for a negative entry -(k + 1), the k-th computed column. The scalar function
+    // columns that were not found in any of the column lookups and were not calculated in a
+    // previous stage are computed a column at a time.
+    List<TableRow> sourceRows = table.getRows();
+    DataTableColumnLookup tableLookup = new DataTableColumnLookup(table);
+    List<Integer> plan = Lists.newArrayList();
+    List<Value[]> computedValues = Lists.newArrayList();
+    for (AbstractColumn col : selectedColumns) {
+      boolean isAggregation = (col.getAllAggregationColumns().size() != 0);
+      boolean wasFound = false;
+      for (ColumnLookup columnLookup : columnLookups.values()) {
+        // If the current column-lookup contains the current column and it is
+        // either a column that contains aggregations or a column that
+        // contains only group-by columns and was not yet found, get its value
+        // from the current row. Otherwise continue. If the column contains
+        // only group-by columns it should appear only once, even though
+        // it may appear in many column lookups.
+        if (columnLookup.containsColumn(col) && (isAggregation || !wasFound)) {
+          wasFound = true;
+          plan.add(columnLookup.getColumnIndex(col));
+        }
+      }
+      // If the column was not found in any of the column lookups
+      // get its cell from the table, or compute it.
+      if (!wasFound) {
+        if (tableLookup.containsColumn(col)) {
+          plan.add(tableLookup.getColumnIndex(col));
+        } else {
+          computedValues.add(ColumnEvaluator.create(col, tableLookup).evaluateColumn(sourceRows));
+          plan.add(-computedValues.size());
         }
-        // If the column was not found in any of the column lookups
-        // calculate its value (e.g., scalar function column that was not
-        // calculated in a previous stage).
-        if (!wasFound) {
-          DataTableColumnLookup lookup = new DataTableColumnLookup(table);
-          newRow.addCell(col.getCell(lookup, sourceRow));
+      }
+    }
+    int[] sourceIndices = new int[plan.size()];
+    for (int i = 0; i < sourceIndices.length; i++) {
+      sourceIndices[i] = plan.get(i);
+    }
+
+    // Copy the cells of the data table rows.
+    List<TableRow> newRows = Lists.newArrayListWithCapacity(sourceRows.size());
+    for (int rowIndex = 0; rowIndex < sourceRows.size(); rowIndex++) {
+      TableRow sourceRow = sourceRows.get(rowIndex);
+      TableRow newRow = new TableRow();
+      for (int sourceIndex : sourceIndices) {
+        if (sourceIndex >= 0) {
+          newRow.addCell(sourceRow.getCell(sourceIndex));
+        } else {
+          newRow.addCell(new TableCell(computedValues.get(-sourceIndex - 1)[rowIndex]));
         }
       }
-      result.addRow(newRow);
+      newRows.add(newRow);
     }
+    result.addRows(newRows);
     return result;
   }
 
@@ -395,12 +861,14 @@ public final class QueryEngine {
    *     of the new columns, if grouping is performed, and then any
    *     previous values in it are cleared. If grouping is not performed, it is
    *     left as is.
+   * @param columnLookups A map of column lookups by their list of pivot values.
+   * @param parallelStages Runs the aggregation in parallel, or null to run it sequentially.
    *
    * @return The new table, after grouping and pivoting was performed.
    */
   private static DataTable performGroupingAndPivoting(DataTable table, Query query,
-      ColumnIndices columnIndices, TreeMap<List<Value>, ColumnLookup> columnLookups)
-      throws TypeMismatchException {
+      ColumnIndices columnIndices, TreeMap<List<Value>, ColumnLookup> columnLookups,
+      ParallelStages parallelStages) throws TypeMismatchException {
     if (!queryHasAggregation(query) || (table.getNumberOfRows() == 0)) {
       return table;
     }
@@ -421,21 +889,13 @@ public final class QueryEngine {
     List<String> groupAndPivotIds = Lists.newArrayList(groupByIds);
     groupAndPivotIds.addAll(pivotByIds);
 
-    List<AggregationColumn> tmpColumnAggregations = selection.getAggregationColumns();
-    List<ScalarFunctionColumn> selectedScalarFunctionColumns = selection.getScalarFunctionColumns();
-    
-    // Remove duplicates from tmpColumnAggregations, creating columnAggregations:
-    List<AggregationColumn> columnAggregations =
-      Lists.newArrayListWithExpectedSize(tmpColumnAggregations.size());
-    for (AggregationColumn aggCol : tmpColumnAggregations) {
-      if (!columnAggregations.contains(aggCol)) {
-        columnAggregations.add(aggCol);
-      }
-    }
-    
+    List<AggregationColumn> columnAggregations = getDistinctAggregationColumns(selection);
+
     List<String> aggregationIds = Lists.newArrayList();
+    List<AggregationType> aggregationTypes = Lists.newArrayList();
     for (AggregationColumn col : columnAggregations) {
       aggregationIds.add(col.getAggregatedColumn().getId());
+      aggregationTypes.add(col.getAggregationType());
     }
 
     List<ScalarFunctionColumn> groupAndPivotScalarFunctionColumns = Lists.newArrayList();
@@ -446,83 +906,198 @@ public final class QueryEngine {
       groupAndPivotScalarFunctionColumns.addAll(pivot.getScalarFunctionColumns());
     }
 
-    List<ColumnDescription> newColumnDescriptions = Lists.newArrayList();
-    newColumnDescriptions.addAll(table.getColumnDescriptions());
+    // Add to the table the scalar function columns included in the group and pivot. The groups
+    // of rows are defined according to the values of those columns, and so it is necessary to
+    // add them before the calculations of the groups, pivots and aggregations. Columns that were
+    // already materialized before the filter are in the table. The rows are copied only if there
+    // are such columns, and then only with the columns that the query uses.
+    table = CommonSubexpressions.materialize(table, groupAndPivotScalarFunctionColumns,
+        QueryPlanner.getRequiredColumnIds(query));
 
-    // Add to the table description the scalar function columns included in the
-    // group and pivot. The groups of rows are defined according to the
-    // values of those columns, and so it is necessary to add them before the
-    // calculations of the groups, pivots and aggregations.
-    for (ScalarFunctionColumn column : groupAndPivotScalarFunctionColumns) {
-      newColumnDescriptions.add(new ColumnDescription(column.getId(),
-          column.getValueType(table),
-          ScalarFunctionColumnTitle.getColumnDescriptionLabel(table, column)));
+    // Calculate the aggregations.
+    IndexedRows rows = IndexedRows.of(table);
+    HashAggregator aggregator =
+        new HashAggregator(rows, groupAndPivotIds, aggregationIds, aggregationTypes);
+    aggregate(aggregator, rows.getIndices(), parallelStages);
+    return createGroupedTable(table, query, groupByIds, columnAggregations, aggregator,
+        columnIndices, columnLookups);
+  }
+
+  /**
+   * Returns the result of performing the grouping (and pivoting) operations on the given rows
+   * of a columnar table, which are not empty. The query is grouped and pivoted by simple columns
+   * of the table, and the rows are aggregated on the column vectors, see
+   * {@link VectorAggregator}. The result is the same as the one of {@link
+   * #performGroupingAndPivoting(DataTable, Query, ColumnIndices, TreeMap, ParallelStages)} for
+   * a data table with the same rows.
+   *
+   * @param table The columnar table.
+   * @param rows The indices of the rows to group in the table.
+   * @param query The query.
+   * @param columnIndices A map, in which this method sets the indices of the new columns.
+   * @param columnLookups A map of column lookups by their list of pivot values.
+   * @param parallelStages Runs the aggregation in parallel, or null to run it sequentially.
+   *
+   * @return The new table, after grouping and pivoting was performed.
+   */
+  private static DataTable performGroupingAndPivoting(ColumnarDataTable table, int[] rows,
+      Query query, ColumnIndices columnIndices, TreeMap<List<Value>, ColumnLookup> columnLookups,
+      ParallelStages parallelStages) throws TypeMismatchException {
+    List<String> groupByIds = Lists.newArrayList();
+    if (query.hasGroup()) {
+      groupByIds = query.getGroup().getColumnIds();
+    }
+    List<String> groupAndPivotIds = Lists.newArrayList(groupByIds);
+    if (query.hasPivot()) {
+      groupAndPivotIds.addAll(query.getPivot().getColumnIds());
+    }
+    List<AggregationColumn> columnAggregations =
+        getDistinctAggregationColumns(query.getSelection());
+    List<String> aggregationIds = Lists.newArrayList();
+    List<AggregationType> aggregationTypes = Lists.newArrayList();
+    for (AggregationColumn col : columnAggregations) {
+      aggregationIds.add(col.getAggregatedColumn().getId());
+      aggregationTypes.add(col.getAggregationType());
     }
 
-    DataTable tempTable = new DataTable();
-    tempTable.addColumns(newColumnDescriptions);
+    VectorAggregator aggregator =
+        new VectorAggregator(table, groupAndPivotIds, aggregationIds, aggregationTypes);
+    aggregate(aggregator, rows, parallelStages);
+    return createGroupedTable(table.createEmptyDataTable(), query, groupByIds,
+        columnAggregations, aggregator, columnIndices, columnLookups);
+  }
 
-    // Calculate the values of the added scalar function columns in each row.
-    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
-    for (TableRow sourceRow : table.getRows()) {
-      TableRow newRow = new TableRow();
-      for (TableCell sourceCell : sourceRow.getCells()) {
-        newRow.addCell(sourceCell);
-      }
-      for (ScalarFunctionColumn column : groupAndPivotScalarFunctionColumns) {
-        newRow.addCell(new TableCell(column.getValue(lookup, sourceRow)));
-      }
-      try {
-        tempTable.addRow(newRow);
-      } catch (TypeMismatchException e) {
-        // Should not happen, given that the original table is OK.
+  /**
+   * Aggregates rows into an aggregator.
+   *
+   * @param aggregator The aggregator, which has no groups yet.
+   * @param rows The indices of the rows to aggregate.
+   * @param parallelStages Runs the aggregation in parallel, or null to run it sequentially.
+   */
+  private static void aggregate(GroupAggregator aggregator, int[] rows,
+      ParallelStages parallelStages) {
+    if (parallelStages != null) {
+      parallelStages.aggregate(aggregator, rows);
+    } else {
+      aggregator.aggregate(rows, 0, rows.length);
+    }
+  }
+
+  /**
+   * Returns the aggregation columns of a selection, without duplicates.
+   *
+   * @param selection The selection.
+   *
+   * @return The distinct aggregation columns of the selection, in their order.
+   */
+  private static List<AggregationColumn> getDistinctAggregationColumns(
+      QuerySelection selection) {
+    List<AggregationColumn> tmpColumnAggregations = selection.getAggregationColumns();
+    List<AggregationColumn> columnAggregations =
+      Lists.newArrayListWithExpectedSize(tmpColumnAggregations.size());
+    for (AggregationColumn aggCol : tmpColumnAggregations) {
+      if (!columnAggregations.contains(aggCol)) {
+        columnAggregations.add(aggCol);
       }
     }
-    table = tempTable;
+    return columnAggregations;
+  }
 
-    // Calculate the aggregations.
-    TableAggregator aggregator = new TableAggregator(groupAndPivotIds,
-        Sets.newHashSet(aggregationIds), table);
-    Set<AggregationPath> paths = aggregator.getPathsToLeaves();
+  /**
+   * Returns the grouped table, given the aggregation of the rows of a table, and fills the
+   * column indices and column lookups of the new columns. See {@link
+   * #performGroupingAndPivoting(DataTable, Query, ColumnIndices, TreeMap, ParallelStages)}.
+   *
+   * @param table The original table, which defines the original columns.
+   * @param query The query.
+   * @param groupByIds The ids of the group-by columns.
+   * @param columnAggregations The distinct aggregation columns of the query.
+   * @param aggregator The aggregation of the rows of the table, by the group-by columns
+   *     followed by the pivot-by columns.
+   * @param columnIndices A map, in which this method sets the indices of the new columns.
+   * @param columnLookups A map of column lookups by their list of pivot values.
+   *
+   * @return The new table, after grouping and pivoting was performed.
+   */
+  private static DataTable createGroupedTable(DataTable table, Query query,
+      List<String> groupByIds, List<AggregationColumn> columnAggregations,
+      GroupAggregator aggregator, ColumnIndices columnIndices,
+      TreeMap<List<Value>, ColumnLookup> columnLookups) throws TypeMismatchException {
+    QueryGroup group = query.getGroup();
+    List<ScalarFunctionColumn> selectedScalarFunctionColumns =
+        query.getSelection().getScalarFunctionColumns();
 
-    // These variables will hold the "titles" of the rows and columns.
-    // They are TreeSets because their order matters.
-    SortedSet<RowTitle> rowTitles =
-        Sets.newTreeSet(GroupingComparators.ROW_TITLE_COMPARATOR);
-    SortedSet<ColumnTitle> columnTitles = Sets.newTreeSet(
-        GroupingComparators.getColumnTitleDynamicComparator(columnAggregations));
+
+    // Give the distinct values of the group-by columns and of the pivot-by columns ordinals in
+    // their sorted order. The lists of values are compared once per group, rather than once per
+    // group and aggregation, and the cells are then indexed by the ordinals.
+    int numberOfGroups = aggregator.getNumberOfGroups();
+    int numberOfAggregations = columnAggregations.size();
+    TreeMap<List<Value>, Integer> rowOrdinals =
+        Maps.newTreeMap(GroupingComparators.VALUE_LIST_COMPARATOR);
+    TreeMap<List<Value>, Integer> pivotOrdinals =
+        Maps.newTreeMap(GroupingComparators.VALUE_LIST_COMPARATOR);
+    if (numberOfAggregations > 0) {
+      for (int groupId = 0; groupId < numberOfGroups; groupId++) {
+        // Separate the values of the group into the rowValues and columnValues. The
+        // rowValues are the values of the group-by columns and the columnValues
+        // are the values of the pivot-by columns.
+        List<Value> originalValues = aggregator.getGroupValues(groupId);
+        rowOrdinals.put(originalValues.subList(0, groupByIds.size()), 0);
+        pivotOrdinals.put(originalValues.subList(groupByIds.size(), originalValues.size()), 0);
+      }
+    }
+    List<RowTitle> rowTitles = Lists.newArrayListWithCapacity(rowOrdinals.size());
+    for (Map.Entry<List<Value>, Integer> entry : rowOrdinals.entrySet()) {
+      entry.setValue(rowTitles.size());
+      rowTitles.add(new RowTitle(entry.getKey()));
+    }
 
     // A tree set containing all pivot value lists (the set is for the
     // uniqueness and the tree for the order).
     TreeSet<List<Value>> pivotValuesSet =
         Sets.newTreeSet(GroupingComparators.VALUE_LIST_COMPARATOR);
-    // This MetaTable holds all the data in the table, this data is then
-    // dumped into the real table.
-    MetaTable metaTable = new MetaTable();
-    for (AggregationColumn columnAggregation : columnAggregations) {
-      for (AggregationPath path : paths) {
+    pivotValuesSet.addAll(pivotOrdinals.keySet());
 
-        // A ColumnTitle is composed of all the values for the pivot-by
-        // columns, and a ColumnAggregation. That is why it is necessary to iterate over all
-        // ColumnAggregations and create a ColumnTitle for each one.
-        List<Value> originalValues = path.getValues();
+    // A ColumnTitle is composed of all the values for the pivot-by columns, and a
+    // ColumnAggregation. The columns are ordered by the pivot values, and then by the order of
+    // the aggregations, so the ordinal of a column is pivotOrdinal * numberOfAggregations +
+    // the index of the aggregation.
+    List<ColumnTitle> columnTitles =
+        Lists.newArrayListWithCapacity(pivotOrdinals.size() * numberOfAggregations);
+    int pivotOrdinal = 0;
+    for (Map.Entry<List<Value>, Integer> entry : pivotOrdinals.entrySet()) {
+      entry.setValue(pivotOrdinal++);
+      for (AggregationColumn columnAggregation : columnAggregations) {
+        columnTitles.add(new ColumnTitle(entry.getKey(), columnAggregation,
+            (numberOfAggregations > 1)));
+      }
+    }
 
-        // Separate originalValues into the rowValues and columnValues. The
-        // rowValues are the values of the group-by columns and the columnValues
-        // are the values of the pivot-by columns.
-        List<Value> rowValues = originalValues.subList(0, groupByIds.size());
-        RowTitle rowTitle = new RowTitle(rowValues);
-        rowTitles.add(rowTitle);
-
-        List<Value> columnValues = originalValues.subList(groupByIds.size(), originalValues.size());
-        pivotValuesSet.add(columnValues);
-
-        ColumnTitle columnTitle = new ColumnTitle(columnValues,
-            columnAggregation, (columnAggregations.size() > 1));
-        columnTitles.add(columnTitle);
-        metaTable.put(rowTitle, columnTitle, new TableCell(aggregator.getAggregationValue(path,
-            columnAggregation.getAggregatedColumn().getId(),
-            columnAggregation.getAggregationType())));
+    // This MetaTable holds all the data in the table, this data is then
+    // dumped into the real table.
+    int[] groupRows = new int[numberOfGroups];
+    int[] groupColumns = new int[numberOfGroups];
+    int[] numberOfCellsInRow = new int[rowTitles.size()];
+    if (numberOfAggregations > 0) {
+      for (int groupId = 0; groupId < numberOfGroups; groupId++) {
+        List<Value> originalValues = aggregator.getGroupValues(groupId);
+        groupRows[groupId] = rowOrdinals.get(originalValues.subList(0, groupByIds.size()));
+        groupColumns[groupId] = numberOfAggregations * pivotOrdinals.get(
+            originalValues.subList(groupByIds.size(), originalValues.size()));
+        numberOfCellsInRow[groupRows[groupId]] += numberOfAggregations;
+      }
+    }
+    MetaTable metaTable =
+        new MetaTable(rowTitles.size(), columnTitles.size(), numberOfCellsInRow);
+    for (int aggregationIndex = 0; aggregationIndex < numberOfAggregations; aggregationIndex++) {
+      AggregationColumn columnAggregation = columnAggregations.get(aggregationIndex);
+      String aggregatedColumnId = columnAggregation.getAggregatedColumn().getId();
+      AggregationType aggregationType = columnAggregation.getAggregationType();
+      for (int groupId = 0; groupId < numberOfGroups; groupId++) {
+        metaTable.put(groupRows[groupId], groupColumns[groupId] + aggregationIndex,
+            new TableCell(aggregator.getAggregationValue(groupId, aggregatedColumnId,
+            aggregationType)));
       }
     }
 
@@ -577,20 +1152,20 @@ public final class QueryEngine {
     }
 
     // Dump the data from the metaTable to the result DataTable.
-    for (RowTitle rowTitle : rowTitles) {
+    TableCell[] rowData = new TableCell[columnTitles.size()];
+    for (int row = 0; row < rowTitles.size(); row++) {
+      RowTitle rowTitle = rowTitles.get(row);
       TableRow curRow = new TableRow();
       // Add the group-by columns cells.
       for (Value v : rowTitle.values) {
         curRow.addCell(new TableCell(v));
       }
-      Map<ColumnTitle, TableCell> rowData = metaTable.getRow(rowTitle);
-      int i = 0;
+      metaTable.getRow(row, rowData);
       // Add the aggregation columns cells.
-      for (ColumnTitle colTitle : columnTitles) {
-        TableCell cell = rowData.get(colTitle);
+      for (int i = 0; i < rowData.length; i++) {
+        TableCell cell = rowData[i];
         curRow.addCell((cell != null) ? cell : new TableCell(
             Value.getNullValueFromValueType(colDescs.get(i + rowTitle.values.size()).getType())));
-        i++;
       }
       // Add the scalar function columns cells.
       for (ScalarFunctionColumnTitle columnTitle : scalarFunctionColumnTitles) {
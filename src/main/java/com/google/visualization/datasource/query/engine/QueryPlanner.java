@@ -0,0 +1,166 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.query.CompoundFilter;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.QueryFilter;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plans the work of the first stages of the query engine, before the table is grouped or
+ * selected from.
+ *
+ * Projection pruning: the stages that copy the rows of the table (the materialization of shared
+ * scalar function columns and the grouping by scalar function columns) only copy the columns
+ * that the query uses. The other stages share the row objects of the table, so the unused
+ * columns cost nothing there, and the table returned by the data source is never changed.
+ *
+ * Filter pushdown: the parts of a conjunctive filter that do not use the scalar function columns
+ * that are materialized before filtering are evaluated first, so that those columns are only
+ * computed for the rows that pass the cheaper parts.
+ */
+/* package */ final class QueryPlanner {
+
+  /**
+   * Private constructor. All methods are static.
+   */
+  private QueryPlanner() {}
+
+  /**
+   * Returns the IDs of the columns of the table that the query needs to be executed, that is,
+   * the simple columns used by any of its parts, and the scalar function columns that may be
+   * materialized as columns of the table. Returns null if all the columns are needed, since the
+   * query has no selection and the result has all the columns.
+   *
+   * @param query The query.
+   *
+   * @return The IDs of the required columns, or null if all the columns are required.
+   */
+  public static Set<String> getRequiredColumnIds(Query query) {
+    if (!query.hasSelection()) {
+      return null;
+    }
+    Set<String> result = query.getAllColumnIds();
+    addIds(result, query.getSelection().getScalarFunctionColumns());
+    if (query.hasFilter()) {
+      addIds(result, query.getFilter().getScalarFunctionColumns());
+    }
+    if (query.hasGroup()) {
+      addIds(result, query.getGroup().getScalarFunctionColumns());
+    }
+    if (query.hasPivot()) {
+      addIds(result, query.getPivot().getScalarFunctionColumns());
+    }
+    if (query.hasSort()) {
+      addIds(result, query.getSort().getScalarFunctionColumns());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the indices of the columns of a table that have one of the given IDs, in the order of
+   * the table.
+   *
+   * @param table The table.
+   * @param columnIds The IDs, or null for all the columns.
+   *
+   * @return The indices of the columns.
+   */
+  public static int[] getColumnIndices(DataTable table, Set<String> columnIds) {
+    int numberOfColumns = table.getNumberOfColumns();
+    int[] indices = new int[numberOfColumns];
+    int count = 0;
+    for (int i = 0; i < numberOfColumns; i++) {
+      if ((columnIds == null) || columnIds.contains(table.getColumnDescription(i).getId())) {
+        indices[count++] = i;
+      }
+    }
+    if (count == numberOfColumns) {
+      return indices;
+    }
+    int[] result = new int[count];
+    System.arraycopy(indices, 0, result, 0, count);
+    return result;
+  }
+
+  /**
+   * Splits a filter into the part that can be evaluated before the given columns are
+   * materialized, and the part that uses them. Only the sub filters of a top level AND can be
+   * split, so that the rows that pass both parts are the rows that pass the filter.
+   *
+   * @param filter The filter.
+   * @param materializedColumns The columns materialized between the two parts.
+   *
+   * @return An array with the part to evaluate first, or null if there is none, and the part to
+   *     evaluate after the columns are materialized, or null if there is none.
+   */
+  public static QueryFilter[] splitFilter(QueryFilter filter,
+      Collection<ScalarFunctionColumn> materializedColumns) {
+    if (!(filter instanceof CompoundFilter)
+        || (((CompoundFilter) filter).getOperator() != CompoundFilter.LogicalOperator.AND)) {
+      return new QueryFilter[] {null, filter};
+    }
+    List<QueryFilter> before = Lists.newArrayList();
+    List<QueryFilter> after = Lists.newArrayList();
+    for (QueryFilter subFilter : ((CompoundFilter) filter).getSubFilters()) {
+      boolean usesMaterializedColumn = false;
+      for (ScalarFunctionColumn column : subFilter.getScalarFunctionColumns()) {
+        usesMaterializedColumn |= materializedColumns.contains(column);
+      }
+      if (usesMaterializedColumn) {
+        after.add(subFilter);
+      } else {
+        before.add(subFilter);
+      }
+    }
+    return new QueryFilter[] {createConjunction(before), createConjunction(after)};
+  }
+
+  /**
+   * Returns a filter that matches the rows that match all the given filters.
+   *
+   * @param filters The filters.
+   *
+   * @return The filter, or null if there are no filters.
+   */
+  private static QueryFilter createConjunction(List<QueryFilter> filters) {
+    if (filters.isEmpty()) {
+      return null;
+    }
+    if (filters.size() == 1) {
+      return filters.get(0);
+    }
+    return new CompoundFilter(CompoundFilter.LogicalOperator.AND, filters);
+  }
+
+  /**
+   * Adds the IDs of columns to a set.
+   *
+   * @param ids The set of IDs.
+   * @param columns The columns.
+   */
+  private static void addIds(Set<String> ids, List<ScalarFunctionColumn> columns) {
+    for (ScalarFunctionColumn column : columns) {
+      ids.add(column.getId());
+    }
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+/**
+ * A filter that is bound to the columns of specific rows, created by {@link FilterCompiler}.
+ * A predicate decides on a row, given by its index in the {@link IndexedRows} it was compiled
+ * for, exactly like the {@link com.google.visualization.datasource.query.QueryFilter} it was
+ * compiled from, but does not need to look up columns for each row.
+ *
+ * Each predicate also carries an estimate of the fraction of rows it matches and of its relative
+ * evaluation cost, which are used to order the sub-filters of compound filters.
+ */
+/* package */ abstract class RowPredicate {
+
+  /**
+   * The estimated fraction of rows this predicate matches, between 0 and 1.
+   */
+  private double selectivity;
+
+  /**
+   * Creates a new RowPredicate with the given estimated selectivity.
+   *
+   * @param selectivity The estimated fraction of rows this predicate matches.
+   */
+  protected RowPredicate(double selectivity) {
+    this.selectivity = selectivity;
+  }
+
+  /**
+   * Checks if this row should be part of the result set.
+   *
+   * @param row The index of the row to check.
+   *
+   * @return true if this row should be part of the result set, false otherwise.
+   */
+  public abstract boolean isMatch(int row);
+
+  /**
+   * Returns a rough estimate of the relative cost of evaluating this predicate on a row.
+   *
+   * @return The relative cost of evaluating this predicate.
+   */
+  public abstract int getCost();
+
+  /**
+   * Returns the estimated fraction of rows this predicate matches.
+   *
+   * @return The estimated fraction of rows this predicate matches.
+   */
+  public double getSelectivity() {
+    return selectivity;
+  }
+
+  /**
+   * Sets the estimated fraction of rows this predicate matches.
+   *
+   * @param selectivity The estimated fraction of rows this predicate matches.
+   */
+  void setSelectivity(double selectivity) {
+    this.selectivity = selectivity;
+  }
+}
@@ -0,0 +1,382 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.ColumnLookup;
+import com.google.visualization.datasource.query.ColumnSort;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.SortOrder;
+import com.ibm.icu.text.CollationKey;
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
+
+import java.util.List;
+
+/**
+ * The keys by which a list of rows is sorted according to a query's ORDER BY, computed once per
+ * row, so that sorting compares keys instead of computing column values and collating text on
+ * every comparison.
+ *
+ * The value of each sort column is computed once per row. Text values are turned into ICU
+ * collation keys for the user locale, and all other values into primitive numbers, so that
+ * comparing two rows compares bytes and numbers only. The order is exactly the one of
+ * {@link TableRowComparator}.
+ *
+ * Once the keys are computed, comparing rows is thread-safe. Computing the keys of different
+ * rows can be done from several threads, each with its own collator.
+ */
+/* package */ final class RowSortKeys extends SortKeys {
+
+  /**
+   * The rows.
+   */
+  private final List<TableRow> rows;
+
+  /**
+   * The locale defining the order relation of text values.
+   */
+  private final ULocale locale;
+
+  /**
+   * The evaluators of the columns to order by, in sequence of importance.
+   */
+  private final ColumnEvaluator[] evaluators;
+
+  /**
+   * Whether each of the columns to order by is descending.
+   */
+  private final boolean[] isDescending;
+
+  /**
+   * The keys of each of the columns to order by, created by prepare().
+   */
+  private final ColumnKeys[] columnKeys;
+
+  /**
+   * Creates the sort keys of the given rows. The keys are not computed.
+   *
+   * @param sort The ordering criteria.
+   * @param locale The locale defining the order relation of text values.
+   * @param lookup The column lookup of the rows.
+   * @param rows The rows.
+   */
+  public RowSortKeys(QuerySort sort, ULocale locale, ColumnLookup lookup, List<TableRow> rows) {
+    this.rows = rows;
+    this.locale = locale;
+    List<ColumnSort> columns = sort.getSortColumns();
+    evaluators = new ColumnEvaluator[columns.size()];
+    isDescending = new boolean[columns.size()];
+    columnKeys = new ColumnKeys[columns.size()];
+    for (int i = 0; i < evaluators.length; i++) {
+      evaluators[i] = ColumnEvaluator.create(columns.get(i).getColumn(), lookup);
+      isDescending[i] = (columns.get(i).getOrder() == SortOrder.DESCENDING);
+    }
+  }
+
+  /**
+   * Creates and computes the sort keys of the given rows.
+   *
+   * @param sort The ordering criteria.
+   * @param locale The locale defining the order relation of text values.
+   * @param lookup The column lookup of the rows.
+   * @param rows The rows.
+   *
+   * @return The sort keys.
+   */
+  public static RowSortKeys compute(QuerySort sort, ULocale locale, ColumnLookup lookup,
+      List<TableRow> rows) {
+    RowSortKeys keys = new RowSortKeys(sort, locale, lookup, rows);
+    keys.prepare();
+    keys.computeKeys(0, rows.size(), keys.createCollator());
+    return keys;
+  }
+
+  /**
+   * Creates the key arrays, according to the types of the values in the first row. Must be
+   * called before computing keys.
+   */
+  public void prepare() {
+    if (rows.isEmpty()) {
+      return;
+    }
+    TableRow firstRow = rows.get(0);
+    for (int i = 0; i < evaluators.length; i++) {
+      columnKeys[i] = ColumnKeys.create(evaluators[i].getValue(firstRow), rows.size());
+    }
+  }
+
+  /**
+   * Returns a new collator for computing keys.
+   *
+   * @return A new collator for the locale of these keys.
+   */
+  public Collator createCollator() {
+    return Collator.getInstance(locale);
+  }
+
+  @Override
+  public void computeKeys(int start, int end) {
+    // Collators are not thread-safe, so each range uses its own.
+    computeKeys(start, end, createCollator());
+  }
+
+  /**
+   * Computes the keys of a range of rows.
+   *
+   * @param start The index of the first row.
+   * @param end The index after the last row.
+   * @param collator The collator for text values. Used by this thread only.
+   */
+  public void computeKeys(int start, int end, Collator collator) {
+    for (int i = start; i < end; i++) {
+      TableRow row = rows.get(i);
+      for (int column = 0; column < evaluators.length; column++) {
+        columnKeys[column].set(i, evaluators[column].getValue(row), collator);
+      }
+    }
+  }
+
+  @Override
+  public int compare(int index1, int index2) {
+    for (int i = 0; i < columnKeys.length; i++) {
+      int cc = columnKeys[i].compare(index1, index2);
+      if (cc != 0) {
+        return isDescending[i] ? -cc : cc;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * The keys of a single sort column, for all rows.
+   */
+  private abstract static class ColumnKeys {
+
+    /**
+     * Whether the value in each row is null. Null values are smaller than all other values.
+     */
+    protected final boolean[] nulls;
+
+    /**
+     * Creates a new ColumnKeys.
+     *
+     * @param size The number of rows.
+     */
+    protected ColumnKeys(int size) {
+      nulls = new boolean[size];
+    }
+
+    /**
+     * Creates the keys of a column whose values have the type of the given value.
+     *
+     * @param value A value of the column.
+     * @param size The number of rows.
+     *
+     * @return The keys.
+     */
+    static ColumnKeys create(Value value, int size) {
+      switch (value.getType()) {
+        case NUMBER:
+          return new NumberKeys(size);
+        case TEXT:
+          return new TextKeys(size);
+        default:
+          return new LongKeys(size);
+      }
+    }
+
+    /**
+     * Sets the key of a row.
+     *
+     * @param index The row index.
+     * @param value The value.
+     * @param collator The collator for text values.
+     */
+    void set(int index, Value value, Collator collator) {
+      // A null text value is compared as an empty string, like the localized text comparator
+      // does, so it gets a collation key.
+      if (value.isNull() && !(this instanceof TextKeys)) {
+        nulls[index] = true;
+      } else {
+        setNonNull(index, value, collator);
+      }
+    }
+
+    /**
+     * Sets the key of a row with a non-null value.
+     *
+     * @param index The row index.
+     * @param value The value.
+     * @param collator The collator for text values.
+     */
+    protected abstract void setNonNull(int index, Value value, Collator collator);
+
+    /**
+     * Compares the keys of two rows that are not null.
+     *
+     * @param index1 The index of the first row.
+     * @param index2 The index of the second row.
+     *
+     * @return A negative integer, zero, or a positive integer as the first key is less than,
+     *     equal to, or greater than the second.
+     */
+    protected abstract int compareNonNull(int index1, int index2);
+
+    /**
+     * Compares the keys of two rows.
+     *
+     * @param index1 The index of the first row.
+     * @param index2 The index of the second row.
+     *
+     * @return A negative integer, zero, or a positive integer as the first key is less than,
+     *     equal to, or greater than the second.
+     */
+    int compare(int index1, int index2) {
+      boolean isNull1 = nulls[index1];
+      boolean isNull2 = nulls[index2];
+      if (isNull1 || isNull2) {
+        return (isNull1 == isNull2) ? 0 : (isNull1 ? -1 : 1);
+      }
+      return compareNonNull(index1, index2);
+    }
+  }
+
+  /**
+   * Keys of a number column.
+   */
+  private static final class NumberKeys extends ColumnKeys {
+
+    /**
+     * The numbers.
+     */
+    private final double[] keys;
+
+    /**
+     * Creates a new NumberKeys.
+     *
+     * @param size The number of rows.
+     */
+    NumberKeys(int size) {
+      super(size);
+      keys = new double[size];
+    }
+
+    @Override
+    protected void setNonNull(int index, Value value, Collator collator) {
+      keys[index] = ((NumberValue) value).getValue();
+    }
+
+    @Override
+    protected int compareNonNull(int index1, int index2) {
+      return Double.compare(keys[index1], keys[index2]);
+    }
+  }
+
+  /**
+   * Keys of a text column: collation keys.
+   */
+  private static final class TextKeys extends ColumnKeys {
+
+    /**
+     * The collation keys.
+     */
+    private final CollationKey[] keys;
+
+    /**
+     * Creates a new TextKeys.
+     *
+     * @param size The number of rows.
+     */
+    TextKeys(int size) {
+      super(size);
+      keys = new CollationKey[size];
+    }
+
+    @Override
+    protected void setNonNull(int index, Value value, Collator collator) {
+      keys[index] = collator.getCollationKey(((TextValue) value).getValue());
+    }
+
+    @Override
+    protected int compareNonNull(int index1, int index2) {
+      return keys[index1].compareTo(keys[index2]);
+    }
+  }
+
+  /**
+   * Keys of boolean, date, time of day and date time columns, as longs that have the same order
+   * as the values.
+   */
+  private static final class LongKeys extends ColumnKeys {
+
+    /**
+     * The keys.
+     */
+    private final long[] keys;
+
+    /**
+     * Creates a new LongKeys.
+     *
+     * @param size The number of rows.
+     */
+    LongKeys(int size) {
+      super(size);
+      keys = new long[size];
+    }
+
+    @Override
+    protected void setNonNull(int index, Value value, Collator collator) {
+      long key;
+      switch (value.getType()) {
+        case BOOLEAN:
+          key = ((BooleanValue) value).getValue() ? 1 : 0;
+          break;
+        case DATE:
+          DateValue date = (DateValue) value;
+          key = (date.getYear() * 512L) + (date.getMonth() * 32) + date.getDayOfMonth();
+          break;
+        case TIMEOFDAY:
+          key = ((TimeOfDayValue) value).getMillisOfDay();
+          break;
+        case DATETIME:
+          key = ((DateTimeValue) value).getTimeInMillis();
+          break;
+        default:
+          throw new IllegalArgumentException("Unexpected value type: " + value.getType());
+      }
+      keys[index] = key;
+    }
+
+    @Override
+    protected int compareNonNull(int index1, int index2) {
+      long key1 = keys[index1];
+      long key2 = keys[index2];
+      return (key1 < key2) ? -1 : ((key1 == key2) ? 0 : 1);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.query.engine;
+
+/**
+ * Sort keys computed in advance for a number of rows, that can be compared by row index. Sorts
+ * the rows by their keys with a stable merge sort, whose ranges can be sorted and merged
+ * separately, e.g., from several threads, see {@link ParallelStages}.
+ *
+ * @see RowSortKeys
+ * @see VectorSortKeys
+ */
+/* package */ abstract class SortKeys implements IndexComparator {
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return The number of rows.
+   */
+  public abstract int size();
+
+  /**
+   * Computes the keys of a range of rows, for keys that are not computed in advance. Called
+   * before the range is sorted, from the thread that sorts it. Does nothing by default.
+   *
+   * @param start The index of the first row.
+   * @param end The index after the last row.
+   */
+  public void computeKeys(int start, int end) {
+  }
+
+  /**
+   * Returns the indices of the rows, in stable sorted order.
+   *
+   * @return The indices of the rows, in sorted order.
+   */
+  public int[] sortedIndices() {
+    int[] indices = new int[size()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    sort(indices, new int[indices.length], 0, indices.length);
+    return indices;
+  }
+
+  /**
+   * Sorts a range of an array of row indices, with a stable merge sort.
+   *
+   * @param indices The row indices.
+   * @param buffer A buffer of the same length.
+   * @param start The start of the range.
+   * @param end The end of the range.
+   */
+  public void sort(int[] indices, int[] buffer, int start, int end) {
+    if (end - start <= 8) {
+      // Insertion sort.
+      for (int i = start + 1; i < end; i++) {
+        int index = indices[i];
+        int j = i;
+        while ((j > start) && (compare(indices[j - 1], index) > 0)) {
+          indices[j] = indices[j - 1];
+          j--;
+        }
+        indices[j] = index;
+      }
+      return;
+    }
+    int middle = (start + end) >>> 1;
+    sort(indices, buffer, start, middle);
+    sort(indices, buffer, middle, end);
+    if (compare(indices[middle - 1], indices[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(indices, start, buffer, start, end - start);
+    merge(buffer, indices, start, middle, end);
+  }
+
+  /**
+   * Merges two adjacent sorted runs of row indices into the same range of another array. On
+   * ties, indices of the first run come first, so the merge is stable.
+   *
+   * @param from The array holding the runs.
+   * @param to The array to merge into.
+   * @param start The start of the first run.
+   * @param middle The end of the first run and the start of the second.
+   * @param end The end of the second run.
+   */
+  public void merge(int[] from, int[] to, int start, int middle, int end) {
+    int left = start;
+    int right = middle;
+    for (int i = start; i < end; i++) {
+      if ((right >= end) || ((left < middle) && (compare(from[left], from[right]) <= 0))) {
+        to[i] = from[left++];
+      } else {
+        to[i] = from[right++];
+      }
+    }
+  }
+}
@@ -0,0 +1,164 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the k smallest elements of a list, in sorted order, using a bounded binary heap of
+ * element indices. This takes O(n log k) comparisons instead of the O(n log n) of sorting the
+ * whole list, and does not allocate anything per element.
+ *
+ * The selection is stable: elements that are equal according to the comparator keep their
+ * original relative order, so the result is always the same as the first k elements of the list
+ * after {@link java.util.Collections#sort}.
+ */
+/* package */ final class TopKSelector {
+
+  /**
+   * Prevents instantiation.
+   */
+  private TopKSelector() {}
+
+  /**
+   * Returns the k smallest elements of a list, in sorted order.
+   *
+   * @param list The list. Not changed.
+   * @param comparator The comparator.
+   * @param k The number of elements to select.
+   *
+   * @return The k smallest elements, or all the elements if there are at most k, in sorted order.
+   */
+  public static <T> List<T> select(final List<T> list, final Comparator<? super T> comparator,
+      int k) {
+    int[] indices = select(list.size(), new IndexComparator() {
+      @Override
+      public int compare(int index1, int index2) {
+        return comparator.compare(list.get(index1), list.get(index2));
+      }
+    }, k);
+    List<T> result = Lists.newArrayListWithCapacity(indices.length);
+    for (int index : indices) {
+      result.add(list.get(index));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the indices of the k smallest elements, in sorted order.
+   *
+   * @param size The number of elements.
+   * @param comparator The comparator of elements by index.
+   * @param k The number of elements to select.
+   *
+   * @return The indices of the k smallest elements, or of all the elements if there are at most
+   *     k, in sorted order.
+   */
+  public static int[] select(int size, IndexComparator comparator, int k) {
+    int heapCapacity = Math.min(k, size);
+    // A max-heap of the indices of the smallest elements seen so far: the root is the index of
+    // the largest of them, which is the first to be replaced.
+    int[] heap = new int[heapCapacity];
+    int heapSize = 0;
+    for (int index = 0; index < size; index++) {
+      if (heapSize < heapCapacity) {
+        heap[heapSize] = index;
+        siftUp(comparator, heap, heapSize++);
+      } else if ((heapCapacity > 0) && (comparator.compare(index, heap[0]) < 0)) {
+        // An equal element is not smaller, as its index is larger.
+        heap[0] = index;
+        siftDown(comparator, heap, heapCapacity, 0);
+      }
+    }
+
+    // Pop the largest element into the last free position until the heap is empty.
+    for (int end = heapSize - 1; end > 0; end--) {
+      int largest = heap[0];
+      heap[0] = heap[end];
+      heap[end] = largest;
+      siftDown(comparator, heap, end, 0);
+    }
+    return heap;
+  }
+
+  /**
+   * Compares two elements by the comparator, and then by their index.
+   *
+   * @param comparator The comparator.
+   * @param index1 The index of the first element.
+   * @param index2 The index of the second element.
+   *
+   * @return A negative integer, zero, or a positive integer as the first element is smaller,
+   *     the same, or larger than the second.
+   */
+  private static int compare(IndexComparator comparator, int index1, int index2) {
+    int result = comparator.compare(index1, index2);
+    if (result != 0) {
+      return result;
+    }
+    return (index1 < index2) ? -1 : ((index1 == index2) ? 0 : 1);
+  }
+
+  /**
+   * Moves the element at the given heap position up until its parent is larger.
+   *
+   * @param comparator The comparator.
+   * @param heap The heap.
+   * @param position The position in the heap.
+   */
+  private static void siftUp(IndexComparator comparator, int[] heap, int position) {
+    int index = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (compare(comparator, heap[parent], index) >= 0) {
+        break;
+      }
+      heap[position] = heap[parent];
+      position = parent;
+    }
+    heap[position] = index;
+  }
+
+  /**
+   * Moves the element at the given heap position down until its children are smaller.
+   *
+   * @param comparator The comparator.
+   * @param heap The heap.
+   * @param heapSize The number of elements in the heap.
+   * @param position The position in the heap.
+   */
+  private static void siftDown(IndexComparator comparator, int[] heap, int heapSize,
+      int position) {
+    int index = heap[position];
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if ((child + 1 < heapSize) && (compare(comparator, heap[child + 1], heap[child]) > 0)) {
+        child++;
+      }
+      if (compare(comparator, heap[child], index) <= 0) {
+        break;
+      }
+      heap[position] = heap[child];
+      position = child;
+    }
+    heap[position] = index;
+  }
+}
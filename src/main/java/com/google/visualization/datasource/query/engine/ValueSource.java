@@ -0,0 +1,270 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.ColumnVector;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import java.util.List;
+
+/**
+ * The values of a column in rows that are addressed by their index, see {@link IndexedRows}.
+ * Compiled filters and aggregators read columns through a value source, and so work the same on
+ * the rows of a data table, where a value is read from a cell or computed by a
+ * {@link ColumnEvaluator}, and on the rows of a columnar table, where a value is read from a
+ * {@link ColumnVector} without creating it.
+ *
+ * Reading values is thread-safe.
+ */
+/* package */ abstract class ValueSource {
+
+  /**
+   * Returns true if the value in the given row is null.
+   *
+   * @param row The row index.
+   *
+   * @return True if the value in the given row is null.
+   */
+  public abstract boolean isNull(int row);
+
+  /**
+   * Returns the value in the given row.
+   *
+   * @param row The row index.
+   *
+   * @return The value in the given row.
+   */
+  public abstract Value getValue(int row);
+
+  /**
+   * Returns the value in the given row of a number column, which is not null.
+   *
+   * @param row The row index.
+   *
+   * @return The number in the given row.
+   */
+  public double getDouble(int row) {
+    return ((NumberValue) getValue(row)).getValue();
+  }
+
+  /**
+   * Returns the key of the value in the given row of a column of any type but text, which is
+   * not null. Keys compare like the values do, see {@link VectorKey}.
+   *
+   * @param row The row index.
+   *
+   * @return The key of the value in the given row.
+   */
+  public long getKey(int row) {
+    return VectorKey.getKey(getValue(row));
+  }
+
+  /**
+   * Compares the values in two rows, which are not null, as {@link Value#compareTo} does.
+   *
+   * @param row1 The index of the first row.
+   * @param row2 The index of the second row.
+   *
+   * @return A negative integer, zero, or a positive integer as the first value is less than,
+   *     equal to, or greater than the second.
+   */
+  public int compare(int row1, int row2) {
+    return getValue(row1).compareTo(getValue(row2));
+  }
+
+  /**
+   * Returns the number of distinct values the column is encoded with, or 0 if its values are
+   * not dictionary encoded.
+   *
+   * @return The size of the dictionary of the column, or 0.
+   */
+  public int getDictionarySize() {
+    return 0;
+  }
+
+  /**
+   * Returns the dictionary code of the value in the given row, which is not null, if the values
+   * are dictionary encoded. Rows with equal codes have equal values.
+   *
+   * @param row The row index.
+   *
+   * @return The dictionary code of the value in the given row.
+   */
+  public int getCode(int row) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns a rough estimate of the relative cost of reading a value, as for
+   * {@link ColumnEvaluator#getCost}. Only stored values, which are cheap to read more than once,
+   * cost 1.
+   *
+   * @return The relative cost of reading a value.
+   */
+  public abstract int getCost();
+
+  /**
+   * Creates a source of the values of a column in rows, computed by an evaluator.
+   *
+   * @param rows The rows.
+   * @param evaluator The evaluator of the column.
+   *
+   * @return A source of the values of the column.
+   */
+  public static ValueSource create(List<TableRow> rows, ColumnEvaluator evaluator) {
+    return new EvaluatorSource(rows, evaluator);
+  }
+
+  /**
+   * Creates a source of the values of a column vector.
+   *
+   * @param vector The vector.
+   *
+   * @return A source of the values of the vector.
+   */
+  public static ValueSource create(ColumnVector vector) {
+    return new VectorSource(vector);
+  }
+
+  /**
+   * Reads the values of a column in rows with an evaluator.
+   */
+  private static final class EvaluatorSource extends ValueSource {
+
+    /**
+     * The rows.
+     */
+    private final List<TableRow> rows;
+
+    /**
+     * The evaluator of the column.
+     */
+    private final ColumnEvaluator evaluator;
+
+    /**
+     * Creates a new EvaluatorSource.
+     *
+     * @param rows The rows.
+     * @param evaluator The evaluator of the column.
+     */
+    EvaluatorSource(List<TableRow> rows, ColumnEvaluator evaluator) {
+      this.rows = rows;
+      this.evaluator = evaluator;
+    }
+
+    @Override
+    public boolean isNull(int row) {
+      return getValue(row).isNull();
+    }
+
+    @Override
+    public Value getValue(int row) {
+      return evaluator.getValue(rows.get(row));
+    }
+
+    @Override
+    public int getCost() {
+      return evaluator.getCost();
+    }
+  }
+
+  /**
+   * Reads the primitive values of a column vector.
+   */
+  private static final class VectorSource extends ValueSource {
+
+    /**
+     * The vector.
+     */
+    private final ColumnVector vector;
+
+    /**
+     * The vector, if it is a number vector.
+     */
+    private final ColumnVector.NumberVector numbers;
+
+    /**
+     * The vector, if it is a text vector.
+     */
+    private final ColumnVector.TextVector texts;
+
+    /**
+     * The keys of the vector, if it is not a text vector.
+     */
+    private final VectorKey keys;
+
+    /**
+     * Creates a new VectorSource.
+     *
+     * @param vector The vector.
+     */
+    VectorSource(ColumnVector vector) {
+      this.vector = vector;
+      boolean isText = (vector.getType() == ValueType.TEXT);
+      numbers = (vector.getType() == ValueType.NUMBER) ? (ColumnVector.NumberVector) vector : null;
+      texts = isText ? (ColumnVector.TextVector) vector : null;
+      keys = isText ? null : VectorKey.create(vector, null);
+    }
+
+    @Override
+    public boolean isNull(int row) {
+      return vector.isNull(row);
+    }
+
+    @Override
+    public Value getValue(int row) {
+      return vector.getValue(row);
+    }
+
+    @Override
+    public double getDouble(int row) {
+      return numbers.getDouble(row);
+    }
+
+    @Override
+    public long getKey(int row) {
+      return keys.get(row);
+    }
+
+    /**
+     * Compares keys, so that no value is created, except for text values.
+     */
+    @Override
+    public int compare(int row1, int row2) {
+      if (keys == null) {
+        return super.compare(row1, row2);
+      }
+      return VectorKey.compare(keys.get(row1), keys.get(row2));
+    }
+
+    @Override
+    public int getDictionarySize() {
+      return (texts == null) ? 0 : texts.getDictionarySize();
+    }
+
+    @Override
+    public int getCode(int row) {
+      return texts.getCode(row);
+    }
+
+    @Override
+    public int getCost() {
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,345 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.visualization.datasource.datatable.ColumnVector;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.query.AggregationType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Aggregates rows of a {@link ColumnarDataTable} according to the groups defined by an ordered
+ * list of group-by columns, reading the primitive values of the column vectors.
+ *
+ * This is the columnar counterpart of {@link HashAggregator}, and returns the same groups and
+ * aggregated values. The group of a row is found by looking up the keys of its group-by values
+ * (see {@link VectorKey}) in an open addressing hash table of longs, so no value is created for
+ * a row. Values are only created for the group-by columns of each group, and for the aggregated
+ * values that are requested.
+ */
+/* package */ final class VectorAggregator extends GroupAggregator {
+
+  /**
+   * The initial capacity of the per group arrays.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The order of text values used for their keys. Any order would do for grouping.
+   */
+  private static final Comparator<String> TEXT_ORDER = Ordering.natural();
+
+  /**
+   * The rows of the table.
+   */
+  private final IndexedRows indexedRows;
+
+  /**
+   * The vectors of the group-by columns.
+   */
+  private final ColumnVector[] groupByVectors;
+
+  /**
+   * The keys of the group-by columns.
+   */
+  private final VectorKey[] groupByKeys;
+
+  /**
+   * The aggregated column ids.
+   */
+  private final List<String> aggregateColumns;
+
+  /**
+   * The aggregation types, in the order of aggregateColumns.
+   */
+  private final List<AggregationType> aggregationTypes;
+
+  /**
+   * The number of longs in the key of a group: one per group-by column, followed by bit masks
+   * of the group-by columns that are null.
+   */
+  private final int keyLength;
+
+  /**
+   * The keys of the groups, keyLength longs per group, by group id.
+   */
+  private long[] groupKeys;
+
+  /**
+   * The first aggregated row of each group, by group id.
+   */
+  private int[] firstRows = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of groups.
+   */
+  private int numberOfGroups = 0;
+
+  /**
+   * An open addressing hash table of group ids plus one, where zero marks a free slot. Its
+   * length is a power of two.
+   */
+  private int[] hashTable = new int[INITIAL_CAPACITY * 2];
+
+  /**
+   * The values of the group-by columns of each group, by group id. Created when first
+   * requested.
+   */
+  private List<List<Value>> groupValues = null;
+
+  /**
+   * Constructs an aggregator of rows of a table. No row is aggregated yet.
+   *
+   * @param table The table.
+   * @param groupByColumns An ordered list of columns to group by.
+   * @param aggregateColumns The columns to aggregate, and for each of them the aggregation types
+   *     that will be requested. A column can appear more than once.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   */
+  public VectorAggregator(ColumnarDataTable table, List<String> groupByColumns,
+      List<String> aggregateColumns, List<AggregationType> aggregationTypes) {
+    this(IndexedRows.of(table), createVectors(table, groupByColumns), aggregateColumns,
+        aggregationTypes);
+  }
+
+  /**
+   * Constructs an aggregator with the given group-by vectors.
+   *
+   * @param rows The rows of the table.
+   * @param groupByVectors The vectors of the group-by columns.
+   * @param aggregateColumns The aggregated column ids.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   */
+  private VectorAggregator(IndexedRows rows, ColumnVector[] groupByVectors,
+      List<String> aggregateColumns, List<AggregationType> aggregationTypes) {
+    this(rows, groupByVectors, createKeys(groupByVectors), aggregateColumns, aggregationTypes);
+  }
+
+  /**
+   * Constructs an aggregator with the given group-by vectors and keys.
+   *
+   * @param rows The rows of the table.
+   * @param groupByVectors The vectors of the group-by columns.
+   * @param groupByKeys The keys of the group-by columns.
+   * @param aggregateColumns The aggregated column ids.
+   * @param aggregationTypes The aggregation types, in the order of aggregateColumns.
+   */
+  private VectorAggregator(IndexedRows rows, ColumnVector[] groupByVectors,
+      VectorKey[] groupByKeys, List<String> aggregateColumns,
+      List<AggregationType> aggregationTypes) {
+    super(rows, aggregateColumns, aggregationTypes);
+    this.indexedRows = rows;
+    this.groupByVectors = groupByVectors;
+    this.groupByKeys = groupByKeys;
+    this.aggregateColumns = aggregateColumns;
+    this.aggregationTypes = aggregationTypes;
+    keyLength = groupByVectors.length + ((groupByVectors.length + 63) / 64);
+    groupKeys = new long[INITIAL_CAPACITY * keyLength];
+  }
+
+  /**
+   * Returns the vectors of columns of a table.
+   *
+   * @param table The table.
+   * @param columnIds The column ids.
+   *
+   * @return The vectors of the columns.
+   */
+  private static ColumnVector[] createVectors(ColumnarDataTable table, List<String> columnIds) {
+    ColumnVector[] vectors = new ColumnVector[columnIds.size()];
+    for (int i = 0; i < vectors.length; i++) {
+      vectors[i] = table.getColumnVector(table.getColumnIndex(columnIds.get(i)));
+    }
+    return vectors;
+  }
+
+  /**
+   * Returns the keys of vectors.
+   *
+   * @param vectors The vectors.
+   *
+   * @return The keys of the vectors.
+   */
+  private static VectorKey[] createKeys(ColumnVector[] vectors) {
+    VectorKey[] keys = new VectorKey[vectors.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = VectorKey.create(vectors[i], TEXT_ORDER);
+    }
+    return keys;
+  }
+
+  /**
+   * Returns a new aggregator with the same columns as this one, and no groups. The keys of the
+   * group-by columns are shared.
+   */
+  @Override
+  public VectorAggregator createPartial() {
+    return new VectorAggregator(indexedRows, groupByVectors, groupByKeys, aggregateColumns,
+        aggregationTypes);
+  }
+
+  @Override
+  public void aggregate(int[] rows, int start, int end) {
+    // The probe key is refilled for each row, and copied only when a new group is found.
+    long[] probe = new long[keyLength];
+    int numberOfColumns = groupByKeys.length;
+    for (int i = start; i < end; i++) {
+      int row = rows[i];
+      for (int column = 0; column < numberOfColumns; column++) {
+        VectorKey keys = groupByKeys[column];
+        if (keys.isNull(row)) {
+          probe[column] = 0;
+          probe[numberOfColumns + (column >> 6)] |= 1L << column;
+        } else {
+          probe[column] = keys.get(row);
+        }
+      }
+      aggregateRow(getGroupId(probe, row), row);
+      Arrays.fill(probe, numberOfColumns, keyLength, 0);
+    }
+  }
+
+  @Override
+  public void merge(GroupAggregator other) {
+    VectorAggregator otherAggregator = (VectorAggregator) other;
+    long[] probe = new long[keyLength];
+    for (int otherGroupId = 0; otherGroupId < otherAggregator.numberOfGroups; otherGroupId++) {
+      System.arraycopy(otherAggregator.groupKeys, otherGroupId * keyLength, probe, 0,
+          keyLength);
+      mergeGroup(getGroupId(probe, otherAggregator.firstRows[otherGroupId]), other,
+          otherGroupId);
+    }
+  }
+
+  /**
+   * Returns the id of the group with the given key, creating a new group if there is none.
+   *
+   * @param probe The key. Not kept by this aggregator, so it can be reused.
+   * @param row The row the key was read from, which is the first row of a new group.
+   *
+   * @return The id of the group.
+   */
+  private int getGroupId(long[] probe, int row) {
+    int mask = hashTable.length - 1;
+    int slot = hash(probe) & mask;
+    while (true) {
+      int entry = hashTable[slot];
+      if (entry == 0) {
+        break;
+      }
+      if (isKeyOf(entry - 1, probe)) {
+        return entry - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int groupId = numberOfGroups++;
+    if (groupId == firstRows.length) {
+      int capacity = firstRows.length * 2;
+      firstRows = Arrays.copyOf(firstRows, capacity);
+      groupKeys = Arrays.copyOf(groupKeys, capacity * keyLength);
+    }
+    System.arraycopy(probe, 0, groupKeys, groupId * keyLength, keyLength);
+    firstRows[groupId] = row;
+    addGroup(groupId);
+    if (numberOfGroups * 2 > hashTable.length) {
+      rehash(hashTable.length * 2);
+    } else {
+      hashTable[slot] = groupId + 1;
+    }
+    return groupId;
+  }
+
+  /**
+   * Returns true if the given key is the key of a group.
+   *
+   * @param groupId The group id.
+   * @param key The key.
+   *
+   * @return True if the key is the key of the group.
+   */
+  private boolean isKeyOf(int groupId, long[] key) {
+    int offset = groupId * keyLength;
+    for (int i = 0; i < keyLength; i++) {
+      if (groupKeys[offset + i] != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Rebuilds the hash table with the given length, for all the groups.
+   *
+   * @param length The new length, a power of two.
+   */
+  private void rehash(int length) {
+    hashTable = new int[length];
+    int mask = length - 1;
+    long[] key = new long[keyLength];
+    for (int groupId = 0; groupId < numberOfGroups; groupId++) {
+      System.arraycopy(groupKeys, groupId * keyLength, key, 0, keyLength);
+      int slot = hash(key) & mask;
+      while (hashTable[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashTable[slot] = groupId + 1;
+    }
+  }
+
+  /**
+   * Returns the hash code of a key, with its bits spread so that the low bits can index the
+   * hash table.
+   *
+   * @param key The key.
+   *
+   * @return The hash code of the key.
+   */
+  private static int hash(long[] key) {
+    long hash = 0;
+    for (long part : key) {
+      hash = (hash * 31) + part;
+    }
+    hash *= 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  @Override
+  public int getNumberOfGroups() {
+    return numberOfGroups;
+  }
+
+  @Override
+  public List<Value> getGroupValues(int groupId) {
+    if ((groupValues == null) || (groupValues.size() != numberOfGroups)) {
+      groupValues = Lists.newArrayListWithCapacity(numberOfGroups);
+      Value[] values = new Value[groupByVectors.length];
+      for (int id = 0; id < numberOfGroups; id++) {
+        for (int i = 0; i < values.length; i++) {
+          values[i] = groupByVectors[i].getValue(firstRows[id]);
+        }
+        groupValues.add(ImmutableList.copyOf(values));
+      }
+    }
+    return groupValues.get(groupId);
+  }
+}
@@ -0,0 +1,256 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.ColumnVector;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reads the values of a column vector as primitive keys: two non null values of the column have
+ * equal keys if and only if they are equal, and the order of the keys is the order of the
+ * values. Null values are smaller than all other values, as in {@link Value#compareTo}.
+ *
+ * Numbers are mapped to longs that have the order of {@link Double#compare}, and dates, times of
+ * day, date times and booleans to the longs they are stored as. Text values are mapped to the
+ * rank of their dictionary entry in a given string order, computed once per vector. As for
+ * {@link com.google.visualization.datasource.datatable.value.TextValue#compareTo}, a null text
+ * value is not distinguished from an empty string, so text keys are never null.
+ *
+ * Keys are read without creating values, and reading them is thread-safe.
+ */
+/* package */ abstract class VectorKey {
+
+  /**
+   * The vector.
+   */
+  private final ColumnVector vector;
+
+  /**
+   * Creates a new VectorKey.
+   *
+   * @param vector The vector.
+   */
+  private VectorKey(ColumnVector vector) {
+    this.vector = vector;
+  }
+
+  /**
+   * Creates the keys of a vector.
+   *
+   * @param vector The vector.
+   * @param textOrder The order of text values, e.g., a collator. Not used after this method
+   *     returns, and not used at all for other types.
+   *
+   * @return The keys of the vector.
+   */
+  static VectorKey create(ColumnVector vector, Comparator<String> textOrder) {
+    switch (vector.getType()) {
+      case NUMBER:
+        final ColumnVector.NumberVector numbers = (ColumnVector.NumberVector) vector;
+        return new VectorKey(vector) {
+          @Override
+          long get(int row) {
+            return getNumberKey(numbers.getDouble(row));
+          }
+        };
+      case TEXT:
+        return new TextKey((ColumnVector.TextVector) vector, textOrder);
+      case BOOLEAN:
+        final ColumnVector.BooleanVector booleans = (ColumnVector.BooleanVector) vector;
+        return new VectorKey(vector) {
+          @Override
+          long get(int row) {
+            return booleans.getBoolean(row) ? 1 : 0;
+          }
+        };
+      case DATE:
+        final ColumnVector.DateVector dates = (ColumnVector.DateVector) vector;
+        return new VectorKey(vector) {
+          @Override
+          long get(int row) {
+            return dates.getPackedDate(row);
+          }
+        };
+      case DATETIME:
+        final ColumnVector.DateTimeVector dateTimes = (ColumnVector.DateTimeVector) vector;
+        return new VectorKey(vector) {
+          @Override
+          long get(int row) {
+            return dateTimes.getMillis(row);
+          }
+        };
+      case TIMEOFDAY:
+        final ColumnVector.TimeOfDayVector times = (ColumnVector.TimeOfDayVector) vector;
+        return new VectorKey(vector) {
+          @Override
+          long get(int row) {
+            return times.getMillisOfDay(row);
+          }
+        };
+    }
+    throw new IllegalArgumentException("Unsupported value type: " + vector.getType());
+  }
+
+  /**
+   * Returns the key of a non null value of any type but text, as the key of the value in a
+   * vector would be.
+   *
+   * @param value The value.
+   *
+   * @return The key of the value.
+   */
+  static long getKey(Value value) {
+    switch (value.getType()) {
+      case NUMBER:
+        return getNumberKey(((NumberValue) value).getValue());
+      case BOOLEAN:
+        return ((BooleanValue) value).getValue() ? 1 : 0;
+      case DATE:
+        return ColumnVector.DateVector.pack((DateValue) value);
+      case DATETIME:
+        return ((DateTimeValue) value).getTimeInMillis();
+      case TIMEOFDAY:
+        return ((TimeOfDayValue) value).getMillisOfDay();
+      default:
+        throw new IllegalArgumentException("Unsupported value type: " + value.getType());
+    }
+  }
+
+  /**
+   * Returns a long that compares to the longs of other numbers like the number compares to
+   * them by {@link Double#compare}. The bits of negative numbers are flipped, except for the
+   * sign, so that larger magnitudes give smaller longs.
+   *
+   * @param number The number.
+   *
+   * @return The key of the number.
+   */
+  private static long getNumberKey(double number) {
+    long bits = Double.doubleToLongBits(number);
+    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+  }
+
+  /**
+   * Compares two keys.
+   *
+   * @param key1 The first key.
+   * @param key2 The second key.
+   *
+   * @return A negative integer, zero, or a positive integer as the first key is less than,
+   *     equal to, or greater than the second.
+   */
+  static int compare(long key1, long key2) {
+    return (key1 < key2) ? -1 : ((key1 == key2) ? 0 : 1);
+  }
+
+  /**
+   * Returns true if the value at the given row is null, in which case it has no key.
+   *
+   * @param row The row index.
+   *
+   * @return True if the value at the given row is null.
+   */
+  boolean isNull(int row) {
+    return vector.isNull(row);
+  }
+
+  /**
+   * Returns the key of the value at the given row, which is not null.
+   *
+   * @param row The row index.
+   *
+   * @return The key of the value at the given row.
+   */
+  abstract long get(int row);
+
+  /**
+   * The keys of a text vector: the ranks of the dictionary entries in a string order. Entries
+   * that are equal in that order have the same rank.
+   */
+  private static final class TextKey extends VectorKey {
+
+    /**
+     * The text vector.
+     */
+    private final ColumnVector.TextVector texts;
+
+    /**
+     * The rank of each dictionary entry, by dictionary index.
+     */
+    private final int[] ranks;
+
+    /**
+     * The rank of an empty string, used for null values.
+     */
+    private final int nullRank;
+
+    /**
+     * Creates a new TextKey.
+     *
+     * @param texts The text vector.
+     * @param textOrder The order of text values.
+     */
+    TextKey(ColumnVector.TextVector texts, final Comparator<String> textOrder) {
+      super(texts);
+      this.texts = texts;
+      // The dictionary entries, followed by an empty string for null values.
+      int dictionarySize = texts.getDictionarySize();
+      final String[] strings = new String[dictionarySize + 1];
+      for (int code = 0; code < dictionarySize; code++) {
+        strings[code] = texts.getDictionaryValue(code).getValue();
+      }
+      strings[dictionarySize] = "";
+      Integer[] order = new Integer[strings.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer code1, Integer code2) {
+          return textOrder.compare(strings[code1], strings[code2]);
+        }
+      });
+      int[] allRanks = new int[strings.length];
+      int rank = 0;
+      for (int i = 0; i < order.length; i++) {
+        if ((i > 0) && (textOrder.compare(strings[order[i - 1]], strings[order[i]]) != 0)) {
+          rank++;
+        }
+        allRanks[order[i]] = rank;
+      }
+      ranks = Arrays.copyOf(allRanks, dictionarySize);
+      nullRank = allRanks[dictionarySize];
+    }
+
+    @Override
+    boolean isNull(int row) {
+      return false;
+    }
+
+    @Override
+    long get(int row) {
+      return texts.isNull(row) ? nullRank : ranks[texts.getCode(row)];
+    }
+  }
+}
@@ -0,0 +1,153 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.query.ColumnSort;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.SortOrder;
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The keys by which rows of a {@link ColumnarDataTable} are sorted according to a query's
+ * ORDER BY on simple columns, read from the column vectors.
+ *
+ * The key of each sort column is read once per row as a primitive long (see {@link VectorKey}).
+ * Text values are ranked by the collator of the user locale once per dictionary entry, rather
+ * than once per row, so comparing two rows compares longs only. The order is exactly the one of
+ * {@link RowSortKeys}, and so of {@link TableRowComparator}.
+ *
+ * Once the keys are computed, comparing rows is thread-safe. Computing the keys of different
+ * rows can be done from several threads.
+ */
+/* package */ final class VectorSortKeys extends SortKeys {
+
+  /**
+   * The indices of the sorted rows in the table.
+   */
+  private final int[] rows;
+
+  /**
+   * The keys of the vector of each sort column.
+   */
+  private final VectorKey[] vectorKeys;
+
+  /**
+   * Whether each sort column is sorted in descending order.
+   */
+  private final boolean[] isDescending;
+
+  /**
+   * The key of each sort column, for each of the sorted rows.
+   */
+  private final long[][] keys;
+
+  /**
+   * Whether the value of each sort column is null, for each of the sorted rows.
+   */
+  private final boolean[][] nulls;
+
+  /**
+   * Creates the sort keys of rows of a table. The keys are not computed yet.
+   *
+   * @param sort The ordering criteria, on simple columns of the table.
+   * @param locale The locale defining the order relation of text values.
+   * @param table The table.
+   * @param rows The indices of the rows to sort in the table.
+   */
+  public VectorSortKeys(QuerySort sort, ULocale locale, ColumnarDataTable table, int[] rows) {
+    this.rows = rows;
+    final Collator collator = Collator.getInstance(locale);
+    Comparator<String> textOrder = new Comparator<String>() {
+      @Override
+      public int compare(String text1, String text2) {
+        return collator.compare(text1, text2);
+      }
+    };
+    List<ColumnSort> columns = sort.getSortColumns();
+    vectorKeys = new VectorKey[columns.size()];
+    isDescending = new boolean[columns.size()];
+    keys = new long[columns.size()][rows.length];
+    nulls = new boolean[columns.size()][rows.length];
+    for (int i = 0; i < vectorKeys.length; i++) {
+      String columnId = columns.get(i).getColumn().getId();
+      vectorKeys[i] = VectorKey.create(
+          table.getColumnVector(table.getColumnIndex(columnId)), textOrder);
+      isDescending[i] = (columns.get(i).getOrder() == SortOrder.DESCENDING);
+    }
+  }
+
+  /**
+   * Creates the sort keys of rows of a table, and computes them.
+   *
+   * @param sort The ordering criteria, on simple columns of the table.
+   * @param locale The locale defining the order relation of text values.
+   * @param table The table.
+   * @param rows The indices of the rows to sort in the table.
+   *
+   * @return The sort keys.
+   */
+  public static VectorSortKeys compute(QuerySort sort, ULocale locale, ColumnarDataTable table,
+      int[] rows) {
+    VectorSortKeys sortKeys = new VectorSortKeys(sort, locale, table, rows);
+    sortKeys.computeKeys(0, rows.length);
+    return sortKeys;
+  }
+
+  @Override
+  public int size() {
+    return rows.length;
+  }
+
+  @Override
+  public void computeKeys(int start, int end) {
+    for (int column = 0; column < vectorKeys.length; column++) {
+      VectorKey columnKeys = vectorKeys[column];
+      long[] columnKeyArray = keys[column];
+      boolean[] columnNulls = nulls[column];
+      for (int i = start; i < end; i++) {
+        int row = rows[i];
+        if (columnKeys.isNull(row)) {
+          columnNulls[i] = true;
+        } else {
+          columnKeyArray[i] = columnKeys.get(row);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int compare(int index1, int index2) {
+    for (int i = 0; i < keys.length; i++) {
+      boolean isNull1 = nulls[i][index1];
+      boolean isNull2 = nulls[i][index2];
+      int cc;
+      if (isNull1 || isNull2) {
+        cc = (isNull1 == isNull2) ? 0 : (isNull1 ? -1 : 1);
+      } else {
+        cc = VectorKey.compare(keys[i][index1], keys[i][index2]);
+      }
+      if (cc != 0) {
+        return isDescending[i] ? -cc : cc;
+      }
+    }
+    return 0;
+  }
+}
@@ -17,6 +17,13 @@ package com.google.visualization.datasource.query.parser;
 import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.base.MessagesEnum;
 import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.QueryFormat;
+import com.google.visualization.datasource.query.QueryGroup;
+import com.google.visualization.datasource.query.QueryLabels;
+import com.google.visualization.datasource.query.QueryOptions;
+import com.google.visualization.datasource.query.QueryPivot;
+import com.google.visualization.datasource.query.QuerySelection;
+import com.google.visualization.datasource.query.QuerySort;
 
 import com.ibm.icu.util.ULocale;
 
@@ -24,6 +31,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 /**
  * A singleton class that can parse a user query string, i.e., accept a string such as
@@ -53,12 +62,156 @@ public class QueryBuilder {
     return SINGLETON;
   }
 
+  /**
+   * The default maximal number of parsed queries kept in the cache.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 1000;
+
+  /**
+   * The parsed and validated queries, by query string, from the least to the most recently used.
+   * The cached queries are never returned, only copies of them, so they are never modified.
+   * Guarded by this.
+   */
+  private final LinkedHashMap<String, Query> cache =
+      new LinkedHashMap<String, Query>(16, 0.75f, true);
+
+  /**
+   * The maximal number of parsed queries kept in the cache. Guarded by this.
+   */
+  private int cacheSize = DEFAULT_CACHE_SIZE;
+
+  /**
+   * The number of queries found in the cache. Guarded by this.
+   */
+  private long cacheHits = 0;
+
+  /**
+   * The number of queries not found in the cache. Guarded by this.
+   */
+  private long cacheMisses = 0;
+
   /**
    * Private constructor, to prevent instantiation other than that of the singleton instance.
    */
   private QueryBuilder() {
   }
 
+  /**
+   * Sets the maximal number of parsed queries kept in the cache. A size of 0 disables the cache.
+   *
+   * @param cacheSize The maximal number of parsed queries kept in the cache.
+   */
+  public synchronized void setCacheSize(int cacheSize) {
+    this.cacheSize = Math.max(0, cacheSize);
+    evictCachedQueries();
+  }
+
+  /**
+   * Removes all the parsed queries from the cache, and resets the cache statistics.
+   */
+  public synchronized void clearCache() {
+    cache.clear();
+    cacheHits = 0;
+    cacheMisses = 0;
+  }
+
+  /**
+   * Returns the number of queries that were found in the cache.
+   *
+   * @return The number of cache hits.
+   */
+  public synchronized long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * Returns the number of queries that were not found in the cache, and were parsed.
+   *
+   * @return The number of cache misses.
+   */
+  public synchronized long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * Removes the least recently used parsed queries until the cache is within its size.
+   */
+  private synchronized void evictCachedQueries() {
+    Iterator<String> iterator = cache.keySet().iterator();
+    while (cache.size() > cacheSize) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns the cached parsed query for a query string, and counts the hit or miss.
+   *
+   * @param tqValue The user query string.
+   *
+   * @return The cached query, or null if there is none.
+   */
+  private synchronized Query getCachedQuery(String tqValue) {
+    Query query = cache.get(tqValue);
+    if (query != null) {
+      cacheHits++;
+    } else {
+      cacheMisses++;
+    }
+    return query;
+  }
+
+  /**
+   * Caches a parsed and validated query.
+   *
+   * @param tqValue The user query string.
+   * @param query The parsed query. Must not be modified after it is cached.
+   */
+  private synchronized void cacheQuery(String tqValue, Query query) {
+    if (cacheSize > 0) {
+      cache.put(tqValue, query);
+      evictCachedQueries();
+    }
+  }
+
+  /**
+   * Returns a new query with copies of the clauses of the given query, so that changing the
+   * clauses of the copy does not change the cached query. The columns and filters are immutable,
+   * and are shared.
+   *
+   * @param query The query to copy.
+   * @param ulocale The user locale of the copy.
+   *
+   * @return The copy.
+   */
+  private static Query copyQuery(Query query, ULocale ulocale) {
+    Query copy = new Query();
+    copy.copyFrom(query);
+    if (query.getSelection() != null) {
+      copy.setSelection(new QuerySelection(query.getSelection()));
+    }
+    if (query.getSort() != null) {
+      copy.setSort(new QuerySort(query.getSort()));
+    }
+    if (query.getGroup() != null) {
+      copy.setGroup(new QueryGroup(query.getGroup()));
+    }
+    if (query.getPivot() != null) {
+      copy.setPivot(new QueryPivot(query.getPivot()));
+    }
+    if (query.getLabels() != null) {
+      copy.setLabels(new QueryLabels(query.getLabels()));
+    }
+    if (query.getUserFormatOptions() != null) {
+      copy.setUserFormatOptions(new QueryFormat(query.getUserFormatOptions()));
+    }
+    if (query.getOptions() != null) {
+      copy.setOptions(new QueryOptions(query.getOptions()));
+    }
+    copy.setLocaleForUserMessages(ulocale);
+    return copy;
+  }
+
   /**
    * Parses a user query into a Query object.
    *
@@ -87,6 +240,12 @@ public class QueryBuilder {
     if (StringUtils.isEmpty(tqValue)) {
       query = new Query();
     } else {
+      // Valid queries are cached by query string. The locale only affects error messages, so it
+      // is not part of the key, and it is set on the returned copy.
+      Query cachedQuery = getCachedQuery(tqValue);
+      if (cachedQuery != null) {
+        return copyQuery(cachedQuery, ulocale);
+      }
       try {
         query = QueryParser.parseString(tqValue);
       } catch (ParseException ex) {
@@ -97,6 +256,8 @@ public class QueryBuilder {
       }
       query.setLocaleForUserMessages(ulocale);
       query.validate();
+      cacheQuery(tqValue, query);
+      query = copyQuery(query, ulocale);
     }
     return query;
   }
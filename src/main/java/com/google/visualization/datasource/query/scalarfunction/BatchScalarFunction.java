@@ -0,0 +1,44 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.scalarfunction;
+
+import com.google.visualization.datasource.datatable.value.Value;
+
+/**
+ * A scalar function that can also be executed on a range of rows at once. The query engine
+ * evaluates scalar function columns that are not part of the original table in batches of rows,
+ * and uses this method, when a function implements it, instead of calling
+ * {@link ScalarFunction#evaluate(java.util.List)} with a new list of values for each row.
+ *
+ * The result of the batch method for each row must be equal to the result of the single row
+ * method for the values of that row. Since values are immutable, a batch may return the same
+ * value instance for several rows.
+ */
+public interface BatchScalarFunction extends ScalarFunction {
+
+  /**
+   * Executes the scalar function on a range of rows. The value of the i-th parameter in row r is
+   * <code>arguments[i][r]</code>, and the result for row r is set into <code>result[r]</code>.
+   * The rows outside the range are not read or written.
+   * The method does not validate the parameters, the user must check the
+   * parameters before calling this method.
+   *
+   * @param arguments The columns of the parameter values, one for each parameter.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  void evaluate(Value[][] arguments, int from, int to, Value[] result);
+}
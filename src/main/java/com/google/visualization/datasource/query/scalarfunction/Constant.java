@@ -18,6 +18,7 @@ import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,7 +27,7 @@ import java.util.List;
  *
  * @author Liron L.
  */
-public class Constant implements ScalarFunction {
+public class Constant implements BatchScalarFunction {
 
   /**
    * The value of this constant.
@@ -61,6 +62,18 @@ public class Constant implements ScalarFunction {
     return value;
   }
 
+  /**
+   * Sets the value supplied at construction time into each row of the range.
+   *
+   * @param arguments Ignored.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Arrays.fill(result, from, to, value);
+  }
+
   /**
    * Returns the return type of the function. This matches the type of the value
    * supplied at construction time. The <code>types</code> parameter is ignored.
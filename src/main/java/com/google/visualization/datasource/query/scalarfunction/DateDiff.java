@@ -24,6 +24,7 @@ import com.ibm.icu.util.Calendar;
 import com.ibm.icu.util.GregorianCalendar;
 import com.ibm.icu.util.TimeZone;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -33,7 +34,7 @@ import java.util.List;
  *
  * @author Liron L.
  */
-public class DateDiff implements ScalarFunction {
+public class DateDiff implements BatchScalarFunction {
 
   /**
    * The name of the function.
@@ -45,6 +46,11 @@ public class DateDiff implements ScalarFunction {
    */
   private static final DateDiff INSTANCE = new DateDiff();
 
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
   /**
    * A private constructor, to prevent instantiation other than by the singleton.
    */
@@ -96,6 +102,50 @@ public class DateDiff implements ScalarFunction {
     return new NumberValue(calendar.fieldDifference(firstDate, Calendar.DATE));
   }
 
+  /**
+   * Executes the scalar function dateDiff() on a range of rows, with the same results as
+   * {@link #evaluate(List)} for each row. The difference is computed from the millisecond
+   * times of the values without a calendar, except for times before the Gregorian cutover.
+   *
+   * @param arguments The columns of the two Date/DateTime parameters.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Value[] first = arguments[0];
+    Value[] second = arguments[1];
+    for (int i = from; i < to; i++) {
+      if (first[i].isNull() || second[i].isNull()) {
+        result[i] = NumberValue.getNullValue();
+        continue;
+      }
+      long firstTime = getTimeInMillis(first[i]);
+      long secondTime = getTimeInMillis(second[i]);
+      if ((firstTime < ToDate.GREGORIAN_CUTOVER_MILLIS)
+          || (secondTime < ToDate.GREGORIAN_CUTOVER_MILLIS)) {
+        result[i] = evaluate(Arrays.asList(first[i], second[i]));
+      } else {
+        // Whole days, rounded towards zero, as in Calendar.fieldDifference().
+        result[i] = new NumberValue((firstTime - secondTime) / MILLIS_PER_DAY);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of milliseconds since the epoch of a non null Date/DateTime value.
+   *
+   * @param value The value.
+   *
+   * @return The number of milliseconds since the epoch.
+   */
+  private static long getTimeInMillis(Value value) {
+    if (value.getType() == ValueType.DATE) {
+      return ((DateValue) value).getTimeInMillis();
+    }
+    return ((DateTimeValue) value).getTimeInMillis();
+  }
+
   /**
    * Converts the given value to date. The value must be of type date or datetime.
    *
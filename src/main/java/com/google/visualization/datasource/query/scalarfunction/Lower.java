@@ -26,7 +26,7 @@ import java.util.List;
  *
  * @author Yaniv S.
  */
-public class Lower implements ScalarFunction {
+public class Lower implements BatchScalarFunction {
 
   /**
    * The name of this function.
@@ -66,6 +66,28 @@ public class Lower implements ScalarFunction {
     return new TextValue(((TextValue) values.get(0)).getValue().toLowerCase());
   }
 
+  /**
+   * Executes the function on a range of rows. Consecutive rows with the same value instance,
+   * as in sorted or interned columns, share the same result.
+   *
+   * @param arguments A column of text values.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Value[] values = arguments[0];
+    Value previous = null;
+    Value previousResult = null;
+    for (int i = from; i < to; i++) {
+      if (values[i] != previous) {
+        previous = values[i];
+        previousResult = new TextValue(((TextValue) previous).getValue().toLowerCase());
+      }
+      result[i] = previousResult;
+    }
+  }
+
   /**
    * @return The return type of this function - TEXT.
    */
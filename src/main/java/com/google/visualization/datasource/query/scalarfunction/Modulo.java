@@ -27,7 +27,7 @@ import java.util.List;
  *
  * @author Roee E.
  */
-public class Modulo implements ScalarFunction {
+public class Modulo implements BatchScalarFunction {
   
   /**
    * The name of this function.
@@ -81,6 +81,28 @@ public class Modulo implements ScalarFunction {
     return new NumberValue(modulo);
   }
 
+  /**
+   * Executes the scalar function modulo() on a range of rows, with the same results as
+   * {@link #evaluate(List)} for each row.
+   *
+   * @param arguments The columns of the two number parameters.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Value[] first = arguments[0];
+    Value[] second = arguments[1];
+    for (int i = from; i < to; i++) {
+      if (first[i].isNull() || second[i].isNull()) {
+        result[i] = NumberValue.getNullValue();
+      } else {
+        result[i] = new NumberValue(((NumberValue) first[i]).getValue() %
+            ((NumberValue) second[i]).getValue());
+      }
+    }
+  }
+
   /**
    * Returns the return type of the function. In this case, NUMBER. The method
    * does not validate the parameters, the user must check the parameters
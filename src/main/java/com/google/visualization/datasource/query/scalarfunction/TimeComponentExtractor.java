@@ -34,7 +34,7 @@ import java.util.Map;
  *
  * @author Liron L.
  */
-public class TimeComponentExtractor implements ScalarFunction {
+public class TimeComponentExtractor implements BatchScalarFunction {
 
   /**
    * An enum of time components that can be extracted from a
@@ -144,14 +144,57 @@ public class TimeComponentExtractor implements ScalarFunction {
    */
   public Value evaluate(List<Value> values) {
     Value value = values.get(0);
-    ValueType valueType = value.getType();
-    int component;
 
     // If the value is null, return a null number value.
     if (value.isNull()) {
       return NumberValue.getNullValue();
     }
+    return new NumberValue(getComponent(value));
+  }
 
+  /**
+   * Executes the function on a range of rows. Consecutive rows with the same value instance, or
+   * with the same time component, share the same result.
+   *
+   * @param arguments A column of Date/DateTime/TimeOfDay values.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Value[] values = arguments[0];
+    Value previous = null;
+    Value previousResult = null;
+    int previousComponent = 0;
+    for (int i = from; i < to; i++) {
+      Value value = values[i];
+      if (value != previous) {
+        previous = value;
+        if (value.isNull()) {
+          previousResult = NumberValue.getNullValue();
+        } else {
+          int component = getComponent(value);
+          if ((previousResult == null) || previousResult.isNull()
+              || (component != previousComponent)) {
+            previousComponent = component;
+            previousResult = new NumberValue(component);
+          }
+        }
+      }
+      result[i] = previousResult;
+    }
+  }
+
+  /**
+   * Returns the timeComponent of a non null Date/DateTime/TimeOfDay value.
+   *
+   * @param value The value.
+   *
+   * @return The timeComponent of the value.
+   */
+  private int getComponent(Value value) {
+    ValueType valueType = value.getType();
+    int component;
     switch(timeComponent) {
       case YEAR:
         if (valueType == ValueType.DATE) {
@@ -221,8 +264,7 @@ public class TimeComponentExtractor implements ScalarFunction {
         // should not get here since we assume that the given values are valid.
         throw new RuntimeException("An invalid time component.");
     }
-
-    return new NumberValue(component);
+    return component;
   }
 
   /**
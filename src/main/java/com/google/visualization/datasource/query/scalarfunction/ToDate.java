@@ -24,6 +24,7 @@ import com.google.visualization.datasource.datatable.value.ValueType;
 import com.ibm.icu.util.GregorianCalendar;
 import com.ibm.icu.util.TimeZone;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -37,7 +38,7 @@ import java.util.List;
  *
  * @author Liron L.
  */
-public class ToDate implements ScalarFunction {
+public class ToDate implements BatchScalarFunction {
 
   /**
    * The name of the function.
@@ -49,6 +50,12 @@ public class ToDate implements ScalarFunction {
    */
   private static final ToDate INSTANCE = new ToDate();
 
+  /**
+   * The time of the Gregorian cutover (1582-10-15) in milliseconds since the epoch. Since this
+   * time, calendars and the millisecond times of date values agree.
+   */
+  /* package */ static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L;
+
   /**
    * A private constructor.
    */
@@ -109,6 +116,65 @@ public class ToDate implements ScalarFunction {
     return dateValue;
   }
 
+  /**
+   * Executes the scalar function toDate() on a range of rows, with the same results as
+   * {@link #evaluate(List)} for each row. Date and time fields are taken from the values
+   * without a calendar, except for times before the Gregorian cutover. Consecutive rows with
+   * the same value instance share the same result.
+   *
+   * @param arguments A column of Date/DateTime/Number values.
+   * @param from The first row of the range.
+   * @param to The end of the range, exclusive.
+   * @param result The column in which to set the results.
+   */
+  public void evaluate(Value[][] arguments, int from, int to, Value[] result) {
+    Value[] values = arguments[0];
+    Value previous = null;
+    Value previousResult = null;
+    for (int i = from; i < to; i++) {
+      Value value = values[i];
+      if (value != previous) {
+        previous = value;
+        previousResult = toDate(value);
+      }
+      result[i] = previousResult;
+    }
+  }
+
+  /**
+   * Returns the date of a value, as {@link #evaluate(List)} does.
+   *
+   * @param value The value.
+   *
+   * @return The date of the value.
+   */
+  private Value toDate(Value value) {
+    if (value.isNull()) {
+      return DateValue.getNullValue();
+    }
+    DateTimeValue dateTimeValue = null;
+    switch (value.getType()) {
+      case DATE:
+        return value;
+      case DATETIME:
+        dateTimeValue = (DateTimeValue) value;
+        break;
+      case NUMBER:
+        long timeInMillis = (long) ((NumberValue) value).getValue();
+        if (timeInMillis >= GREGORIAN_CUTOVER_MILLIS) {
+          dateTimeValue = DateTimeValue.fromTimeInMillis(timeInMillis);
+        }
+        break;
+      default:// Should never get here.
+        throw new RuntimeException("Value type was not found: " + value.getType());
+    }
+    if ((dateTimeValue == null) || (dateTimeValue.getTimeInMillis() < GREGORIAN_CUTOVER_MILLIS)) {
+      return evaluate(Collections.singletonList(value));
+    }
+    return new DateValue(dateTimeValue.getYear(), dateTimeValue.getMonth(),
+        dateTimeValue.getDayOfMonth());
+  }
+
   /**
    * Returns the return type of the function. In this case, DATE. The method
    * does not validate the parameters, the user must check the parameters
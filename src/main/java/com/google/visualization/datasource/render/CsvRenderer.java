@@ -26,6 +26,9 @@ import com.ibm.icu.util.ULocale;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
@@ -54,13 +57,38 @@ public class CsvRenderer {
    */
   public static CharSequence renderDataTable(DataTable dataTable, ULocale locale,
       String separator) {
+    StringWriter writer = new StringWriter();
+    try {
+      renderDataTable(dataTable, locale, separator, writer);
+    } catch (IOException e) {
+      // A StringWriter does not throw.
+      throw new RuntimeException("Couldn't render the data table. This should never happen.", e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes a csv representation of a data table to a writer, one row at a time, so that the
+   * whole csv string is never held in memory.
+   *
+   * @param dataTable The data table.
+   * @param locale The locale. If null, uses the default from
+   *     {@code LocaleUtil#getDefaultLocale}.
+   * @param separator The separator string used to delimit row values.
+   *     If the separator is {@code null}, comma is used as a separator.
+   * @param writer The writer to write the csv to. Not flushed or closed.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static void renderDataTable(DataTable dataTable, ULocale locale, String separator,
+      Writer writer) throws IOException {
     if (separator == null) {
       separator = ",";
     }
 
     // Deal with empty data table.
     if (dataTable.getColumnDescriptions().isEmpty()) {
-      return "";
+      return;
     }
 
     // Deal with non-empty data table.
@@ -76,11 +104,16 @@ public class CsvRenderer {
     // Remove last comma.
     int length = sb.length();
     sb.replace(length - 1, length, "\n");
+    writer.append(sb);
 
-    // Append the data cells.
+    // Append the data cells. The same builder is reused for every row.
     List<TableRow> rows = dataTable.getRows();
     for (TableRow row : rows) {
       List<TableCell> cells = row.getCells();
+      if (cells.isEmpty()) {
+        continue;
+      }
+      sb.setLength(0);
       for (TableCell cell : cells) {
         String formattedValue = cell.getFormattedValue();
         if (formattedValue == null) {
@@ -103,8 +136,8 @@ public class CsvRenderer {
       // Remove last comma.
       length = sb.length();
       sb.replace(length - 1, length, "\n");
+      writer.append(sb);
     }
-    return sb.toString();
   }
 
   /**
@@ -92,6 +92,34 @@ public class HtmlRenderer {
    * @return The char sequence with the html string.
    */
   public static CharSequence renderDataTable(DataTable dataTable, ULocale locale) {
+    Writer writer = new StringWriter();
+    transformDocumentToHtml(createDataTableDocument(dataTable, locale), writer);
+    return writer.toString();
+  }
+
+  /**
+   * Writes an HTML representation of a data table to a writer, without first rendering it to a
+   * string.
+   *
+   * @param dataTable The data table to render.
+   * @param locale The locale. If null, uses the default from
+   *     {@code LocaleUtil#getDefaultLocale}.
+   * @param writer The writer to write the html to. Not flushed or closed.
+   */
+  public static void renderDataTable(DataTable dataTable, ULocale locale, Writer writer) {
+    transformDocumentToHtml(createDataTableDocument(dataTable, locale), writer);
+  }
+
+  /**
+   * Creates an html document representing a data table.
+   *
+   * @param dataTable The data table to render.
+   * @param locale The locale. If null, uses the default from
+   *     {@code LocaleUtil#getDefaultLocale}.
+   *
+   * @return The html document.
+   */
+  private static Document createDataTableDocument(DataTable dataTable, ULocale locale) {
     // Create an xml document with head and an empty body.
     Document document = createDocument();
     Element bodyElement = appendHeadAndBody(document);
@@ -174,7 +202,7 @@ public class HtmlRenderer {
       bodyElement.appendChild(messageElement);
     }
 
-    return transformDocumentToHtmlString(document);
+    return document;
   }
 
   /**
@@ -185,6 +213,18 @@ public class HtmlRenderer {
    * @return A string representation of a valid html.
    */
   private static String transformDocumentToHtmlString(Document document) {
+    Writer writer = new StringWriter();
+    transformDocumentToHtml(document, writer);
+    return writer.toString();
+  }
+
+  /**
+   * Transforms a document to valid html, written to a writer.
+   *
+   * @param document The document to transform
+   * @param writer The writer to write the html to.
+   */
+  private static void transformDocumentToHtml(Document document, Writer writer) {
     // Generate a CharSequence from the xml document.
     Transformer transformer = null;
     try {
@@ -200,7 +240,6 @@ public class HtmlRenderer {
     transformer.setOutputProperty(OutputKeys.VERSION, "4.01");
     
     DOMSource source = new DOMSource(document);
-    Writer writer = new StringWriter();
     StreamResult result = new StreamResult(writer);
     try {
       transformer.transform(source, result);
@@ -208,8 +247,6 @@ public class HtmlRenderer {
       log.error("Couldn't transform", e);
       throw new RuntimeException("Couldn't transform. This should never happen.", e);
     }
-
-    return writer.toString();
   }
 
   /**
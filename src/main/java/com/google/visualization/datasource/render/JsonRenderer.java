@@ -33,11 +33,12 @@ import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
-import com.ibm.icu.util.GregorianCalendar;
-
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrBuilder;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 
@@ -65,18 +66,16 @@ public class JsonRenderer {
   private JsonRenderer() {}
 
   /**
-   * Returns a String-form 32-bit hash of this table's json.
+   * Returns a String-form hash of this table's contents, see {@link TableSignature}.
    * Note: the signature ignores formatting.
    *
    * @param data The data table.
    *
-   * @return a String-form 64-bit hash of this table.
+   * @return a String-form non-negative 63-bit hash of this table.
    */
   public static String getSignature(DataTable data) {
-    String tableAsString = renderDataTable(data, true, false, true).toString();
-    // Casting to long to avoid bug with abs(Integer.MIN_VALUE) being negative.
-    long longHashCode = tableAsString.hashCode();
-    return String.valueOf(Math.abs(longHashCode));
+    // The sign bit is dropped, as signatures have always been non-negative numbers.
+    return String.valueOf(TableSignature.compute(data) & Long.MAX_VALUE);
   }
 
   /**
@@ -141,6 +140,34 @@ public class JsonRenderer {
       DataSourceParameters dsParams,
       ResponseStatus responseStatus,
       DataTable data) {
+    StringWriter writer = new StringWriter();
+    try {
+      renderJsonResponse(dsParams, responseStatus, data, writer);
+    } catch (IOException e) {
+      // A StringWriter does not throw.
+      throw new RuntimeException("Couldn't render the response. This should never happen.", e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes the json response for the given data table to a writer. The data table is written
+   * one row at a time, so that the whole response is never held in memory.
+   *
+   * @param dsParams The datasource parameters. If the OutputType parameter is set to
+   *     JSONP the response will be rendered as JSONP. Otherwise a plain JSON string will
+   *     be written.
+   * @param responseStatus The response status.
+   * @param data The data table.
+   * @param writer The writer to write the response to. Not flushed or closed.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static void renderJsonResponse(
+      DataSourceParameters dsParams,
+      ResponseStatus responseStatus,
+      DataTable data,
+      Writer writer) throws IOException {
     StrBuilder sb = new StrBuilder();
     boolean isJsonp = dsParams.getOutputType() == OutputType.JSONP;
     if (isJsonp) {
@@ -154,11 +181,14 @@ public class JsonRenderer {
       sb.append(",\"reqId\":\"").append(EscapeUtil.jsonEscape(requestId)).append("\"");
     }
 
-    // Check signature.
+    // Check signature. It is computed at most once per response.
     String previousSignature = dsParams.getSignature();
+    String signature = null;
     if (responseStatus == null) {
-      if (!StringUtils.isEmpty(previousSignature) && (data != null)
-          && (JsonRenderer.getSignature(data).equals(previousSignature))) {
+      if (!StringUtils.isEmpty(previousSignature) && (data != null)) {
+        signature = JsonRenderer.getSignature(data);
+      }
+      if ((signature != null) && signature.equals(previousSignature)) {
         responseStatus = new ResponseStatus(StatusType.ERROR, ReasonType.NOT_MODIFIED, null);
       } else {
         responseStatus = new ResponseStatus(StatusType.OK, null, null);
@@ -191,16 +221,21 @@ public class JsonRenderer {
     if ((statusType != StatusType.ERROR) && (data != null)) {
       // MessageType OK or WARNING,
       // so need to attach a data table (and a signature).
-      sb.append(",\"sig\":\"").append(JsonRenderer.getSignature(data)).append("\"");
-      sb.append(",\"table\":").append(JsonRenderer.renderDataTable(data, true, true, isJsonp));
+      if (signature == null) {
+        signature = JsonRenderer.getSignature(data);
+      }
+      sb.append(",\"sig\":\"").append(signature).append("\"");
+      sb.append(",\"table\":");
+      writer.write(sb.toString());
+      sb.clear();
+      renderDataTable(data, true, true, isJsonp, writer);
     }
     
     sb.append("}");
     if (isJsonp) {
       sb.append(");");
     }
-    
-    return sb.toString();
+    writer.write(sb.toString());
   }
 
   /**
@@ -241,8 +276,35 @@ public class JsonRenderer {
    */
   public static CharSequence renderDataTable(DataTable dataTable, boolean includeValues, 
       boolean includeFormatting, boolean renderDateAsDateConstructor) {
+    StringWriter writer = new StringWriter();
+    try {
+      renderDataTable(dataTable, includeValues, includeFormatting, renderDateAsDateConstructor,
+          writer);
+    } catch (IOException e) {
+      // A StringWriter does not throw.
+      throw new RuntimeException("Couldn't render the data table. This should never happen.", e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes a JSON representation of the data table object to a writer, one row at a time.
+   *
+   * @param includeValues False if the json should contain just meta-data and column descriptions
+   *     but without the data rows.
+   * @param includeFormatting False if formatting information should be omitted from the
+   *     generated json.
+   * @param renderDateAsDateConstructor True -> date constructor, False -> date string.
+   *     See {@link #renderDataTable(DataTable, boolean, boolean, boolean)}.
+   * @param writer The writer to write the json to. Not flushed or closed.
+   *
+   * @throws IOException In case of a I/O error.
+   */
+  public static void renderDataTable(DataTable dataTable, boolean includeValues,
+      boolean includeFormatting, boolean renderDateAsDateConstructor, Writer writer)
+      throws IOException {
     if (dataTable.getColumnDescriptions().isEmpty()) {
-      return "";
+      return;
     }
 
     List<ColumnDescription> columnDescriptions = dataTable.getColumnDescriptions();
@@ -269,6 +331,9 @@ public class JsonRenderer {
 
       List<TableRow> rows = dataTable.getRows();
       for (int rowId = 0; rowId < rows.size(); rowId++) {
+        // Each row is written as soon as it is rendered, and the builder is then reused.
+        writer.append(sb);
+        sb.setLength(0);
         TableRow tableRow = rows.get(rowId);
         cells = tableRow.getCells();
         sb.append("{\"c\":[");
@@ -306,7 +371,7 @@ public class JsonRenderer {
     }
 
     sb.append("}"); // table.
-    return sb;
+    writer.append(sb);
   }
   
   /**
@@ -349,12 +414,12 @@ public class JsonRenderer {
     Value value = cell.getValue();
     ValueType type = cell.getType();
     StringBuilder valueJson = new StringBuilder();
-    GregorianCalendar calendar;
     String escapedFormattedString = "";
     boolean isJsonNull = false;
 
     // Prepare a Json string representing the current value.
     DateValue dateValue;
+    DateTimeValue dateTimeValue;
     TimeOfDayValue timeOfDayValue;
     if ((value == null) || (value.isNull())) {
       valueJson.append("null");
@@ -398,16 +463,16 @@ public class JsonRenderer {
           valueJson.append("]");
           break;
         case DATETIME:
-          calendar = ((DateTimeValue) value).getCalendar();
+          dateTimeValue = (DateTimeValue) value;
           valueJson.append("Date(");
-          valueJson.append(calendar.get(GregorianCalendar.YEAR)).append(",");
-          valueJson.append(calendar.get(GregorianCalendar.MONTH)).append(",");
-          valueJson.append(calendar.get(GregorianCalendar.DAY_OF_MONTH));
+          valueJson.append(dateTimeValue.getYear()).append(",");
+          valueJson.append(dateTimeValue.getMonth()).append(",");
+          valueJson.append(dateTimeValue.getDayOfMonth());
           valueJson.append(",");
-          valueJson.append(calendar.get(GregorianCalendar.HOUR_OF_DAY));
+          valueJson.append(dateTimeValue.getHourOfDay());
           valueJson.append(",");
-          valueJson.append(calendar.get(GregorianCalendar.MINUTE)).append(",");
-          valueJson.append(calendar.get(GregorianCalendar.SECOND));
+          valueJson.append(dateTimeValue.getMinute()).append(",");
+          valueJson.append(dateTimeValue.getSecond());
           valueJson.append(")");
           if (renderDateAsDateConstructor) {
             // Rendering date as a call to Date constructor, e.g new Date(2011,1,1,0,0,0)
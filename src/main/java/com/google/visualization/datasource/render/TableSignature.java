@@ -0,0 +1,228 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.render;
+
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a 64-bit hash of the contents of a data table, in a single pass over its column
+ * descriptions, cells and custom properties, without rendering the table.
+ *
+ * The hash covers everything the json rendering of the table covers, except for the formatted
+ * values, so that two tables with the same signature render to the same json up to formatting.
+ * Strings are hashed with their length, so that the concatenation of different strings does not
+ * collide. The hash is a 64-bit FNV-1a over the 16-bit chars and primitive values, followed by a
+ * final avalanche step.
+ */
+/* package */ final class TableSignature {
+
+  /**
+   * The FNV-1a 64-bit offset basis.
+   */
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  /**
+   * The FNV-1a 64-bit prime.
+   */
+  private static final long PRIME = 0x100000001b3L;
+
+  /**
+   * A marker hashed in place of a null value or string.
+   */
+  private static final int NULL_MARKER = -1;
+
+  /**
+   * The hash so far.
+   */
+  private long hash = OFFSET_BASIS;
+
+  /**
+   * Creates an empty signature. Use compute().
+   */
+  private TableSignature() {}
+
+  /**
+   * Returns the 64-bit signature of a data table.
+   *
+   * @param dataTable The data table.
+   *
+   * @return The signature.
+   */
+  public static long compute(DataTable dataTable) {
+    TableSignature signature = new TableSignature();
+    List<ColumnDescription> columns = dataTable.getColumnDescriptions();
+    signature.addInt(columns.size());
+    for (ColumnDescription column : columns) {
+      signature.addString(column.getId());
+      signature.addString(column.getLabel());
+      signature.addInt(column.getType().ordinal());
+      signature.addString(column.getPattern());
+      signature.addProperties(column.getCustomProperties());
+    }
+    List<TableRow> rows = dataTable.getRows();
+    signature.addInt(rows.size());
+    for (TableRow row : rows) {
+      List<TableCell> cells = row.getCells();
+      signature.addInt(cells.size());
+      for (TableCell cell : cells) {
+        signature.addValue(cell.getValue());
+        signature.addProperties(cell.getCustomProperties());
+      }
+      signature.addProperties(row.getCustomProperties());
+    }
+    signature.addProperties(dataTable.getCustomProperties());
+    return signature.getHash();
+  }
+
+  /**
+   * Adds the low 16 bits of an int to the hash.
+   *
+   * @param c The bits to add.
+   */
+  private void addChar(int c) {
+    hash = (hash ^ (c & 0xff)) * PRIME;
+    hash = (hash ^ ((c >>> 8) & 0xff)) * PRIME;
+  }
+
+  /**
+   * Adds an int to the hash.
+   *
+   * @param i The int.
+   */
+  private void addInt(int i) {
+    addChar(i);
+    addChar(i >>> 16);
+  }
+
+  /**
+   * Adds a long to the hash.
+   *
+   * @param l The long.
+   */
+  private void addLong(long l) {
+    addInt((int) l);
+    addInt((int) (l >>> 32));
+  }
+
+  /**
+   * Adds a string, or null, to the hash.
+   *
+   * @param s The string.
+   */
+  private void addString(String s) {
+    if (s == null) {
+      addInt(NULL_MARKER);
+      return;
+    }
+    int length = s.length();
+    addInt(length);
+    for (int i = 0; i < length; i++) {
+      addChar(s.charAt(i));
+    }
+  }
+
+  /**
+   * Adds a map of custom properties to the hash, in its iteration order.
+   *
+   * @param properties The custom properties.
+   */
+  private void addProperties(Map<String, String> properties) {
+    if ((properties == null) || properties.isEmpty()) {
+      addInt(0);
+      return;
+    }
+    addInt(properties.size());
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      addString(entry.getKey());
+      addString(entry.getValue());
+    }
+  }
+
+  /**
+   * Adds a value to the hash, by its type and contents.
+   *
+   * @param value The value.
+   */
+  private void addValue(Value value) {
+    if ((value == null) || value.isNull()) {
+      addInt(NULL_MARKER);
+      return;
+    }
+    addInt(value.getType().ordinal());
+    switch (value.getType()) {
+      case BOOLEAN:
+        addInt(((BooleanValue) value).getValue() ? 1 : 0);
+        break;
+      case NUMBER:
+        addLong(Double.doubleToLongBits(((NumberValue) value).getValue()));
+        break;
+      case TEXT:
+        addString(value.toString());
+        break;
+      case DATE:
+        DateValue dateValue = (DateValue) value;
+        addInt(dateValue.getYear());
+        addInt(dateValue.getMonth());
+        addInt(dateValue.getDayOfMonth());
+        break;
+      case TIMEOFDAY:
+        TimeOfDayValue timeOfDayValue = (TimeOfDayValue) value;
+        addInt(timeOfDayValue.getHours());
+        addInt(timeOfDayValue.getMinutes());
+        addInt(timeOfDayValue.getSeconds());
+        addInt(timeOfDayValue.getMilliseconds());
+        break;
+      case DATETIME:
+        DateTimeValue dateTimeValue = (DateTimeValue) value;
+        addInt(dateTimeValue.getYear());
+        addInt(dateTimeValue.getMonth());
+        addInt(dateTimeValue.getDayOfMonth());
+        addInt(dateTimeValue.getHourOfDay());
+        addInt(dateTimeValue.getMinute());
+        addInt(dateTimeValue.getSecond());
+        addInt(dateTimeValue.getMillisecond());
+        break;
+      default:
+        throw new IllegalArgumentException("Illegal value Type " + value.getType());
+    }
+  }
+
+  /**
+   * Returns the hash, after a final avalanche step that mixes all of its bits.
+   *
+   * @return The hash.
+   */
+  private long getHash() {
+    long h = hash;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -20,8 +20,10 @@ import com.google.visualization.datasource.base.ReasonType;
 import com.google.visualization.datasource.base.TypeMismatchException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.ValueFormatter;
+import com.google.visualization.datasource.datatable.ValueInterner;
 import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 
@@ -29,6 +31,7 @@ import au.com.bytecode.opencsv.CSVReader;
 import com.ibm.icu.util.ULocale;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -36,6 +39,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +92,30 @@ public class CsvDataSourceHelper {
   public static DataTable read(Reader reader, List<ColumnDescription> columnDescriptions,
       Boolean headerRow, ULocale locale)
       throws IOException, CsvDataSourceException {
+    return read(reader, columnDescriptions, headerRow, locale, null);
+  }
+
+  /**
+   * Translates a CSV formatted input into a data table representation, sharing equal values of
+   * a column between its rows.
+   *
+   * @param reader The CSV input Reader from which to read.
+   * @param columnDescriptions The column descriptions, or null.
+   * @param headerRow True if there is an header row.
+   * @param locale An optional locale in which to parse the input csv file.
+   * @param valueInterner An optional interner of the values of the columns. If null, the values
+   *     are not interned.
+   *
+   * @return A data table with the values populated from the CSV file.
+   *
+   * @throws IOException In case of error reading from the reader.
+   * @throws CsvDataSourceException In case of specific csv error.
+   *
+   * @see #read(java.io.Reader, java.util.List, Boolean, ULocale)
+   */
+  public static DataTable read(Reader reader, List<ColumnDescription> columnDescriptions,
+      Boolean headerRow, ULocale locale, ValueInterner valueInterner)
+      throws IOException, CsvDataSourceException {
     DataTable dataTable = new DataTable();
 
     if (reader == null) {
@@ -95,8 +123,7 @@ public class CsvDataSourceHelper {
     }
 
     CSVReader csvReader = new CSVReader(reader);
-    Map<ValueType, ValueFormatter> defaultFormatters =
-        ValueFormatter.createDefaultFormatters(locale);
+    ValueFormatter[] valueFormatters = null;
 
     // Parse the CSV.
     String[] line;
@@ -105,88 +132,22 @@ public class CsvDataSourceHelper {
       // Being lenient about newlines.
       // The reader reads them as lines with
       // one element ("").
-      if ((line.length == 1) && (line[0].equals(""))) {
+      if (isEmptyLine(line)) {
         // This is a new line.
         continue;
       }
 
-      if ((columnDescriptions != null) && (line.length != columnDescriptions.size())) {
-        throw new CsvDataSourceException(
-            ReasonType.INTERNAL_ERROR,
-            "Wrong number of columns in the data.");
-      }
+      checkNumberOfColumns(line, columnDescriptions);
       if (firstLine) {
-        // If columnDescriptions is null, create it.
-        if (columnDescriptions == null) {
-          columnDescriptions = Lists.newArrayList();
-        }
-
-        List<ColumnDescription> tempColumnDescriptions = new ArrayList<ColumnDescription>();
-
-        // Fill the defaults in the tableDescription.
-        // This allows easy-to-write table descriptions
-        // (or even null table descriptions).
-        for (int i = 0; i < line.length; i++) {
-          ColumnDescription tempColumnDescription =
-              (columnDescriptions.isEmpty() || columnDescriptions.get(i) == null)
-              ? null
-              : columnDescriptions.get(i);
-
-          String id =
-              ((tempColumnDescription == null) || (tempColumnDescription.getId() == null))
-              ? "Col" + (i) : tempColumnDescription.getId();
-          ValueType type =
-              ((tempColumnDescription == null) || (tempColumnDescription.getType() == null))
-              ? ValueType.TEXT : tempColumnDescription.getType();
-          String label =
-              ((tempColumnDescription == null) || (tempColumnDescription.getLabel() == null))
-              ? "Column" + i : tempColumnDescription.getLabel();
-          String pattern =
-              ((tempColumnDescription == null) || (tempColumnDescription.getPattern() == null))
-              ? "" : tempColumnDescription.getPattern();
-
-          tempColumnDescription = new ColumnDescription(id, type, label);
-          tempColumnDescription.setPattern(pattern);
-          tempColumnDescriptions.add(tempColumnDescription);
-        }
-
-        // Deal with header rows.
-        if (headerRow) {
-          for (int i = 0; i < line.length; i++) {
-            String string = line[i];
-            if (string == null) {
-              tempColumnDescriptions.get(i).setLabel("");
-            } else {
-              tempColumnDescriptions.get(i).setLabel(line[i].trim());
-            }
-          }
-        }
-
-        columnDescriptions = tempColumnDescriptions;
+        columnDescriptions = createColumnDescriptions(line, columnDescriptions, headerRow);
         dataTable = new DataTable();
         dataTable.addColumns(columnDescriptions);
+        // The formatters are created once, and not for every cell.
+        valueFormatters = createValueFormatters(columnDescriptions, locale);
       }
       if (!(firstLine && headerRow)) {
         // Need to parse the first line as a regular row.
-        TableRow tableRow = new TableRow();
-        for (int i = 0; i < line.length; i++) {
-          ColumnDescription columnDescription = columnDescriptions.get(i);
-          ValueType valueType = columnDescription.getType();
-          String string = line[i];
-          if (string != null) {
-            string = string.trim();
-          }
-          String pattern = columnDescription.getPattern();
-          ValueFormatter valueFormatter;
-          if (pattern == null || pattern.equals("")) {
-            valueFormatter = defaultFormatters.get(valueType);
-          } else {
-            valueFormatter = ValueFormatter.createFromPattern(valueType, pattern, locale);
-          }
-          Value value = valueFormatter.parse(string);
-          
-          tableRow.addCell(value);
-        }
+        TableRow tableRow = parseRow(line, valueFormatters, valueInterner);
         try {
           dataTable.addRow(tableRow);
         } catch (TypeMismatchException e) {
@@ -201,6 +162,174 @@ public class CsvDataSourceHelper {
     return dataTable;
   }
 
+  /**
+   * Translates a CSV file into a data table representation, parsing chunks of the file in
+   * parallel. The file is memory-mapped and split at record boundaries into chunks, that are
+   * parsed by a pool of threads. The rows keep the order of the file.
+   *
+   * The file must be in an encoding where a newline is a single byte that is not part of any
+   * other character, such as UTF-8 or ISO-8859-1.
+   *
+   * @param file The CSV file.
+   * @param columnDescriptions The column descriptions, or null.
+   *     See {@link #read(java.io.Reader, java.util.List, Boolean, ULocale)}.
+   * @param headerRow True if there is an header row.
+   * @param locale An optional locale in which to parse the input csv file.
+   * @param charset The encoding of the file.
+   * @param parallelism The number of threads parsing the file.
+   *
+   * @return A data table with the values populated from the CSV file.
+   *
+   * @throws IOException In case of error reading from the file.
+   * @throws CsvDataSourceException In case of specific csv error.
+   */
+  public static DataTable readFile(File file, List<ColumnDescription> columnDescriptions,
+      Boolean headerRow, ULocale locale, Charset charset, int parallelism)
+      throws IOException, CsvDataSourceException {
+    return new ParallelCsvReader(file, columnDescriptions, headerRow, locale, charset,
+        parallelism).read();
+  }
+
+  /**
+   * Returns whether a line read by the csv reader is an empty line.
+   *
+   * @param line The line.
+   *
+   * @return True if the line is empty.
+   */
+  /* package */ static boolean isEmptyLine(String[] line) {
+    return (line.length == 1) && (line[0].equals(""));
+  }
+
+  /**
+   * Checks that a line has as many values as there are columns.
+   *
+   * @param line The line.
+   * @param columnDescriptions The column descriptions, or null if they are not known yet.
+   *
+   * @throws CsvDataSourceException Thrown when the line has a wrong number of values.
+   */
+  /* package */ static void checkNumberOfColumns(String[] line,
+      List<ColumnDescription> columnDescriptions) throws CsvDataSourceException {
+    if ((columnDescriptions != null) && (line.length != columnDescriptions.size())) {
+      throw new CsvDataSourceException(
+          ReasonType.INTERNAL_ERROR,
+          "Wrong number of columns in the data.");
+    }
+  }
+
+  /**
+   * Returns the column descriptions of the table, given the first line of the CSV.
+   *
+   * @param line The first line.
+   * @param columnDescriptions The given column descriptions, or null.
+   * @param headerRow True if the first line is a header row, that holds the column labels.
+   *
+   * @return The column descriptions.
+   */
+  /* package */ static List<ColumnDescription> createColumnDescriptions(String[] line,
+      List<ColumnDescription> columnDescriptions, Boolean headerRow) {
+    // If columnDescriptions is null, create it.
+    if (columnDescriptions == null) {
+      columnDescriptions = Lists.newArrayList();
+    }
+
+    List<ColumnDescription> tempColumnDescriptions = new ArrayList<ColumnDescription>();
+
+    // Fill the defaults in the tableDescription.
+    // This allows easy-to-write table descriptions
+    // (or even null table descriptions).
+    for (int i = 0; i < line.length; i++) {
+      ColumnDescription tempColumnDescription =
+          (columnDescriptions.isEmpty() || columnDescriptions.get(i) == null)
+          ? null
+          : columnDescriptions.get(i);
+
+      String id =
+          ((tempColumnDescription == null) || (tempColumnDescription.getId() == null))
+          ? "Col" + (i) : tempColumnDescription.getId();
+      ValueType type =
+          ((tempColumnDescription == null) || (tempColumnDescription.getType() == null))
+          ? ValueType.TEXT : tempColumnDescription.getType();
+      String label =
+          ((tempColumnDescription == null) || (tempColumnDescription.getLabel() == null))
+          ? "Column" + i : tempColumnDescription.getLabel();
+      String pattern =
+          ((tempColumnDescription == null) || (tempColumnDescription.getPattern() == null))
+          ? "" : tempColumnDescription.getPattern();
+
+      tempColumnDescription = new ColumnDescription(id, type, label);
+      tempColumnDescription.setPattern(pattern);
+      tempColumnDescriptions.add(tempColumnDescription);
+    }
+
+    // Deal with header rows.
+    if (headerRow) {
+      for (int i = 0; i < line.length; i++) {
+        String string = line[i];
+        if (string == null) {
+          tempColumnDescriptions.get(i).setLabel("");
+        } else {
+          tempColumnDescriptions.get(i).setLabel(line[i].trim());
+        }
+      }
+    }
+    return tempColumnDescriptions;
+  }
+
+  /**
+   * Returns the formatters that parse the values of the columns: the formatter of the pattern
+   * of a column if it has one, or the default formatter of its type. Formatters are not
+   * thread-safe, so each thread parsing the CSV needs its own.
+   *
+   * @param columnDescriptions The column descriptions.
+   * @param locale The locale in which to parse the values, or null for the default locale.
+   *
+   * @return The formatters, by column index.
+   */
+  /* package */ static ValueFormatter[] createValueFormatters(
+      List<ColumnDescription> columnDescriptions, ULocale locale) {
+    Map<ValueType, ValueFormatter> defaultFormatters =
+        ValueFormatter.createDefaultFormatters(locale);
+    ValueFormatter[] result = new ValueFormatter[columnDescriptions.size()];
+    for (int i = 0; i < result.length; i++) {
+      ColumnDescription columnDescription = columnDescriptions.get(i);
+      ValueType valueType = columnDescription.getType();
+      String pattern = columnDescription.getPattern();
+      if (pattern == null || pattern.equals("")) {
+        result[i] = defaultFormatters.get(valueType);
+      } else {
+        result[i] = ValueFormatter.createFromPattern(valueType, pattern, locale);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parses a line of the CSV into a row.
+   *
+   * @param line The line, with a value for each column.
+   * @param valueFormatters The formatters that parse the values of the columns.
+   * @param valueInterner An optional interner of the values of the columns.
+   *
+   * @return The row.
+   */
+  /* package */ static TableRow parseRow(String[] line, ValueFormatter[] valueFormatters,
+      ValueInterner valueInterner) {
+    TableRow tableRow = new TableRow();
+    for (int i = 0; i < line.length; i++) {
+      String string = line[i];
+      if (string != null) {
+        string = string.trim();
+      }
+      Value value = valueFormatters[i].parse(string);
+
+      tableRow.addCell((valueInterner == null) ? new TableCell(value)
+          : valueInterner.internCell(i, value));
+    }
+    return tableRow;
+  }
+
   /**
    * Returns a Reader for the url.
    * Given a specific url, returns a Reader for that url,
@@ -0,0 +1,470 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.util;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.ReasonType;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.ValueFormatter;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.ibm.icu.util.ULocale;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a CSV file into a data table, parsing chunks of the file in parallel.
+ *
+ * The file is memory-mapped and scanned once for the newlines that end records, that is, the
+ * newlines outside quoted values, to split it into chunks of whole records. Each chunk is then
+ * parsed by a task of a thread pool, with its own formatters since formatters are not
+ * thread-safe, and the rows of the chunks are added to the table in the order of the file.
+ *
+ * The newline and quote bytes are found without decoding the file, so the encoding must be one
+ * in which they are single bytes that are not part of other characters, such as UTF-8 or
+ * ISO-8859-1. A file with '\r' line endings only has no record boundaries and is parsed as a
+ * single chunk.
+ *
+ * @see CsvDataSourceHelper#readFile(File, List, Boolean, ULocale, Charset, int)
+ */
+/* package */ class ParallelCsvReader {
+
+  /**
+   * The default minimal size of a chunk. Smaller files are parsed as a single chunk.
+   */
+  private static final long DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * The maximal size of a chunk, that must be small enough to be mapped into a single buffer.
+   */
+  private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+  /**
+   * The size of the windows mapped while scanning the file for record boundaries.
+   */
+  private static final long SCAN_WINDOW_SIZE = 1 << 26;
+
+  /**
+   * The number of chunks per thread, so that threads that parse faster chunks get more of them.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /**
+   * The newline byte.
+   */
+  private static final byte NEWLINE = '\n';
+
+  /**
+   * The quote byte.
+   */
+  private static final byte QUOTE = '"';
+
+  /**
+   * The CSV file.
+   */
+  private final File file;
+
+  /**
+   * The given column descriptions, or null.
+   */
+  private final List<ColumnDescription> columnDescriptions;
+
+  /**
+   * True if the first line of the file is a header row.
+   */
+  private final Boolean headerRow;
+
+  /**
+   * The locale in which to parse the values, or null.
+   */
+  private final ULocale locale;
+
+  /**
+   * The encoding of the file.
+   */
+  private final Charset charset;
+
+  /**
+   * The number of threads parsing the file.
+   */
+  private final int parallelism;
+
+  /**
+   * The minimal size of a chunk.
+   */
+  private long minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+  /**
+   * Creates a new reader.
+   *
+   * @param file The CSV file.
+   * @param columnDescriptions The column descriptions, or null.
+   * @param headerRow True if the first line of the file is a header row.
+   * @param locale The locale in which to parse the values, or null.
+   * @param charset The encoding of the file.
+   * @param parallelism The number of threads parsing the file.
+   */
+  public ParallelCsvReader(File file, List<ColumnDescription> columnDescriptions,
+      Boolean headerRow, ULocale locale, Charset charset, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+    }
+    this.file = file;
+    this.columnDescriptions = columnDescriptions;
+    this.headerRow = headerRow;
+    this.locale = locale;
+    this.charset = charset;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets the minimal size of a chunk. Used in tests, to split small files.
+   *
+   * @param minChunkSize The minimal size of a chunk, in bytes.
+   */
+  /* package */ void setMinChunkSize(long minChunkSize) {
+    this.minChunkSize = minChunkSize;
+  }
+
+  /**
+   * Reads the file into a data table.
+   *
+   * @return A data table with the values populated from the file.
+   *
+   * @throws IOException In case of error reading from the file.
+   * @throws CsvDataSourceException In case of specific csv error.
+   */
+  public DataTable read() throws IOException, CsvDataSourceException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      return read(randomAccessFile.getChannel());
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Reads a file into a data table.
+   *
+   * @param channel The channel of the file.
+   *
+   * @return A data table with the values populated from the file.
+   *
+   * @throws IOException In case of error reading from the file.
+   * @throws CsvDataSourceException In case of specific csv error.
+   */
+  private DataTable read(FileChannel channel) throws IOException, CsvDataSourceException {
+    long size = channel.size();
+
+    // Find and parse the first line, that defines the columns.
+    long recordStart = 0;
+    long recordEnd = 0;
+    String[] firstLine = null;
+    while ((firstLine == null) && (recordStart < size)) {
+      recordEnd = findRecordEnd(channel, recordStart, size);
+      String record = charset.decode(
+          channel.map(FileChannel.MapMode.READ_ONLY, recordStart, recordEnd - recordStart))
+          .toString();
+      String[] line = new CSVReader(new StringReader(record)).readNext();
+      if ((line != null) && !CsvDataSourceHelper.isEmptyLine(line)) {
+        firstLine = line;
+      } else {
+        recordStart = recordEnd;
+      }
+    }
+    DataTable dataTable = new DataTable();
+    if (firstLine == null) {
+      return dataTable;
+    }
+    CsvDataSourceHelper.checkNumberOfColumns(firstLine, columnDescriptions);
+    List<ColumnDescription> columns =
+        CsvDataSourceHelper.createColumnDescriptions(firstLine, columnDescriptions, headerRow);
+    dataTable.addColumns(columns);
+
+    // Split the data into chunks of whole records.
+    long dataStart = headerRow ? recordEnd : recordStart;
+    long dataSize = size - dataStart;
+    long numberOfChunks = Math.min((long) parallelism * CHUNKS_PER_THREAD,
+        dataSize / minChunkSize);
+    numberOfChunks = Math.max(numberOfChunks, (dataSize + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+    numberOfChunks = Math.max(numberOfChunks, 1);
+    List<Long> boundaries = findChunkBoundaries(channel, dataStart, size,
+        (dataSize + numberOfChunks - 1) / numberOfChunks);
+
+    List<ChunkParser> parsers = Lists.newArrayList();
+    for (int i = 0; i < boundaries.size() - 1; i++) {
+      parsers.add(new ChunkParser(channel, boundaries.get(i), boundaries.get(i + 1), columns));
+    }
+    for (List<TableRow> rows : parse(parsers)) {
+      try {
+        dataTable.addRows(rows);
+      } catch (TypeMismatchException e) {
+        // Should not happen as we always use the correct types (null if we cannot parse),
+        // and we check the size of the lines.
+      }
+    }
+    return dataTable;
+  }
+
+  /**
+   * Runs the chunk parsers, in a pool of threads if there is more than one chunk.
+   *
+   * @param parsers The chunk parsers.
+   *
+   * @return The rows of the chunks, in the order of the chunks.
+   *
+   * @throws IOException In case of error reading from the file.
+   * @throws CsvDataSourceException In case of specific csv error.
+   */
+  private List<List<TableRow>> parse(List<ChunkParser> parsers)
+      throws IOException, CsvDataSourceException {
+    List<List<TableRow>> result = Lists.newArrayList();
+    if ((parallelism == 1) || (parsers.size() == 1)) {
+      for (ChunkParser parser : parsers) {
+        result.add(parser.call());
+      }
+      return result;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(parallelism, parsers.size()));
+    try {
+      List<Future<List<TableRow>>> futures = Lists.newArrayList();
+      for (ChunkParser parser : parsers) {
+        futures.add(executor.submit(parser));
+      }
+      for (Future<List<TableRow>> future : futures) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading " + file);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof CsvDataSourceException) {
+        throw (CsvDataSourceException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CsvDataSourceException(ReasonType.INTERNAL_ERROR, cause.getMessage());
+    } finally {
+      executor.shutdownNow();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the end of the record that starts at a given position, that is the position after
+   * the first newline outside quotes, or the end of the file.
+   *
+   * @param channel The channel of the file.
+   * @param start The start of the record.
+   * @param size The size of the file.
+   *
+   * @return The end of the record.
+   *
+   * @throws IOException In case of error reading from the file.
+   */
+  private static long findRecordEnd(FileChannel channel, long start, long size)
+      throws IOException {
+    boolean inQuotes = false;
+    for (long windowStart = start; windowStart < size; windowStart += SCAN_WINDOW_SIZE) {
+      int windowSize = (int) Math.min(SCAN_WINDOW_SIZE, size - windowStart);
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+      for (int i = 0; i < windowSize; i++) {
+        byte b = buffer.get(i);
+        if (b == QUOTE) {
+          inQuotes = !inQuotes;
+        } else if ((b == NEWLINE) && !inQuotes) {
+          return windowStart + i + 1;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the boundaries of the chunks of a range of the file. Each chunk ends at the first
+   * record end after its minimal size.
+   *
+   * @param channel The channel of the file.
+   * @param start The start of the range, that is the start of a record.
+   * @param size The size of the file, that is the end of the range.
+   * @param chunkSize The minimal size of a chunk.
+   *
+   * @return The boundaries, from the start to the end of the range.
+   *
+   * @throws IOException In case of error reading from the file.
+   */
+  private static List<Long> findChunkBoundaries(FileChannel channel, long start, long size,
+      long chunkSize) throws IOException {
+    List<Long> boundaries = Lists.newArrayList();
+    boundaries.add(start);
+    long nextBoundary = start + chunkSize;
+    boolean inQuotes = false;
+    // Only the ranges after the minimal chunk sizes need to be scanned with a known quote state,
+    // but the quote state is only known by scanning from the start.
+    for (long windowStart = start; (windowStart < size) && (nextBoundary < size);
+        windowStart += SCAN_WINDOW_SIZE) {
+      int windowSize = (int) Math.min(SCAN_WINDOW_SIZE, size - windowStart);
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+      for (int i = 0; i < windowSize; i++) {
+        byte b = buffer.get(i);
+        if (b == QUOTE) {
+          inQuotes = !inQuotes;
+        } else if ((b == NEWLINE) && !inQuotes && (windowStart + i + 1 >= nextBoundary)) {
+          long boundary = windowStart + i + 1;
+          if (boundary < size) {
+            boundaries.add(boundary);
+          }
+          nextBoundary = boundary + chunkSize;
+        }
+      }
+    }
+    boundaries.add(size);
+    return boundaries;
+  }
+
+  /**
+   * Parses a chunk of the file into rows.
+   */
+  private class ChunkParser implements Callable<List<TableRow>> {
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The start of the chunk.
+     */
+    private final long start;
+
+    /**
+     * The end of the chunk.
+     */
+    private final long end;
+
+    /**
+     * The column descriptions.
+     */
+    private final List<ColumnDescription> columns;
+
+    /**
+     * Creates a new chunk parser.
+     *
+     * @param channel The channel of the file.
+     * @param start The start of the chunk.
+     * @param end The end of the chunk.
+     * @param columns The column descriptions.
+     */
+    ChunkParser(FileChannel channel, long start, long end, List<ColumnDescription> columns) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.columns = columns;
+    }
+
+    @Override
+    public List<TableRow> call() throws IOException, CsvDataSourceException {
+      List<TableRow> rows = Lists.newArrayList();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      CSVReader csvReader = new CSVReader(
+          new InputStreamReader(new ByteBufferInputStream(buffer), charset));
+      ValueFormatter[] valueFormatters =
+          CsvDataSourceHelper.createValueFormatters(columns, locale);
+      String[] line;
+      while ((line = csvReader.readNext()) != null) {
+        if (CsvDataSourceHelper.isEmptyLine(line)) {
+          continue;
+        }
+        CsvDataSourceHelper.checkNumberOfColumns(line, columns);
+        rows.add(CsvDataSourceHelper.parseRow(line, valueFormatters, null));
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * An input stream over the remaining bytes of a buffer.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+
+    /**
+     * The buffer.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new input stream.
+     *
+     * @param buffer The buffer.
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
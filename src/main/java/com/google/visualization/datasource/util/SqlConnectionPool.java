@@ -0,0 +1,1002 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.util;
+
+import com.google.common.collect.Lists;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A lightweight pool of JDBC connections to a SQL database, exposed as a
+ * <code>DataSource</code>, so that a connection is not opened for every query.
+ *
+ * Connections are opened lazily, up to a maximal number. Closing a connection borrowed from the
+ * pool returns it to the pool instead of closing it. When all the connections are in use,
+ * borrowing waits until one is returned, up to a timeout. An idle connection is validated before
+ * it is borrowed, and idle connections beyond the minimal number are closed once they have been
+ * idle for longer than the idle timeout, both when a connection is borrowed and periodically by
+ * an evictor that runs on a daemon thread shared by all the pools. A pool should be closed when
+ * it is no longer used, which stops its evictor.
+ *
+ * Unwrapping a borrowed connection to an interface of the driver gives the underlying
+ * connection, which the borrower may keep using, so it is closed instead of being returned to
+ * the pool when the borrowed connection is closed.
+ *
+ * Each connection keeps a cache of the prepared statements created through it, keyed on their
+ * sql, so that running the same parameterized query again reuses the statement prepared by the
+ * database instead of preparing it again. Closing a cached statement clears its parameters,
+ * restores its maximal number of rows, fetch size and query timeout, and returns it to the
+ * cache. The cache is bounded, and the least recently used statements are closed first. Pools
+ * provided by an application server usually cache statements on their own.
+ *
+ * This class is thread-safe.
+ *
+ * @see SqlDatabaseDescription#SqlDatabaseDescription(DataSource, String)
+ */
+public class SqlConnectionPool implements DataSource {
+
+  /**
+   * Log.
+   */
+  private static final Log log = LogFactory.getLog(SqlConnectionPool.class.getName());
+
+  /**
+   * The timeout for validating an idle connection, in seconds.
+   */
+  private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+  /**
+   * The minimal period of the evictor of idle connections, in milliseconds.
+   */
+  private static final long MIN_EVICTION_PERIOD_MILLIS = 1000;
+
+  /**
+   * The timer that runs the evictors of all the pools, created when the first pool is created.
+   * Guarded by SqlConnectionPool.class.
+   */
+  private static ScheduledExecutorService evictionTimer = null;
+
+  /**
+   * The default maximal number of prepared statements cached per connection.
+   */
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+  /**
+   * The prepared statements of a connection that are not in use, keyed on their sql, from the
+   * least to the most recently used. A connection is used by a single borrower at a time, but a
+   * statement may be closed after its connection was returned, so access is synchronized on the
+   * cache.
+   */
+  private static class StatementCache extends LinkedHashMap<String, CachedStatement> {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The maximal number of cached statements.
+     */
+    private final int maxSize;
+
+    /**
+     * Creates a new statement cache.
+     *
+     * @param maxSize The maximal number of cached statements.
+     */
+    StatementCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+      if (size() > maxSize) {
+        closeQuietly(eldest.getValue().statement);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A cached prepared statement, with the settings it had when it was prepared, which are
+   * restored when it is returned to the cache, so that a borrower does not inherit the limits
+   * set by the previous one.
+   */
+  private static class CachedStatement {
+
+    /**
+     * The underlying prepared statement.
+     */
+    final PreparedStatement statement;
+
+    /**
+     * The maximal number of rows of the statement when it was prepared.
+     */
+    final int maxRows;
+
+    /**
+     * The fetch size of the statement when it was prepared.
+     */
+    final int fetchSize;
+
+    /**
+     * The query timeout of the statement when it was prepared, in seconds.
+     */
+    final int queryTimeout;
+
+    /**
+     * Creates a new cached statement, saving the current settings of the statement.
+     *
+     * @param statement The underlying prepared statement.
+     *
+     * @throws SQLException Thrown when the settings of the statement cannot be read.
+     */
+    CachedStatement(PreparedStatement statement) throws SQLException {
+      this.statement = statement;
+      maxRows = statement.getMaxRows();
+      fetchSize = statement.getFetchSize();
+      queryTimeout = statement.getQueryTimeout();
+    }
+
+    /**
+     * Restores the settings the statement had when it was prepared.
+     *
+     * @throws SQLException Thrown when the settings cannot be restored.
+     */
+    void resetSettings() throws SQLException {
+      statement.setMaxRows(maxRows);
+      statement.setFetchSize(fetchSize);
+      statement.setQueryTimeout(queryTimeout);
+    }
+  }
+
+  /**
+   * An idle connection, with the time it was returned to the pool.
+   */
+  private static class IdleConnection {
+
+    /**
+     * The underlying database connection.
+     */
+    final Connection connection;
+
+    /**
+     * The prepared statements cached for the connection.
+     */
+    final StatementCache statementCache;
+
+    /**
+     * The time the connection was returned to the pool, in milliseconds since the epoch.
+     */
+    final long idleSince;
+
+    /**
+     * Creates a new idle connection.
+     *
+     * @param connection The underlying database connection.
+     * @param statementCache The prepared statements cached for the connection.
+     * @param idleSince The time the connection was returned to the pool.
+     */
+    IdleConnection(Connection connection, StatementCache statementCache, long idleSince) {
+      this.connection = connection;
+      this.statementCache = statementCache;
+      this.idleSince = idleSince;
+    }
+  }
+
+  /**
+   * The url of the sql database.
+   */
+  private final String url;
+
+  /**
+   * The user name used to access the sql database.
+   */
+  private final String user;
+
+  /**
+   * The password used to access the sql database.
+   */
+  private final String password;
+
+  /**
+   * The number of idle connections that are kept open regardless of the idle timeout.
+   */
+  private final int minSize;
+
+  /**
+   * The maximal number of open connections.
+   */
+  private final int maxSize;
+
+  /**
+   * The time after which an idle connection may be closed, in milliseconds.
+   */
+  private final long idleTimeoutMillis;
+
+  /**
+   * The maximal time to wait for a connection when all connections are in use, in milliseconds.
+   */
+  private final long borrowTimeoutMillis;
+
+  /**
+   * The maximal number of prepared statements cached per connection.
+   */
+  private final int statementCacheSize;
+
+  /**
+   * The idle connections, the most recently returned first. Guarded by this.
+   */
+  private final LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+
+  /**
+   * The number of open connections, idle or in use. Guarded by this.
+   */
+  private int numberOfOpenConnections = 0;
+
+  /**
+   * Whether the pool is closed. Guarded by this.
+   */
+  private boolean isClosed = false;
+
+  /**
+   * The number of connections borrowed from the pool. Guarded by this.
+   */
+  private long borrowCount = 0;
+
+  /**
+   * The number of connections opened by the pool. Guarded by this.
+   */
+  private long createdCount = 0;
+
+  /**
+   * The number of times borrowing a connection timed out. Guarded by this.
+   */
+  private long borrowTimeoutCount = 0;
+
+  /**
+   * The total time spent waiting for a connection, in milliseconds. Guarded by this.
+   */
+  private long borrowWaitMillis = 0;
+
+  /**
+   * The number of prepared statements reused from a statement cache.
+   */
+  private final AtomicLong statementCacheHits = new AtomicLong();
+
+  /**
+   * The number of prepared statements that were not found in a statement cache.
+   */
+  private final AtomicLong statementCacheMisses = new AtomicLong();
+
+  /**
+   * The periodic eviction of the idle connections of this pool.
+   */
+  private final ScheduledFuture<?> evictor;
+
+  /**
+   * The log writer, not used by the pool. Guarded by this.
+   */
+  private PrintWriter logWriter = null;
+
+  /**
+   * Creates a new connection pool.
+   *
+   * @param url The url of the sql database.
+   * @param user The user name used to access the sql database.
+   * @param password The password used to access the sql database.
+   * @param minSize The number of idle connections kept open regardless of the idle timeout.
+   * @param maxSize The maximal number of open connections.
+   * @param idleTimeoutMillis The time after which an idle connection may be closed.
+   * @param borrowTimeoutMillis The maximal time to wait for a connection when all connections
+   *     are in use.
+   */
+  public SqlConnectionPool(String url, String user, String password, int minSize, int maxSize,
+      long idleTimeoutMillis, long borrowTimeoutMillis) {
+    this(url, user, password, minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis,
+        DEFAULT_STATEMENT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a new connection pool.
+   *
+   * @param url The url of the sql database.
+   * @param user The user name used to access the sql database.
+   * @param password The password used to access the sql database.
+   * @param minSize The number of idle connections kept open regardless of the idle timeout.
+   * @param maxSize The maximal number of open connections.
+   * @param idleTimeoutMillis The time after which an idle connection may be closed.
+   * @param borrowTimeoutMillis The maximal time to wait for a connection when all connections
+   *     are in use.
+   * @param statementCacheSize The maximal number of prepared statements cached per connection,
+   *     or 0 to not cache statements.
+   */
+  public SqlConnectionPool(String url, String user, String password, int minSize, int maxSize,
+      long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) {
+    if ((minSize < 0) || (maxSize < 1) || (minSize > maxSize)) {
+      throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max "
+          + maxSize);
+    }
+    if (statementCacheSize < 0) {
+      throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+    }
+    this.url = url;
+    this.user = user;
+    this.password = password;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.borrowTimeoutMillis = borrowTimeoutMillis;
+    this.statementCacheSize = statementCacheSize;
+    long evictionPeriod = Math.max(MIN_EVICTION_PERIOD_MILLIS, idleTimeoutMillis);
+    evictor = getEvictionTimer().scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        evictExpiredConnections();
+      }
+    }, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the timer that runs the evictors of all the pools, creating it if needed.
+   *
+   * @return The eviction timer.
+   */
+  private static synchronized ScheduledExecutorService getEvictionTimer() {
+    if (evictionTimer == null) {
+      evictionTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "sql-connection-pool-evictor");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return evictionTimer;
+  }
+
+  /**
+   * Borrows a connection from the pool. Closing the returned connection returns it to the pool.
+   *
+   * @return A connection.
+   *
+   * @throws SQLException Thrown when the pool is closed, when no connection is available within
+   *     the borrow timeout, or when a new connection cannot be opened.
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    while (true) {
+      IdleConnection idleConnection = null;
+      // The expired connections are closed outside the lock, since closing may block.
+      List<Connection> expiredConnections = Lists.newArrayList();
+      try {
+        synchronized (this) {
+          long start = getCurrentTimeMillis();
+          long deadline = start + borrowTimeoutMillis;
+          while (true) {
+            if (isClosed) {
+              throw new SQLException("The connection pool is closed.");
+            }
+            removeExpiredConnections(expiredConnections);
+            if (!idleConnections.isEmpty()) {
+              idleConnection = idleConnections.removeFirst();
+              break;
+            }
+            if (numberOfOpenConnections < maxSize) {
+              // Reserve a place for a new connection, which is opened outside the lock.
+              numberOfOpenConnections++;
+              break;
+            }
+            long remaining = deadline - getCurrentTimeMillis();
+            if (remaining <= 0) {
+              borrowTimeoutCount++;
+              borrowWaitMillis += getCurrentTimeMillis() - start;
+              throw new SQLException("Timed out waiting for a database connection.");
+            }
+            try {
+              wait(remaining);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new SQLException("Interrupted while waiting for a database connection.");
+            }
+          }
+          borrowWaitMillis += getCurrentTimeMillis() - start;
+        }
+      } finally {
+        closeQuietly(expiredConnections);
+      }
+
+      Connection connection;
+      StatementCache statementCache;
+      if (idleConnection != null) {
+        connection = idleConnection.connection;
+        statementCache = idleConnection.statementCache;
+        if (!isValid(connection)) {
+          closeQuietly(connection);
+          connectionClosed();
+          continue;
+        }
+      } else {
+        try {
+          connection = createConnection();
+        } catch (SQLException e) {
+          connectionClosed();
+          throw e;
+        } catch (RuntimeException e) {
+          connectionClosed();
+          throw e;
+        }
+        statementCache = new StatementCache(statementCacheSize);
+        synchronized (this) {
+          createdCount++;
+        }
+      }
+      synchronized (this) {
+        borrowCount++;
+      }
+      return createPooledConnection(connection, statementCache);
+    }
+  }
+
+  /**
+   * Borrows a connection from the pool. Only the user and password of the pool are supported.
+   *
+   * @param username The user name. Must be the user of the pool.
+   * @param password The password. Must be the password of the pool.
+   *
+   * @return A connection.
+   *
+   * @throws SQLException Thrown when the user name or password differ from those of the pool,
+   *     or when no connection can be borrowed.
+   */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    if (!equal(username, user) || !equal(password, this.password)) {
+      throw new SQLException("The connection pool only supports its own user.");
+    }
+    return getConnection();
+  }
+
+  /**
+   * Closes the pool and all its idle connections, and stops its evictor. Connections in use are
+   * closed when they are returned.
+   */
+  public void close() {
+    evictor.cancel(false);
+    LinkedList<IdleConnection> connectionsToClose;
+    synchronized (this) {
+      isClosed = true;
+      connectionsToClose = new LinkedList<IdleConnection>(idleConnections);
+      numberOfOpenConnections -= idleConnections.size();
+      idleConnections.clear();
+      notifyAll();
+    }
+    for (IdleConnection idleConnection : connectionsToClose) {
+      closeQuietly(idleConnection.connection);
+    }
+  }
+
+  /**
+   * Returns the number of open connections that are in use.
+   *
+   * @return The number of connections in use.
+   */
+  public synchronized int getNumberOfActiveConnections() {
+    return numberOfOpenConnections - idleConnections.size();
+  }
+
+  /**
+   * Returns the number of open connections that are idle in the pool.
+   *
+   * @return The number of idle connections.
+   */
+  public synchronized int getNumberOfIdleConnections() {
+    return idleConnections.size();
+  }
+
+  /**
+   * Returns the number of connections borrowed from the pool.
+   *
+   * @return The number of borrowed connections.
+   */
+  public synchronized long getBorrowCount() {
+    return borrowCount;
+  }
+
+  /**
+   * Returns the number of connections opened by the pool.
+   *
+   * @return The number of opened connections.
+   */
+  public synchronized long getCreatedCount() {
+    return createdCount;
+  }
+
+  /**
+   * Returns the number of times borrowing a connection timed out.
+   *
+   * @return The number of borrow timeouts.
+   */
+  public synchronized long getBorrowTimeoutCount() {
+    return borrowTimeoutCount;
+  }
+
+  /**
+   * Returns the total time spent waiting for a connection, in milliseconds.
+   *
+   * @return The total borrow wait time.
+   */
+  public synchronized long getBorrowWaitMillis() {
+    return borrowWaitMillis;
+  }
+
+  /**
+   * Returns the number of prepared statements reused from a statement cache.
+   *
+   * @return The number of statement cache hits.
+   */
+  public long getStatementCacheHits() {
+    return statementCacheHits.get();
+  }
+
+  /**
+   * Returns the number of prepared statements that were not found in a statement cache.
+   *
+   * @return The number of statement cache misses.
+   */
+  public long getStatementCacheMisses() {
+    return statementCacheMisses.get();
+  }
+
+  /**
+   * Opens a new connection to the database.
+   *
+   * @return The new connection.
+   *
+   * @throws SQLException Thrown when the connection cannot be opened.
+   */
+  /* package */ Connection createConnection() throws SQLException {
+    return DriverManager.getConnection(url, user, password);
+  }
+
+  /**
+   * Returns the current time, in milliseconds since the epoch.
+   *
+   * @return The current time.
+   */
+  /* package */ long getCurrentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Returns a connection to the pool, or closes it if the pool is closed or the connection was
+   * left in an unusable state.
+   *
+   * @param connection The underlying database connection.
+   * @param statementCache The prepared statements cached for the connection.
+   */
+  private void returnConnection(Connection connection, StatementCache statementCache) {
+    boolean isReusable;
+    try {
+      isReusable = !connection.isClosed();
+      if (isReusable && !connection.getAutoCommit()) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      log.warn("Failed to reset a database connection.", e);
+      isReusable = false;
+    }
+    synchronized (this) {
+      if (isReusable && !isClosed) {
+        idleConnections.addFirst(
+            new IdleConnection(connection, statementCache, getCurrentTimeMillis()));
+        notifyAll();
+        return;
+      }
+    }
+    closeQuietly(connection);
+    connectionClosed();
+  }
+
+  /**
+   * Updates the number of open connections after a connection of the pool was closed.
+   */
+  private synchronized void connectionClosed() {
+    numberOfOpenConnections--;
+    notifyAll();
+  }
+
+  /**
+   * Closes the idle connections beyond the minimal pool size that have been idle for longer than
+   * the idle timeout. Called periodically by the evictor of the pool.
+   */
+  /* package */ void evictExpiredConnections() {
+    List<Connection> expiredConnections = Lists.newArrayList();
+    synchronized (this) {
+      removeExpiredConnections(expiredConnections);
+    }
+    closeQuietly(expiredConnections);
+  }
+
+  /**
+   * Removes from the pool the idle connections beyond the minimal pool size that have been idle
+   * for longer than the idle timeout. They are counted as closed, and must be closed by the
+   * caller once it released the lock. Must be called while holding the lock.
+   *
+   * @param expiredConnections The list the removed connections are added to.
+   */
+  private void removeExpiredConnections(List<Connection> expiredConnections) {
+    long expiredBefore = getCurrentTimeMillis() - idleTimeoutMillis;
+    // The least recently returned connections are last.
+    while ((idleConnections.size() > minSize)
+        && (idleConnections.getLast().idleSince < expiredBefore)) {
+      expiredConnections.add(idleConnections.removeLast().connection);
+      numberOfOpenConnections--;
+    }
+  }
+
+  /**
+   * Returns whether an idle connection can still be used.
+   *
+   * @param connection The connection.
+   *
+   * @return True if the connection can still be used.
+   */
+  private static boolean isValid(Connection connection) {
+    try {
+      return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+    } catch (SQLException e) {
+      return false;
+    } catch (AbstractMethodError e) {
+      // A pre-JDBC 4 driver.
+      return true;
+    }
+  }
+
+  /**
+   * Closes a connection, ignoring errors.
+   *
+   * @param connection The connection.
+   */
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) { /* ignore close errors */ }
+  }
+
+  /**
+   * Closes connections, ignoring errors.
+   *
+   * @param connections The connections.
+   */
+  private static void closeQuietly(List<Connection> connections) {
+    for (Connection connection : connections) {
+      closeQuietly(connection);
+    }
+  }
+
+  /**
+   * Closes a statement, ignoring errors.
+   *
+   * @param statement The statement.
+   */
+  private static void closeQuietly(Statement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) { /* ignore close errors */ }
+  }
+
+  /**
+   * Returns whether two possibly null strings are equal.
+   *
+   * @param s1 The first string.
+   * @param s2 The second string.
+   *
+   * @return True if the strings are equal.
+   */
+  private static boolean equal(String s1, String s2) {
+    return (s1 == null) ? (s2 == null) : s1.equals(s2);
+  }
+
+  /**
+   * Returns a connection that delegates to an underlying connection of the pool, and that
+   * returns it to the pool when closed.
+   *
+   * @param connection The underlying database connection.
+   * @param statementCache The prepared statements cached for the connection.
+   *
+   * @return The pooled connection.
+   */
+  private Connection createPooledConnection(final Connection connection,
+      final StatementCache statementCache) {
+    InvocationHandler handler = new InvocationHandler() {
+      private boolean isHandleClosed = false;
+
+      /**
+       * Whether the underlying connection was handed out by unwrap(), in which case it may be
+       * used after the handle is closed, so it is not returned to the pool.
+       */
+      private boolean isUnwrapped = false;
+
+      /**
+       * The cached statements prepared through this handle that are not closed yet.
+       */
+      private final List<PreparedStatement> openStatements = Lists.newArrayList();
+
+      @Override
+      public synchronized Object invoke(Object proxy, Method method, Object[] args)
+          throws Throwable {
+        String name = method.getName();
+        if (name.equals("close") && (method.getParameterTypes().length == 0)) {
+          if (!isHandleClosed) {
+            isHandleClosed = true;
+            // Closing a connection closes its statements, which returns them to the cache.
+            for (PreparedStatement statement : openStatements) {
+              closeQuietly(statement);
+            }
+            openStatements.clear();
+            if (isUnwrapped) {
+              closeQuietly(connection);
+              connectionClosed();
+            } else {
+              returnConnection(connection, statementCache);
+            }
+          }
+          return null;
+        }
+        if (name.equals("isClosed") && (method.getParameterTypes().length == 0)) {
+          return isHandleClosed || connection.isClosed();
+        }
+        if (name.equals("equals") && (method.getParameterTypes().length == 1)) {
+          return proxy == args[0];
+        }
+        if (name.equals("hashCode") && (method.getParameterTypes().length == 0)) {
+          return System.identityHashCode(proxy);
+        }
+        if (name.equals("toString") && (method.getParameterTypes().length == 0)) {
+          return "Pooled " + connection;
+        }
+        if (isHandleClosed) {
+          throw new SQLException("The connection is closed.");
+        }
+        if (name.equals("unwrap") && (method.getParameterTypes().length == 1)) {
+          Class<?> iface = (Class<?>) args[0];
+          if (iface.isInstance(proxy)) {
+            return proxy;
+          }
+          Object unwrapped;
+          try {
+            unwrapped = method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          isUnwrapped = true;
+          return unwrapped;
+        }
+        if (name.equals("prepareStatement") && (statementCacheSize > 0)
+            && Arrays.equals(method.getParameterTypes(), new Class<?>[] {String.class})) {
+          PreparedStatement statement =
+              prepareCachedStatement(connection, statementCache, (String) args[0], proxy);
+          openStatements.add(statement);
+          return statement;
+        }
+        try {
+          return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    };
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+        new Class<?>[] {Connection.class}, handler);
+  }
+
+  /**
+   * Returns a prepared statement for the given sql, taken from the statement cache of the
+   * connection if one is idle there, or newly prepared otherwise. Closing the returned statement
+   * returns it to the cache.
+   *
+   * @param connection The underlying database connection.
+   * @param statementCache The prepared statements cached for the connection.
+   * @param sql The sql of the statement.
+   * @param pooledConnection The pooled connection returned by the statement's getConnection().
+   *
+   * @return The prepared statement.
+   *
+   * @throws SQLException Thrown when the statement cannot be prepared.
+   */
+  private PreparedStatement prepareCachedStatement(Connection connection,
+      final StatementCache statementCache, final String sql, final Object pooledConnection)
+      throws SQLException {
+    // A statement in use is not in the cache, so it is never handed out twice.
+    CachedStatement cached;
+    synchronized (statementCache) {
+      cached = statementCache.remove(sql);
+    }
+    if (cached != null) {
+      statementCacheHits.incrementAndGet();
+    } else {
+      statementCacheMisses.incrementAndGet();
+      PreparedStatement prepared = connection.prepareStatement(sql);
+      try {
+        cached = new CachedStatement(prepared);
+      } catch (SQLException e) {
+        closeQuietly(prepared);
+        throw e;
+      }
+    }
+    final CachedStatement cachedStatement = cached;
+    final PreparedStatement statement = cached.statement;
+    InvocationHandler handler = new InvocationHandler() {
+      private boolean isHandleClosed = false;
+
+      /**
+       * Whether the settings restored by CachedStatement.resetSettings() were changed.
+       */
+      private boolean isSettingChanged = false;
+
+      @Override
+      public synchronized Object invoke(Object proxy, Method method, Object[] args)
+          throws Throwable {
+        String name = method.getName();
+        if (name.equals("close") && (method.getParameterTypes().length == 0)) {
+          if (!isHandleClosed) {
+            isHandleClosed = true;
+            returnStatement(statementCache, sql, cachedStatement, isSettingChanged);
+          }
+          return null;
+        }
+        if (name.equals("isClosed") && (method.getParameterTypes().length == 0)) {
+          return isHandleClosed || statement.isClosed();
+        }
+        if (name.equals("getConnection") && (method.getParameterTypes().length == 0)) {
+          return pooledConnection;
+        }
+        if (name.equals("equals") && (method.getParameterTypes().length == 1)) {
+          return proxy == args[0];
+        }
+        if (name.equals("hashCode") && (method.getParameterTypes().length == 0)) {
+          return System.identityHashCode(proxy);
+        }
+        if (name.equals("toString") && (method.getParameterTypes().length == 0)) {
+          return "Cached " + statement;
+        }
+        if (isHandleClosed) {
+          throw new SQLException("The statement is closed.");
+        }
+        if (name.equals("setMaxRows") || name.equals("setLargeMaxRows")
+            || name.equals("setFetchSize") || name.equals("setQueryTimeout")) {
+          isSettingChanged = true;
+        }
+        try {
+          return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    };
+    return (PreparedStatement) Proxy.newProxyInstance(
+        PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+        handler);
+  }
+
+  /**
+   * Returns a closed statement to the statement cache of its connection, after closing its
+   * results, clearing its parameters, and restoring its maximal number of rows, fetch size and
+   * query timeout if they were changed. A statement that cannot be reset is closed instead.
+   *
+   * @param statementCache The prepared statements cached for the connection.
+   * @param sql The sql of the statement.
+   * @param cached The underlying prepared statement and its settings.
+   * @param isSettingChanged Whether the settings of the statement were changed.
+   */
+  private static void returnStatement(StatementCache statementCache, String sql,
+      CachedStatement cached, boolean isSettingChanged) {
+    PreparedStatement statement = cached.statement;
+    try {
+      ResultSet resultSet = statement.getResultSet();
+      if (resultSet != null) {
+        resultSet.close();
+      }
+      statement.clearParameters();
+      if (isSettingChanged) {
+        cached.resetSettings();
+      }
+    } catch (SQLException e) {
+      closeQuietly(statement);
+      return;
+    }
+    CachedStatement previous;
+    synchronized (statementCache) {
+      // Another statement with the same sql, prepared while this one was in use, is replaced.
+      previous = statementCache.put(sql, cached);
+    }
+    if (previous != null) {
+      closeQuietly(previous.statement);
+    }
+  }
+
+  // -------------------------- DataSource methods ------------------------------------------------
+
+  @Override
+  public synchronized PrintWriter getLogWriter() {
+    return logWriter;
+  }
+
+  @Override
+  public synchronized void setLogWriter(PrintWriter out) {
+    logWriter = out;
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) {
+    DriverManager.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() {
+    return DriverManager.getLoginTimeout();
+  }
+
+  // Not an @Override, as the method was only added to DataSource in Java 7.
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("The connection pool does not use a logger.");
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return iface.isInstance(this);
+  }
+}
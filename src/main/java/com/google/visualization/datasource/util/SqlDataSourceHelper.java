@@ -22,6 +22,7 @@ import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.ValueInterner;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
 import com.google.visualization.datasource.datatable.value.DateTimeValue;
 import com.google.visualization.datasource.datatable.value.DateValue;
@@ -48,7 +49,6 @@ import com.google.visualization.datasource.query.QuerySort;
 import com.google.visualization.datasource.query.SimpleColumn;
 import com.google.visualization.datasource.query.SortOrder;
 
-import com.ibm.icu.util.Calendar;
 import com.ibm.icu.util.GregorianCalendar;
 import com.ibm.icu.util.TimeZone;
 
@@ -60,15 +60,16 @@ import org.apache.commons.logging.LogFactory;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.List;
 
+import javax.sql.DataSource;
 
 /**
  * A utility class, with static methods that are specific for creating a
@@ -103,27 +104,62 @@ public class SqlDataSourceHelper {
    */
   public static DataTable executeQuery(Query query, SqlDatabaseDescription databaseDescription)
       throws DataSourceException {
+    DataTableRowConsumer consumer = new DataTableRowConsumer(new DataTable());
+    executeQuery(query, databaseDescription, consumer);
+    return consumer.getDataTable();
+  }
+
+  /**
+   * Executes the given query on the given SQL database table, and passes the rows of the result
+   * to the given consumer as they are read, without building a data table.
+   *
+   * The rows are fetched with the fetch size of the database description, and reading stops
+   * once its maximal number of rows were read, or when the consumer asks to stop.
+   *
+   * @param query The query.
+   * @param databaseDescription The information needed to connect to the SQL database and table.
+   * @param consumer The consumer of the rows of the result.
+   *
+   * @throws DataSourceException Thrown when the data source fails to perform the action, or
+   *     when the consumer throws it.
+   */
+  public static void executeQuery(Query query, SqlDatabaseDescription databaseDescription,
+      TableRowConsumer consumer) throws DataSourceException {
     Connection con = getDatabaseConnection(databaseDescription);
     String tableName = databaseDescription.getTableName();
 
-    // Build the sql query.
+    // Build the sql query. The filter values are bound to the placeholders of the query, so that
+    // queries that only differ in their values share the same sql, and the same query plan.
     StrBuilder queryStringBuilder = new StrBuilder();
-    buildSqlQuery(query, queryStringBuilder, tableName);
+    List<Value> bindValues = Lists.newArrayList();
+    buildSqlQuery(query, queryStringBuilder, tableName, bindValues);
     List<String> columnIdsList = null;
     if (query.hasSelection()) {
       columnIdsList = getColumnIdsList(query.getSelection());
     }
-    Statement stmt = null;
+    PreparedStatement stmt = null;
     try {
-      // Execute the sql query.
-      stmt = con.createStatement();
-      ResultSet rs = stmt.executeQuery(queryStringBuilder.toString());
+      // Execute the sql query. The fetch size and maximal number of rows are always set, since
+      // the statement may be a cached one.
+      stmt = con.prepareStatement(queryStringBuilder.toString());
+      for (int i = 0; i < bindValues.size(); i++) {
+        setBindValue(stmt, i + 1, bindValues.get(i));
+      }
+      int maxRows = Math.max(databaseDescription.getMaxRows(), 0);
+      stmt.setFetchSize(databaseDescription.getFetchSize());
+      stmt.setMaxRows(maxRows);
+      ResultSet rs = stmt.executeQuery();
 
-      DataTable table = buildColumns(rs, columnIdsList);
+      List<ColumnDescription> columns = buildColumnDescriptions(rs, columnIdsList);
+      consumer.start(columns);
 
-      // Fill the data in the data table.
-      buildRows(table, rs);
-      return table;
+      // Pass the rows to the consumer.
+      ValueInterner valueInterner =
+          databaseDescription.isInternValues() ? new ValueInterner() : null;
+      readRows(rs, columns, maxRows, valueInterner, consumer);
+      if ((valueInterner != null) && log.isDebugEnabled()) {
+        log.debug("Interned sql values: " + valueInterner.getReport());
+      }
     } catch (SQLException e) {
       String messageToUser = "Failed to execute SQL query. mySQL error message:"
           + " " + e.getMessage();
@@ -143,6 +179,30 @@ public class SqlDataSourceHelper {
     }
   }
 
+  /**
+   * Returns the number of rows a completion query needs from the result of its data source
+   * query, when it only needs the first rows of the result. That is the case when the
+   * completion query has a limit, and does not filter, group, pivot, sort, skip or aggregate the
+   * rows. A data source that splits its query can set the returned number as the maximal number
+   * of rows of its database description, so that reading stops early.
+   *
+   * @param completionQuery The completion query.
+   *
+   * @return The number of rows needed, or 0 if all the rows of the result are needed.
+   *
+   * @see SqlDatabaseDescription#setMaxRows(int)
+   */
+  public static int getRowBudget(Query completionQuery) {
+    if ((completionQuery == null) || !completionQuery.hasRowLimit()
+        || completionQuery.hasFilter() || completionQuery.hasGroup()
+        || completionQuery.hasPivot() || completionQuery.hasSort()
+        || completionQuery.hasRowSkipping()
+        || !completionQuery.getAllAggregations().isEmpty()) {
+      return 0;
+    }
+    return completionQuery.getRowOffset() + completionQuery.getRowLimit();
+  }
+
   /**
    * Returns a connection to the SQL database.
    *
@@ -159,10 +219,15 @@ public class SqlDataSourceHelper {
     String userName = databaseDescription.getUser();
     String password = databaseDescription.getPassword();
     String url = databaseDescription.getUrl();
+    DataSource dataSource = databaseDescription.getDataSource();
     try {
-      // Connect to the database.
-      // We should add connection pooling to avoid heavy creation of connections.
-      con = DriverManager.getConnection(url, userName, password);
+      // Connect to the database. A data source, such as a SqlConnectionPool, avoids opening a
+      // new connection for every query.
+      if (dataSource != null) {
+        con = dataSource.getConnection();
+      } else {
+        con = DriverManager.getConnection(url, userName, password);
+      }
     } catch (SQLException e) {
       log.error("Failed to connect to database server.", e);
       throw new DataSourceException(
@@ -177,15 +242,17 @@ public class SqlDataSourceHelper {
    * @param query The query.
    * @param queryStringBuilder A string builder to build the sql query.
    * @param tableName The sql table name.
+   * @param bindValues The list to add the values bound to the placeholders of the query to, in
+   *     order.
    *
    * @throws DataSourceException On errors to create the data table.
    */
   private static void buildSqlQuery(
-      Query query, StrBuilder queryStringBuilder, String tableName)
+      Query query, StrBuilder queryStringBuilder, String tableName, List<Value> bindValues)
       throws DataSourceException {
     appendSelectClause(query, queryStringBuilder);
     appendFromClause(query, queryStringBuilder, tableName);
-    appendWhereClause(query, queryStringBuilder);
+    appendWhereClause(query, queryStringBuilder, bindValues);
     appendGroupByClause(query, queryStringBuilder);
     appendOrderByClause(query, queryStringBuilder);
     appendLimitAndOffsetClause(query, queryStringBuilder);
@@ -265,10 +332,60 @@ public class SqlDataSourceHelper {
    * @param queryStringBuilder The string builder holding the string query.
    */
   static void appendWhereClause(Query query, StrBuilder queryStringBuilder) {
+    appendWhereClause(query, queryStringBuilder, null);
+  }
+
+  /**
+   * Appends the WHERE clause of the sql query to the given string builder, with a placeholder
+   * for each value, and adds the values to the given list in order.
+   *
+   * @param query The query.
+   * @param queryStringBuilder The string builder holding the string query.
+   * @param bindValues The list to add the values bound to the placeholders to, or null to write
+   *     the values into the query as literals.
+   */
+  static void appendWhereClause(Query query, StrBuilder queryStringBuilder,
+      List<Value> bindValues) {
     if (query.hasFilter()) {
       QueryFilter queryFilter = query.getFilter();
       queryStringBuilder.append("WHERE ")
-          .append(buildWhereClauseRecursively(queryFilter)).append(" ");
+          .append(buildWhereClauseRecursively(queryFilter, bindValues)).append(" ");
+    }
+  }
+
+  /**
+   * Sets the value of a placeholder of a prepared statement, according to the type of the value.
+   *
+   * @param statement The prepared statement.
+   * @param index The index of the placeholder. Indexes are 1-based.
+   * @param value The value.
+   *
+   * @throws SQLException Thrown when the value cannot be set.
+   */
+  static void setBindValue(PreparedStatement statement, int index, Value value)
+      throws SQLException {
+    switch (value.getType()) {
+      case BOOLEAN:
+        statement.setBoolean(index, ((BooleanValue) value).getValue());
+        break;
+      case NUMBER:
+        statement.setDouble(index, ((NumberValue) value).getValue());
+        break;
+      case DATE:
+        statement.setDate(index, Date.valueOf(value.toString()));
+        break;
+      case DATETIME:
+        statement.setTimestamp(index, Timestamp.valueOf(value.toString()));
+        break;
+      case TIMEOFDAY:
+        TimeOfDayValue timeOfDayValue = (TimeOfDayValue) value;
+        statement.setTime(index, Time.valueOf(String.format("%1$02d:%2$02d:%3$02d",
+            timeOfDayValue.getHours(), timeOfDayValue.getMinutes(),
+            timeOfDayValue.getSeconds())));
+        break;
+      default:
+        statement.setString(index, value.toString());
+        break;
     }
   }
 
@@ -280,21 +397,24 @@ public class SqlDataSourceHelper {
    * the tree) has parenthesis around it.
    *
    * @param queryFilter The query filter.
+   * @param bindValues The list to add the values bound to the placeholders to, or null to write
+   *     the values into the query as literals.
    *
    * @return The sql query WHERE clause as a StrBuilder.
    */
-  private static StrBuilder buildWhereClauseRecursively(QueryFilter queryFilter) {
+  private static StrBuilder buildWhereClauseRecursively(QueryFilter queryFilter,
+      List<Value> bindValues) {
     StrBuilder whereClause = new StrBuilder();
 
     // Base case of the recursion: the filter is not a compound filter.
     if (queryFilter instanceof ColumnIsNullFilter) {
       buildWhereClauseForIsNullFilter(whereClause, queryFilter);
     } else if (queryFilter instanceof ComparisonFilter) {
-      buildWhereCluaseForComparisonFilter(whereClause, queryFilter);
+      buildWhereCluaseForComparisonFilter(whereClause, queryFilter, bindValues);
     } else if (queryFilter instanceof NegationFilter) {
       whereClause.append("(NOT ");
       whereClause.append(buildWhereClauseRecursively(
-          ((NegationFilter) queryFilter).getSubFilter()));
+          ((NegationFilter) queryFilter).getSubFilter(), bindValues));
       whereClause.append(")");
     } else {
       // queryFilter is a CompoundFilter.
@@ -314,7 +434,7 @@ public class SqlDataSourceHelper {
       } else {
         List<String> filterComponents = Lists.newArrayList();
         for (QueryFilter filter : compoundFilter.getSubFilters()) {
-          filterComponents.add(buildWhereClauseRecursively(filter).toString());
+          filterComponents.add(buildWhereClauseRecursively(filter, bindValues).toString());
         }
         String logicalOperator = getSqlLogicalOperator(compoundFilter.getOperator());
         whereClause.append("(").appendWithSeparators(filterComponents, " " + logicalOperator + " ")
@@ -343,17 +463,26 @@ public class SqlDataSourceHelper {
    *
    * @param whereClause A string builder representing the WHERE clause of the SQL query.
    * @param queryFilter The query filter.
+   * @param bindValues The list to add the values bound to the placeholders to, or null to write
+   *     the values into the query as literals.
    */
   private static void buildWhereCluaseForComparisonFilter(
-      StrBuilder whereClause, QueryFilter queryFilter) {
+      StrBuilder whereClause, QueryFilter queryFilter, List<Value> bindValues) {
     StrBuilder first = new StrBuilder();
     StrBuilder second = new StrBuilder();
+    ComparisonFilter.Operator operator = ((ComparisonFilter) queryFilter).getOperator();
 
     // Build the left part and the right part of the clause according to the filter's type.
     if (queryFilter instanceof ColumnColumnFilter) {
       ColumnColumnFilter filter = (ColumnColumnFilter) queryFilter;
       first.append(getColumnId(filter.getFirstColumn()));
       second.append(getColumnId(filter.getSecondColumn()));
+    } else if (bindValues != null) {
+      ColumnValueFilter filter = (ColumnValueFilter) queryFilter;
+      first.append(getColumnId(filter.getColumn()));
+      whereClause.append(buildParameterizedWhereClause(first, filter.getValue(), operator,
+          bindValues));
+      return;
     } else { // The filter is a ColumnValueFilter
       ColumnValueFilter filter = (ColumnValueFilter) queryFilter;
       first.append(getColumnId(filter.getColumn()));
@@ -366,8 +495,49 @@ public class SqlDataSourceHelper {
         second.insert(second.length(), "\"");
       }
     }
-    whereClause.append(buildWhereClauseFromRightAndLeftParts(
-        first, second, ((ComparisonFilter) queryFilter).getOperator()));
+    whereClause.append(buildWhereClauseFromRightAndLeftParts(first, second, operator));
+  }
+
+  /**
+   * Builds the where clause of the SQL query for a comparison of a column with a value, with a
+   * placeholder for the value. The value, or the LIKE pattern built from it, is added to the
+   * list of bound values.
+   *
+   * @param column The column id in the where clause.
+   * @param value The value compared with the column.
+   * @param operator The ComparisonFilter.Operator.
+   * @param bindValues The list to add the bound value to.
+   *
+   * @return A string builder representing the where clause of the SQL query.
+   */
+  private static StrBuilder buildParameterizedWhereClause(StrBuilder column, Value value,
+      ComparisonFilter.Operator operator, List<Value> bindValues) {
+    StrBuilder clause;
+    switch (operator) {
+      case CONTAINS:
+        clause = column.append(" LIKE ?");
+        bindValues.add(new TextValue("%" + value.toString() + "%"));
+        break;
+      case STARTS_WITH:
+        clause = column.append(" LIKE ?");
+        bindValues.add(new TextValue(value.toString() + "%"));
+        break;
+      case ENDS_WITH:
+        clause = column.append(" LIKE ?");
+        bindValues.add(new TextValue("%" + value.toString()));
+        break;
+      case LIKE:
+        clause = column.append(" LIKE ?");
+        bindValues.add(new TextValue(value.toString()));
+        break;
+      default:
+        // The other operators compare the column and the value as they are.
+        clause = buildWhereClauseFromRightAndLeftParts(column, new StrBuilder("?"), operator);
+        bindValues.add(value);
+        return clause;
+    }
+    clause.insert(0, "(").append(")");
+    return clause;
   }
 
   /**
@@ -569,6 +739,24 @@ public class SqlDataSourceHelper {
    */
   static DataTable buildColumns(ResultSet rs, List<String> columnIdsList) throws SQLException {
     DataTable result = new DataTable();
+    result.addColumns(buildColumnDescriptions(rs, columnIdsList));
+    return result;
+  }
+
+  /**
+   * Returns the column descriptions of the given result set.
+   *
+   * @param rs The result set.
+   * @param columnIdsList The list of column ids in the order they were requested, or null if
+   *     all the columns were requested.
+   *
+   * @return The column descriptions.
+   *
+   * @throws SQLException Thrown when the connection to the database failed.
+   */
+  private static List<ColumnDescription> buildColumnDescriptions(ResultSet rs,
+      List<String> columnIdsList) throws SQLException {
+    List<ColumnDescription> result = Lists.newArrayList();
     ResultSetMetaData metaData = rs.getMetaData();
     int numOfCols = metaData.getColumnCount();
     // For each column in the table, create the column description. SQL indexes
@@ -580,7 +768,7 @@ public class SqlDataSourceHelper {
           new ColumnDescription(id,
               sqlTypeToValueType(metaData.getColumnType(i)),
               metaData.getColumnLabel(i));
-      result.addColumn(columnDescription);
+      result.add(columnDescription);
     }
     return result;
   }
@@ -643,128 +831,226 @@ public class SqlDataSourceHelper {
    * @throws SQLException Thrown when the connection to the database failed.
    */
   static void buildRows(DataTable dataTable, ResultSet rs) throws SQLException {
-    List <ColumnDescription> columnsDescriptionList = dataTable.getColumnDescriptions();
-    int numOfCols = dataTable.getNumberOfColumns();
+    try {
+      readRows(rs, dataTable.getColumnDescriptions(), 0, null,
+          new DataTableRowConsumer(dataTable));
+    } catch (DataSourceException e) {
+      // Should not happen. Adding rows to a data table does not throw.
+    }
+  }
 
-    // Get the value types of the columns.
-    ValueType[] columnsTypeArray = new ValueType[numOfCols];
+  /**
+   * Reads the rows of the given result set, and passes them to the given consumer. The values
+   * of each column are read by an extractor bound to the type of the column once, before the
+   * first row.
+   *
+   * @param rs The result set, positioned before the first row.
+   * @param columns The descriptions of the columns of the result set.
+   * @param maxRows The maximal number of rows to read, or 0 to read all the rows.
+   * @param valueInterner The interner of the values of the columns, or null to not intern
+   *     values.
+   * @param consumer The consumer of the rows.
+   *
+   * @throws SQLException Thrown when the connection to the database failed.
+   * @throws DataSourceException Thrown when the consumer throws it.
+   */
+  private static void readRows(ResultSet rs, List<ColumnDescription> columns, int maxRows,
+      ValueInterner valueInterner, TableRowConsumer consumer)
+      throws SQLException, DataSourceException {
+    int numOfCols = columns.size();
+    ColumnExtractor[] extractors = new ColumnExtractor[numOfCols];
     for (int c = 0; c < numOfCols; c++) {
-      columnsTypeArray[c] = columnsDescriptionList.get(c).getType();
+      // SQL indexes are 1-based.
+      extractors[c] = createColumnExtractor(columns.get(c).getType(), c + 1);
     }
 
-    // Build the data table rows, and in each row create the table cells with
-    // the information in the result set.
-    while (rs.next()) {
+    int numOfRows = 0;
+    while (((maxRows <= 0) || (numOfRows < maxRows)) && rs.next()) {
       TableRow tableRow = new TableRow();
       for (int c = 0; c < numOfCols; c++) {
-        tableRow.addCell(buildTableCell(rs, columnsTypeArray[c], c));
+        Value value = extractors[c].extract(rs);
+        tableRow.addCell((valueInterner == null) ? new TableCell(value)
+            : valueInterner.internCell(c, value));
       }
-      try {
-        dataTable.addRow(tableRow);
-      } catch (TypeMismatchException e) {
-        // Should not happen. An SQLException would already have been thrown if there was such a
-        // problem.
+      numOfRows++;
+      if (!consumer.consume(tableRow)) {
+        break;
       }
     }
   }
 
   /**
-   * Creates a table cell from the value in the current row of the given result
-   * set and the given column index. The type of the value is determined by the
-   * given value type.
-   *
-   * @param rs The result set holding the data from the sql table. The result
-   *     points to the current row.
-   * @param valueType The value type of the column that the cell belongs to.
-   * @param column The column index. Indexes are 0-based.
+   * Returns an extractor of the values of a column of a result set, according to the value
+   * type of the column.
    *
-   * @return The table cell.
+   * @param valueType The value type of the column.
+   * @param column The column index. SQL indexes are 1-based.
    *
-   * @throws SQLException Thrown when the connection to the database failed.
+   * @return The column extractor.
    */
-  private static TableCell buildTableCell(ResultSet rs, ValueType valueType,
-      int column) throws SQLException {
-    Value value = null;
-
-    // SQL indexes are 1- based.
-    column = column + 1;
-
+  private static ColumnExtractor createColumnExtractor(ValueType valueType, int column) {
     switch (valueType) {
       case BOOLEAN:
-        value = BooleanValue.getInstance(rs.getBoolean(column));
-        break;
+        return new ColumnExtractor(column) {
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            boolean value = rs.getBoolean(column);
+            return rs.wasNull() ? BooleanValue.getNullValue() : BooleanValue.getInstance(value);
+          }
+        };
       case NUMBER:
-        value = new NumberValue(rs.getDouble(column));
-        break;
+        return new ColumnExtractor(column) {
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            double value = rs.getDouble(column);
+            return rs.wasNull() ? NumberValue.getNullValue() : new NumberValue(value);
+          }
+        };
       case DATE:
-        Date date = rs.getDate(column);
-        // If date is null it is handled later.
-        if (date != null) {
-          GregorianCalendar gc =
-              new GregorianCalendar(TimeZone.getTimeZone("GMT"));
-          // Set the year, month and date in the gregorian calendar.
-          // Use the 'set' method with those parameters, and not the 'setTime'
-          // method with the date parameter, since the Date object contains the
-          // current time zone and it's impossible to change it to 'GMT'.
-          gc.set(date.getYear() + 1900, date.getMonth(), date.getDate());
-          value = new DateValue(gc);
-        }
-        break;
+        return new ColumnExtractor(column) {
+          /**
+           * A GMT calendar reused for all the values of the column. The date value copies its
+           * fields.
+           */
+          private final GregorianCalendar gc = createGmtCalendar();
+
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            Date date = rs.getDate(column);
+            if (date == null) {
+              return DateValue.getNullValue();
+            }
+            // Set the year, month and date in the gregorian calendar.
+            // Use the 'set' method with those parameters, and not the 'setTime'
+            // method with the date parameter, since the Date object contains the
+            // current time zone and it's impossible to change it to 'GMT'.
+            gc.set(date.getYear() + 1900, date.getMonth(), date.getDate());
+            return new DateValue(gc);
+          }
+        };
       case DATETIME:
-        Timestamp timestamp = rs.getTimestamp(column);
-        // If timestamp is null it is handled later.
-        if (timestamp != null) {
-          GregorianCalendar gc =
-              new GregorianCalendar(TimeZone.getTimeZone("GMT"));
-          // Set the year, month, date, hours, minutes and seconds in the
-          // gregorian calendar. Use the 'set' method with those parameters,
-          // and not the 'setTime' method with the timestamp parameter, since
-          // the Timestamp object contains the current time zone and it's
-          // impossible to change it to 'GMT'.
-          gc.set(timestamp.getYear() + 1900, timestamp.getMonth(),
-                 timestamp.getDate(), timestamp.getHours(), timestamp.getMinutes(),
-                 timestamp.getSeconds());
-          // Set the milliseconds explicitly, as they are not saved in the
-          // underlying date.
-          gc.set(Calendar.MILLISECOND, timestamp.getNanos() / 1000000);
-          value = new DateTimeValue(gc);
-        }
-        break;
+        return new ColumnExtractor(column) {
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            Timestamp timestamp = rs.getTimestamp(column);
+            if (timestamp == null) {
+              return DateTimeValue.getNullValue();
+            }
+            // Use the fields of the timestamp, and not its time, since the Timestamp object
+            // contains the current time zone. The milliseconds are kept in the nanos.
+            return new DateTimeValue(timestamp.getYear() + 1900, timestamp.getMonth(),
+                timestamp.getDate(), timestamp.getHours(), timestamp.getMinutes(),
+                timestamp.getSeconds(), timestamp.getNanos() / 1000000);
+          }
+        };
       case TIMEOFDAY:
-        Time time = rs.getTime(column);
-        // If time is null it is handled later.
-        if (time != null) {
-          GregorianCalendar gc =
-              new GregorianCalendar(TimeZone.getTimeZone("GMT"));
-          // Set the hours, minutes and seconds of the time in the gregorian
-          // calendar. Set the year, month and date to be January 1 1970 like
-          // in the Time object.
-          // Use the 'set' method with those parameters,
-          // and not the 'setTime' method with the time parameter, since
-          // the Time object contains the current time zone and it's
-          // impossible to change it to 'GMT'.
-          gc.set(1970, Calendar.JANUARY, 1, time.getHours(), time.getMinutes(),
-                 time.getSeconds());
-          // Set the milliseconds explicitly, otherwise the milliseconds from
-          // the time the gc was initialized are used.
-          gc.set(GregorianCalendar.MILLISECOND, 0);
-          value = new TimeOfDayValue(gc);
-        }
-        break;
+        return new ColumnExtractor(column) {
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            Time time = rs.getTime(column);
+            if (time == null) {
+              return TimeOfDayValue.getNullValue();
+            }
+            // Use the fields of the time, and not its time, since the Time object contains the
+            // current time zone.
+            return new TimeOfDayValue(time.getHours(), time.getMinutes(), time.getSeconds());
+          }
+        };
       default:
-        String colValue = rs.getString(column);
-        if (colValue == null) {
-          value = TextValue.getNullValue();
-        } else {
-          value = new TextValue(rs.getString(column));
-        }
-        break;
+        return new ColumnExtractor(column) {
+          @Override
+          Value extract(ResultSet rs) throws SQLException {
+            String value = rs.getString(column);
+            return (value == null) ? TextValue.getNullValue() : new TextValue(value);
+          }
+        };
     }
-    // Handle null values.
-    if (rs.wasNull()) {
-      return new TableCell(Value.getNullValueFromValueType(valueType));
-    } else {
-      return new TableCell(value);
+  }
+
+  /**
+   * Returns a new calendar in the GMT time zone, with all its fields cleared.
+   *
+   * @return The calendar.
+   */
+  private static GregorianCalendar createGmtCalendar() {
+    GregorianCalendar gc = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    gc.clear();
+    return gc;
+  }
+
+  /**
+   * Reads the values of one column of a result set, as values of the type of the column.
+   */
+  private abstract static class ColumnExtractor {
+
+    /**
+     * The column index. SQL indexes are 1-based.
+     */
+    protected final int column;
+
+    /**
+     * Creates a new column extractor.
+     *
+     * @param column The column index. SQL indexes are 1-based.
+     */
+    ColumnExtractor(int column) {
+      this.column = column;
+    }
+
+    /**
+     * Returns the value of the column in the current row of the given result set.
+     *
+     * @param rs The result set, positioned on a row.
+     *
+     * @return The value, or the null value of the type of the column.
+     *
+     * @throws SQLException Thrown when the connection to the database failed.
+     */
+    abstract Value extract(ResultSet rs) throws SQLException;
+  }
+
+  /**
+   * A row consumer that adds the rows to a data table.
+   */
+  private static class DataTableRowConsumer implements TableRowConsumer {
+
+    /**
+     * The data table.
+     */
+    private final DataTable dataTable;
+
+    /**
+     * Creates a new consumer.
+     *
+     * @param dataTable The data table to add the rows to.
+     */
+    DataTableRowConsumer(DataTable dataTable) {
+      this.dataTable = dataTable;
+    }
+
+    /**
+     * Returns the data table.
+     *
+     * @return The data table.
+     */
+    DataTable getDataTable() {
+      return dataTable;
+    }
+
+    @Override
+    public void start(List<ColumnDescription> columns) {
+      dataTable.addColumns(columns);
+    }
+
+    @Override
+    public boolean consume(TableRow row) {
+      try {
+        dataTable.addRow(row);
+      } catch (TypeMismatchException e) {
+        // Should not happen. An SQLException would already have been thrown if there was such a
+        // problem.
+      }
+      return true;
     }
   }
 }
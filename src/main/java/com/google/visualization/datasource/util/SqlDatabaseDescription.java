@@ -14,6 +14,8 @@
 
 package com.google.visualization.datasource.util;
 
+import javax.sql.DataSource;
+
 /**
  * This class contains all information required to connect to the sql database.
  *
@@ -41,6 +43,27 @@ public class SqlDatabaseDescription {
    */
   private String tableName;
 
+  /**
+   * The data source providing connections to the sql database, for example a connection pool.
+   * Has a {@code null} value when connections are opened with the url, user and password.
+   */
+  private DataSource dataSource;
+
+  /**
+   * The number of rows fetched from the database at a time, or 0 to use the driver's default.
+   */
+  private int fetchSize = 0;
+
+  /**
+   * The maximal number of rows read from the database, or 0 to read all the rows of the result.
+   */
+  private int maxRows = 0;
+
+  /**
+   * Whether equal values of a column share the same value and cell instances.
+   */
+  private boolean internValues = false;
+
   /**
    * Constructs a sql database description.
    *
@@ -56,6 +79,19 @@ public class SqlDatabaseDescription {
     this.tableName = tableName;
   }
 
+  /**
+   * Constructs a sql database description that takes its connections from a data source, such
+   * as a {@link SqlConnectionPool} or an application server's connection pool. Connections are
+   * closed after each query, which returns them to the pool.
+   *
+   * @param dataSource The data source providing connections to the sql database.
+   * @param tableName The database table name.
+   */
+  public SqlDatabaseDescription(DataSource dataSource, String tableName) {
+    this.dataSource = dataSource;
+    this.tableName = tableName;
+  }
+
   /**
    * Returns the url of the sql databasae.
    *
@@ -101,4 +137,77 @@ public class SqlDatabaseDescription {
   public String getTableName() {
     return tableName;
   }
+
+  /**
+   * Returns the data source providing connections to the sql database.
+   *
+   * @return The data source, or {@code null} if connections are opened with the url, user and
+   *     password.
+   */
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
+  /**
+   * Returns the number of rows fetched from the database at a time.
+   *
+   * @return The fetch size, or 0 if the driver's default is used.
+   */
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Sets the number of rows fetched from the database at a time. A fetch size lets the driver
+   * stream large results instead of loading them into memory at once. Some drivers need a
+   * special value for that, for example mysql streams results only with Integer.MIN_VALUE.
+   *
+   * @param fetchSize The fetch size, or 0 to use the driver's default.
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Returns the maximal number of rows read from the database.
+   *
+   * @return The maximal number of rows, or 0 if all the rows of the result are read.
+   */
+  public int getMaxRows() {
+    return maxRows;
+  }
+
+  /**
+   * Sets the maximal number of rows read from the database. Reading stops once that many rows
+   * were read, regardless of the limit of the query.
+   *
+   * @param maxRows The maximal number of rows, or 0 to read all the rows of the result.
+   *
+   * @see SqlDataSourceHelper#getRowBudget(com.google.visualization.datasource.query.Query)
+   */
+  public void setMaxRows(int maxRows) {
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * Returns whether equal values of a column share the same value and cell instances.
+   *
+   * @return True if values are interned.
+   */
+  public boolean isInternValues() {
+    return internValues;
+  }
+
+  /**
+   * Sets whether equal values of a column share the same value and cell instances, which saves
+   * memory for columns with few distinct values. The cells of the result must then not be
+   * modified.
+   *
+   * @param internValues True to intern values.
+   *
+   * @see com.google.visualization.datasource.datatable.ValueInterner
+   */
+  public void setInternValues(boolean internValues) {
+    this.internValues = internValues;
+  }
 }
@@ -0,0 +1,52 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.util;
+
+import com.google.visualization.datasource.base.DataSourceException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.TableRow;
+
+import java.util.List;
+
+/**
+ * Receives the rows of a result one at a time, as they are read, instead of a whole
+ * <code>DataTable</code>. This lets a data source write, aggregate or filter the rows of a large
+ * result without keeping all of them in memory.
+ *
+ * @see SqlDataSourceHelper#executeQuery(com.google.visualization.datasource.query.Query,
+ *     SqlDatabaseDescription, TableRowConsumer)
+ */
+public interface TableRowConsumer {
+
+  /**
+   * Called once, before the first row, with the descriptions of the columns of the rows.
+   *
+   * @param columns The column descriptions.
+   *
+   * @throws DataSourceException Thrown to stop reading with an error.
+   */
+  void start(List<ColumnDescription> columns) throws DataSourceException;
+
+  /**
+   * Called for each row, in order. The cells of the row match the column descriptions.
+   *
+   * @param row The row.
+   *
+   * @return True to continue reading, false to stop after this row.
+   *
+   * @throws DataSourceException Thrown to stop reading with an error.
+   */
+  boolean consume(TableRow row) throws DataSourceException;
+}
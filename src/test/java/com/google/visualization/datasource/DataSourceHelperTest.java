@@ -19,12 +19,16 @@ import com.google.visualization.datasource.base.DataSourceParameters;
 import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.base.TypeMismatchException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
 import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.metrics.MetricName;
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+import com.google.visualization.datasource.metrics.RequestMetrics;
 import com.google.visualization.datasource.query.Query;
 
 import com.ibm.icu.util.ULocale;
@@ -33,10 +37,16 @@ import junit.framework.TestCase;
 
 import static org.easymock.EasyMock.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 
 /**
@@ -46,6 +56,34 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class DataSourceHelperTest extends TestCase {
 
+  /**
+   * A data table generator that generates no data.
+   */
+  private static class TestGenerator implements DataTableGenerator {
+
+    @Override
+    public DataTable generateDataTable(Query query, HttpServletRequest request) {
+      return null;
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+      return Capabilities.NONE;
+    }
+  }
+
+  /**
+   * A columnar data table generator that generates no data table.
+   */
+  private abstract static class ColumnarTestGenerator extends TestGenerator
+      implements ColumnarDataTableGenerator {
+
+    @Override
+    public DataTable generateDataTable(Query query, HttpServletRequest request) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   private DataTable createData() throws TypeMismatchException {
     DataTable data = new DataTable();
     ArrayList<ColumnDescription> cd = new ArrayList<ColumnDescription>();
@@ -69,6 +107,32 @@ public class DataSourceHelperTest extends TestCase {
   /**
    * Test applyQuery method.
    */
+  public void testApplyQueryRecordsMetrics() throws InvalidQueryException, DataSourceException,
+          TypeMismatchException {
+    MetricsRegistry registry = new MetricsRegistry();
+    RequestMetrics metrics = new RequestMetrics(registry, "Animals");
+    metrics.setOutputType("json");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    DataTable result = DataSourceHelper.applyQuery(DataSourceHelper.parseQuery(
+        "select name where population > 100"), createData(), ULocale.US, executor, metrics);
+    executor.shutdown();
+    assertEquals(1, result.getNumberOfRows());
+
+    MetricName filterName = new MetricName(RequestMetrics.STAGE_ROWS, "dataSource", "Animals",
+        "outputType", "json", "stage", "engine.filter");
+    assertEquals(1, registry.getCounter(filterName).getCount());
+    MetricName selectName = new MetricName(RequestMetrics.STAGE_LATENCY, "dataSource", "Animals",
+        "outputType", "json", "stage", "engine.select");
+    assertEquals(1, registry.getHistogram(selectName).getCount());
+  }
+
+  public void testGetDataSourceName() {
+    assertEquals("TestGenerator", DataSourceHelper.getDataSourceName(new TestGenerator()));
+    // Anonymous classes are named by their full class name.
+    assertTrue(DataSourceHelper.getDataSourceName(new TestGenerator() {}).startsWith(
+        DataSourceHelperTest.class.getName() + "$"));
+  }
+
   public void testApplyQuery() throws InvalidQueryException, DataSourceException,
           TypeMismatchException {
     DataTable data = createData();
@@ -184,7 +248,7 @@ public class DataSourceHelperTest extends TestCase {
         new DataSourceParameters(null),
         ULocale.UK);
     assertEquals(
-        "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"1548939605\","
+        "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"5104330385275722265\","
         + "\"table\":{\"cols\":[{\"id\":\"col1\",\"label\":\"column1\","
         + "\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"col2\",\"label\":\"column2\",\"type\":\"boolean\",\"pattern\":\"\"},"
@@ -198,7 +262,7 @@ public class DataSourceHelperTest extends TestCase {
         new DataSourceParameters("reqId:666"),
         ULocale.UK);
     assertEquals(
-        "{\"version\":\"0.6\",\"reqId\":\"666\",\"status\":\"ok\",\"sig\":\"1548939605\","
+        "{\"version\":\"0.6\",\"reqId\":\"666\",\"status\":\"ok\",\"sig\":\"5104330385275722265\","
         + "\"table\":{\"cols\":[{\"id\":\"col1\",\"label\":\"column1\","
         + "\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"col2\",\"label\":\"column2\",\"type\":\"boolean\",\"pattern\":\"\"},"
@@ -212,7 +276,7 @@ public class DataSourceHelperTest extends TestCase {
         new DataSourceParameters("out:json"),
         ULocale.UK);
     assertEquals(
-        "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"1548939605\","
+        "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"5104330385275722265\","
         + "\"table\":{\"cols\":[{\"id\":\"col1\",\"label\":\"column1\","
         + "\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"col2\",\"label\":\"column2\",\"type\":\"boolean\",\"pattern\":\"\"},"
@@ -227,7 +291,7 @@ public class DataSourceHelperTest extends TestCase {
         ULocale.UK);
     assertEquals(
         "// Data table response\ngoogle.visualization.Query.setResponse("
-        + "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"1548939605\","
+        + "{\"version\":\"0.6\",\"status\":\"ok\",\"sig\":\"5104330385275722265\","
         + "\"table\":{\"cols\":[{\"id\":\"col1\",\"label\":\"column1\","
         + "\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"col2\",\"label\":\"column2\",\"type\":\"boolean\",\"pattern\":\"\"},"
@@ -376,6 +440,123 @@ public class DataSourceHelperTest extends TestCase {
     }
   }
   
+  public void testErrorResponse() throws IOException {
+    DataTableGenerator generator = new TestGenerator() {
+      @Override
+      public DataTable generateDataTable(Query query, HttpServletRequest request) {
+        throw new RuntimeException("Failed");
+      }
+    };
+
+    // The partial response is discarded and replaced by the error.
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+    expect(resp.isCommitted()).andStubReturn(false);
+    resp.resetBuffer();
+    expectLastCall();
+    expect(resp.getOutputStream()).andStubReturn(createOutputStream(output, null));
+    replay(resp);
+    DataSourceHelper.executeDataSourceServletFlow(createCsvRequestMock(), resp, generator, false);
+    verify(resp);
+    assertTrue(output.toString("UTF-8").contains("Failed"));
+
+    // Once the response is committed, it is closed without an error.
+    output = new ByteArrayOutputStream();
+    StringBuilder closed = new StringBuilder();
+    resp = createNiceMock(HttpServletResponse.class);
+    expect(resp.isCommitted()).andStubReturn(true);
+    expect(resp.getOutputStream()).andStubReturn(createOutputStream(output, closed));
+    replay(resp);
+    DataSourceHelper.executeDataSourceServletFlow(createCsvRequestMock(), resp, generator, false);
+    verify(resp);
+    assertEquals(0, output.size());
+    assertEquals("closed", closed.toString());
+  }
+
+  public void testColumnarGenerator() throws Exception {
+    final ColumnarDataTable columnarTable = ColumnarDataTable.fromDataTable(createData());
+    DataTableGenerator generator = new ColumnarTestGenerator() {
+      @Override
+      public ColumnarDataTable generateColumnarDataTable(Query query,
+          HttpServletRequest request) {
+        return columnarTable;
+      }
+    };
+    HttpServletRequest req = createNiceMock(HttpServletRequest.class);
+    expect(req.getParameter(DataSourceRequest.DATASOURCE_REQUEST_PARAMETER))
+        .andStubReturn("out:csv");
+    expect(req.getParameter(DataSourceRequest.QUERY_REQUEST_PARAMETER))
+        .andStubReturn("select name where population > 90 order by name desc");
+    expect(req.getLocale()).andStubReturn(Locale.US);
+    replay(req);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+    expect(resp.getOutputStream()).andStubReturn(createOutputStream(output, null));
+    replay(resp);
+
+    DataSourceHelper.executeDataSourceServletFlow(req, resp, generator, false);
+    assertEquals("\"Animal name\"\n\"Sloth\"\n\"Aye-aye\"\n",
+        output.toString("UTF-8").replace("\r", ""));
+    assertEquals(4, columnarTable.getNumberOfRows());
+  }
+
+  public void testApplyQueryOnColumnarTable() throws Exception {
+    ColumnarDataTable columnarTable = ColumnarDataTable.fromDataTable(createData());
+    DataTable result = DataSourceHelper.applyQuery(DataSourceHelper.parseQuery(
+        "select vegeterian, sum(population) group by vegeterian"), columnarTable, ULocale.US,
+        null, RequestMetrics.NONE);
+    assertEquals(2, result.getNumberOfRows());
+    assertEquals(BooleanValue.FALSE, result.getRow(0).getCell(0).getValue());
+    assertEquals(new NumberValue(130), result.getRow(0).getCell(1).getValue());
+
+    try {
+      DataSourceHelper.applyQuery(DataSourceHelper.parseQuery("select avg(name) group by link"),
+          columnarTable, ULocale.US, null, RequestMetrics.NONE);
+      fail();
+    } catch (InvalidQueryException e) {
+      // Expected behavior.
+    }
+  }
+
+  /**
+   * Returns a request mock for a csv response.
+   *
+   * @return The request mock.
+   */
+  private HttpServletRequest createCsvRequestMock() {
+    HttpServletRequest req = createNiceMock(HttpServletRequest.class);
+    expect(req.getParameter(DataSourceRequest.DATASOURCE_REQUEST_PARAMETER))
+        .andStubReturn("out:csv");
+    expect(req.getLocale()).andStubReturn(Locale.US);
+    replay(req);
+    return req;
+  }
+
+  /**
+   * Returns a servlet output stream that writes to a stream.
+   *
+   * @param output The stream.
+   * @param closed Appended "closed" to when the servlet output stream is closed, or null.
+   *
+   * @return The servlet output stream.
+   */
+  private ServletOutputStream createOutputStream(final ByteArrayOutputStream output,
+      final StringBuilder closed) {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        output.write(b);
+      }
+
+      @Override
+      public void close() {
+        if (closed != null) {
+          closed.append("closed");
+        }
+      }
+    };
+  }
+
   private void setupHttpRequestMock(HttpServletRequest req, boolean hasHeader, String tqx) {
     reset(req);
     expect(req.getHeader(DataSourceRequest.SAME_ORIGIN_HEADER)).andReturn(hasHeader ? "a" : null);
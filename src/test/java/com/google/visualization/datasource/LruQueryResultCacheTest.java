@@ -0,0 +1,100 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource;
+
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for LruQueryResultCache.
+ */
+public class LruQueryResultCacheTest extends TestCase {
+
+  /**
+   * A cache with a settable clock.
+   */
+  private static class TestCache extends LruQueryResultCache {
+
+    long currentTimeMillis = 1000;
+
+    TestCache(long maxSize, long timeToLiveMillis) {
+      super(maxSize, timeToLiveMillis);
+    }
+
+    @Override
+    long getCurrentTimeMillis() {
+      return currentTimeMillis;
+    }
+  }
+
+  public void testEvictsLeastRecentlyUsed() {
+    DataTable table = MockDataSource.getData(0);
+    long entrySize = LruQueryResultCache.estimateSize(table) + 100;
+    TestCache cache = new TestCache(3 * entrySize, 60000);
+    cache.put("a", table);
+    cache.put("b", table);
+    cache.put("c", table);
+    assertEquals(3, cache.getNumberOfEntries());
+
+    // "a" becomes the most recently used, so "b" is evicted.
+    assertSame(table, cache.get("a"));
+    cache.put("d", table);
+    assertEquals(3, cache.getNumberOfEntries());
+    assertNull(cache.get("b"));
+    assertSame(table, cache.get("a"));
+    assertSame(table, cache.get("c"));
+    assertSame(table, cache.get("d"));
+    assertTrue(cache.getSize() <= 3 * entrySize);
+
+    cache.clear();
+    assertEquals(0, cache.getNumberOfEntries());
+    assertEquals(0, cache.getSize());
+  }
+
+  public void testTooLargeTableIsNotCached() {
+    DataTable table = MockDataSource.getData(1);
+    TestCache cache = new TestCache(LruQueryResultCache.estimateSize(table) / 2, 60000);
+    cache.put("a", table);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.getSize());
+  }
+
+  public void testExpiration() {
+    DataTable table = MockDataSource.getData(0);
+    TestCache cache = new TestCache(1000000, 60000);
+    cache.put("a", table);
+    cache.currentTimeMillis += 60000;
+    assertSame(table, cache.get("a"));
+    cache.currentTimeMillis += 1;
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.getNumberOfEntries());
+    assertEquals(0, cache.getSize());
+  }
+
+  public void testCacheKey() throws Exception {
+    String key = DataSourceHelper.getQueryResultCacheKey(
+        QueryBuilder.getInstance().parseQuery("select A,B where A > 1"), ULocale.US, "v1");
+    assertEquals(key, DataSourceHelper.getQueryResultCacheKey(
+        QueryBuilder.getInstance().parseQuery("SELECT A, B WHERE (A>1)"), ULocale.US, "v1"));
+    assertFalse(key.equals(DataSourceHelper.getQueryResultCacheKey(
+        QueryBuilder.getInstance().parseQuery("select A,B where A > 1"), ULocale.UK, "v1")));
+    assertFalse(key.equals(DataSourceHelper.getQueryResultCacheKey(
+        QueryBuilder.getInstance().parseQuery("select A,B where A > 1"), ULocale.US, "v2")));
+  }
+}
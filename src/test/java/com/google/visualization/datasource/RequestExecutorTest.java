@@ -0,0 +1,278 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.metrics.MetricName;
+import com.google.visualization.datasource.metrics.MetricsRegistry;
+import com.google.visualization.datasource.metrics.RequestMetrics;
+import com.google.visualization.datasource.query.Query;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tests for RequestExecutor.
+ */
+public class RequestExecutorTest extends TestCase {
+
+  /**
+   * A data table generator that records the thread it runs on, and waits for a latch.
+   */
+  private static class BlockingGenerator implements DataTableGenerator {
+
+    /**
+     * Counted down when a table is being generated.
+     */
+    final CountDownLatch started = new CountDownLatch(1);
+
+    /**
+     * Awaited before a table is returned, for at most 10 seconds.
+     */
+    final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * The name of the thread of the last generation.
+     */
+    volatile String threadName;
+
+    @Override
+    public DataTable generateDataTable(Query query, HttpServletRequest request) {
+      threadName = Thread.currentThread().getName();
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      DataTable table = new DataTable();
+      table.addColumn(new ColumnDescription("a", ValueType.TEXT, "A"));
+      try {
+        table.addRowFromValues("x");
+      } catch (TypeMismatchException e) {
+        fail();
+      }
+      return table;
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+      return Capabilities.NONE;
+    }
+  }
+
+  public void testExecute() throws Exception {
+    BlockingGenerator generator = new BlockingGenerator();
+    generator.release.countDown();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createResponse(output);
+    replay(resp);
+
+    RequestExecutor executor = RequestExecutor.newVirtualThreadExecutor(2, 2);
+    executor.executeDataSourceServletFlow(createRequest(), resp, generator, createOptions(null));
+    executor.shutdown();
+    assertEquals("\"A\"\n\"x\"\n", output.toString("UTF-8"));
+    assertTrue(generator.threadName.startsWith("datasource-request-"));
+  }
+
+  public void testRejectWhenSaturated() throws Exception {
+    final BlockingGenerator generator = new BlockingGenerator();
+    final RequestExecutor executor = RequestExecutor.newBoundedExecutor(1, 0);
+    final ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+    final HttpServletResponse firstResp = createResponse(firstOutput);
+    replay(firstResp);
+    Thread firstRequest = new Thread() {
+      @Override
+      public void run() {
+        try {
+          executor.executeDataSourceServletFlow(createRequest(), firstResp, generator,
+              createOptions(null));
+        } catch (IOException e) {
+          fail();
+        }
+      }
+    };
+    firstRequest.start();
+    assertTrue(generator.started.await(10, TimeUnit.SECONDS));
+
+    MetricsRegistry registry = new MetricsRegistry();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createResponse(output);
+    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    expectLastCall();
+    replay(resp);
+    executor.executeDataSourceServletFlow(createRequest(), resp, generator,
+        createOptions(registry));
+    verify(resp);
+    assertTrue(output.toString("UTF-8").contains("The data source is busy."));
+    assertEquals(1, registry.getCounter(new MetricName(RequestMetrics.REJECTED,
+        RequestMetrics.DATA_SOURCE_LABEL, "BlockingGenerator",
+        RequestMetrics.OUTPUT_TYPE_LABEL, "csv")).getCount());
+
+    generator.release.countDown();
+    firstRequest.join(10000);
+    executor.shutdown();
+    assertEquals("\"A\"\n\"x\"\n", firstOutput.toString("UTF-8"));
+  }
+
+  public void testBoundedThreadPerRequest() throws Exception {
+    final BlockingGenerator generator = new BlockingGenerator();
+    // Counted down when a request is admitted and submitted, since each one gets a new thread.
+    final CountDownLatch submitted = new CountDownLatch(2);
+    ExecutorService threadPerRequest = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        submitted.countDown();
+        return new Thread(runnable);
+      }
+    });
+    final RequestExecutor executor = new RequestExecutor(threadPerRequest, 1, 1);
+    executor.setTimeoutMillis(0);
+    Thread[] requests = new Thread[2];
+    for (int i = 0; i < requests.length; i++) {
+      final HttpServletResponse resp = createResponse(new ByteArrayOutputStream());
+      replay(resp);
+      requests[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            executor.executeDataSourceServletFlow(createRequest(), resp, generator,
+                createOptions(null));
+          } catch (IOException e) {
+            fail();
+          }
+        }
+      };
+      requests[i].start();
+    }
+    assertTrue(submitted.await(10, TimeUnit.SECONDS));
+    assertTrue(generator.started.await(10, TimeUnit.SECONDS));
+
+    // One request is executed and one waits, so the third one is rejected.
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createResponse(output);
+    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    expectLastCall();
+    replay(resp);
+    executor.executeDataSourceServletFlow(createRequest(), resp, generator, createOptions(null));
+    verify(resp);
+    assertTrue(output.toString("UTF-8").contains("The data source is busy."));
+
+    generator.release.countDown();
+    for (Thread request : requests) {
+      request.join(10000);
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  public void testTimeout() throws Exception {
+    BlockingGenerator generator = new BlockingGenerator();
+    RequestExecutor executor = RequestExecutor.newBoundedExecutor(1, 1);
+    // The generator blocks until it is released, so the request always times out.
+    executor.setTimeoutMillis(500);
+    MetricsRegistry registry = new MetricsRegistry();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse resp = createResponse(output);
+    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    expectLastCall();
+    replay(resp);
+    executor.executeDataSourceServletFlow(createRequest(), resp, generator,
+        createOptions(registry));
+    verify(resp);
+    String expected = output.toString("UTF-8");
+    assertTrue(expected.contains("The data source did not respond in time."));
+    assertEquals(1, registry.getCounter(new MetricName(RequestMetrics.TIMEOUTS,
+        RequestMetrics.DATA_SOURCE_LABEL, "BlockingGenerator",
+        RequestMetrics.OUTPUT_TYPE_LABEL, "csv")).getCount());
+
+    // The flow is interrupted, and does not write to the response once it is answered.
+    generator.release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(expected, output.toString("UTF-8"));
+  }
+
+  /**
+   * Returns the options of a flow that does not restrict access.
+   *
+   * @param registry The registry of the metrics, or null.
+   *
+   * @return The options.
+   */
+  private static DataSourceFlowOptions createOptions(MetricsRegistry registry) {
+    DataSourceFlowOptions options = new DataSourceFlowOptions();
+    options.setRestrictedAccessMode(false);
+    options.setMetricsRegistry(registry);
+    return options;
+  }
+
+  /**
+   * Returns a request for a csv response.
+   *
+   * @return The request.
+   */
+  private static HttpServletRequest createRequest() {
+    HttpServletRequest req = createNiceMock(HttpServletRequest.class);
+    expect(req.getParameter(DataSourceRequest.DATASOURCE_REQUEST_PARAMETER))
+        .andStubReturn("out:csv");
+    expect(req.getLocale()).andStubReturn(Locale.US);
+    replay(req);
+    return req;
+  }
+
+  /**
+   * Returns a response that writes to a stream. The response is not replayed.
+   *
+   * @param output The stream.
+   *
+   * @return The response.
+   *
+   * @throws IOException Never.
+   */
+  private static HttpServletResponse createResponse(final ByteArrayOutputStream output)
+      throws IOException {
+    HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+    expect(resp.getOutputStream()).andStubReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        output.write(b);
+      }
+    });
+    return resp;
+  }
+}
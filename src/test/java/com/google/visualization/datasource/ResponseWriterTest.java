@@ -27,10 +27,16 @@ import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.metrics.Counter;
+import com.google.visualization.datasource.render.CsvRenderer;
 import com.google.visualization.datasource.render.JsonRenderer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import junit.framework.TestCase;
@@ -98,7 +104,7 @@ public class ResponseWriterTest extends TestCase {
     ResponseStatus responseStatus = new ResponseStatus(StatusType.OK, null, null);
 
     String expected = "{\"version\":\"0.6\",\"status\":\"ok\","
-        + "\"sig\":\"2087475733\",\"table\":"
+        + "\"sig\":\"5434956052366095598\",\"table\":"
         + "{\"cols\":[{\"id\":\"A\",\"label\":\"col0\",\"type\":\"string\",\"pattern\":\"\"},"
         + "{\"id\":\"B\",\"label\":\"col1\",\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"C\",\"label\":\"col2\",\"type\":\"boolean\",\"pattern\":\"\"}],"
@@ -121,7 +127,7 @@ public class ResponseWriterTest extends TestCase {
     responseStatus = new ResponseStatus(StatusType.OK, null, null);
 
     expected = "{\"version\":\"0.6\",\"reqId\":\"90210\",\"status\":\"ok\","
-        + "\"sig\":\"2087475733\",\"table\":"
+        + "\"sig\":\"5434956052366095598\",\"table\":"
         + "{\"cols\":[{\"id\":\"A\",\"label\":\"col0\",\"type\":\"string\",\"pattern\":\"\"},"
         + "{\"id\":\"B\",\"label\":\"col1\",\"type\":\"number\",\"pattern\":\"\"},"
         + "{\"id\":\"C\",\"label\":\"col2\",\"type\":\"boolean\",\"pattern\":\"\"}],"
@@ -229,4 +235,36 @@ public class ResponseWriterTest extends TestCase {
     ResponseWriter.setServletResponseJSONP(mockHttpServletResponse);
     verify(mockHttpServletResponse);
   }
+
+  public void testServletResponseWriter() throws Exception {
+    DataTable data = getTestDataTable();
+    DataSourceParameters dsParamsTsvExcel =
+        new DataSourceParameters("outFileName:testFile.xls;out:tsv-excel");
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ServletOutputStream outputStream = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        bytes.write(b);
+      }
+    };
+
+    HttpServletResponse mockHttpServletResponse = createMock(HttpServletResponse.class);
+    mockHttpServletResponse.setContentType(eq("text/csv; charset=UTF-16LE"));
+    mockHttpServletResponse.setHeader(eq("Content-Disposition"),
+        eq("attachment; filename=testFile.xls"));
+    expect(mockHttpServletResponse.getOutputStream()).andReturn(outputStream);
+
+    replay(mockHttpServletResponse);
+    Counter bytesCounter = new Counter();
+    Writer writer = ResponseWriter.getServletResponseWriter(dsParamsTsvExcel,
+        mockHttpServletResponse, bytesCounter);
+    CsvRenderer.renderDataTable(data, null, "\t", writer);
+    writer.flush();
+    verify(mockHttpServletResponse);
+
+    byte[] expected = ("\ufeff" + CsvRenderer.renderDataTable(data, null, "\t"))
+        .getBytes("UTF-16LE");
+    assertTrue(Arrays.equals(expected, bytes.toByteArray()));
+    assertEquals(expected.length, bytesCounter.getCount());
+  }
 }
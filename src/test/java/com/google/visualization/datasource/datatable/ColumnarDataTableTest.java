@@ -0,0 +1,189 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.visualization.datasource.base.ReasonType;
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.base.Warning;
+import com.google.visualization.datasource.datatable.value.BooleanValue;
+import com.google.visualization.datasource.datatable.value.DateTimeValue;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ColumnarDataTable.
+ */
+public class ColumnarDataTableTest extends TestCase {
+
+  private DataTable table;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    table = new DataTable();
+    table.addColumn(new ColumnDescription("text", ValueType.TEXT, "Text"));
+    table.addColumn(new ColumnDescription("number", ValueType.NUMBER, "Number"));
+    table.addColumn(new ColumnDescription("bool", ValueType.BOOLEAN, "Boolean"));
+    table.addColumn(new ColumnDescription("date", ValueType.DATE, "Date"));
+    table.addColumn(new ColumnDescription("time", ValueType.TIMEOFDAY, "Time"));
+    table.addColumn(new ColumnDescription("datetime", ValueType.DATETIME, "Date time"));
+
+    TableRow row = new TableRow();
+    row.addCell(new TableCell(new TextValue("aaa"), "AAA"));
+    row.addCell(new NumberValue(-1.5));
+    row.addCell(BooleanValue.TRUE);
+    row.addCell(new DateValue(1500, 1, 28));
+    row.addCell(new TimeOfDayValue(23, 59, 59, 999));
+    row.addCell(new DateTimeValue(2009, 11, 31, 23, 59, 59, 1));
+    row.setCustomProperty("rowKey", "rowValue");
+    table.addRow(row);
+
+    row = new TableRow();
+    row.addCell(new TextValue("bbb"));
+    row.addCell(NumberValue.getNullValue());
+    row.addCell(BooleanValue.FALSE);
+    row.addCell(new DateValue(2009, 0, 1));
+    row.addCell(TimeOfDayValue.getNullValue());
+    row.addCell(DateTimeValue.getNullValue());
+    table.addRow(row);
+
+    row = new TableRow();
+    TableCell cell = new TableCell("aaa");
+    cell.setCustomProperty("cellKey", "cellValue");
+    row.addCell(cell);
+    row.addCell(new NumberValue(7));
+    row.addCell(BooleanValue.getNullValue());
+    row.addCell(DateValue.getNullValue());
+    row.addCell(new TimeOfDayValue(0, 0, 0, 0));
+    row.addCell(new DateTimeValue(1970, 0, 1, 0, 0, 0, 0));
+    table.addRow(row);
+
+    row = new TableRow();
+    row.addCell(TextValue.getNullValue());
+    table.addRow(row);
+
+    table.setCustomProperty("tableKey", "tableValue");
+    table.addWarning(new Warning(ReasonType.DATA_TRUNCATED, "truncated"));
+  }
+
+  public void testRoundTrip() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    assertEquals(4, columnar.getNumberOfRows());
+    assertEquals(6, columnar.getNumberOfColumns());
+
+    DataTable result = columnar.toDataTable();
+    assertEquals(table.getNumberOfRows(), result.getNumberOfRows());
+    for (int rowIndex = 0; rowIndex < table.getNumberOfRows(); rowIndex++) {
+      for (int colIndex = 0; colIndex < table.getNumberOfColumns(); colIndex++) {
+        TableCell expected = table.getCell(rowIndex, colIndex);
+        TableCell actual = result.getCell(rowIndex, colIndex);
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.isNull(), actual.isNull());
+        assertEquals(expected.getFormattedValue(), actual.getFormattedValue());
+        assertEquals(expected.getCustomProperties(), actual.getCustomProperties());
+      }
+      assertEquals(table.getRow(rowIndex).getCustomProperties(),
+          result.getRow(rowIndex).getCustomProperties());
+    }
+    assertEquals("tableValue", result.getCustomProperty("tableKey"));
+    assertEquals(1, result.getWarnings().size());
+    assertEquals("Text", result.getColumnDescription("text").getLabel());
+  }
+
+  public void testTextValuesAreShared() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    assertSame(columnar.getValue(0, 0), columnar.getValue(2, 0));
+    assertTrue(columnar.getValue(3, 0).isNull());
+  }
+
+  public void testDataTablesAreIndependent() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    DataTable first = columnar.toDataTable();
+    first.getColumnDescription(0).setLabel("changed");
+    first.getCell(0, 0).setFormattedValue("changed");
+    DataTable second = columnar.toDataTable();
+    assertEquals("Text", second.getColumnDescription(0).getLabel());
+    assertEquals("AAA", second.getCell(0, 0).getFormattedValue());
+  }
+
+  public void testToDataTableWithRowIndices() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    DataTable result = columnar.toDataTable(new int[] {2, 0});
+    assertEquals(2, result.getNumberOfRows());
+    assertEquals(new NumberValue(7), result.getValue(0, 1));
+    assertEquals(new NumberValue(-1.5), result.getValue(1, 1));
+  }
+
+  public void testRowView() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    TableRow view = columnar.getRowView(0);
+    assertEquals(new TextValue("aaa"), view.getCell(0).getValue());
+    assertSame(view.getCell(1), view.getCell(1));
+    assertEquals(6, view.getCells().size());
+    assertEquals("rowValue", view.getCustomProperty("rowKey"));
+    try {
+      view.addCell(new TableCell("x"));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testAddRowViewToDataTable() throws Exception {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    DataTable result = columnar.createEmptyDataTable();
+    result.addRow(columnar.getRowView(2));
+    result.addRow(columnar.getRowView(3));
+    assertEquals(2, result.getNumberOfRows());
+    assertEquals(6, result.getRow(0).getCells().size());
+    assertEquals(new NumberValue(7), result.getValue(0, 1));
+    assertEquals("cellValue", result.getCell(0, 0).getCustomProperty("cellKey"));
+    assertTrue(result.getValue(1, 5).isNull());
+  }
+
+  public void testAddRowTypeMismatch() throws Exception {
+    ColumnarDataTable columnar = new ColumnarDataTable();
+    columnar.addColumn(new ColumnDescription("n", ValueType.NUMBER, "n"));
+    columnar.addRowFromValues(1);
+    try {
+      columnar.addRowFromValues("a");
+      fail();
+    } catch (TypeMismatchException e) {
+      // Expected behavior.
+    }
+    assertEquals(1, columnar.getNumberOfRows());
+    try {
+      columnar.addColumn(new ColumnDescription("m", ValueType.NUMBER, "m"));
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testRowIndexOutOfRange() {
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    try {
+      columnar.getValue(4, 0);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected behavior.
+    }
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.datatable;
+
+import com.google.visualization.datasource.base.TypeMismatchException;
+import com.google.visualization.datasource.datatable.value.DateValue;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for ValueInterner.
+ */
+public class ValueInternerTest extends TestCase {
+
+  public void testIntern() {
+    ValueInterner interner = new ValueInterner();
+    Value us = interner.intern(0, new TextValue("US"));
+    assertSame(us, interner.intern(0, new TextValue("US")));
+    assertNotSame(us, interner.intern(0, new TextValue("FR")));
+    assertSame(us, interner.internCell(0, new TextValue("US")).getValue());
+
+    // Columns are interned separately, and values are compared with their type.
+    assertNotSame(us, interner.intern(1, new TextValue("US")));
+    Value zero = interner.intern(2, new NumberValue(0));
+    assertNotSame(zero, interner.intern(2, new NumberValue(-0.0)));
+    assertSame(interner.internCell(3, new DateValue(2009, 1, 2)),
+        interner.internCell(3, new DateValue(2009, 1, 2)));
+
+    assertEquals(4, interner.getNumberOfLookups(0));
+    assertEquals(2, interner.getNumberOfHits(0));
+    assertEquals(2, interner.getNumberOfValues(0));
+    assertEquals(0.5, interner.getDedupRatio(0));
+    assertEquals(0.0, interner.getDedupRatio(1));
+    assertEquals(0L, interner.getNumberOfLookups(10));
+    assertEquals(3.0 / 9, interner.getDedupRatio(), 1e-9);
+    assertTrue(interner.getReport().contains("column 0: 2 values, 4 lookups"));
+  }
+
+  public void testMaxValuesPerColumn() {
+    ValueInterner interner = new ValueInterner(2);
+    interner.intern(0, new NumberValue(1));
+    interner.intern(0, new NumberValue(2));
+    Value three = new NumberValue(3);
+    assertSame(three, interner.intern(0, three));
+    assertNotSame(three, interner.intern(0, new NumberValue(3)));
+    assertEquals(2, interner.getNumberOfValues(0));
+    assertEquals(new NumberValue(1), interner.intern(0, new NumberValue(1)));
+    assertEquals(1, interner.getNumberOfHits(0));
+  }
+
+  public void testDataTableInterning() throws TypeMismatchException {
+    DataTable dataTable = new DataTable();
+    dataTable.addColumn(new ColumnDescription("country", ValueType.TEXT, "Country"));
+    dataTable.addColumn(new ColumnDescription("count", ValueType.NUMBER, "Count"));
+    dataTable.setValueInterner(new ValueInterner());
+    dataTable.addRowFromValues("US", 1);
+    dataTable.addRowFromValues("US", 2);
+    assertSame(dataTable.getCell(0, 0), dataTable.getCell(1, 0));
+    assertNotSame(dataTable.getCell(0, 1), dataTable.getCell(1, 1));
+    assertEquals(0.5, dataTable.getValueInterner().getDedupRatio(0));
+  }
+}
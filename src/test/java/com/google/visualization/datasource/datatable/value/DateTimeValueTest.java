@@ -342,4 +342,42 @@ public class DateTimeValueTest extends TestCase {
     assertEquals("DATETIME '2020-4-12 2:31:12.123'", val1.toQueryString());
     assertEquals("DATETIME '2007-6-6 7:8:9'", val2.toQueryString());
   }
-}
\ No newline at end of file
+
+  public void testFieldsMatchCalendar() {
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    // From 1600 to 2400, with steps that are not whole days.
+    long step = 86400000L * 97 + 3723456;
+    for (long millis = -11676096000000L; millis < 13574563200000L; millis += step) {
+      calendar.setTimeInMillis(millis);
+      DateTimeValue value = DateTimeValue.fromTimeInMillis(millis);
+      assertEquals(calendar.get(GregorianCalendar.YEAR), value.getYear());
+      assertEquals(calendar.get(GregorianCalendar.MONTH), value.getMonth());
+      assertEquals(calendar.get(GregorianCalendar.DAY_OF_MONTH), value.getDayOfMonth());
+      assertEquals(calendar.get(GregorianCalendar.HOUR_OF_DAY), value.getHourOfDay());
+      assertEquals(calendar.get(GregorianCalendar.MINUTE), value.getMinute());
+      assertEquals(calendar.get(GregorianCalendar.SECOND), value.getSecond());
+      assertEquals(calendar.get(GregorianCalendar.MILLISECOND), value.getMillisecond());
+      assertEquals(value, new DateTimeValue(value.getYear(), value.getMonth(),
+          value.getDayOfMonth(), value.getHourOfDay(), value.getMinute(), value.getSecond(),
+          value.getMillisecond()));
+      assertEquals(millis, new DateTimeValue(calendar).getTimeInMillis());
+    }
+  }
+
+  public void testLeapDays() {
+    assertEquals(29, new DateTimeValue(2000, 1, 29, 0, 0, 0, 0).getDayOfMonth());
+    assertEquals(29, new DateTimeValue(2004, 1, 29, 0, 0, 0, 0).getDayOfMonth());
+    try {
+      new DateTimeValue(1900, 1, 29, 0, 0, 0, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+    try {
+      new DateTimeValue(2001, 1, 29, 0, 0, 0, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+  }
+}
@@ -170,6 +170,44 @@ public class DateValueTest extends TestCase {
     assertEquals(3, value.getDayOfMonth());
   }
 
+  /**
+   * Dates before the Gregorian change (1582-10-15) follow the proleptic
+   * Gregorian calendar, as in DateTimeValue.
+   */
+  public void testDatesBeforeGregorianChange() {
+    try {
+      // 1500 is a leap year in the Julian calendar only.
+      new DateValue(1500, 1, 29);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+    try {
+      new DateTimeValue(1500, 1, 29, 0, 0, 0, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+
+    // Days skipped by the Gregorian change, and a Gregorian leap day.
+    DateValue value = new DateValue(1582, 9, 10);
+    assertEquals("1582-10-10", value.toString());
+    assertEquals(new DateTimeValue(1582, 9, 10, 0, 0, 0, 0).getTimeInMillis(),
+        value.getTimeInMillis());
+    value = new DateValue(1200, 1, 29);
+    assertEquals(new DateTimeValue(1200, 1, 29, 0, 0, 0, 0).getTimeInMillis(),
+        value.getTimeInMillis());
+
+    // A Julian leap day from a calendar is taken as March 1st.
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    calendar.clear();
+    calendar.set(1500, 1, 29);
+    value = new DateValue(calendar);
+    assertEquals("1500-03-01", value.toString());
+    DateTimeValue dateTime = new DateTimeValue(calendar);
+    assertEquals(dateTime.getTimeInMillis(), value.getTimeInMillis());
+  }
+
   public void testGetType() {
     DateValue value = new DateValue(1700, 2, 4);
     assertEquals(value.getType(),  ValueType.DATE);
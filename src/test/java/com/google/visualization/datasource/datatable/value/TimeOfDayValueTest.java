@@ -380,4 +380,16 @@ public class TimeOfDayValueTest extends TestCase {
     assertEquals("TIMEOFDAY '12:23:12.111'", val1.toQueryString());
     assertEquals("TIMEOFDAY '2:3:4'", val2.toQueryString());
   }
-}
\ No newline at end of file
+
+  public void testGetMillisOfDay() {
+    assertEquals(0, new TimeOfDayValue(0, 0, 0).getMillisOfDay());
+    assertEquals(86399999, new TimeOfDayValue(23, 59, 59, 999).getMillisOfDay());
+    assertEquals(44592111, new TimeOfDayValue(12, 23, 12, 111).getMillisOfDay());
+    try {
+      TimeOfDayValue.getNullValue().getMillisOfDay();
+      fail();
+    } catch (NullValueException e) {
+      // Expected behavior.
+    }
+  }
+}
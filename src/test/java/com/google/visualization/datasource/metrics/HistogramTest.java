@@ -0,0 +1,74 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.metrics;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for Histogram.
+ */
+public class HistogramTest extends TestCase {
+
+  public void testBuckets() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = Histogram.getBucket(value);
+      assertTrue(value <= Histogram.getBucketMaxValue(bucket));
+      if (bucket > 0) {
+        assertTrue(value > Histogram.getBucketMaxValue(bucket - 1));
+      }
+    }
+    assertEquals(Long.MAX_VALUE, Histogram.getBucketMaxValue(Histogram.getBucket(Long.MAX_VALUE)));
+  }
+
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+    for (int i = 1000; i > 0; i--) {
+      histogram.record(i);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500, histogram.getSum());
+    assertEquals(500.5, histogram.getMean());
+    assertEquals(1000, histogram.getMax());
+    assertPercentile(500, histogram.get50thPercentile());
+    assertPercentile(950, histogram.get95thPercentile());
+    assertPercentile(990, histogram.get99thPercentile());
+    assertEquals(1000, histogram.getPercentile(1));
+  }
+
+  public void testEmptyAndNegative() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0.0, histogram.getMean());
+    assertEquals(0, histogram.get99thPercentile());
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getSum());
+    assertEquals(0, histogram.get50thPercentile());
+  }
+
+  /**
+   * Asserts that a percentile is not below the exact value, and within the precision of the
+   * buckets above it.
+   *
+   * @param expected The exact value.
+   * @param actual The percentile.
+   */
+  private static void assertPercentile(long expected, long actual) {
+    assertTrue("Expected about " + expected + " but was " + actual,
+        (actual >= expected) && (actual <= expected * 1.125));
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.visualization.datasource.metrics;
+
+import com.google.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.SortedMap;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+/**
+ * Tests for MetricsRegistry.
+ */
+public class MetricsRegistryTest extends TestCase {
+
+  public void testMetricName() {
+    MetricName name = new MetricName("requests", "b", "2", "a", "1");
+    assertEquals("requests{a=1,b=2}", name.toString());
+    assertEquals(name, new MetricName("requests", "a", "1").withLabel("b", "2"));
+    assertFalse(name.equals(new MetricName("requests", "a", "1")));
+    assertTrue(new MetricName("a").compareTo(new MetricName("b")) < 0);
+    try {
+      new MetricName("requests", "a");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testMetrics() {
+    MetricsRegistry registry = new MetricsRegistry();
+    MetricName name = new MetricName("requests", "dataSource", "Foo");
+    registry.getCounter(name).increment();
+    registry.getCounter(name).add(2);
+    assertSame(registry.getCounter(name), registry.getCounter(new MetricName("requests",
+        "dataSource", "Foo")));
+    assertEquals(3, registry.getCounter(name).getCount());
+    assertNotSame(registry.getCounter(name),
+        registry.getCounter(name.withLabel("dataSource", "Bar")));
+
+    Gauge gauge = new Gauge() {
+      @Override
+      public long getValue() {
+        return 7;
+      }
+    };
+    registry.registerGauge(new MetricName("size"), gauge);
+    try {
+      registry.registerGauge(new MetricName("size"), gauge);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected behavior.
+    }
+  }
+
+  public void testReport() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.getCounter(new MetricName("b"));
+    registry.getCounter(new MetricName("a"));
+    registry.getHistogram(new MetricName("latency")).record(10);
+    final StringBuilder reported = new StringBuilder();
+    registry.report(new MetricsReporter() {
+      @Override
+      public void report(SortedMap<MetricName, Counter> counters,
+          SortedMap<MetricName, Histogram> histograms, SortedMap<MetricName, Gauge> gauges) {
+        reported.append(counters.keySet()).append(histograms.keySet()).append(gauges.keySet());
+      }
+    });
+    assertEquals("[a, b][latency][]", reported.toString());
+  }
+
+  public void testObjectName() throws Exception {
+    assertEquals(new ObjectName("test:type=Counter,name=requests,outputType=\"\",x=\"a,b\""),
+        MetricsRegistry.getObjectName("test", "Counter",
+        new MetricName("requests", "x", "a,b", "outputType", "")));
+  }
+
+  public void testMBeans() throws Exception {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    MetricsRegistry registry = new MetricsRegistry();
+    MetricName before = new MetricName("before", "dataSource", "Foo");
+    MetricName after = new MetricName("after");
+    registry.getCounter(before).add(5);
+
+    registry.registerMBeans(server, "test");
+    registry.getHistogram(after).record(3);
+    ObjectName counterName = MetricsRegistry.getObjectName("test", "Counter", before);
+    ObjectName histogramName = MetricsRegistry.getObjectName("test", "Histogram", after);
+    assertEquals(5L, server.getAttribute(counterName, "Count"));
+    assertEquals(1L, server.getAttribute(histogramName, "Count"));
+    assertEquals(3L, server.getAttribute(histogramName, "Max"));
+    assertEquals(2, server.queryNames(new ObjectName("test:*"), null).size());
+
+    registry.unregisterMBeans();
+    assertEquals(Lists.newArrayList(),
+        Lists.newArrayList(server.queryNames(new ObjectName("test:*"), null)));
+  }
+}
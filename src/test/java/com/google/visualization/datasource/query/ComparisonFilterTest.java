@@ -324,4 +324,39 @@ public class ComparisonFilterTest extends TestCase {
         new TextValue("_2%")));
   }
 
+  /**
+   * Tests LIKE patterns that are matched without a regular expression, and
+   * that a filter evaluated with alternating patterns keeps matching correctly.
+   */
+  public void testLikeLiteralPatterns() {
+    ConcreteComparisonFilter likeFilter = new ConcreteComparisonFilter(
+        ComparisonFilter.Operator.LIKE);
+    TextValue value = new TextValue("foo.bar*");
+
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("foo.bar*")));
+    assertFalse(likeFilter.isOperatorMatch(value, new TextValue("foo.ba")));
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("foo.%")));
+    assertFalse(likeFilter.isOperatorMatch(value, new TextValue("fooX%")));
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("%bar*")));
+    assertFalse(likeFilter.isOperatorMatch(value, new TextValue("%foo")));
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("%o.b%")));
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("%%.%%")));
+    assertFalse(likeFilter.isOperatorMatch(value, new TextValue("%x%")));
+    assertTrue(likeFilter.isOperatorMatch(value, new TextValue("%%")));
+    assertTrue(likeFilter.isOperatorMatch(new TextValue(""), new TextValue("")));
+    assertFalse(likeFilter.isOperatorMatch(value, new TextValue("")));
+    assertTrue(likeFilter.isOperatorMatch(new TextValue("a\nb"),
+        new TextValue("a%b")));
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(likeFilter.isOperatorMatch(value, new TextValue("foo%")));
+      assertFalse(likeFilter.isOperatorMatch(value, new TextValue("bar%")));
+    }
+
+    ConcreteComparisonFilter matchesFilter = new ConcreteComparisonFilter(
+        ComparisonFilter.Operator.MATCHES);
+    assertFalse(matchesFilter.isOperatorMatch(value, new TextValue("(")));
+    assertTrue(matchesFilter.isOperatorMatch(value, new TextValue("foo.*")));
+    assertFalse(matchesFilter.isOperatorMatch(value, new TextValue("(")));
+  }
 }
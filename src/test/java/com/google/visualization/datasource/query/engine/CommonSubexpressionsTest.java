@@ -0,0 +1,157 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.InvalidQueryException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AbstractColumn;
+import com.google.visualization.datasource.query.ColumnValueFilter;
+import com.google.visualization.datasource.query.ComparisonFilter;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.QuerySelection;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+import com.google.visualization.datasource.query.SimpleColumn;
+import com.google.visualization.datasource.query.SortOrder;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.google.visualization.datasource.query.scalarfunction.Constant;
+import com.google.visualization.datasource.query.scalarfunction.ScalarFunction;
+import com.google.visualization.datasource.query.scalarfunction.Sum;
+
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for CommonSubexpressions.
+ */
+public class CommonSubexpressionsTest extends TestCase {
+
+  /**
+   * A sum function that counts its evaluations.
+   */
+  private static class CountingSum implements ScalarFunction {
+
+    int evaluations = 0;
+
+    public String getFunctionName() {
+      return Sum.getInstance().getFunctionName();
+    }
+
+    public Value evaluate(List<Value> values) {
+      evaluations++;
+      return Sum.getInstance().evaluate(values);
+    }
+
+    public ValueType getReturnType(List<ValueType> types) {
+      return Sum.getInstance().getReturnType(types);
+    }
+
+    public void validateParameters(List<ValueType> types) throws InvalidQueryException {
+      Sum.getInstance().validateParameters(types);
+    }
+
+    public String toQueryString(List<String> argumentQueryStrings) {
+      return Sum.getInstance().toQueryString(argumentQueryStrings);
+    }
+  }
+
+  private DataTable table;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    table = new DataTable();
+    table.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    table.addColumn(new ColumnDescription("weight", ValueType.NUMBER, "Weight"));
+    table.addRowFromValues("aaa", 222);
+    table.addRowFromValues("ccc", 111);
+    table.addRowFromValues("bbb", 333);
+  }
+
+  public void testGetColumns() throws InvalidQueryException {
+    Query query = QueryBuilder.getInstance().parseQuery(
+        "SELECT name, year(d) WHERE year(d) > 2000 AND upper(name) = 'A' ORDER BY month(d)");
+    assertEquals("[year(d)]", CommonSubexpressions.getColumnsBeforeFilter(query).toString());
+    assertTrue(CommonSubexpressions.getColumnsAfterFilter(query).isEmpty());
+
+    query = QueryBuilder.getInstance().parseQuery(
+        "SELECT year(d), year(d) + 1, month(d), 1 + 2 ORDER BY year(d), 1 + 2");
+    assertTrue(CommonSubexpressions.getColumnsBeforeFilter(query).isEmpty());
+    assertEquals("[year(d)]", CommonSubexpressions.getColumnsAfterFilter(query).toString());
+
+    // Grouped columns are materialized by the grouping.
+    query = QueryBuilder.getInstance().parseQuery(
+        "SELECT year(d), max(x) WHERE year(d) > 2000 GROUP BY year(d) ORDER BY year(d)");
+    assertEquals("[year(d)]", CommonSubexpressions.getColumnsBeforeFilter(query).toString());
+    assertTrue(CommonSubexpressions.getColumnsAfterFilter(query).isEmpty());
+
+    // Without a selection, materialized columns would be part of the result.
+    query = QueryBuilder.getInstance().parseQuery("WHERE year(d) > 2000 ORDER BY year(d)");
+    assertTrue(CommonSubexpressions.getColumnsBeforeFilter(query).isEmpty());
+    assertTrue(CommonSubexpressions.getColumnsAfterFilter(query).isEmpty());
+  }
+
+  public void testMaterialize() {
+    ScalarFunctionColumn column = new ScalarFunctionColumn(
+        Lists.<AbstractColumn>newArrayList(new SimpleColumn("weight"),
+        new ScalarFunctionColumn(Lists.<AbstractColumn>newArrayList(),
+        new Constant(new NumberValue(1)))), Sum.getInstance());
+    DataTable result =
+        CommonSubexpressions.materialize(table, Lists.newArrayList(column, column), null);
+    assertEquals(3, result.getNumberOfColumns());
+    assertEquals(column.getId(), result.getColumnDescription(2).getId());
+    assertEquals(new NumberValue(112), result.getRow(1).getCell(2).getValue());
+    assertSame(table.getRow(1).getCell(0), result.getRow(1).getCell(0));
+    assertSame(result, CommonSubexpressions.materialize(result, Lists.newArrayList(column), null));
+  }
+
+  public void testColumnIsComputedOncePerRow() {
+    CountingSum function = new CountingSum();
+    ScalarFunctionColumn column = new ScalarFunctionColumn(
+        Lists.<AbstractColumn>newArrayList(new SimpleColumn("weight"),
+        new ScalarFunctionColumn(Lists.<AbstractColumn>newArrayList(),
+        new Constant(new NumberValue(1)))), function);
+
+    Query query = new Query();
+    QuerySelection selection = new QuerySelection();
+    selection.addColumn(new SimpleColumn("name"));
+    selection.addColumn(column);
+    query.setSelection(selection);
+    query.setFilter(new ColumnValueFilter(column, new NumberValue(200),
+        ComparisonFilter.Operator.GT));
+    QuerySort sort = new QuerySort();
+    sort.addSort(column, SortOrder.DESCENDING);
+    query.setSort(sort);
+
+    DataTable result = QueryEngine.executeQuery(query, table, ULocale.US);
+    assertEquals(3, function.evaluations);
+    assertEquals(2, result.getNumberOfColumns());
+    assertEquals(2, result.getNumberOfRows());
+    assertEquals(new TextValue("bbb"), result.getRow(0).getCell(0).getValue());
+    assertEquals(new NumberValue(334), result.getRow(0).getCell(1).getValue());
+    assertEquals(new TextValue("aaa"), result.getRow(1).getCell(0).getValue());
+    assertEquals(new NumberValue(223), result.getRow(1).getCell(1).getValue());
+    assertEquals(3, table.getNumberOfRows());
+  }
+}
@@ -0,0 +1,130 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.query.ColumnValueFilter;
+import com.google.visualization.datasource.query.ComparisonFilter;
+import com.google.visualization.datasource.query.CompoundFilter;
+import com.google.visualization.datasource.query.QueryFilter;
+import com.google.visualization.datasource.query.SimpleColumn;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for FilterCompiler.
+ */
+public class FilterCompilerTest extends TestCase {
+
+  /**
+   * Asserts that the compiled filter matches exactly the rows the filter matches.
+   *
+   * @param where The where clause of the filter.
+   * @param table The table.
+   */
+  private void assertSameMatches(String where, DataTable table) throws Exception {
+    QueryFilter filter = QueryBuilder.getInstance().parseQuery("WHERE " + where).getFilter();
+    RowPredicate predicate = FilterCompiler.compile(filter, table);
+    RowPredicate vectorPredicate =
+        FilterCompiler.compile(filter, IndexedRows.of(ColumnarDataTable.fromDataTable(table)));
+    for (int row = 0; row < table.getNumberOfRows(); row++) {
+      boolean isMatch = filter.isMatch(table, table.getRow(row));
+      assertEquals(where, isMatch, predicate.isMatch(row));
+      assertEquals(where, isMatch, vectorPredicate.isMatch(row));
+    }
+  }
+
+  public void testSameMatchesAsFilter() throws Exception {
+    DataTable table = MockDataSource.getData(1);
+    assertSameMatches("Songs = 4", table);
+    assertSameMatches("4 < Fans", table);
+    assertSameMatches("Fans >= 3000 and Band = 'Youthanasia'", table);
+    assertSameMatches("Fans < 400 or Year != '1994' and Songs > 2", table);
+    assertSameMatches("not (Band starts with 'Co' or Fans <= 340)", table);
+    assertSameMatches("Band like 'C%a%' and Band matches '.*[nd]$'", table);
+    assertSameMatches("Songs + Sales > 8", table);
+    assertSameMatches("Songs = Sales", table);
+    assertSameMatches("upper(Band) contains 'ANA'", table);
+    assertSameMatches("Songs = 'abc'", table);
+    assertSameMatches("Fans is null or Band is not null", table);
+
+    table = MockDataSource.getData(3);
+    assertSameMatches("hireDate > date '2000-01-01' or lunchTime < timeofday '12:30:00'",
+        table);
+    assertSameMatches("seniorityStartTime is null and isSenior = false", table);
+  }
+
+  public void testSameMatchesOnEmptyTable() throws Exception {
+    DataTable table = MockDataSource.getData(1).clone();
+    table.setRows(Lists.<TableRow>newArrayList());
+    QueryFilter filter = QueryBuilder.getInstance().parseQuery("WHERE Songs = 2").getFilter();
+    TableRow row = MockDataSource.getData(1).getRow(0);
+    RowPredicate predicate =
+        FilterCompiler.compile(filter, IndexedRows.of(table, Lists.newArrayList(row)));
+    assertEquals(filter.isMatch(table, row), predicate.isMatch(0));
+  }
+
+  public void testTypeMismatchNeverMatches() throws Exception {
+    DataTable table = MockDataSource.getData(1);
+    QueryFilter filter = new ColumnValueFilter(new SimpleColumn("Band"), new NumberValue(2),
+        ComparisonFilter.Operator.NE);
+    RowPredicate predicate = FilterCompiler.compile(filter, table);
+    assertEquals(0.0, predicate.getSelectivity());
+    for (int row = 0; row < table.getNumberOfRows(); row++) {
+      assertFalse(predicate.isMatch(row));
+    }
+  }
+
+  public void testSelectivityEstimate() throws Exception {
+    DataTable table = MockDataSource.getData(1);
+    QueryFilter rare = new ColumnValueFilter(new SimpleColumn("Sales"), new NumberValue(46),
+        ComparisonFilter.Operator.EQ);
+    QueryFilter common = new ColumnValueFilter(new SimpleColumn("Band"),
+        new TextValue("Collection"), ComparisonFilter.Operator.NE);
+    double rareSelectivity = FilterCompiler.compile(rare, table).getSelectivity();
+    double commonSelectivity = FilterCompiler.compile(common, table).getSelectivity();
+    assertTrue(rareSelectivity < 0.1);
+    assertTrue(commonSelectivity > 0.5);
+
+    List<QueryFilter> subFilters = Lists.newArrayList(common, rare);
+    RowPredicate and = FilterCompiler.compile(
+        new CompoundFilter(CompoundFilter.LogicalOperator.AND, subFilters), table);
+    assertEquals(rareSelectivity * commonSelectivity, and.getSelectivity(), 1e-9);
+    RowPredicate or = FilterCompiler.compile(
+        new CompoundFilter(CompoundFilter.LogicalOperator.OR, subFilters), table);
+    assertEquals(1 - (1 - rareSelectivity) * (1 - commonSelectivity), or.getSelectivity(), 1e-9);
+  }
+
+  public void testEmptyCompoundFilter() throws Exception {
+    DataTable table = MockDataSource.getData(1);
+    RowPredicate predicate = FilterCompiler.compile(new CompoundFilter(
+        CompoundFilter.LogicalOperator.AND, Lists.<QueryFilter>newArrayList()), table);
+    try {
+      predicate.isMatch(0);
+      fail();
+    } catch (RuntimeException e) {
+      // Expected behavior.
+    }
+  }
+}
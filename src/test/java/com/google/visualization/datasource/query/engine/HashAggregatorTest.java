@@ -0,0 +1,102 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.TextValue;
+import com.google.visualization.datasource.datatable.value.Value;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.AggregationType;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for HashAggregator.
+ */
+public class HashAggregatorTest extends TestCase {
+
+  /**
+   * Asserts that the hash aggregator returns the same groups and aggregation values as the
+   * table aggregator.
+   *
+   * @param groupByColumns The group-by columns.
+   * @param aggregateColumn The aggregated column.
+   * @param table The table.
+   */
+  private void assertSameAsTableAggregator(List<String> groupByColumns, String aggregateColumn,
+      DataTable table) {
+    List<AggregationType> types = Lists.newArrayList(AggregationType.values());
+    if (table.getColumnDescription(aggregateColumn).getType() != ValueType.NUMBER) {
+      types.remove(AggregationType.SUM);
+      types.remove(AggregationType.AVG);
+    }
+    List<String> columns = Lists.newArrayList();
+    for (int i = 0; i < types.size(); i++) {
+      columns.add(aggregateColumn);
+    }
+    HashAggregator hashAggregator = new HashAggregator(groupByColumns, columns, types, table);
+    TableAggregator tableAggregator = new TableAggregator(groupByColumns,
+        Sets.newHashSet(aggregateColumn), table);
+
+    assertEquals(tableAggregator.getPathsToLeaves().size(), hashAggregator.getNumberOfGroups());
+    for (int groupId = 0; groupId < hashAggregator.getNumberOfGroups(); groupId++) {
+      AggregationPath path = new AggregationPath();
+      for (Value value : hashAggregator.getGroupValues(groupId)) {
+        path.add(value);
+      }
+      for (AggregationType type : types) {
+        assertEquals(tableAggregator.getAggregationValue(path, aggregateColumn, type),
+            hashAggregator.getAggregationValue(groupId, aggregateColumn, type));
+      }
+    }
+  }
+
+  public void testSameAsTableAggregator() {
+    DataTable table = MockDataSource.getData(1);
+    assertSameAsTableAggregator(Lists.newArrayList("Year", "Band"), "Fans", table);
+    assertSameAsTableAggregator(Lists.newArrayList("Band"), "Year", table);
+    assertSameAsTableAggregator(Lists.newArrayList("Songs", "Year", "Sales"), "Band", table);
+    assertSameAsTableAggregator(Lists.<String>newArrayList(), "Sales", table);
+  }
+
+  public void testNullValues() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("key", ValueType.TEXT, "key"));
+    table.addColumn(new ColumnDescription("value", ValueType.NUMBER, "value"));
+    for (int i = 0; i < 40; i++) {
+      TableRow row = new TableRow();
+      row.addCell((i % 5 == 0) ? TextValue.getNullValue() : new TextValue("k" + (i % 20)));
+      row.addCell((i % 3 == 0) ? NumberValue.getNullValue() : new NumberValue(i));
+      table.addRow(row);
+    }
+    assertSameAsTableAggregator(Lists.newArrayList("key"), "value", table);
+
+    List<String> onlyNulls = Lists.newArrayList("value");
+    HashAggregator aggregator = new HashAggregator(Lists.newArrayList("value"), onlyNulls,
+        Lists.newArrayList(AggregationType.MIN), table);
+    for (int groupId = 0; groupId < aggregator.getNumberOfGroups(); groupId++) {
+      Value value = aggregator.getAggregationValue(groupId, "value", AggregationType.MIN);
+      assertEquals(aggregator.getGroupValues(groupId).get(0), value);
+    }
+  }
+}
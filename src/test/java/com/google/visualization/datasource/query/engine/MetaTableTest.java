@@ -0,0 +1,79 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.visualization.datasource.datatable.TableCell;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for MetaTable.
+ */
+public class MetaTableTest extends TestCase {
+
+  public void testDenseLayout() {
+    MetaTable metaTable = new MetaTable(2, 3, new int[] {2, 1});
+    assertTrue(metaTable.isDense());
+    assertTrue(metaTable.isEmpty());
+    TableCell cell1 = new TableCell("a");
+    TableCell cell2 = new TableCell("b");
+    TableCell cell3 = new TableCell("c");
+    metaTable.put(0, 2, cell1);
+    metaTable.put(0, 0, cell2);
+    metaTable.put(1, 1, cell3);
+    assertFalse(metaTable.isEmpty());
+    assertSame(cell1, metaTable.getCell(0, 2));
+    assertNull(metaTable.getCell(1, 0));
+
+    TableCell[] row = new TableCell[3];
+    metaTable.getRow(0, row);
+    assertSame(cell2, row[0]);
+    assertNull(row[1]);
+    assertSame(cell1, row[2]);
+    metaTable.getRow(1, row);
+    assertNull(row[0]);
+    assertSame(cell3, row[1]);
+    assertNull(row[2]);
+  }
+
+  public void testSparseLayout() {
+    int numberOfRows = 1000;
+    int numberOfColumns = 500;
+    int[] numberOfCellsInRow = new int[numberOfRows];
+    numberOfCellsInRow[3] = 2;
+    numberOfCellsInRow[999] = 1;
+    MetaTable metaTable = new MetaTable(numberOfRows, numberOfColumns, numberOfCellsInRow);
+    assertFalse(metaTable.isDense());
+    TableCell cell1 = new TableCell("a");
+    TableCell cell2 = new TableCell("b");
+    TableCell cell3 = new TableCell("c");
+    metaTable.put(3, 400, cell1);
+    metaTable.put(3, 7, cell2);
+    metaTable.put(999, 499, cell3);
+    assertSame(cell1, metaTable.getCell(3, 400));
+    assertSame(cell3, metaTable.getCell(999, 499));
+    assertNull(metaTable.getCell(3, 8));
+    assertNull(metaTable.getCell(0, 0));
+
+    TableCell[] row = new TableCell[numberOfColumns];
+    row[1] = cell3;
+    metaTable.getRow(3, row);
+    assertNull(row[1]);
+    assertSame(cell2, row[7]);
+    assertSame(cell1, row[400]);
+    metaTable.getRow(4, row);
+    assertNull(row[7]);
+  }
+}
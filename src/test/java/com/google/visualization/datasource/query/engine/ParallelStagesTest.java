@@ -0,0 +1,191 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.metrics.RequestMetrics;
+import com.google.visualization.datasource.query.AggregationType;
+import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.QueryFilter;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for ParallelStages.
+ */
+public class ParallelStagesTest extends TestCase {
+
+  private ExecutorService executor;
+
+  private DataTable table;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    executor = Executors.newFixedThreadPool(3);
+    table = MockDataSource.getData(1);
+    List<TableRow> rows = Lists.newArrayList(table.getRows());
+    for (int i = 0; i < 20; i++) {
+      table.addRows(rows);
+    }
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    executor.shutdown();
+    super.tearDown();
+  }
+
+  public void testFilter() throws Exception {
+    QueryFilter filter = QueryBuilder.getInstance().parseQuery(
+        "WHERE Fans > 3000 or Band = 'Collection'").getFilter();
+    assertFilter(filter, FilterCompiler.compile(filter, table));
+  }
+
+  public void testAggregate() {
+    List<String> groupBy = Lists.newArrayList("Band", "Songs");
+    List<String> columns = Lists.newArrayList("Fans", "Fans", "Fans", "Year", "Year");
+    List<AggregationType> types = Lists.newArrayList(AggregationType.MIN, AggregationType.MAX,
+        AggregationType.COUNT, AggregationType.MIN, AggregationType.MAX);
+    HashAggregator expected = new HashAggregator(groupBy, columns, types, table);
+    IndexedRows rows = IndexedRows.of(table);
+    HashAggregator actual = new HashAggregator(rows, groupBy, columns, types);
+    new ParallelStages(executor, 4, 10).aggregate(actual, rows.getIndices());
+
+    assertEquals(expected.getNumberOfGroups(), actual.getNumberOfGroups());
+    for (int groupId = 0; groupId < expected.getNumberOfGroups(); groupId++) {
+      assertEquals(expected.getGroupValues(groupId), actual.getGroupValues(groupId));
+      for (int i = 0; i < columns.size(); i++) {
+        assertEquals(expected.getAggregationValue(groupId, columns.get(i), types.get(i)),
+            actual.getAggregationValue(groupId, columns.get(i), types.get(i)));
+      }
+    }
+  }
+
+  public void testFilterOnVectors() throws Exception {
+    QueryFilter filter = QueryBuilder.getInstance().parseQuery(
+        "WHERE Fans > 3000 or Band = 'Collection'").getFilter();
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    assertFilter(filter, FilterCompiler.compile(filter, IndexedRows.of(columnar)));
+  }
+
+  /**
+   * Asserts that a compiled filter run in parallel matches the rows the filter matches.
+   *
+   * @param filter The filter.
+   * @param predicate The filter, compiled for the rows of the table.
+   */
+  private void assertFilter(QueryFilter filter, RowPredicate predicate) {
+    List<Integer> expected = Lists.newArrayList();
+    for (int row = 0; row < table.getNumberOfRows(); row++) {
+      if (filter.isMatch(table, table.getRow(row))) {
+        expected.add(row);
+      }
+    }
+    for (int parallelism = 1; parallelism <= 5; parallelism++) {
+      ParallelStages stages = new ParallelStages(executor, parallelism, 10);
+      int[] actual = stages.filter(table.getNumberOfRows(), predicate);
+      assertEquals(expected.size(), actual.length);
+      for (int i = 0; i < actual.length; i++) {
+        assertEquals(expected.get(i).intValue(), actual[i]);
+      }
+    }
+  }
+
+  public void testAggregateOnVectors() {
+    List<String> groupBy = Lists.newArrayList("Band", "Songs");
+    List<String> columns = Lists.newArrayList("Fans", "Fans", "Fans", "Year", "Year");
+    List<AggregationType> types = Lists.newArrayList(AggregationType.MIN, AggregationType.MAX,
+        AggregationType.COUNT, AggregationType.MIN, AggregationType.MAX);
+    HashAggregator expected = new HashAggregator(groupBy, columns, types, table);
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(table);
+    int[] rows = new int[table.getNumberOfRows()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+    }
+    VectorAggregator actual = new VectorAggregator(columnar, groupBy, columns, types);
+    new ParallelStages(executor, 4, 10).aggregate(actual, rows);
+
+    assertEquals(expected.getNumberOfGroups(), actual.getNumberOfGroups());
+    for (int groupId = 0; groupId < expected.getNumberOfGroups(); groupId++) {
+      assertEquals(expected.getGroupValues(groupId), actual.getGroupValues(groupId));
+      for (int i = 0; i < columns.size(); i++) {
+        assertEquals(expected.getAggregationValue(groupId, columns.get(i), types.get(i)),
+            actual.getAggregationValue(groupId, columns.get(i), types.get(i)));
+      }
+    }
+  }
+
+  public void testSortIsStable() throws Exception {
+    QuerySort sort = QueryBuilder.getInstance().parseQuery("ORDER BY Year DESC, Songs")
+        .getSort();
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    List<TableRow> expected = Lists.newArrayList(table.getRows());
+    Collections.sort(expected, new TableRowComparator(sort, ULocale.US, lookup));
+    for (int parallelism = 1; parallelism <= 7; parallelism++) {
+      List<TableRow> actual = Lists.newArrayList(table.getRows());
+      new ParallelStages(executor, parallelism, 10).sort(actual, sort, ULocale.US, lookup);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertSame(expected.get(i), actual.get(i));
+      }
+    }
+  }
+
+  public void testQueryEngineWithExecutor() throws Exception {
+    DataTable randomTable = MockDataSource.getRandomDataTable(3, 20000, 17);
+    Query query = QueryBuilder.getInstance().parseQuery("SELECT dept, count(name), max(hireDate) "
+        + "WHERE salary > 0 GROUP BY dept ORDER BY count(name) DESC, dept");
+    DataTable expected = QueryEngine.executeQuery(query, randomTable.clone(), ULocale.US);
+    DataTable actual = QueryEngine.executeQuery(query, randomTable.clone(), ULocale.US,
+        executor);
+    assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows());
+    for (int i = 0; i < expected.getNumberOfRows(); i++) {
+      for (int j = 0; j < expected.getNumberOfColumns(); j++) {
+        assertEquals(expected.getValue(i, j), actual.getValue(i, j));
+      }
+    }
+  }
+
+  public void testColumnarQueryWithExecutor() throws Exception {
+    DataTable randomTable = MockDataSource.getRandomDataTable(3, 20000, 23);
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(randomTable);
+    String[] queries = {
+        "SELECT dept, count(name), max(hireDate), avg(salary) WHERE salary > 0 GROUP BY dept "
+            + "ORDER BY count(name) DESC, dept",
+        "SELECT name, hireDate WHERE isSenior = true ORDER BY hireDate DESC, name LIMIT 50",
+        "SELECT * WHERE lunchTime < timeofday '12:00:00' ORDER BY salary"};
+    for (String queryString : queries) {
+      Query query = QueryBuilder.getInstance().parseQuery(queryString);
+      DataTable expected = QueryEngine.executeQuery(query, randomTable.clone(), ULocale.US);
+      DataTable actual = QueryEngine.executeQuery(query, columnar, ULocale.US, executor,
+          RequestMetrics.NONE);
+      assertEquals(queryString, expected.toString(), actual.toString());
+    }
+  }
+}
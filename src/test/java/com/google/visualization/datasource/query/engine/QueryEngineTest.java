@@ -17,6 +17,7 @@ package com.google.visualization.datasource.query.engine;
 import com.google.common.collect.Lists;
 import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.ColumnarDataTable;
 import com.google.visualization.datasource.datatable.DataTable;
 import com.google.visualization.datasource.datatable.TableCell;
 import com.google.visualization.datasource.datatable.TableRow;
@@ -1534,6 +1535,15 @@ public class QueryEngineTest extends TestCase {
     assertEquals("f#", res.getColumnDescription("weight").getPattern());
   }
 
+  public void testSortWithLimitKeepsDataSourceRows() throws Exception {
+    Query q = QueryBuilder.getInstance().parseQuery("ORDER BY weight DESC LIMIT 1");
+    DataTable data = MockDataSource.getData(0).clone();
+    List<TableRow> rows = Lists.newArrayList(data.getRows());
+    DataTable res = QueryEngine.executeQuery(q, data, ULocale.US);
+    assertEquals(1, res.getNumberOfRows());
+    assertEquals(rows, data.getRows());
+  }
+
   public void testQueryWithLikeOperator() throws InvalidQueryException {
     Query q = QueryBuilder.getInstance().parseQuery("SELECT Band WHERE Band like 'Co%'");
     DataTable data = MockDataSource.getData(1).clone();
@@ -1667,4 +1677,94 @@ public class QueryEngineTest extends TestCase {
     assertStringArraysEqual(new String[]{"2003", "Collection", "2.0"},
       resultStrings[3]);  
   }
+
+  public void testColumnarTable() throws Exception {
+    String[] queries = {
+        "SELECT Year, Band, Songs WHERE Fans <= 3000 SKIPPING 10",
+        "SELECT Band, sum(Sales) WHERE Band like 'Co%' GROUP BY Band ORDER BY Band",
+        "SELECT Year, sum(Songs) GROUP BY Year PIVOT Band",
+        "SELECT * ORDER BY Fans DESC LIMIT 5 OFFSET 2"};
+    DataTable data = MockDataSource.getData(1);
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(data);
+    for (String queryString : queries) {
+      Query q = QueryBuilder.getInstance().parseQuery(queryString);
+      DataTable expected = QueryEngine.executeQuery(q, data.clone(), ULocale.US);
+      DataTable result = QueryEngine.executeQuery(q, columnar, ULocale.US);
+      assertEquals(queryString, expected.toString(), result.toString());
+      assertEquals(expected.getColumnDescriptions().size(),
+          result.getColumnDescriptions().size());
+    }
+    // The columnar table is not changed by the queries.
+    assertEquals(data.toString(), columnar.toDataTable().toString());
+  }
+
+  public void testColumnarTableExecutesLikeRows() throws Exception {
+    String[] queries = {
+        "SELECT * WHERE Band contains 'an' and not (Songs = 4) ORDER BY Band DESC, Fans",
+        "SELECT * WHERE Year != '1994' or Fans > Sales * 100 ORDER BY Year, Sales DESC",
+        "SELECT Band, min(Year), max(Year), avg(Fans), count(Fans) GROUP BY Band "
+            + "ORDER BY max(Year) DESC",
+        "SELECT Year, Songs, count(Fans) WHERE Sales = Songs GROUP BY Year, Songs",
+        "SELECT Band, Fans ORDER BY Fans DESC SKIPPING 2 LIMIT 3 OFFSET 1",
+        "SELECT upper(Band), Fans WHERE lower(Band) = 'contraband' ORDER BY upper(Band), Fans",
+        "SELECT Year, sum(Fans) GROUP BY Year ORDER BY Year OPTIONS no_values"};
+    for (String queryString : queries) {
+      assertSameResult(queryString, MockDataSource.getData(1));
+    }
+
+    queries = new String[] {
+        "SELECT * WHERE hireDate > date '2000-01-01' or lunchTime < timeofday '12:30:00' "
+            + "ORDER BY seniorityStartTime, name",
+        "SELECT name, age WHERE seniorityStartTime is null and isSenior = false ORDER BY age DESC",
+        "SELECT dept, min(name), max(hireDate), min(lunchTime), count(age) "
+            + "WHERE name is not null GROUP BY dept PIVOT isSenior",
+        "SELECT isSenior, max(seniorityStartTime), sum(salary) GROUP BY isSenior",
+        "SELECT name WHERE dept = '' or dept is null"};
+    for (String queryString : queries) {
+      assertSameResult(queryString, MockDataSource.getData(3));
+      assertSameResult(queryString, MockDataSource.getRandomDataTable(3, 500, 5));
+    }
+  }
+
+  /**
+   * Asserts that a query returns the same result on a table and on its columnar copy.
+   *
+   * @param queryString The query.
+   * @param data The table.
+   */
+  private void assertSameResult(String queryString, DataTable data) throws Exception {
+    Query q = QueryBuilder.getInstance().parseQuery(queryString);
+    ColumnarDataTable columnar = ColumnarDataTable.fromDataTable(data);
+    DataTable expected = QueryEngine.executeQuery(q, data.clone(), ULocale.US);
+    DataTable result = QueryEngine.executeQuery(q, columnar, ULocale.US);
+    assertEquals(queryString, expected.toString(), result.toString());
+    assertEquals(queryString, expected.getWarnings().size(), result.getWarnings().size());
+  }
+
+  public void testSelectionWithPivotingAndScalarFunctions() throws Exception {
+    DataTable data = new DataTable();
+    data.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    data.addColumn(new ColumnDescription("year", ValueType.NUMBER, "Year"));
+    data.addColumn(new ColumnDescription("sales", ValueType.NUMBER, "Sales"));
+    data.addRowFromValues("a", 2000, 1);
+    data.addRowFromValues("a", 2001, 2);
+    data.addRowFromValues("b", 2000, 3);
+    data.addRowFromValues("b", 2000, 4);
+
+    Query q = QueryBuilder.getInstance().parseQuery(
+        "SELECT upper(name), sum(sales) * 2, name GROUP BY name PIVOT year");
+    DataTable result = QueryEngine.executeQuery(q, data, ULocale.US);
+
+    List<ColumnDescription> cols = result.getColumnDescriptions();
+    assertEquals(4, cols.size());
+    assertEquals("upper_name", cols.get(0).getId());
+    assertTrue(cols.get(1).getId().startsWith("2000.0 "));
+    assertTrue(cols.get(2).getId().startsWith("2001.0 "));
+    assertEquals("name", cols.get(3).getId());
+
+    String[][] resultStrings = MockDataSource.queryResultToStringMatrix(result);
+    assertEquals(2, resultStrings.length);
+    assertStringArraysEqual(new String[]{"A", "2.0", "4.0", "a"}, resultStrings[0]);
+    assertStringArraysEqual(new String[]{"B", "14.0", "null", "b"}, resultStrings[1]);
+  }
 }
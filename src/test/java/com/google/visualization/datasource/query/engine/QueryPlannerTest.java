@@ -0,0 +1,101 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.visualization.datasource.base.InvalidQueryException;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.value.NumberValue;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.QueryFilter;
+import com.google.visualization.datasource.query.ScalarFunctionColumn;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for QueryPlanner.
+ */
+public class QueryPlannerTest extends TestCase {
+
+  public void testGetRequiredColumnIds() throws InvalidQueryException {
+    Query query = QueryBuilder.getInstance().parseQuery(
+        "SELECT a, max(b) WHERE upper(c) = 'X' GROUP BY a, year(d) ORDER BY a LABEL a 'A'");
+    assertEquals(Sets.newHashSet("a", "b", "c", "d", "upper_c", "year_d"),
+        QueryPlanner.getRequiredColumnIds(query));
+    assertNull(QueryPlanner.getRequiredColumnIds(
+        QueryBuilder.getInstance().parseQuery("WHERE a > 1")));
+  }
+
+  public void testGetColumnIndices() {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("a", ValueType.TEXT, "A"));
+    table.addColumn(new ColumnDescription("b", ValueType.TEXT, "B"));
+    table.addColumn(new ColumnDescription("c", ValueType.TEXT, "C"));
+    assertEquals("[0, 2]", Arrays.toString(
+        QueryPlanner.getColumnIndices(table, Sets.newHashSet("c", "a", "x"))));
+    assertEquals("[0, 1, 2]", Arrays.toString(QueryPlanner.getColumnIndices(table, null)));
+  }
+
+  public void testSplitFilter() throws InvalidQueryException {
+    Query query = QueryBuilder.getInstance().parseQuery(
+        "SELECT year(d) WHERE a > 1 AND year(d) = 2000 AND b = 'x'");
+    List<ScalarFunctionColumn> columns = query.getSelection().getScalarFunctionColumns();
+    QueryFilter[] filters = QueryPlanner.splitFilter(query.getFilter(), columns);
+    assertEquals("(`a` > 1.0) AND (`b` = \"x\")", filters[0].toQueryString());
+    assertEquals("year(`d`) = 2000.0", filters[1].toQueryString());
+
+    // Only the sub filters of an AND can be split.
+    query = QueryBuilder.getInstance().parseQuery(
+        "SELECT year(d) WHERE a > 1 OR year(d) = 2000");
+    filters = QueryPlanner.splitFilter(query.getFilter(), columns);
+    assertNull(filters[0]);
+    assertSame(query.getFilter(), filters[1]);
+  }
+
+  public void testPushdownAndPruning() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("name", ValueType.TEXT, "Name"));
+    table.addColumn(new ColumnDescription("weight", ValueType.NUMBER, "Weight"));
+    table.addColumn(new ColumnDescription("unused", ValueType.TEXT, "Unused"));
+    table.addRowFromValues("aaa", 222, "x");
+    table.addRowFromValues("ccc", 111, "y");
+    table.addRowFromValues("bbb", 333, "z");
+
+    Query query = QueryBuilder.getInstance().parseQuery(
+        "SELECT name, weight + 1 WHERE name != 'ccc' AND weight + 1 > 300 ORDER BY weight + 1");
+    DataTable result = QueryEngine.executeQuery(query, table, ULocale.US);
+    assertEquals(1, result.getNumberOfRows());
+    assertEquals("bbb", result.getCell(0, 0).getValue().toString());
+    assertEquals(334.0, ((NumberValue) result.getCell(0, 1).getValue()).getValue());
+    assertEquals(3, table.getNumberOfColumns());
+
+    query = QueryBuilder.getInstance().parseQuery(
+        "SELECT upper(name), sum(weight) GROUP BY upper(name) ORDER BY upper(name)");
+    result = QueryEngine.executeQuery(query, table, ULocale.US);
+    assertEquals(3, result.getNumberOfRows());
+    assertEquals(Lists.newArrayList("upper_name", "sum-weight"),
+        Lists.newArrayList(result.getColumnDescription(0).getId(),
+        result.getColumnDescription(1).getId()));
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.datatable.ColumnDescription;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
+import com.google.visualization.datasource.datatable.value.ValueType;
+import com.google.visualization.datasource.query.DataTableColumnLookup;
+import com.google.visualization.datasource.query.QuerySort;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for RowSortKeys.
+ */
+public class RowSortKeysTest extends TestCase {
+
+  /**
+   * Asserts that sorting the rows of a table by their sort keys gives the same order as a stable
+   * sort with a TableRowComparator.
+   *
+   * @param table The table.
+   * @param orderBy The ORDER BY clause.
+   * @param locale The locale.
+   */
+  private void assertSameOrder(DataTable table, String orderBy, ULocale locale)
+      throws Exception {
+    QuerySort sort = QueryBuilder.getInstance().parseQuery(orderBy).getSort();
+    DataTableColumnLookup lookup = new DataTableColumnLookup(table);
+    List<TableRow> rows = table.getRows();
+    List<TableRow> expected = Lists.newArrayList(rows);
+    Collections.sort(expected, new TableRowComparator(sort, locale, lookup));
+
+    int[] sortedIndices = RowSortKeys.compute(sort, locale, lookup, rows).sortedIndices();
+    assertEquals(orderBy, expected.size(), sortedIndices.length);
+    for (int i = 0; i < sortedIndices.length; i++) {
+      assertSame(orderBy, expected.get(i), rows.get(sortedIndices[i]));
+    }
+  }
+
+  public void testAllTypes() throws Exception {
+    DataTable table = MockDataSource.getRandomDataTable(3, 2000, 5);
+    String[] orderBys = {
+        "ORDER BY name",
+        "ORDER BY name DESC",
+        "ORDER BY salary",
+        "ORDER BY isSenior DESC, salary",
+        "ORDER BY hireDate",
+        "ORDER BY lunchTime DESC",
+        "ORDER BY seniorityStartTime",
+        "ORDER BY isSenior, hireDate DESC, name",
+        "ORDER BY upper(dept), year(hireDate) DESC, age"};
+    for (String orderBy : orderBys) {
+      assertSameOrder(table, orderBy, ULocale.US);
+    }
+  }
+
+  public void testTableWithDuplicates() throws Exception {
+    DataTable table = MockDataSource.getData(1);
+    assertSameOrder(table, "ORDER BY Year DESC, Band", ULocale.US);
+    assertSameOrder(table, "ORDER BY Songs, Sales DESC", ULocale.US);
+    assertSameOrder(table, "ORDER BY Songs + Sales", ULocale.US);
+  }
+
+  public void testLocaleSensitiveText() throws Exception {
+    DataTable table = new DataTable();
+    table.addColumn(new ColumnDescription("word", ValueType.TEXT, "Word"));
+    for (String word : new String[] {"cote", "Côte", "coté", "côté", "Zebra", "apple", "Äpfel",
+        "", "cote", "Apple"}) {
+      table.addRowFromValues(word);
+    }
+    table.addRowFromValues((Object) null);
+    for (ULocale locale : new ULocale[] {ULocale.US, ULocale.FRENCH, new ULocale("sv")}) {
+      assertSameOrder(table, "ORDER BY word", locale);
+      assertSameOrder(table, "ORDER BY word DESC", locale);
+      assertSameOrder(table, "ORDER BY lower(word)", locale);
+    }
+  }
+
+  public void testEmptyTable() throws Exception {
+    DataTable table = MockDataSource.getRandomDataTable(3, 0, 5);
+    assertSameOrder(table, "ORDER BY name, salary DESC", ULocale.US);
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.query.engine;
+
+import com.google.common.collect.Lists;
+import com.google.visualization.datasource.base.ReasonType;
+import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.query.Query;
+import com.google.visualization.datasource.query.mocks.MockDataSource;
+import com.google.visualization.datasource.query.parser.QueryBuilder;
+import com.ibm.icu.util.ULocale;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for TopKSelector.
+ */
+public class TopKSelectorTest extends TestCase {
+
+  /**
+   * Compares integer arrays by their first element only, so that arrays can be equal without
+   * being the same.
+   */
+  private static final Comparator<int[]> FIRST_ELEMENT_COMPARATOR = new Comparator<int[]>() {
+    @Override
+    public int compare(int[] a1, int[] a2) {
+      return (a1[0] < a2[0]) ? -1 : ((a1[0] == a2[0]) ? 0 : 1);
+    }
+  };
+
+  public void testSameAsStableSort() {
+    Random random = new Random(7);
+    for (int size : new int[] {0, 1, 2, 10, 100, 1000}) {
+      List<int[]> list = Lists.newArrayList();
+      for (int i = 0; i < size; i++) {
+        list.add(new int[] {random.nextInt(20)});
+      }
+      List<int[]> sorted = Lists.newArrayList(list);
+      Collections.sort(sorted, FIRST_ELEMENT_COMPARATOR);
+      for (int k : new int[] {0, 1, 3, 10, 99, 100, 2000}) {
+        List<int[]> selected = TopKSelector.select(list, FIRST_ELEMENT_COMPARATOR, k);
+        assertEquals(Math.min(k, size), selected.size());
+        for (int i = 0; i < selected.size(); i++) {
+          assertSame(sorted.get(i), selected.get(i));
+        }
+      }
+    }
+  }
+
+  public void testQueryWithSortAndLimit() throws Exception {
+    String[] queries = {
+        "ORDER BY Fans DESC LIMIT 5",
+        "ORDER BY Band LIMIT 7 OFFSET 3",
+        "ORDER BY Year, Band DESC SKIPPING 3 LIMIT 4 OFFSET 2",
+        "ORDER BY Songs LIMIT 44",
+        "ORDER BY Songs LIMIT 45"};
+    for (String queryString : queries) {
+      Query query = QueryBuilder.getInstance().parseQuery(queryString);
+      DataTable result = QueryEngine.executeQuery(query, MockDataSource.getData(1), ULocale.US);
+
+      // The same query, with the pagination done here on the fully sorted table.
+      Query unlimitedQuery = QueryBuilder.getInstance().parseQuery(queryString);
+      unlimitedQuery.setRowLimit(-1);
+      unlimitedQuery.setRowOffset(0);
+      DataTable sorted = QueryEngine.executeQuery(unlimitedQuery, MockDataSource.getData(1),
+          ULocale.US);
+      int offset = query.getRowOffset();
+      int expectedRows = Math.min(query.getRowLimit(), sorted.getNumberOfRows() - offset);
+      assertEquals(queryString, expectedRows, result.getNumberOfRows());
+      for (int i = 0; i < expectedRows; i++) {
+        for (int j = 0; j < sorted.getNumberOfColumns(); j++) {
+          assertEquals(sorted.getValue(offset + i, j), result.getValue(i, j));
+        }
+      }
+      boolean isTruncated = (offset + expectedRows < sorted.getNumberOfRows());
+      assertEquals(queryString, isTruncated, !result.getWarnings().isEmpty()
+          && (result.getWarnings().get(0).getReasonType() == ReasonType.DATA_TRUNCATED));
+    }
+  }
+}
@@ -55,6 +55,8 @@ import com.google.visualization.datasource.query.scalarfunction.Sum;
 import com.google.visualization.datasource.query.scalarfunction.TimeComponentExtractor;
 import com.google.visualization.datasource.query.scalarfunction.Upper;
 
+import com.ibm.icu.util.ULocale;
+
 import junit.framework.TestCase;
 
 import java.util.List;
@@ -1109,4 +1111,64 @@ public class QueryBuilderTest extends TestCase {
     assertEquals("A", ((SimpleColumn) filter.getColumn()).getId());
     assertEquals("foo%bar", ((TextValue) filter.getValue()).toString());
   }
+
+  public void testQueryCache() throws Exception {
+    QueryBuilder builder = QueryBuilder.getInstance();
+    builder.clearCache();
+    String queryString = "select A, max(B) where C > 3 group by A order by A limit 10";
+    Query query1 = builder.parseQuery(queryString);
+    assertEquals(0, builder.getCacheHits());
+    assertEquals(1, builder.getCacheMisses());
+
+    // The cached query is copied, so changing one copy does not change the others.
+    query1.setRowLimit(5);
+    query1.setSort(null);
+    Query query2 = builder.parseQuery(queryString, ULocale.FRENCH);
+    assertEquals(1, builder.getCacheHits());
+    assertNotSame(query1, query2);
+    assertEquals(10, query2.getRowLimit());
+    assertEquals("A", query2.getSort().getColumns().get(0).getId());
+    assertEquals(query2, builder.parseQuery(queryString));
+
+    // Invalid queries are not cached.
+    for (int i = 0; i < 2; i++) {
+      try {
+        builder.parseQuery("select A, A");
+        fail();
+      } catch (InvalidQueryException e) {
+        // Expected.
+      }
+    }
+    assertEquals(2, builder.getCacheHits());
+    assertEquals(3, builder.getCacheMisses());
+
+    // A disabled cache parses every query.
+    builder.setCacheSize(0);
+    builder.parseQuery(queryString);
+    builder.parseQuery(queryString);
+    assertEquals(2, builder.getCacheHits());
+    builder.setCacheSize(QueryBuilder.DEFAULT_CACHE_SIZE);
+    builder.clearCache();
+  }
+
+  public void testCachedClausesAreCopied() throws Exception {
+    QueryBuilder builder = QueryBuilder.getInstance();
+    builder.clearCache();
+    String queryString = "select A, max(B) group by A pivot C order by A label A 'a' "
+        + "format A 'x' options no_values";
+    Query query = builder.parseQuery(queryString);
+    String expected = query.toQueryString();
+    query.getSelection().addColumn(new SimpleColumn("D"));
+    query.getGroup().addColumn(new SimpleColumn("D"));
+    query.getPivot().addColumn(new SimpleColumn("E"));
+    query.getSort().addSort(new SimpleColumn("D"), SortOrder.DESCENDING);
+    query.getLabels().addLabel(new SimpleColumn("D"), "d");
+    query.getUserFormatOptions().addPattern(new SimpleColumn("D"), "y");
+    query.getOptions().setNoFormat(true);
+
+    Query cached = builder.parseQuery(queryString);
+    assertEquals(1, builder.getCacheHits());
+    assertEquals(expected, cached.toQueryString());
+    builder.clearCache();
+  }
 }
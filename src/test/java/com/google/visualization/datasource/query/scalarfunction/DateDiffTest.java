@@ -83,4 +83,22 @@ public class DateDiffTest extends TestCase {
     assertEquals(new NumberValue(-123), dateDiff.evaluate(valuesList3));
     assertEquals(new NumberValue(123), dateDiff.evaluate(valuesList4));
   }
+
+  public void testBatchEvaluate() {
+    DateDiff dateDiff = DateDiff.getInstance();
+    Value[] first = new Value[] {new DateValue(2008, 1, 29),
+        new DateTimeValue(2009, 0, 1, 23, 59, 59, 999), new DateTimeValue(2009, 0, 1, 1, 0, 0, 0),
+        new DateValue(1500, 5, 5), DateValue.getNullValue(), new DateValue(1970, 0, 1)};
+    Value[] second = new Value[] {new DateValue(2007, 1, 28),
+        new DateValue(2008, 11, 31), new DateTimeValue(2009, 0, 3, 0, 0, 0, 1),
+        new DateValue(1600, 0, 1), new DateValue(2000, 0, 1), new DateValue(1969, 11, 31)};
+    Value[] result = new Value[first.length + 1];
+    dateDiff.evaluate(new Value[][] {first, second}, 0, first.length, result);
+    for (int i = 0; i < first.length; i++) {
+      assertEquals(dateDiff.evaluate(Lists.newArrayList(first[i], second[i])), result[i]);
+    }
+    assertEquals(new NumberValue(366), result[0]);
+    assertEquals(new NumberValue(-1), result[2]);
+    assertNull(result[first.length]);
+  }
 }
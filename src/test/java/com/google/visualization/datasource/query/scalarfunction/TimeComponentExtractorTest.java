@@ -269,4 +269,26 @@ public class TimeComponentExtractorTest extends TestCase {
     assertTrue(quarter == anotherQuarter);
     assertTrue(dayofweek == anotherDayOfWeek);
   }
+
+  public void testBatchEvaluate() {
+    Value[] values = new Value[] {new DateValue(2009, 1, 2), new DateValue(2009, 5, 3),
+        new DateTimeValue(2008, 1, 2, 3, 4, 5, 6), DateValue.getNullValue(),
+        new DateValue(2010, 1, 2)};
+    Value[] result = new Value[values.length];
+    TimeComponentExtractor.TimeComponent[] components = {
+        TimeComponentExtractor.TimeComponent.YEAR, TimeComponentExtractor.TimeComponent.MONTH,
+        TimeComponentExtractor.TimeComponent.DAY_OF_WEEK};
+    for (TimeComponentExtractor.TimeComponent component : components) {
+      TimeComponentExtractor extractor = TimeComponentExtractor.getInstance(component);
+      extractor.evaluate(new Value[][] {values}, 0, values.length, result);
+      for (int i = 0; i < values.length; i++) {
+        assertEquals(extractor.evaluate(Lists.newArrayList(values[i])), result[i]);
+      }
+    }
+
+    // Consecutive rows with the same year share the result.
+    TimeComponentExtractor.getInstance(TimeComponentExtractor.TimeComponent.YEAR).evaluate(
+        new Value[][] {values}, 0, 2, result);
+    assertSame(result[0], result[1]);
+  }
 }
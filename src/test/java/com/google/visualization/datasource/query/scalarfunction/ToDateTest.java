@@ -77,4 +77,20 @@ List<Value> valuesList4 =
     assertEquals(new DateValue(1930, 10, 18), toDate.evaluate(valuesList4));
 
   }
+
+  public void testBatchEvaluate() {
+    ToDate toDate = ToDate.getInstance();
+    DateTimeValue dateTime = new DateTimeValue(2009, 1, 2, 3, 4, 5, 6);
+    Value[] values = new Value[] {new DateValue(2009, 1, 2), dateTime, dateTime,
+        new DateTimeValue(1200, 1, 2, 3, 4, 5, 6), new NumberValue(1234567890123.0),
+        new NumberValue(-1234567890123.0), new NumberValue(-20000000000000.0),
+        DateTimeValue.getNullValue(), NumberValue.getNullValue()};
+    Value[] result = new Value[values.length];
+    toDate.evaluate(new Value[][] {values}, 0, values.length, result);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(toDate.evaluate(Lists.newArrayList(values[i])), result[i]);
+    }
+    assertEquals(new DateValue(2009, 1, 2), result[1]);
+    assertSame(result[1], result[2]);
+  }
 }
@@ -375,7 +375,7 @@ public class JsonRendererTest extends TestCase {
         + "\"Retrieved data was truncated\",\"detailed_message\":"
         + "\"Sorry, data truncated\"},{\"reason\":\"not_supported\",\"message\":"
         + "\"Operation not supported\",\"detailed_message\":\"foobar\"}],"
-        + "\"sig\":\"121655538\",\"table\":"
+        + "\"sig\":\"4575933147490362080\",\"table\":"
         + "{\"cols\":[{\"id\":\"A\",\"label\":\"col0\",\"type\":\"string\",\"pattern\":\"\"},"
         + "{\"id\":\"B\",\"label\":\"col1\",\"type\":\"number\",\"pattern\":\"\"}],"
         + "\"rows\":[{\"c\":[{\"v\":\"aaa\"},{\"v\":222.0,\"f\":\"$222\"}]},"
@@ -433,4 +433,28 @@ public class JsonRendererTest extends TestCase {
             + ",\"p\":{\"brandy\":\"cognac\"}}",
     JsonRenderer.renderDataTable(testData, true, true, true).toString());
   }
+
+  public void testSignature() throws DataSourceException {
+    String signature = JsonRenderer.getSignature(testData);
+    assertEquals(signature, JsonRenderer.getSignature(testData.clone()));
+
+    // The signature ignores formatting.
+    testData.getRow(0).getCell(0).setFormattedValue("formatted");
+    assertEquals(signature, JsonRenderer.getSignature(testData));
+
+    // A response for an unchanged table is not modified.
+    DataSourceParameters dsParams = new DataSourceParameters("sig:" + signature);
+    assertEquals("{\"version\":\"0.6\",\"status\":\"error\",\"errors\":"
+        + "[{\"reason\":\"not_modified\",\"message\":\"Data not modified\"}]}",
+        JsonRenderer.renderJsonResponse(dsParams, null, testData).toString());
+
+    // Any change of the contents changes the signature.
+    testData.getRow(0).getCell(0).setCustomProperty("a", "b");
+    String changedSignature = JsonRenderer.getSignature(testData);
+    assertFalse(signature.equals(changedSignature));
+    testData.addRowFromValues("x", 1);
+    assertFalse(changedSignature.equals(JsonRenderer.getSignature(testData)));
+    assertTrue(JsonRenderer.renderJsonResponse(dsParams, null, testData).toString()
+        .contains("\"status\":\"ok\""));
+  }
 }
@@ -30,9 +30,14 @@ import com.ibm.icu.util.ULocale;
 
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.List;
 
 /**
@@ -300,4 +305,77 @@ public class CsvDataSourceHelperTest extends TestCase {
     assertEquals(new NumberValue(1), dataTable.getRow(0).getCell(0).getValue());
     assertEquals(hindiTimeOfDayValue, dataTable.getRow(0).getCell(1).getValue());
   }
+
+  public void testReadFile() throws IOException, CsvDataSourceException {
+    List<ColumnDescription> columnDescriptions = Lists.newArrayList();
+    columnDescriptions.add(new ColumnDescription("i1", ValueType.NUMBER, null));
+    columnDescriptions.add(new ColumnDescription("i2", ValueType.TEXT, null));
+    ColumnDescription columnDescription = new ColumnDescription("i3", ValueType.DATE, null);
+    columnDescription.setPattern("yyyyMMdd");
+    columnDescriptions.add(columnDescription);
+
+    // Quoted values with newlines and quotes must not be split between chunks.
+    StringBuilder csv = new StringBuilder("\nnumber, text ,date\n");
+    for (int i = 0; i < 200; i++) {
+      csv.append(i).append(',');
+      if (i % 3 == 0) {
+        csv.append("\"multi\nline, \"\"quoted\"\"\n").append(i).append('"');
+      } else {
+        csv.append("\u05d0text").append(i);
+      }
+      csv.append(",2009").append(String.format("%02d%02d", 1 + i % 12, 1 + i % 28));
+      csv.append((i % 10 == 0) ? "\r\n\n" : "\n");
+    }
+    File file = File.createTempFile("CsvDataSourceHelperTest", ".csv");
+    try {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      writer.write(csv.toString());
+      writer.close();
+
+      DataTable expected = CsvDataSourceHelper.read(new StringReader(csv.toString()),
+          columnDescriptions, true);
+      assertEquals(200, expected.getNumberOfRows());
+      assertEquals("text", expected.getColumnDescription(1).getLabel());
+      assertEquals("multi\nline, \"quoted\"\n0",
+          expected.getRow(0).getCell(1).getValue().toString());
+      assertEquals(new DateValue(2009, 0, 1), expected.getRow(0).getCell(2).getValue());
+
+      Charset utf8 = Charset.forName("UTF-8");
+      assertSameTable(expected, CsvDataSourceHelper.readFile(file, columnDescriptions, true,
+          null, utf8, 4));
+      ParallelCsvReader reader =
+          new ParallelCsvReader(file, columnDescriptions, true, null, utf8, 3);
+      reader.setMinChunkSize(64);
+      assertSameTable(expected, reader.read());
+
+      // Without a header row.
+      reader = new ParallelCsvReader(file, null, false, null, utf8, 3);
+      reader.setMinChunkSize(64);
+      DataTable dataTable = reader.read();
+      assertEquals(201, dataTable.getNumberOfRows());
+      assertEquals(new TextValue("number"), dataTable.getRow(0).getCell(0).getValue());
+      assertSameTable(CsvDataSourceHelper.read(new StringReader(csv.toString()), null, false),
+          dataTable);
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Asserts that two tables have the same columns and values.
+   */
+  private static void assertSameTable(DataTable expected, DataTable actual) {
+    assertEquals(expected.getNumberOfColumns(), actual.getNumberOfColumns());
+    assertEquals(expected.getNumberOfRows(), actual.getNumberOfRows());
+    for (int i = 0; i < expected.getNumberOfColumns(); i++) {
+      assertEquals(expected.getColumnDescription(i).getLabel(),
+          actual.getColumnDescription(i).getLabel());
+    }
+    for (int i = 0; i < expected.getNumberOfRows(); i++) {
+      for (int j = 0; j < expected.getNumberOfColumns(); j++) {
+        assertEquals(expected.getRow(i).getCell(j).getValue(),
+            actual.getRow(i).getCell(j).getValue());
+      }
+    }
+  }
 }
@@ -993,4 +993,6 @@ public class MockResultSet implements ResultSet {
   public boolean isWrapperFor(Class<?> iface) {
     throw new UnsupportedOperationException("This operation is unsupported.");
   }
+  public <T> T getObject(int columnIndex, Class<T> type) { throw new UnsupportedOperationException(); }
+  public <T> T getObject(String columnLabel, Class<T> type) { throw new UnsupportedOperationException(); }
 }
@@ -0,0 +1,285 @@
+// Copyright 2009 Google Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.visualization.datasource.util;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+
+import com.google.common.collect.Lists;
+
+import org.easymock.IAnswer;
+
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Tests for SqlConnectionPool.
+ */
+public class SqlConnectionPoolTest extends TestCase {
+
+  /**
+   * A pool of mock connections, with a settable clock.
+   */
+  private static class TestPool extends SqlConnectionPool {
+
+    static final int DEFAULT_FETCH_SIZE = 10;
+
+    final List<Connection> createdConnections = Lists.newArrayList();
+
+    final List<PreparedStatement> preparedStatements = Lists.newArrayList();
+
+    boolean isValid = true;
+
+    long currentTimeMillis = 1000;
+
+    TestPool(int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) {
+      super("jdbc:test", "user", "password", minSize, maxSize, idleTimeoutMillis,
+          borrowTimeoutMillis);
+    }
+
+    TestPool(int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis,
+        int statementCacheSize) {
+      super("jdbc:test", "user", "password", minSize, maxSize, idleTimeoutMillis,
+          borrowTimeoutMillis, statementCacheSize);
+    }
+
+    @Override
+    Connection createConnection() throws SQLException {
+      Connection connection = createNiceMock(Connection.class);
+      expect(connection.prepareStatement((String) anyObject())).andStubAnswer(
+          new IAnswer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer() {
+              PreparedStatement statement = createNiceMock(PreparedStatement.class);
+              try {
+                expect(statement.getFetchSize()).andStubReturn(DEFAULT_FETCH_SIZE);
+              } catch (SQLException e) {
+                fail();
+              }
+              replay(statement);
+              preparedStatements.add(statement);
+              return statement;
+            }
+          });
+      expect(connection.isValid(anyInt())).andStubAnswer(
+          new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+              return isValid;
+            }
+          });
+      expect(connection.getAutoCommit()).andStubReturn(true);
+      replay(connection);
+      createdConnections.add(connection);
+      return connection;
+    }
+
+    @Override
+    long getCurrentTimeMillis() {
+      return currentTimeMillis;
+    }
+  }
+
+  public void testConnectionsAreReused() throws SQLException {
+    TestPool pool = new TestPool(0, 2, 60000, 0);
+    Connection connection1 = pool.getConnection();
+    Connection connection2 = pool.getConnection();
+    assertEquals(2, pool.getNumberOfActiveConnections());
+    assertEquals(2, pool.getCreatedCount());
+
+    connection1.close();
+    assertTrue(connection1.isClosed());
+    assertEquals(1, pool.getNumberOfIdleConnections());
+    try {
+      connection1.createStatement();
+      fail();
+    } catch (SQLException e) {
+      // Expected.
+    }
+
+    Connection connection3 = pool.getConnection();
+    assertFalse(connection3.isClosed());
+    assertEquals(2, pool.getCreatedCount());
+    assertEquals(3, pool.getBorrowCount());
+    connection2.close();
+    connection3.close();
+    assertEquals(0, pool.getNumberOfActiveConnections());
+    assertEquals(2, pool.getNumberOfIdleConnections());
+  }
+
+  public void testBorrowTimeout() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0);
+    Connection connection = pool.getConnection();
+    try {
+      pool.getConnection();
+      fail();
+    } catch (SQLException e) {
+      // Expected.
+    }
+    assertEquals(1, pool.getBorrowTimeoutCount());
+    connection.close();
+    pool.getConnection().close();
+    assertEquals(1, pool.getCreatedCount());
+  }
+
+  public void testInvalidConnectionsAreReplaced() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0);
+    pool.getConnection().close();
+    pool.isValid = false;
+    Connection connection = pool.getConnection();
+    assertEquals(2, pool.getCreatedCount());
+    assertEquals(1, pool.getNumberOfActiveConnections());
+    connection.close();
+  }
+
+  public void testIdleConnectionsExpire() throws SQLException {
+    TestPool pool = new TestPool(1, 3, 60000, 0);
+    Connection connection1 = pool.getConnection();
+    Connection connection2 = pool.getConnection();
+    Connection connection3 = pool.getConnection();
+    connection1.close();
+    connection2.close();
+    pool.currentTimeMillis += 30000;
+    connection3.close();
+    pool.currentTimeMillis += 30001;
+
+    // The two connections idle for too long are expired, but the pool keeps one.
+    Connection connection = pool.getConnection();
+    assertEquals(0, pool.getNumberOfIdleConnections());
+    assertEquals(1, pool.getNumberOfActiveConnections());
+    connection.close();
+    assertEquals(3, pool.getCreatedCount());
+  }
+
+  public void testEvictExpiredConnections() throws SQLException {
+    TestPool pool = new TestPool(1, 3, 60000, 0);
+    Connection connection1 = pool.getConnection();
+    Connection connection2 = pool.getConnection();
+    connection1.close();
+    connection2.close();
+    pool.evictExpiredConnections();
+    assertEquals(2, pool.getNumberOfIdleConnections());
+
+    // Without borrowing, the evictor closes the expired connections but the minimal one.
+    pool.currentTimeMillis += 60001;
+    pool.evictExpiredConnections();
+    assertEquals(1, pool.getNumberOfIdleConnections());
+    assertEquals(0, pool.getNumberOfActiveConnections());
+    pool.close();
+  }
+
+  public void testUnwrap() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0);
+    Connection connection = pool.getConnection();
+    assertSame(connection, connection.unwrap(Connection.class));
+    connection.close();
+    assertEquals(1, pool.getNumberOfIdleConnections());
+
+    // A connection unwrapped to another interface is not returned to the pool.
+    connection = pool.getConnection();
+    connection.unwrap(Runnable.class);
+    connection.close();
+    assertEquals(0, pool.getNumberOfIdleConnections());
+    assertEquals(0, pool.getNumberOfActiveConnections());
+    pool.getConnection().close();
+    assertEquals(2, pool.getCreatedCount());
+  }
+
+  public void testClose() throws SQLException {
+    TestPool pool = new TestPool(0, 2, 60000, 0);
+    Connection connection = pool.getConnection();
+    pool.getConnection().close();
+    pool.close();
+    assertEquals(0, pool.getNumberOfIdleConnections());
+    connection.close();
+    assertEquals(0, pool.getNumberOfActiveConnections());
+    try {
+      pool.getConnection();
+      fail();
+    } catch (SQLException e) {
+      // Expected.
+    }
+  }
+
+  public void testStatementCache() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0, 1);
+    Connection connection = pool.getConnection();
+    PreparedStatement statement1 = connection.prepareStatement("SELECT ?");
+    assertSame(connection, statement1.getConnection());
+    statement1.close();
+    assertTrue(statement1.isClosed());
+
+    // The closed statement is reused, while a statement in use is not shared.
+    PreparedStatement statement2 = connection.prepareStatement("SELECT ?");
+    PreparedStatement statement3 = connection.prepareStatement("SELECT ?");
+    assertEquals(1, pool.getStatementCacheHits());
+    assertEquals(2, pool.preparedStatements.size());
+    statement2.close();
+    statement3.close();
+
+    // The cache is kept with the connection, and evicts the least recently used statements.
+    connection.close();
+    connection = pool.getConnection();
+    connection.prepareStatement("SELECT ?").close();
+    assertEquals(2, pool.getStatementCacheHits());
+    connection.prepareStatement("SELECT 1").close();
+    connection.prepareStatement("SELECT ?").close();
+    assertEquals(2, pool.getStatementCacheHits());
+    assertEquals(4, pool.getStatementCacheMisses());
+    connection.close();
+  }
+
+  public void testStatementSettingsAreRestored() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0, 1);
+    Connection connection = pool.getConnection();
+    PreparedStatement statement = connection.prepareStatement("SELECT ?");
+    PreparedStatement underlying = pool.preparedStatements.get(0);
+    reset(underlying);
+    underlying.setMaxRows(5);
+    underlying.setFetchSize(500);
+    underlying.setQueryTimeout(30);
+    underlying.clearParameters();
+    underlying.setMaxRows(0);
+    underlying.setFetchSize(TestPool.DEFAULT_FETCH_SIZE);
+    underlying.setQueryTimeout(0);
+    replay(underlying);
+
+    statement.setMaxRows(5);
+    statement.setFetchSize(500);
+    statement.setQueryTimeout(30);
+    statement.close();
+    verify(underlying);
+    connection.close();
+  }
+
+  public void testStatementCacheDisabled() throws SQLException {
+    TestPool pool = new TestPool(0, 1, 60000, 0, 0);
+    Connection connection = pool.getConnection();
+    connection.prepareStatement("SELECT ?").close();
+    connection.prepareStatement("SELECT ?").close();
+    assertEquals(2, pool.preparedStatements.size());
+    assertEquals(0, pool.getStatementCacheHits());
+    connection.close();
+  }
+}
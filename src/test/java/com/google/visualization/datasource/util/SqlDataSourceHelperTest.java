@@ -14,17 +14,25 @@
 
 package com.google.visualization.datasource.util;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
 import com.google.common.collect.Lists;
 import com.google.visualization.datasource.base.DataSourceException;
 import com.google.visualization.datasource.base.InvalidQueryException;
 import com.google.visualization.datasource.datatable.ColumnDescription;
 import com.google.visualization.datasource.datatable.DataTable;
+import com.google.visualization.datasource.datatable.TableRow;
 import com.google.visualization.datasource.datatable.value.BooleanValue;
 import com.google.visualization.datasource.datatable.value.DateTimeValue;
 import com.google.visualization.datasource.datatable.value.DateValue;
 import com.google.visualization.datasource.datatable.value.NumberValue;
 import com.google.visualization.datasource.datatable.value.TextValue;
 import com.google.visualization.datasource.datatable.value.TimeOfDayValue;
+import com.google.visualization.datasource.datatable.value.Value;
 import com.google.visualization.datasource.datatable.value.ValueType;
 import com.google.visualization.datasource.query.AggregationColumn;
 import com.google.visualization.datasource.query.AggregationType;
@@ -48,7 +56,9 @@ import junit.framework.TestCase;
 
 import org.apache.commons.lang.text.StrBuilder;
 
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
@@ -56,6 +66,8 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.List;
 
+import javax.sql.DataSource;
+
 /**
  * Tests for the SqlDataSourceTest class.
  * The DB connection is not being tested, only the building of the query and
@@ -231,6 +243,140 @@ public class SqlDataSourceHelperTest extends TestCase {
   /**
    * Tests the building of the SQL query GROUP BY clause from the Gviz query.
    */
+  public void testBuildParameterizedWhereClause() {
+    Query query = new Query();
+    List<QueryFilter> subFilters = Lists.newArrayList(
+        new ColumnColumnFilter(new SimpleColumn("ID"), new SimpleColumn("Salary"),
+            ComparisonFilter.Operator.EQ),
+        new ColumnValueFilter(new SimpleColumn("ID"), new NumberValue(1),
+            ComparisonFilter.Operator.GE),
+        new ColumnValueFilter(new SimpleColumn("Fname"), new TextValue("Mi"),
+            ComparisonFilter.Operator.STARTS_WITH),
+        new ColumnValueFilter(new SimpleColumn("Lname"), new TextValue("SH"),
+            ComparisonFilter.Operator.CONTAINS),
+        new NegationFilter(new ColumnValueFilter(new SimpleColumn("Birth"),
+            new DateValue(1980, 0, 31), ComparisonFilter.Operator.LT)));
+    query.setFilter(new CompoundFilter(CompoundFilter.LogicalOperator.AND, subFilters));
+    StrBuilder queryStringBuilder = new StrBuilder();
+    List<Value> bindValues = Lists.newArrayList();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder, bindValues);
+    assertEquals("WHERE ((`ID`=`Salary`) AND (`ID`>=?) AND (`Fname` LIKE ?) "
+        + "AND (`Lname` LIKE ?) AND (NOT (`Birth`<?))) ", queryStringBuilder.toString());
+    assertEquals(Lists.newArrayList(new NumberValue(1), new TextValue("Mi%"),
+        new TextValue("%SH%"), new DateValue(1980, 0, 31)), bindValues);
+
+    // Queries that only differ in their values have the same sql.
+    query.setFilter(new ColumnValueFilter(new SimpleColumn("Fname"), new TextValue("a\"b"),
+        ComparisonFilter.Operator.EQ));
+    queryStringBuilder = new StrBuilder();
+    bindValues = Lists.newArrayList();
+    SqlDataSourceHelper.appendWhereClause(query, queryStringBuilder, bindValues);
+    assertEquals("WHERE (`Fname`=?) ", queryStringBuilder.toString());
+    assertEquals(Lists.newArrayList(new TextValue("a\"b")), bindValues);
+  }
+
+  public void testSetBindValue() throws SQLException {
+    PreparedStatement statement = createMock(PreparedStatement.class);
+    statement.setString(1, "text");
+    statement.setDouble(2, 2.5);
+    statement.setBoolean(3, true);
+    statement.setDate(4, Date.valueOf("2009-02-28"));
+    statement.setTimestamp(5, Timestamp.valueOf("2009-02-28 12:30:45.123"));
+    statement.setTime(6, Time.valueOf("12:30:45"));
+    replay(statement);
+    SqlDataSourceHelper.setBindValue(statement, 1, new TextValue("text"));
+    SqlDataSourceHelper.setBindValue(statement, 2, new NumberValue(2.5));
+    SqlDataSourceHelper.setBindValue(statement, 3, BooleanValue.TRUE);
+    SqlDataSourceHelper.setBindValue(statement, 4, new DateValue(2009, 1, 28));
+    SqlDataSourceHelper.setBindValue(statement, 5,
+        new DateTimeValue(2009, 1, 28, 12, 30, 45, 123));
+    SqlDataSourceHelper.setBindValue(statement, 6, new TimeOfDayValue(12, 30, 45));
+    verify(statement);
+  }
+
+  public void testGetRowBudget() throws InvalidQueryException {
+    Query query = new Query();
+    assertEquals(0, SqlDataSourceHelper.getRowBudget(query));
+    query.setRowLimit(10);
+    query.setRowOffset(5);
+    assertEquals(15, SqlDataSourceHelper.getRowBudget(query));
+
+    // Sorting needs all the rows.
+    QuerySort sort = new QuerySort();
+    sort.addSort(new SimpleColumn("A"), SortOrder.ASCENDING);
+    query.setSort(sort);
+    assertEquals(0, SqlDataSourceHelper.getRowBudget(query));
+  }
+
+  /**
+   * Tests executing a query with a row consumer, that stops reading, and with a maximal number
+   * of rows.
+   *
+   * @throws Exception Thrown when the test fails.
+   */
+  public void testExecuteQueryWithConsumer() throws Exception {
+    rows.add(Lists.<Object>newArrayList(100, "Yaron", null, 'M', 1000, false, null, null,
+        null));
+    rows.add(Lists.<Object>newArrayList(200, "Moran", "Bar", 'F', 2000, null, null, null,
+        null));
+    rows.add(Lists.<Object>newArrayList(300, "Shir", "Gal", 'F', null, true, null, null,
+        null));
+    SqlDatabaseDescription databaseDescription =
+        new SqlDatabaseDescription(createMockDataSource(100, 0), "Employee");
+    databaseDescription.setFetchSize(100);
+    final List<ColumnDescription> columns = Lists.newArrayList();
+    final List<TableRow> consumedRows = Lists.newArrayList();
+    TableRowConsumer consumer = new TableRowConsumer() {
+      @Override
+      public void start(List<ColumnDescription> columnDescriptions) {
+        columns.addAll(columnDescriptions);
+      }
+
+      @Override
+      public boolean consume(TableRow row) {
+        consumedRows.add(row);
+        return consumedRows.size() < 2;
+      }
+    };
+    SqlDataSourceHelper.executeQuery(new Query(), databaseDescription, consumer);
+    assertEquals(NUM_OF_COLS, columns.size());
+    assertEquals(ValueType.NUMBER, columns.get(0).getType());
+    assertEquals(2, consumedRows.size());
+    assertEquals("Moran", consumedRows.get(1).getCell(1).getValue().toString());
+    assertTrue(consumedRows.get(1).getCell(5).isNull());
+
+    databaseDescription = new SqlDatabaseDescription(createMockDataSource(0, 1), "Employee");
+    databaseDescription.setMaxRows(1);
+    DataTable dataTable = SqlDataSourceHelper.executeQuery(new Query(), databaseDescription);
+    assertEquals(NUM_OF_COLS, dataTable.getNumberOfColumns());
+    assertEquals(1, dataTable.getNumberOfRows());
+    assertEquals(new NumberValue(100), dataTable.getRow(0).getCell(0).getValue());
+  }
+
+  /**
+   * Returns a mock data source, whose statements return the rows of the test table.
+   *
+   * @param fetchSize The fetch size the statement expects.
+   * @param maxRows The maximal number of rows the statement expects.
+   *
+   * @return The data source.
+   *
+   * @throws SQLException Thrown when the test fails.
+   */
+  private DataSource createMockDataSource(int fetchSize, int maxRows) throws SQLException {
+    PreparedStatement statement = createNiceMock(PreparedStatement.class);
+    statement.setFetchSize(fetchSize);
+    statement.setMaxRows(maxRows);
+    expect(statement.executeQuery()).andReturn(
+        new MockResultSet(rows, NUM_OF_COLS, labels, types));
+    Connection connection = createNiceMock(Connection.class);
+    expect(connection.prepareStatement("SELECT * FROM Employee ")).andReturn(statement);
+    DataSource dataSource = createNiceMock(DataSource.class);
+    expect(dataSource.getConnection()).andReturn(connection);
+    replay(statement, connection, dataSource);
+    return dataSource;
+  }
+
   public void testBuildGroupByClause() {
     Query query =  new Query();
     QueryGroup queryGroup = new QueryGroup();